@@ -0,0 +1,166 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.benchmark;
+
+import io.scif.FormatException;
+import io.scif.SCIFIO;
+import io.scif.config.SCIFIOConfig;
+import io.scif.filters.ReaderFilter;
+import io.scif.img.cell.SCIFIOCell;
+import io.scif.img.cell.SCIFIOCellCache;
+import io.scif.img.cell.loaders.ByteArrayLoader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link SCIFIOCellCache#load} latency, with one 64x64 plane per
+ * cell. A hit finds a cell which is still strongly held in memory; a miss
+ * reads the plane and registers the new cell with the cache.
+ */
+@Fork(1)
+public class CellCacheBenchmark {
+
+	// -- Constants --
+
+	private static final int WIDTH = 64;
+
+	private static final int HEIGHT = 64;
+
+	private static final int PLANES = 4096;
+
+	private static final int[] CELL_DIMS = { WIDTH, HEIGHT, 1 };
+
+	// -- States --
+
+	/** A cache of a FakeFormat image, over a fresh reader. */
+	@State(Scope.Benchmark)
+	public static class CacheState {
+
+		private SCIFIO scifio;
+
+		private ReaderFilter reader;
+
+		protected SCIFIOCellCache<ByteArray> cache;
+
+		private int next;
+
+		@Setup
+		public void setUp() throws FormatException, IOException {
+			scifio = new SCIFIO();
+			reader = scifio.initializer().initializeReader(Datasets.fakeId("uint8",
+				WIDTH, HEIGHT, PLANES), new SCIFIOConfig().checkerSetOpen(true));
+			cache = newCache();
+		}
+
+		@TearDown
+		public void tearDown() throws IOException {
+			reader.close();
+			scifio.getContext().dispose();
+		}
+
+		protected SCIFIOCellCache<ByteArray> newCache() {
+			return new SCIFIOCellCache<>(scifio.getContext(), new ByteArrayLoader(
+				reader, null));
+		}
+
+		protected SCIFIOCell<ByteArray> load() {
+			final int index = next;
+			next = (next + 1) % PLANES;
+			return cache.load(index, CELL_DIMS, new long[] { 0, 0, index });
+		}
+	}
+
+	/** A cache with every cell loaded, and held, up front. */
+	@State(Scope.Benchmark)
+	public static class HitState extends CacheState {
+
+		private final List<SCIFIOCell<ByteArray>> cells = new ArrayList<>();
+
+		@Setup
+		public void loadCells() {
+			for (int i = 0; i < PLANES; i++) {
+				cells.add(load());
+			}
+		}
+	}
+
+	/** A cache which is replaced by an empty one before each iteration. */
+	@State(Scope.Benchmark)
+	public static class MissState extends CacheState {
+
+		@Setup(Level.Iteration)
+		public void clearCache() {
+			cache = newCache();
+		}
+	}
+
+	// -- Benchmarks --
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	@Warmup(iterations = 3, time = 1)
+	@Measurement(iterations = 5, time = 1)
+	public SCIFIOCell<ByteArray> hit(final HitState state) {
+		return state.load();
+	}
+
+	/**
+	 * Loads every cell of an empty cache once per iteration, so that each call
+	 * misses. Reported times are per iteration of {@code PLANES} misses.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@Warmup(iterations = 3, batchSize = PLANES)
+	@Measurement(iterations = 5, batchSize = PLANES)
+	public SCIFIOCell<ByteArray> miss(final MissState state) {
+		return state.load();
+	}
+}
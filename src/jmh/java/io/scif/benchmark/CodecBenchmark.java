@@ -0,0 +1,169 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.benchmark;
+
+import io.scif.FormatException;
+import io.scif.SCIFIO;
+import io.scif.codec.Codec;
+import io.scif.codec.CodecOptions;
+import io.scif.codec.JPEGCodec;
+import io.scif.codec.LZWCodec;
+import io.scif.codec.PackbitsCodec;
+import io.scif.codec.ZlibCodec;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures compression and decompression throughput of the codecs used by
+ * TIFF, on one 512x512 8-bit plane. PackBits is only measured decompressing,
+ * since {@link PackbitsCodec} cannot compress.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CodecBenchmark {
+
+	// -- Constants --
+
+	private static final int WIDTH = 512;
+
+	private static final int HEIGHT = 512;
+
+	// -- States --
+
+	@State(Scope.Benchmark)
+	public static class CodecState {
+
+		@Param({ "lzw", "zlib", "jpeg" })
+		public String codec;
+
+		private SCIFIO scifio;
+
+		private Codec impl;
+
+		private CodecOptions options;
+
+		private byte[] raw;
+
+		private byte[] compressed;
+
+		@Setup
+		public void setUp() throws FormatException {
+			scifio = new SCIFIO();
+			if (codec.equals("lzw")) impl = scifio.codec().getCodec(LZWCodec.class);
+			else if (codec.equals("zlib")) {
+				impl = scifio.codec().getCodec(ZlibCodec.class);
+			}
+			else impl = scifio.codec().getCodec(JPEGCodec.class);
+			options = options();
+			raw = Datasets.pixels(WIDTH * HEIGHT, 0);
+			compressed = impl.compress(raw, options);
+		}
+
+		@TearDown
+		public void tearDown() {
+			scifio.getContext().dispose();
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class PackbitsState {
+
+		private SCIFIO scifio;
+
+		private Codec impl;
+
+		private CodecOptions options;
+
+		private byte[] compressed;
+
+		@Setup
+		public void setUp() {
+			scifio = new SCIFIO();
+			impl = scifio.codec().getCodec(PackbitsCodec.class);
+			options = options();
+			compressed = Datasets.packBits(Datasets.pixels(WIDTH * HEIGHT, 0));
+		}
+
+		@TearDown
+		public void tearDown() {
+			scifio.getContext().dispose();
+		}
+	}
+
+	// -- Benchmarks --
+
+	@Benchmark
+	public byte[] compress(final CodecState state) throws FormatException {
+		return state.impl.compress(state.raw, state.options);
+	}
+
+	@Benchmark
+	public byte[] decompress(final CodecState state) throws FormatException {
+		return state.impl.decompress(state.compressed, state.options);
+	}
+
+	@Benchmark
+	public byte[] decompressPackbits(final PackbitsState state)
+		throws FormatException
+	{
+		return state.impl.decompress(state.compressed, state.options);
+	}
+
+	// -- Helper methods --
+
+	private static CodecOptions options() {
+		final CodecOptions options = new CodecOptions();
+		options.width = WIDTH;
+		options.height = HEIGHT;
+		options.channels = 1;
+		options.bitsPerSample = 8;
+		options.interleaved = true;
+		options.littleEndian = true;
+		options.maxBytes = WIDTH * HEIGHT;
+		return options;
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.benchmark;
+
+import io.scif.FormatException;
+import io.scif.formats.tiff.IFD;
+import io.scif.formats.tiff.TiffCompression;
+import io.scif.formats.tiff.TiffSaver;
+import io.scif.util.FormatTools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.scijava.Context;
+import org.scijava.log.LogService;
+
+/**
+ * Generates the datasets measured by the benchmarks: FakeFormat ids, TIFF
+ * files written through {@link TiffSaver}, and raw pixel buffers.
+ */
+public final class Datasets {
+
+	private Datasets() {
+		// NB: Prevent instantiation of utility class.
+	}
+
+	// -- Datasets API methods --
+
+	/** Gets the id of a FakeFormat image with the given plane shape. */
+	public static String fakeId(final String pixelType, final int width,
+		final int height, final int planes)
+	{
+		return "benchmark&pixelType=" + pixelType + "&lengths=" + width + "," +
+			height + "," + planes + "&axes=X,Y,Time.fake";
+	}
+
+	/**
+	 * Writes an 8-bit grayscale TIFF with the given compression to a temporary
+	 * file, which is deleted on exit.
+	 */
+	public static File writeTiff(final Context context,
+		final TiffCompression compression, final int width, final int height,
+		final int planes) throws FormatException, IOException
+	{
+		final File file =
+			File.createTempFile("scifio-benchmark-" + compression.name()
+				.toLowerCase(), ".tif");
+		file.deleteOnExit();
+
+		final LogService log = context.getService(LogService.class);
+		final TiffSaver saver = new TiffSaver(context, file.getAbsolutePath());
+		try {
+			saver.setLittleEndian(true);
+			saver.setWritingSequentially(true);
+			saver.writeHeader();
+			for (int p = 0; p < planes; p++) {
+				final IFD ifd = new IFD(log);
+				ifd.put(IFD.IMAGE_WIDTH, (long) width);
+				ifd.put(IFD.IMAGE_LENGTH, (long) height);
+				ifd.putIFDValue(IFD.COMPRESSION, compression.getCode());
+				ifd.putIFDValue(IFD.ROWS_PER_STRIP, new long[] { 16 });
+				saver.writeImage(pixels(width * height, p), ifd, p,
+					FormatTools.UINT8, p == planes - 1);
+			}
+		}
+		finally {
+			saver.getStream().close();
+		}
+		return file;
+	}
+
+	/**
+	 * Gets a buffer of smooth gradients with a little noise, so that the
+	 * codecs have realistic rather than trivial work to do.
+	 */
+	public static byte[] pixels(final int length, final long seed) {
+		final byte[] data = new byte[length];
+		long state = seed * 0x9E3779B97F4A7C15L + 1;
+		for (int i = 0; i < length; i++) {
+			state ^= state << 13;
+			state ^= state >>> 7;
+			state ^= state << 17;
+			data[i] = (byte) ((i >> 3) + (i >> 11) + (state & 7));
+		}
+		return data;
+	}
+
+	/** Encodes the given data as PackBits runs. */
+	public static byte[] packBits(final byte[] data) {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int i = 0;
+		while (i < data.length) {
+			int run = 1;
+			while (i + run < data.length && run < 128 && data[i + run] == data[i])
+				run++;
+			if (run > 1) {
+				out.write(1 - run);
+				out.write(data[i]);
+				i += run;
+				continue;
+			}
+			final int start = i;
+			while (i < data.length && i - start < 128 &&
+				(i + 1 == data.length || data[i] != data[i + 1]))
+			{
+				i++;
+			}
+			if (i == start) i++;
+			out.write(i - start - 1);
+			out.write(data, start, i - start);
+		}
+		return out.toByteArray();
+	}
+}
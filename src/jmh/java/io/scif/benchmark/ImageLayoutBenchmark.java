@@ -0,0 +1,126 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.benchmark;
+
+import io.scif.DefaultImageMetadata;
+import io.scif.ImageLayout;
+import io.scif.ImageMetadata;
+import io.scif.util.FormatTools;
+
+import java.util.concurrent.TimeUnit;
+
+import net.imagej.axis.Axes;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares per-plane and per-pixel axis math through {@link ImageMetadata}
+ * with the same math through a compiled {@link ImageLayout}, for a 16-bit
+ * XYCZT image with three planar axes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ImageLayoutBenchmark {
+
+	// -- Fields --
+
+	private ImageMetadata meta;
+
+	private long planeCount;
+
+	private long planePixels;
+
+	private final long[] planePosition = new long[2];
+
+	private final long[] pixelPosition = new long[3];
+
+	private long plane;
+
+	private long pixel;
+
+	// -- Setup --
+
+	@Setup
+	public void setUp() {
+		meta = new DefaultImageMetadata();
+		meta.setAxisTypes(Axes.X, Axes.Y, Axes.CHANNEL, Axes.Z, Axes.TIME);
+		meta.setAxisLengths(new long[] { 512, 512, 3, 40, 25 });
+		meta.setPlanarAxisCount(3);
+		meta.setPixelType(FormatTools.UINT16);
+		planeCount = meta.getPlaneCount();
+		planePixels = meta.getPlaneSize() / 2;
+	}
+
+	// -- Benchmarks --
+
+	@Benchmark
+	public long metadataPlane() {
+		plane = (plane + 1) % planeCount;
+		return meta.getPlaneCount() + FormatTools.rasterToPosition(meta
+			.getAxesLengthsNonPlanar(), plane)[1] + meta.getAxisLength(Axes.TIME);
+	}
+
+	@Benchmark
+	public long layoutPlane() {
+		plane = (plane + 1) % planeCount;
+		final ImageLayout layout = meta.getLayout();
+		return layout.getPlaneCount() + layout.planeToPosition(plane,
+			planePosition)[1] + layout.getAxisLength(Axes.TIME);
+	}
+
+	@Benchmark
+	public long metadataPixel() {
+		pixel = (pixel + 1) % planePixels;
+		final long[] position = FormatTools.rasterToPosition(meta
+			.getAxesLengthsPlanar(), pixel);
+		return position[0] + position[1] + position[2];
+	}
+
+	@Benchmark
+	public long layoutPixel() {
+		pixel = (pixel + 1) % planePixels;
+		meta.getLayout().pixelToPosition(pixel, pixelPosition);
+		return pixelPosition[0] + pixelPosition[1] + pixelPosition[2];
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.benchmark;
+
+import io.scif.io.IRandomAccess;
+import io.scif.services.LocationService;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.scijava.Context;
+
+/**
+ * Measures the latency of opening, reading one byte from and closing small
+ * files through {@link LocationService#getHandle(String)}, including handle
+ * resolution. One file in ten is gzip-compressed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class OpenLatencyBenchmark {
+
+	// -- Constants --
+
+	private static final int FILES = 1000;
+
+	private static final int FILE_SIZE = 512;
+
+	// -- Fields --
+
+	private Context context;
+
+	private LocationService locationService;
+
+	private File dir;
+
+	private String[] ids;
+
+	private int next;
+
+	// -- Setup --
+
+	@Setup
+	public void setUp() throws IOException {
+		context = new Context(LocationService.class);
+		locationService = context.getService(LocationService.class);
+		dir = Files.createTempDirectory("scifio-benchmark-open").toFile();
+		ids = new String[FILES];
+		final byte[] data = new byte[FILE_SIZE];
+		for (int i = 0; i < FILES; i++) {
+			final boolean gzip = i % 10 == 0;
+			final File file =
+				new File(dir, "file" + i + (gzip ? ".tif.gz" : ".tif"));
+			data[0] = (byte) i;
+			OutputStream out = new FileOutputStream(file);
+			if (gzip) out = new GZIPOutputStream(out);
+			try {
+				out.write(data);
+			}
+			finally {
+				out.close();
+			}
+			ids[i] = file.getAbsolutePath();
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.dispose();
+		for (final String id : ids) {
+			new File(id).delete();
+		}
+		dir.delete();
+	}
+
+	// -- Benchmarks --
+
+	@Benchmark
+	public int open() throws IOException {
+		final String id = ids[next];
+		next = (next + 1) % FILES;
+		final IRandomAccess handle = locationService.getHandle(id);
+		try {
+			return handle.readUnsignedByte();
+		}
+		finally {
+			handle.close();
+		}
+	}
+}
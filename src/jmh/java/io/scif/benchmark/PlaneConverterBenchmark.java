@@ -0,0 +1,142 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.benchmark;
+
+import io.scif.FormatException;
+import io.scif.Reader;
+import io.scif.SCIFIO;
+import io.scif.config.SCIFIOConfig;
+import io.scif.config.SCIFIOConfig.ImgMode;
+import io.scif.img.ImgIOException;
+import io.scif.img.ImgOpener;
+import io.scif.img.converters.PlaneConverter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import net.imagej.ImgPlus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link PlaneConverter#populatePlane} throughput per pixel type, for
+ * each plane converter, filling 512x512 planes of an image opened by
+ * {@link ImgOpener}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PlaneConverterBenchmark {
+
+	// -- Constants --
+
+	private static final int WIDTH = 512;
+
+	private static final int HEIGHT = 512;
+
+	private static final int PLANES = 4;
+
+	// -- Parameters --
+
+	@Param({ "int8", "uint8", "int16", "uint16", "int32", "uint32", "float",
+		"double" })
+	public String pixelType;
+
+	/** Name of the {@link PlaneConverter} plugin. */
+	@Param({ "ArrayDataAccess", "PlanarAccess", "Default" })
+	public String converter;
+
+	// -- Fields --
+
+	private SCIFIO scifio;
+
+	private Reader reader;
+
+	private SCIFIOConfig config;
+
+	@SuppressWarnings("rawtypes")
+	private ImgPlus img;
+
+	private PlaneConverter planeConverter;
+
+	private byte[] source;
+
+	private int planeIndex;
+
+	// -- Setup --
+
+	@Setup
+	public void setUp() throws FormatException, IOException, ImgIOException {
+		scifio = new SCIFIO();
+		final String id = Datasets.fakeId(pixelType, WIDTH, HEIGHT, PLANES);
+		final ImgMode mode =
+			converter.equals("PlanarAccess") ? ImgMode.PLANAR : ImgMode.ARRAY;
+		config =
+			new SCIFIOConfig().imgOpenerSetImgModes(mode).imgOpenerSetComputeMinMax(
+				false);
+
+		// NB: ImgOpener closes its reader, so convert with a second one.
+		img = new ImgOpener(scifio.getContext()).openImgs(
+			scifio.initializer().initializeReader(id), config).get(0);
+		reader = scifio.initializer().initializeReader(id);
+		source = reader.openPlane(0, 0).getBytes();
+		planeConverter = scifio.planeConverter().getPlaneConverter(converter);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		reader.close();
+		scifio.getContext().dispose();
+	}
+
+	// -- Benchmarks --
+
+	@Benchmark
+	@SuppressWarnings("unchecked")
+	public void populatePlane() {
+		planeIndex = (planeIndex + 1) % PLANES;
+		planeConverter.populatePlane(reader, 0, planeIndex, source, img, config);
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.benchmark;
+
+import io.scif.FormatException;
+import io.scif.Plane;
+import io.scif.Reader;
+import io.scif.SCIFIO;
+import io.scif.config.SCIFIOConfig;
+import io.scif.formats.tiff.TiffCompression;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Reader#openPlane(int, long, Plane)} throughput for a
+ * FakeFormat image and for TIFF files of each common compression, reusing one
+ * plane between reads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PlaneReadBenchmark {
+
+	// -- Constants --
+
+	private static final int WIDTH = 512;
+
+	private static final int HEIGHT = 512;
+
+	private static final int PLANES = 16;
+
+	// -- Parameters --
+
+	/** Either "fake", or the name of a {@link TiffCompression}. */
+	@Param({ "fake", "uncompressed", "lzw", "deflate", "jpeg" })
+	public String source;
+
+	// -- Fields --
+
+	private SCIFIO scifio;
+
+	private File file;
+
+	private Reader reader;
+
+	private Plane plane;
+
+	private long planeIndex;
+
+	// -- Setup --
+
+	@Setup
+	public void setUp() throws FormatException, IOException {
+		scifio = new SCIFIO();
+		final String id;
+		if (source.equals("fake")) {
+			id = Datasets.fakeId("uint8", WIDTH, HEIGHT, PLANES);
+		}
+		else {
+			final TiffCompression compression =
+				TiffCompression.valueOf(source.toUpperCase());
+			file = Datasets.writeTiff(scifio.getContext(), compression, WIDTH,
+				HEIGHT, PLANES);
+			id = file.getAbsolutePath();
+		}
+		reader = scifio.initializer().initializeReader(id,
+			new SCIFIOConfig().checkerSetOpen(true));
+		plane = reader.openPlane(0, 0);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		reader.close();
+		scifio.getContext().dispose();
+		if (file != null) file.delete();
+	}
+
+	// -- Benchmarks --
+
+	@Benchmark
+	public Plane openPlane() throws FormatException, IOException {
+		planeIndex = (planeIndex + 1) % PLANES;
+		return reader.openPlane(0, planeIndex, plane);
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.benchmark;
+
+import io.scif.img.cell.SCIFIOCell;
+import io.scif.img.cell.SCIFIOCellCache;
+import io.scif.refs.RefManagerService;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.scijava.Context;
+
+/**
+ * Measures {@link RefManagerService#manage(Object, Object...)} latency for
+ * cells managed the way {@link SCIFIOCellCache} manages them, from one thread
+ * and from all threads at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RefManagerBenchmark {
+
+	// -- Constants --
+
+	/** Number of distinct cell indices, bounding the size of the ref map. */
+	private static final int CELLS = 1 << 16;
+
+	// -- Fields --
+
+	private Context context;
+
+	private RefManagerService refManagerService;
+
+	private Map<Integer, Object> refMap;
+
+	private final AtomicInteger next = new AtomicInteger();
+
+	// -- Setup --
+
+	@Setup
+	public void setUp() {
+		context = new Context();
+		refManagerService = context.getService(RefManagerService.class);
+		refMap = new ConcurrentHashMap<>();
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.dispose();
+	}
+
+	// -- Benchmarks --
+
+	@Benchmark
+	public SCIFIOCell<ByteArray> serial() {
+		return manage();
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public SCIFIOCell<ByteArray> parallel() {
+		return manage();
+	}
+
+	// -- Helper methods --
+
+	/** Manages a new cell as {@link SCIFIOCellCache#load} does. */
+	private SCIFIOCell<ByteArray> manage() {
+		final int index = next.getAndIncrement() & (CELLS - 1);
+		final SCIFIOCell<ByteArray> cell = new SCIFIOCell<>(null, "benchmark",
+			index, new int[] { 1 }, new long[] { index }, new ByteArray(1));
+		cell.cacheOnFinalize(false);
+		refManagerService.manage(cell);
+		refManagerService.manage(cell, index, refMap);
+		return cell;
+	}
+}
@@ -69,6 +69,9 @@ public abstract class AbstractImageMetadata implements ImageMetadata {
 	/** Cached list of significant (non-trailing length 1) axes. */
 	private List<CalibratedAxis> effectiveAxes;
 
+	/** Cached layout compiled from the current state of this metadata. */
+	private volatile ImageLayout layout;
+
 	/** Width (in pixels) of thumbnail planes in this image. */
 	@Field(label = "thumbSizeX")
 	private long thumbSizeX;
@@ -179,11 +182,13 @@ public abstract class AbstractImageMetadata implements ImageMetadata {
 	@Override
 	public void setPixelType(final int pixelType) {
 		this.pixelType = pixelType;
+		layout = null;
 	}
 
 	@Override
 	public void setBitsPerPixel(final int bitsPerPixel) {
 		this.bitsPerPixel = bitsPerPixel;
+		layout = null;
 	}
 
 	@Override
@@ -194,6 +199,7 @@ public abstract class AbstractImageMetadata implements ImageMetadata {
 	@Override
 	public void setLittleEndian(final boolean littleEndian) {
 		this.littleEndian = littleEndian;
+		layout = null;
 	}
 
 	@Override
@@ -210,6 +216,7 @@ public abstract class AbstractImageMetadata implements ImageMetadata {
 	@Override
 	public void setInterleavedAxisCount(final int count) {
 		interleavedAxisCount = count;
+		layout = null;
 	}
 
 	@Override
@@ -327,7 +334,7 @@ public abstract class AbstractImageMetadata implements ImageMetadata {
 
 	@Override
 	public long getPlaneSize() {
-		return getSize() / getPlaneCount();
+		return getLayout().getPlaneSize();
 	}
 
 	@Override
@@ -405,13 +412,17 @@ public abstract class AbstractImageMetadata implements ImageMetadata {
 
 	@Override
 	public long getPlaneCount() {
-		long length = 1;
+		return getLayout().getPlaneCount();
+	}
 
-		for (final CalibratedAxis t : getAxesNonPlanar()) {
-			length *= getAxisLength(t);
+	@Override
+	public ImageLayout getLayout() {
+		ImageLayout l = layout;
+		if (l == null) {
+			l = ImageLayout.compile(this);
+			layout = l;
 		}
-
-		return length;
+		return l;
 	}
 
 	@Override
@@ -565,11 +576,12 @@ public abstract class AbstractImageMetadata implements ImageMetadata {
 			toCopy.getPixelType(), toCopy.isOrderCertain(), toCopy.isLittleEndian(),
 			toCopy.isIndexed(), toCopy.isFalseColor(), toCopy.isMetadataComplete());
 		// FIXME: Use setters, not direct assignment.
-		this.table = new DefaultMetaTable(toCopy.getTable());
+		this.table = new CompactMetaTable(toCopy.getTable());
 		this.thumbnail = toCopy.isThumbnail();
 		this.thumbSizeX = toCopy.getThumbSizeX();
 		this.thumbSizeY = toCopy.getThumbSizeY();
 		this.planarAxisCount = toCopy.getPlanarAxisCount();
+		clearCachedAxes();
 	}
 
 	@Override
@@ -600,6 +612,7 @@ public abstract class AbstractImageMetadata implements ImageMetadata {
 		this.littleEndian = littleEndian;
 		this.orderCertain = orderCertain;
 		this.pixelType = pixelType;
+		clearCachedAxes();
 	}
 
 	// -- Named API methods --
@@ -618,7 +631,7 @@ public abstract class AbstractImageMetadata implements ImageMetadata {
 
 	@Override
 	public MetaTable getTable() {
-		if (table == null) table = new DefaultMetaTable();
+		if (table == null) table = new CompactMetaTable();
 		return table;
 	}
 
@@ -677,13 +690,14 @@ public abstract class AbstractImageMetadata implements ImageMetadata {
 	}
 
 	/**
-	 * Resets the cached planar and non-planar axes. Used after the axes or
-	 * planarAxisCount are modified.
+	 * Resets the cached planar and non-planar axes, and the compiled layout.
+	 * Used after the axes or planarAxisCount are modified.
 	 */
 	private void clearCachedAxes() {
 		planarAxes = null;
 		extendedAxes = null;
 		effectiveAxes = null;
+		layout = null;
 	}
 
 	private void updateLength(final AxisType axisType, final long value) {
@@ -691,6 +705,7 @@ public abstract class AbstractImageMetadata implements ImageMetadata {
 		// only effectiveAxes needs to be cleared here, because it's the only
 		// cached axis that can be affected by axis lengths.
 		effectiveAxes = null;
+		layout = null;
 	}
 
 	// If spatial == true, returns every non-CHANNEL axis after both X and Y
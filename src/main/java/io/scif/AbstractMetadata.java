@@ -77,12 +77,12 @@ public abstract class AbstractMetadata extends AbstractHasSource implements
 	public AbstractMetadata(final Metadata copy) {
 		this(copy.getAll());
 
-		table = new DefaultMetaTable(copy.getTable());
+		table = new CompactMetaTable(copy.getTable());
 	}
 
 	public AbstractMetadata(final List<ImageMetadata> list) {
 		imageMeta = new ArrayList<>();
-		table = new DefaultMetaTable();
+		table = new CompactMetaTable();
 
 		if (list != null) {
 			for (final ImageMetadata core : list) {
@@ -171,7 +171,7 @@ public abstract class AbstractMetadata extends AbstractHasSource implements
 
 	@Override
 	public MetaTable getTable() {
-		if (table == null) table = new DefaultMetaTable(isFiltered());
+		if (table == null) table = new CompactMetaTable(isFiltered());
 		return table;
 	}
 
@@ -223,7 +223,7 @@ public abstract class AbstractMetadata extends AbstractHasSource implements
 				log().debug(e.getMessage());
 			}
 
-			table = new DefaultMetaTable();
+			table = new CompactMetaTable();
 			imageMeta = new ArrayList<>();
 
 			// check superclasses and interfaces
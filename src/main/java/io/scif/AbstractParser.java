@@ -249,9 +249,21 @@ public abstract class AbstractParser<M extends TypedMetadata> extends
 		meta.setSource(stream);
 		meta.setDatasetName(stream.getFileName());
 
+		// skip storing original metadata that was not asked for
+		final boolean discardTables = config
+			.parserGetLevel() == MetadataLevel.MINIMUM && !config
+				.parserIsSaveOriginalMetadata();
+		if (discardTables) meta.setTable(new DiscardingMetaTable());
+
 		metadata = meta;
 		typedParse(stream, meta, config);
 
+		if (discardTables) {
+			for (final ImageMetadata iMeta : meta.getAll()) {
+				iMeta.setTable(new DiscardingMetaTable());
+			}
+		}
+
 		meta.populateImageMetadata();
 
 		return meta;
@@ -121,7 +121,8 @@ public abstract class AbstractReader<M extends TypedMetadata, P extends DataPlan
 	public P openPlane(final int imageIndex, final long planeIndex,
 		final SCIFIOConfig config) throws FormatException, IOException
 	{
-		final long[] planeMax = metadata.get(imageIndex).getAxesLengthsPlanar();
+		final long[] planeMax =
+			metadata.get(imageIndex).getLayout().getAxesLengthsPlanar();
 		final long[] planeMin = new long[planeMax.length];
 		return openPlane(imageIndex, planeIndex, planeMin, planeMax, config);
 	}
@@ -395,12 +396,12 @@ public abstract class AbstractReader<M extends TypedMetadata, P extends DataPlan
 		final long[] planeMin, final long[] planeMax, final int scanlinePad,
 		final P plane) throws IOException
 	{
-		final int bpp =
-			FormatTools.getBytesPerPixel(metadata.get(imageIndex).getPixelType());
+		final ImageLayout layout = metadata.get(imageIndex).getLayout();
+		final int bpp = layout.getBytesPerPixel();
 
 		final byte[] bytes = plane.getBytes();
-		final int xIndex = metadata.get(imageIndex).getAxisIndex(Axes.X);
-		final int yIndex = metadata.get(imageIndex).getAxisIndex(Axes.Y);
+		final int xIndex = layout.getAxisIndex(Axes.X);
+		final int yIndex = layout.getAxisIndex(Axes.Y);
 		if (SCIFIOMetadataTools
 			.wholePlane(imageIndex, metadata, planeMin, planeMax) &&
 			scanlinePad == 0)
@@ -411,7 +412,7 @@ public abstract class AbstractReader<M extends TypedMetadata, P extends DataPlan
 			planeMax) &&
 			scanlinePad == 0)
 		{
-			if (metadata.get(imageIndex).getInterleavedAxisCount() > 0) {
+			if (layout.getInterleavedAxisCount() > 0) {
 				int bytesToSkip = bpp;
 				bytesToSkip *= planeMax[xIndex];
 				int bytesToRead = bytesToSkip;
@@ -433,7 +434,7 @@ public abstract class AbstractReader<M extends TypedMetadata, P extends DataPlan
 				final int rowLen = (int) (bpp * planeMax[xIndex]);
 				final int h = (int) planeMax[yIndex];
 				final int y = (int) planeMin[yIndex];
-				long c = metadata.get(imageIndex).getAxisLength(Axes.CHANNEL);
+				long c = layout.getAxisLength(Axes.CHANNEL);
 				if (c <= 0 || !metadata.get(imageIndex).isMultichannel()) c = 1;
 				for (int channel = 0; channel < c; channel++) {
 
@@ -441,21 +442,19 @@ public abstract class AbstractReader<M extends TypedMetadata, P extends DataPlan
 					s.read(bytes, channel * h * rowLen, h * rowLen);
 					if (channel < c - 1) {
 						// no need to skip bytes after reading final channel
-						s.skipBytes((int) (metadata.get(imageIndex).getAxisLength(Axes.Y) -
-							y - h) *
-							rowLen);
+						s.skipBytes((int) (layout.getAxisLength(Axes.Y) - y - h) * rowLen);
 					}
 				}
 			}
 		}
 		else {
 			final int scanlineWidth =
-				(int) metadata.get(imageIndex).getAxisLength(Axes.X) + scanlinePad;
-			if (metadata.get(imageIndex).getInterleavedAxisCount() > 0) {
+				(int) layout.getAxisLength(Axes.X) + scanlinePad;
+			if (layout.getInterleavedAxisCount() > 0) {
 				long planeProduct = bpp;
 				for (int i = 0; i < planeMin.length; i++) {
 					if (i != xIndex && i != yIndex) planeProduct *=
-						metadata.get(imageIndex).getAxisLength(i);
+						layout.getAxisLength(i);
 				}
 				int bytesToSkip = scanlineWidth * (int) planeProduct;
 				s.skipBytes((int) planeMin[yIndex] * bytesToSkip);
@@ -477,7 +476,7 @@ public abstract class AbstractReader<M extends TypedMetadata, P extends DataPlan
 				}
 			}
 			else {
-				final long c = metadata.get(imageIndex).getAxisLength(Axes.CHANNEL);
+				final long c = layout.getAxisLength(Axes.CHANNEL);
 
 				final int w = (int) planeMax[xIndex];
 				final int h = (int) planeMax[yIndex];
@@ -497,7 +496,7 @@ public abstract class AbstractReader<M extends TypedMetadata, P extends DataPlan
 					if (channel < c - 1) {
 						// no need to skip bytes after reading final channel
 						s.skipBytes(scanlineWidth * bpp *
-							(int) (metadata.get(imageIndex).getAxisLength(Axes.Y) - y - h));
+							(int) (layout.getAxisLength(Axes.Y) - y - h));
 					}
 				}
 			}
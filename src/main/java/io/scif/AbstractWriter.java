@@ -275,6 +275,24 @@ public abstract class AbstractWriter<M extends TypedMetadata> extends
 		this.out = out;
 		fps = config.writerGetFramesPerSecond();
 		options = config.writerGetCodecOptions();
+		if (config.writerGetCompressionLevel() != -1 || config
+			.writerGetCompressionStrategy() != 0 || config
+				.writerGetCompressionThreads() > 1)
+		{
+			// NB: Copy the options, so that a config shared between writers is not
+			// changed by each of them.
+			options = options == null ? CodecOptions.getDefaultOptions()
+				: new CodecOptions(options);
+			if (config.writerGetCompressionLevel() != -1) {
+				options.compressionLevel = config.writerGetCompressionLevel();
+			}
+			if (config.writerGetCompressionStrategy() != 0) {
+				options.compressionStrategy = config.writerGetCompressionStrategy();
+			}
+			if (config.writerGetCompressionThreads() > 1) {
+				options.compressionThreads = config.writerGetCompressionThreads();
+			}
+		}
 		model = config.writerGetColorModel();
 		compression = config.writerGetCompression();
 		sequential = config.writerIsSequential();
@@ -0,0 +1,575 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+
+/**
+ * Memory-efficient {@link MetaTable} implementation.
+ * <p>
+ * Entries are kept in parallel arrays indexed by an open-addressed hash table,
+ * rather than one node per entry. Keys are interned, so the key strings
+ * repeated across the tables of every image in a dataset are stored once.
+ * Boolean and numeric values are stored unboxed and only boxed again when
+ * read, and values added with {@link #putLazy(String, Callable)} are not
+ * computed until first read. Iterating over the entries computes all pending
+ * lazy values, and entries whose value cannot be computed are removed then.
+ * </p>
+ * <p>
+ * Keys and values are filtered as in {@link DefaultMetaTable}. Iteration
+ * follows insertion order until an entry is removed.
+ * </p>
+ * <p>
+ * Since reading a lazy value modifies the table, access is synchronized on
+ * the table, so that it may be read from several threads at once. As with
+ * {@link java.util.Collections#synchronizedMap(Map)}, iterating while another
+ * thread modifies the table requires synchronizing on it manually.
+ * </p>
+ *
+ * @see DefaultMetaTable
+ */
+public class CompactMetaTable extends AbstractMap<String, Object> implements
+	MetaTable, Serializable
+{
+
+	// -- Constants --
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int INITIAL_CAPACITY = 8;
+
+	private static final byte OBJECT = 0, LAZY = 1, BOOLEAN = 2, BYTE = 3,
+			SHORT = 4, INTEGER = 5, LONG = 6, FLOAT = 7, DOUBLE = 8;
+
+	// -- Fields --
+
+	private final boolean filtered;
+
+	private int size;
+
+	private String[] keys = new String[INITIAL_CAPACITY];
+
+	private byte[] kinds = new byte[INITIAL_CAPACITY];
+
+	/** Object values, or the loaders of lazy values. */
+	private Object[] objects = new Object[INITIAL_CAPACITY];
+
+	/** Primitive values, allocated once the first one is stored. */
+	private long[] bits;
+
+	/** Open-addressed table of entry positions plus one; zero when empty. */
+	private int[] index = new int[2 * INITIAL_CAPACITY];
+
+	private transient int modCount;
+
+	private transient Set<Map.Entry<String, Object>> entrySet;
+
+	// -- Constructors --
+
+	public CompactMetaTable() {
+		this(false);
+	}
+
+	/**
+	 * @param filter whether to discard complex values and sanitize keys and
+	 *          strings, as {@link DefaultMetaTable} does
+	 */
+	public CompactMetaTable(final boolean filter) {
+		filtered = filter;
+	}
+
+	/**
+	 * Construct a CompactMetaTable and populate it using an existing map. Lazy
+	 * values and filtering of another CompactMetaTable are kept.
+	 */
+	public CompactMetaTable(final Map<String, Object> copy) {
+		this(copy instanceof CompactMetaTable &&
+			((CompactMetaTable) copy).filtered);
+		if (copy instanceof CompactMetaTable) {
+			final CompactMetaTable table = (CompactMetaTable) copy;
+			synchronized (table) {
+				size = table.size;
+				keys = table.keys.clone();
+				kinds = table.kinds.clone();
+				objects = table.objects.clone();
+				bits = table.bits == null ? null : table.bits.clone();
+				index = table.index.clone();
+			}
+		}
+		else {
+			for (final String k : copy.keySet())
+				put(k, copy.get(k));
+		}
+	}
+
+	// -- CompactMetaTable methods --
+
+	/**
+	 * Maps the given key to a value that is computed when first read, e.g. by
+	 * decoding bytes of the source file that were noted while parsing. If the
+	 * loader fails or yields {@code null}, the entry is removed when read.
+	 *
+	 * @param key - Key to map
+	 * @param value - Computes the value on first access
+	 */
+	public synchronized void putLazy(String key, final Callable<?> value) {
+		if (key == null || value == null) return;
+		key = key.trim();
+		if (filtered) {
+			key = DefaultMetaTable.filterKey(key);
+			if (key == null) return;
+		}
+		final int pos = position(key);
+		if (pos < 0) add(key.intern(), LAZY, value, 0);
+		else {
+			kinds[pos] = LAZY;
+			objects[pos] = value;
+		}
+	}
+
+	// -- MetaTable API methods --
+
+	@Override
+	public synchronized void putList(final String key, final Object value) {
+		Object list = get(key);
+
+		if (list == null) list = new Vector<>();
+
+		if (list instanceof Vector) {
+			@SuppressWarnings("unchecked")
+			final Vector<Object> valueList = ((Vector<Object>) list);
+			valueList.add(value);
+		}
+		else {
+			final Vector<Object> v = new Vector<>();
+			v.add(list);
+			v.add(value);
+			list = v;
+		}
+
+		put(key, list);
+	}
+
+	// -- Map API methods --
+
+	@Override
+	public synchronized int size() {
+		return size;
+	}
+
+	@Override
+	public synchronized boolean containsKey(final Object key) {
+		return key instanceof String && position((String) key) >= 0;
+	}
+
+	@Override
+	public synchronized Object get(final Object key) {
+		if (!(key instanceof String)) return null;
+		final int pos = position((String) key);
+		return pos < 0 ? null : value(pos);
+	}
+
+	@Override
+	public synchronized Object put(String key, Object value) {
+		if (key == null || value == null) return null;
+
+		key = key.trim();
+
+		final boolean string =
+			value instanceof String || value instanceof Character;
+		if (string) value = String.valueOf(value);
+
+		if (filtered) {
+			// filter out complex data types
+			if (!string && !(value instanceof Number) &&
+				!(value instanceof Boolean))
+			{
+				return null;
+			}
+			key = DefaultMetaTable.filterKey(key);
+			if (key == null) return null;
+			if (string) {
+				value = DefaultMetaTable.filterString((String) value);
+				if (value == null) return null;
+			}
+		}
+
+		final byte kind = kind(value);
+		final long primitive = kind == OBJECT ? 0 : toBits(kind, value);
+		final Object object = kind == OBJECT ? value : null;
+
+		final int pos = position(key);
+		if (pos < 0) {
+			add(key.intern(), kind, object, primitive);
+			return null;
+		}
+		final Object previous = kinds[pos] == LAZY ? null : value(pos);
+		set(pos, kind, object, primitive);
+		return previous;
+	}
+
+	@Override
+	public synchronized Object remove(final Object key) {
+		if (!(key instanceof String)) return null;
+		final int pos = position((String) key);
+		if (pos < 0) return null;
+		final Object previous = kinds[pos] == LAZY ? null : value(pos);
+		removeAt(pos);
+		return previous;
+	}
+
+	@Override
+	public synchronized void clear() {
+		Arrays.fill(keys, 0, size, null);
+		Arrays.fill(objects, 0, size, null);
+		Arrays.fill(index, 0);
+		size = 0;
+		modCount++;
+	}
+
+	@Override
+	public Set<Map.Entry<String, Object>> entrySet() {
+		if (entrySet == null) entrySet = new EntrySet();
+		return entrySet;
+	}
+
+	// -- Helper methods --
+
+	/** @return the position of the given key's entry, or -1 */
+	private int position(final String key) {
+		final int mask = index.length - 1;
+		for (int slot = hash(key) & mask;; slot = (slot + 1) & mask) {
+			final int entry = index[slot];
+			if (entry == 0) return -1;
+			final String k = keys[entry - 1];
+			if (k == key || k.equals(key)) return entry - 1;
+		}
+	}
+
+	/** @return the index slot referring to the given position */
+	private int slot(final int pos) {
+		final int mask = index.length - 1;
+		int slot = hash(keys[pos]) & mask;
+		while (index[slot] != pos + 1)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	private void add(final String key, final byte kind, final Object object,
+		final long primitive)
+	{
+		if (size == keys.length) grow();
+		keys[size] = key;
+		set(size, kind, object, primitive);
+		final int mask = index.length - 1;
+		int slot = hash(key) & mask;
+		while (index[slot] != 0)
+			slot = (slot + 1) & mask;
+		index[slot] = ++size;
+		modCount++;
+	}
+
+	private void set(final int pos, final byte kind, final Object object,
+		final long primitive)
+	{
+		kinds[pos] = kind;
+		objects[pos] = object;
+		if (kind > LAZY) {
+			if (bits == null) bits = new long[keys.length];
+			bits[pos] = primitive;
+		}
+	}
+
+	private void removeAt(final int pos) {
+		deleteSlot(slot(pos));
+
+		// move the last entry into the hole
+		final int last = size - 1;
+		if (pos != last) {
+			index[slot(last)] = pos + 1;
+			keys[pos] = keys[last];
+			kinds[pos] = kinds[last];
+			objects[pos] = objects[last];
+			if (bits != null) bits[pos] = bits[last];
+		}
+		keys[last] = null;
+		objects[last] = null;
+		size = last;
+		modCount++;
+	}
+
+	/** Empties a slot of the linear-probing index, closing the gap. */
+	private void deleteSlot(int hole) {
+		final int mask = index.length - 1;
+		for (int slot = (hole + 1) & mask; index[slot] != 0; slot =
+			(slot + 1) & mask)
+		{
+			final int home = hash(keys[index[slot] - 1]) & mask;
+			// move the entry back if the hole lies between its home and its slot
+			if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+				index[hole] = index[slot];
+				hole = slot;
+			}
+		}
+		index[hole] = 0;
+	}
+
+	private void grow() {
+		final int capacity = keys.length * 2;
+		keys = Arrays.copyOf(keys, capacity);
+		kinds = Arrays.copyOf(kinds, capacity);
+		objects = Arrays.copyOf(objects, capacity);
+		if (bits != null) bits = Arrays.copyOf(bits, capacity);
+		index = new int[2 * capacity];
+		final int mask = index.length - 1;
+		for (int pos = 0; pos < size; pos++) {
+			int slot = hash(keys[pos]) & mask;
+			while (index[slot] != 0)
+				slot = (slot + 1) & mask;
+			index[slot] = pos + 1;
+		}
+	}
+
+	/** @return the value at the given position, computing it if lazy */
+	private Object value(final int pos) {
+		switch (kinds[pos]) {
+			case OBJECT:
+				return objects[pos];
+			case LAZY:
+				return load(pos);
+			case BOOLEAN:
+				return bits[pos] != 0;
+			case BYTE:
+				return (byte) bits[pos];
+			case SHORT:
+				return (short) bits[pos];
+			case INTEGER:
+				return (int) bits[pos];
+			case LONG:
+				return bits[pos];
+			case FLOAT:
+				return Float.intBitsToFloat((int) bits[pos]);
+			default:
+				return Double.longBitsToDouble(bits[pos]);
+		}
+	}
+
+	private Object load(final int pos) {
+		final String key = keys[pos];
+		try {
+			put(key, ((Callable<?>) objects[pos]).call());
+		}
+		catch (final Exception exc) {
+			// NB: Treat as a missing value.
+		}
+		final int loaded = position(key);
+		if (loaded < 0) return null;
+		if (kinds[loaded] == LAZY) {
+			// no value, or one the filter rejected
+			removeAt(loaded);
+			return null;
+		}
+		return value(loaded);
+	}
+
+	/** Computes all pending lazy values. */
+	private void loadAll() {
+		for (int pos = size - 1; pos >= 0; pos--) {
+			if (kinds[pos] == LAZY) load(pos);
+		}
+	}
+
+	private static int hash(final String key) {
+		final int h = key.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	private static byte kind(final Object value) {
+		final Class<?> c = value.getClass();
+		if (c == Integer.class) return INTEGER;
+		if (c == Double.class) return DOUBLE;
+		if (c == Long.class) return LONG;
+		if (c == Boolean.class) return BOOLEAN;
+		if (c == Float.class) return FLOAT;
+		if (c == Short.class) return SHORT;
+		if (c == Byte.class) return BYTE;
+		return OBJECT;
+	}
+
+	private static long toBits(final byte kind, final Object value) {
+		switch (kind) {
+			case BOOLEAN:
+				return ((Boolean) value) ? 1 : 0;
+			case FLOAT:
+				return Float.floatToRawIntBits((Float) value);
+			case DOUBLE:
+				return Double.doubleToRawLongBits((Double) value);
+			default:
+				return ((Number) value).longValue();
+		}
+	}
+
+	// -- Serialization --
+
+	private synchronized void writeObject(final ObjectOutputStream out)
+		throws IOException
+	{
+		// NB: Loaders need not be serializable, so compute lazy values first.
+		loadAll();
+		out.defaultWriteObject();
+	}
+
+	private void readObject(final ObjectInputStream in) throws IOException,
+		ClassNotFoundException
+	{
+		in.defaultReadObject();
+		for (int pos = 0; pos < size; pos++)
+			keys[pos] = keys[pos].intern();
+	}
+
+	// -- Helper classes --
+
+	private class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+
+		@Override
+		public int size() {
+			return CompactMetaTable.this.size();
+		}
+
+		@Override
+		public void clear() {
+			CompactMetaTable.this.clear();
+		}
+
+		@Override
+		public Iterator<Map.Entry<String, Object>> iterator() {
+			// NB: Entries whose lazy value fails must not be visited.
+			synchronized (CompactMetaTable.this) {
+				loadAll();
+			}
+			return new Iterator<Map.Entry<String, Object>>() {
+
+				private int next;
+
+				private int current = -1;
+
+				private int expectedModCount = modCount;
+
+				@Override
+				public boolean hasNext() {
+					return next < size;
+				}
+
+				@Override
+				public Map.Entry<String, Object> next() {
+					if (modCount != expectedModCount) {
+						throw new ConcurrentModificationException();
+					}
+					if (next >= size) throw new NoSuchElementException();
+					current = next++;
+					return new Entry(keys[current]);
+				}
+
+				@Override
+				public void remove() {
+					if (current < 0) throw new IllegalStateException();
+					if (modCount != expectedModCount) {
+						throw new ConcurrentModificationException();
+					}
+					synchronized (CompactMetaTable.this) {
+						removeAt(current);
+					}
+					// the last entry moved into the current position
+					next = current;
+					current = -1;
+					expectedModCount = modCount;
+				}
+			};
+		}
+	}
+
+	private class Entry implements Map.Entry<String, Object> {
+
+		private final String key;
+
+		private Entry(final String key) {
+			this.key = key;
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+
+		@Override
+		public Object getValue() {
+			return get(key);
+		}
+
+		@Override
+		public Object setValue(final Object value) {
+			return put(key, value);
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Map.Entry)) return false;
+			final Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+			return key.equals(e.getKey()) && Objects.equals(getValue(), e
+				.getValue());
+		}
+
+		@Override
+		public int hashCode() {
+			return key.hashCode() ^ Objects.hashCode(getValue());
+		}
+
+		@Override
+		public String toString() {
+			return key + "=" + getValue();
+		}
+	}
+
+}
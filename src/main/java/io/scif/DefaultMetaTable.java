@@ -47,6 +47,14 @@ public class DefaultMetaTable extends HashMap<String, Object> implements
 	MetaTable
 {
 
+	// -- Constants --
+
+	/** Longest key or string value kept by a filtered table. */
+	private static final int MAX_FILTERED_LENGTH = 8192;
+
+	private static final String[] INVALID_SEQUENCES = { "&lt;", "&gt;",
+		"&amp;", "<", ">", "&" };
+
 	// -- Fields --
 
 	private boolean filtered;
@@ -115,33 +123,62 @@ public class DefaultMetaTable extends HashMap<String, Object> implements
 			// filter out complex data types
 			if (!simple) return null;
 
-			// verify key & value are reasonable length
-			final int maxLen = 8192;
-			if (key.length() > maxLen) return null;
-			if (string && val.length() > maxLen) return null;
+			key = filterKey(key);
+			if (key == null) return null;
+			if (string) {
+				val = filterString(val);
+				if (val == null) return null;
+				value = val;
+			}
+		}
 
-			// remove all non-printable characters
-			key = StringUtils.sanitize(key);
-			if (string) val = StringUtils.sanitize(val);
+		return super.put(key, val == null ? value : val);
+	}
 
-			// verify key contains at least one alphabetic character
-			if (!key.matches(".*[a-zA-Z].*")) return null;
+	// -- Helper methods --
 
-			// remove &lt;, &gt; and &amp; to prevent XML parsing errors
-			final String[] invalidSequences =
-				new String[] { "&lt;", "&gt;", "&amp;", "<", ">", "&" };
-			for (final String invalidSequence : invalidSequences) {
-				key = key.replaceAll(invalidSequence, "");
-				if (string) val = val.replaceAll(invalidSequence, "");
-			}
+	/**
+	 * Sanitizes a key for a filtered table.
+	 *
+	 * @return the sanitized key, or null if the key should be discarded
+	 */
+	static String filterKey(String key) {
+		// verify key is reasonable length
+		if (key.length() > MAX_FILTERED_LENGTH) return null;
 
-			// verify key & value are not empty
-			if (key.length() == 0) return null;
-			if (string && val.trim().length() == 0) return null;
+		// remove all non-printable characters
+		key = StringUtils.sanitize(key);
 
-			if (string) value = val;
+		// verify key contains at least one alphabetic character
+		if (!key.matches(".*[a-zA-Z].*")) return null;
+
+		// remove &lt;, &gt; and &amp; to prevent XML parsing errors
+		for (final String invalidSequence : INVALID_SEQUENCES) {
+			key = key.replace(invalidSequence, "");
 		}
 
-		return super.put(key, val == null ? value : val);
+		// verify key is not empty
+		return key.length() == 0 ? null : key;
+	}
+
+	/**
+	 * Sanitizes a string value for a filtered table.
+	 *
+	 * @return the sanitized value, or null if the entry should be discarded
+	 */
+	static String filterString(String val) {
+		// verify value is reasonable length
+		if (val.length() > MAX_FILTERED_LENGTH) return null;
+
+		// remove all non-printable characters
+		val = StringUtils.sanitize(val);
+
+		// remove &lt;, &gt; and &amp; to prevent XML parsing errors
+		for (final String invalidSequence : INVALID_SEQUENCES) {
+			val = val.replace(invalidSequence, "");
+		}
+
+		// verify value is not empty
+		return val.trim().length() == 0 ? null : val;
 	}
 }
@@ -37,6 +37,7 @@ import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -77,9 +78,21 @@ public class FilePattern {
 	/** List of pattern blocks for this file pattern. */
 	private FilePatternBlock[] blocks;
 
-	/** File listing for this file pattern. */
+	/** File listing for this file pattern, built on first use. */
 	private String[] files;
 
+	/** Number of files matching this file pattern. */
+	private long fileCount;
+
+	/**
+	 * Whether file names are computed arithmetically from the pattern blocks,
+	 * rather than looked up in an explicit file listing.
+	 */
+	private boolean arithmetic;
+
+	/** Expression used to split file names into block elements. */
+	private Pattern elementPattern;
+
 	/** Whether or not this FilePattern represents a regular expression. */
 	private boolean isRegex = false;
 
@@ -158,15 +171,26 @@ public class FilePattern {
 			blocks[i] = new FilePatternBlock(block);
 		}
 
-		// build file listing
-		final List<String> fileList = new ArrayList<>();
-		buildFiles("", num, fileList);
-		files = fileList.toArray(new String[0]);
+		// count matching files; ranges are expanded lazily, so a large pattern
+		// costs memory proportional to its blocks rather than its files
+		fileCount = num == 0 ? 0 : 1;
+		for (final FilePatternBlock block : blocks) {
+			fileCount *= block.getElementCount();
+		}
+		arithmetic = fileCount > 0;
+
+		if (!arithmetic) {
+			// build file listing
+			final List<String> fileList = new ArrayList<>();
+			buildFiles("", num, fileList);
+			files = fileList.toArray(new String[0]);
 
-		if (files.length == 0 &&
-			new Location(scifio.getContext(), pattern).exists())
-		{
-			files = new String[] { pattern };
+			if (files.length == 0 &&
+				new Location(scifio.getContext(), pattern).exists())
+			{
+				files = new String[] { pattern };
+			}
+			fileCount = files.length;
 		}
 
 		valid = true;
@@ -194,11 +218,76 @@ public class FilePattern {
 		return msg;
 	}
 
-	/** Gets a listing of all files matching the given file pattern. */
+	/**
+	 * Gets a listing of all files matching the given file pattern. The listing
+	 * is built on first use; for large patterns, prefer
+	 * {@link #getFileCount()} and {@link #getFile(long)}.
+	 */
 	public String[] getFiles() {
+		if (files == null && valid) {
+			if (fileCount > Integer.MAX_VALUE - 8) {
+				throw new IllegalStateException("Too many files to list: " +
+					fileCount);
+			}
+			final List<String> fileList = new ArrayList<>((int) fileCount);
+			buildFiles("", blocks.length, fileList);
+			files = fileList.toArray(new String[fileList.size()]);
+		}
 		return files;
 	}
 
+	/** Gets the number of files matching the given file pattern. */
+	public long getFileCount() {
+		return fileCount;
+	}
+
+	/**
+	 * Gets the file at the given position of the listing, in the same order as
+	 * {@link #getFiles()}. The name is computed from the pattern blocks, with
+	 * the first block varying fastest, so the full listing is never built.
+	 */
+	public String getFile(final long index) {
+		if (index < 0 || index >= fileCount) {
+			throw new IndexOutOfBoundsException("File index " + index +
+				" out of range [0, " + fileCount + ")");
+		}
+		if (!arithmetic) return files[(int) index];
+
+		final StringBuilder sb = new StringBuilder(pattern.length());
+		long remainder = index;
+		int pos = 0;
+		for (int i = 0; i < blocks.length; i++) {
+			final int count = blocks[i].getElementCount();
+			sb.append(pattern, pos, startIndex[i]);
+			sb.append(blocks[i].getElement((int) (remainder % count)));
+			remainder /= count;
+			pos = endIndex[i];
+		}
+		return sb.append(pattern, pos, pattern.length()).toString();
+	}
+
+	/**
+	 * Gets the position of the given file within the listing, or -1 if the
+	 * file does not match this pattern. This is the inverse of
+	 * {@link #getFile(long)}.
+	 */
+	public long getIndex(final String file) {
+		if (!valid || file == null) return -1;
+		if (!arithmetic) return Arrays.asList(files).indexOf(file);
+
+		if (elementPattern == null) elementPattern = compileElementPattern();
+		final Matcher m = elementPattern.matcher(file);
+		if (!m.matches()) return -1;
+
+		long index = 0;
+		for (int i = blocks.length - 1; i >= 0; i--) {
+			final int element = blocks[i].indexOf(m.group(i + 1));
+			if (element < 0) return -1;
+			index = index * blocks[i].getElementCount() + element;
+		}
+		return index;
+	}
+
 	public String[][] getElements() {
 		final String[][] elements = new String[blocks.length][];
 		for (int i = 0; i < elements.length; i++) {
@@ -210,7 +299,7 @@ public class FilePattern {
 	public int[] getCount() {
 		final int[] count = new int[blocks.length];
 		for (int i = 0; i < count.length; i++) {
-			count[i] = blocks[i].getElements().length;
+			count[i] = blocks[i].getElementCount();
 		}
 		return count;
 	}
@@ -266,6 +355,44 @@ public class FilePattern {
 
 	// -- Helper methods --
 
+	/**
+	 * Builds an expression matching any name this pattern could produce, with
+	 * one capturing group per block.
+	 */
+	private Pattern compileElementPattern() {
+		final StringBuilder sb = new StringBuilder();
+		int pos = 0;
+		for (int i = 0; i < blocks.length; i++) {
+			if (startIndex[i] > pos) {
+				sb.append(Pattern.quote(pattern.substring(pos, startIndex[i])));
+			}
+			final FilePatternBlock block = blocks[i];
+			final String chars;
+			if (block.getFirst() == null) chars = null;
+			else chars = block.isNumeric() ? "[0-9]" : "[0-9a-zA-Z]";
+			if (chars == null) {
+				// enumerated list; match any of its elements
+				sb.append("(");
+				final String[] elements = block.getElements();
+				for (int e = 0; e < elements.length; e++) {
+					if (e > 0) sb.append("|");
+					sb.append(Pattern.quote(elements[e]));
+				}
+				sb.append(")");
+			}
+			else if (block.isFixed()) {
+				sb.append("(").append(chars).append("{");
+				sb.append(block.getElement(0).length()).append("})");
+			}
+			else sb.append("(").append(chars).append("+?)");
+			pos = endIndex[i];
+		}
+		if (pos < pattern.length()) {
+			sb.append(Pattern.quote(pattern.substring(pos)));
+		}
+		return Pattern.compile(sb.toString());
+	}
+
 	/** Recursive method for building filenames for the file listing. */
 	private void buildFiles(final String prefix, int ndx,
 		final List<String> fileList)
@@ -60,6 +60,18 @@ public class FilePatternBlock {
 	/** The number of leading zeroes. */
 	private int zeroes;
 
+	/** Whether or not this is a numeric (rather than alphabetic) range. */
+	private boolean numeric;
+
+	/** Whether or not alphabetic range elements are lowercase. */
+	private boolean lowerCase;
+
+	/** Width of each element of a fixed-width block. */
+	private int width;
+
+	/** Number of elements within this block. */
+	private int count;
+
 	/** String representation of this block. */
 	private final String block;
 
@@ -74,10 +86,85 @@ public class FilePatternBlock {
 
 	// -- FilePatternBlock API methods --
 
+	/**
+	 * Gets all elements within this block. For ranges, the list is built on
+	 * first use; prefer {@link #getElementCount()} and {@link #getElement(int)}
+	 * when only some of the elements are needed.
+	 */
 	public String[] getElements() {
+		if (elements == null) {
+			final String[] e = new String[count];
+			for (int i = 0; i < count; i++) {
+				e[i] = getElement(i);
+			}
+			elements = e;
+		}
 		return elements;
 	}
 
+	/** Gets the number of elements within this block. */
+	public int getElementCount() {
+		return count;
+	}
+
+	/**
+	 * Gets the element at the given position, computed from the range bounds
+	 * without building the full element list.
+	 */
+	public String getElement(final int index) {
+		if (index < 0 || index >= count) {
+			throw new IndexOutOfBoundsException("Element index " + index +
+				" out of range [0, " + count + ")");
+		}
+		if (begin == null) return elements[index];
+		final BigInteger v = begin.add(step.multiply(BigInteger.valueOf(index)));
+		String value = numeric ? v.toString() : v.toString(26);
+		if (!numeric) {
+			value = lowerCase ? value.toLowerCase() : value.toUpperCase();
+		}
+		if (!fixed || value.length() >= width) return value;
+		final StringBuilder sb = new StringBuilder(width);
+		for (int j = value.length(); j < width; j++) {
+			sb.append('0');
+		}
+		return sb.append(value).toString();
+	}
+
+	/**
+	 * Gets the position of the given element within this block, or -1 if the
+	 * element does not belong to it.
+	 */
+	public int indexOf(final String element) {
+		if (begin == null) {
+			for (int i = 0; i < elements.length; i++) {
+				if (elements[i].equals(element)) return i;
+			}
+			return -1;
+		}
+		if (element.isEmpty() || fixed && element.length() != width) return -1;
+		final BigInteger v;
+		try {
+			v = numeric ? new BigInteger(element) : new BigInteger(element, 26);
+		}
+		catch (final NumberFormatException exc) {
+			return -1;
+		}
+		final BigInteger[] qr = v.subtract(begin).divideAndRemainder(step);
+		if (qr[1].signum() != 0 || qr[0].signum() < 0 ||
+			qr[0].compareTo(BigInteger.valueOf(count)) >= 0)
+		{
+			return -1;
+		}
+		final int index = qr[0].intValue();
+		// reject alternate spellings, e.g. different padding or letter case
+		return getElement(index).equals(element) ? index : -1;
+	}
+
+	/** Whether or not this block is a numeric range. */
+	public boolean isNumeric() {
+		return begin != null && numeric;
+	}
+
 	public String getBlock() {
 		return block;
 	}
@@ -108,6 +195,7 @@ public class FilePatternBlock {
 			final int comma = block.indexOf(",");
 			if (comma > 0) {
 				elements = block.substring(1, block.length() - 1).split(",");
+				count = elements.length;
 				return;
 			}
 			// no range and not a list; assume entire block is a single value
@@ -127,7 +215,7 @@ public class FilePatternBlock {
 			}
 		}
 
-		boolean numeric = true;
+		numeric = true;
 
 		try {
 			begin = new BigInteger(b);
@@ -147,22 +235,11 @@ public class FilePatternBlock {
 			if (e.charAt(zeroes) != '0') break;
 		}
 
-		final int count = end.subtract(begin).divide(step).intValue() + 1;
-		elements = new String[count];
+		width = e.length();
+		lowerCase = !numeric && Character.isLowerCase(b.charAt(0));
 
-		for (int i = 0; i < count; i++) {
-			final BigInteger v = begin.add(step.multiply(BigInteger.valueOf(i)));
-			String value = numeric ? v.toString() : v.toString(26);
-			if (!numeric) {
-				if (Character.isLowerCase(b.charAt(0))) value = value.toLowerCase();
-				else value = value.toUpperCase();
-			}
-			final int padChars = fixed ? e.length() - value.length() : 0;
-			elements[i] = value;
-			for (int j = 0; j < padChars; j++) {
-				elements[i] = "0" + elements[i];
-			}
-		}
+		// elements are computed on demand from the range bounds
+		count = Math.max(0, end.subtract(begin).divide(step).intValue() + 1);
 	}
 
 }
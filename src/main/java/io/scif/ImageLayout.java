@@ -0,0 +1,342 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif;
+
+import io.scif.util.FormatTools;
+
+import java.util.Arrays;
+import java.util.List;
+
+import net.imagej.axis.AxisType;
+import net.imagej.axis.CalibratedAxis;
+
+import org.scijava.util.ArrayUtils;
+
+/**
+ * An immutable snapshot of the axis structure of an {@link ImageMetadata},
+ * compiled for use in per-plane and per-pixel loops.
+ * <p>
+ * Axis indices, lengths and raster strides are computed once, so lookups and
+ * conversions between raster indices and positions need neither map lookups
+ * nor allocations. Positions are written into caller-provided arrays.
+ * </p>
+ * <p>
+ * A layout does not follow later changes to the metadata it was compiled
+ * from; {@link ImageMetadata#getLayout()} recompiles it as needed.
+ * </p>
+ *
+ * @see ImageMetadata#getLayout()
+ */
+public final class ImageLayout {
+
+	// -- Fields --
+
+	private final AxisType[] types;
+
+	private final long[] lengths;
+
+	/**
+	 * Raster stride of each axis. Planar axes are strided within a plane, and
+	 * non-planar axes within the image's sequence of planes.
+	 */
+	private final long[] strides;
+
+	private final int planarAxisCount;
+
+	private final int interleavedAxisCount;
+
+	private final long planeCount;
+
+	private final long planePixels;
+
+	/** Factors of the total image size in bytes: the lengths and pixel size. */
+	private final long[] sizeFactors;
+
+	private final int pixelType;
+
+	private final int bytesPerPixel;
+
+	private final boolean littleEndian;
+
+	// -- Constructors --
+
+	private ImageLayout(final ImageMetadata meta) {
+		final List<CalibratedAxis> axes = meta.getAxes();
+		final int axisCount = axes.size();
+		types = new AxisType[axisCount];
+		lengths = new long[axisCount];
+		strides = new long[axisCount];
+		planarAxisCount = Math.min(meta.getPlanarAxisCount(), axisCount);
+		interleavedAxisCount = meta.getInterleavedAxisCount();
+
+		long pixels = 1, planes = 1;
+		for (int i = 0; i < axisCount; i++) {
+			types[i] = axes.get(i).type();
+			lengths[i] = meta.getAxisLength(types[i]);
+			if (i < planarAxisCount) {
+				strides[i] = pixels;
+				pixels *= lengths[i];
+			}
+			else {
+				strides[i] = planes;
+				planes *= lengths[i];
+			}
+		}
+		planePixels = pixels;
+		planeCount = planes;
+
+		pixelType = meta.getPixelType();
+		bytesPerPixel = FormatTools.getBytesPerPixel(pixelType);
+		sizeFactors = Arrays.copyOf(lengths, axisCount + 1);
+		sizeFactors[axisCount] = meta.getBitsPerPixel() / 8;
+		littleEndian = meta.isLittleEndian();
+	}
+
+	// -- Static methods --
+
+	/**
+	 * Compiles the current state of the given metadata into a new layout.
+	 * Prefer {@link ImageMetadata#getLayout()}, which reuses the layout for as
+	 * long as the metadata is unchanged.
+	 */
+	public static ImageLayout compile(final ImageMetadata meta) {
+		return new ImageLayout(meta);
+	}
+
+	// -- ImageLayout methods --
+
+	/** @return the number of (effective) axes in the image */
+	public int getAxisCount() {
+		return types.length;
+	}
+
+	/** @return the number of planar axes */
+	public int getPlanarAxisCount() {
+		return planarAxisCount;
+	}
+
+	/** @return the number of non-planar axes */
+	public int getNonPlanarAxisCount() {
+		return types.length - planarAxisCount;
+	}
+
+	/** @return the number of planar axes which are interleaved */
+	public int getInterleavedAxisCount() {
+		return interleavedAxisCount;
+	}
+
+	/** @return the type of the axis at the given index */
+	public AxisType getAxisType(final int axisIndex) {
+		return types[axisIndex];
+	}
+
+	/**
+	 * @return the index of the axis of the given type, or -1 if there is no
+	 *         such axis
+	 */
+	public int getAxisIndex(final AxisType type) {
+		for (int i = 0; i < types.length; i++) {
+			if (types[i].equals(type)) return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the length of the axis at the given index, or 1 if the index is
+	 *         out of bounds
+	 */
+	public long getAxisLength(final int axisIndex) {
+		return axisIndex < 0 || axisIndex >= lengths.length ? 1
+			: lengths[axisIndex];
+	}
+
+	/** @return the length of the axis of the given type, or 1 if absent */
+	public long getAxisLength(final AxisType type) {
+		return getAxisLength(getAxisIndex(type));
+	}
+
+	/**
+	 * @return the raster stride of the axis at the given index: in pixels for a
+	 *         planar axis, in planes for a non-planar axis
+	 */
+	public long getAxisStride(final int axisIndex) {
+		return strides[axisIndex];
+	}
+
+	/** @return a new array of the planar axis lengths */
+	public long[] getAxesLengthsPlanar() {
+		final long[] planar = new long[planarAxisCount];
+		System.arraycopy(lengths, 0, planar, 0, planar.length);
+		return planar;
+	}
+
+	/** @return a new array of the non-planar axis lengths */
+	public long[] getAxesLengthsNonPlanar() {
+		final long[] nonPlanar = new long[getNonPlanarAxisCount()];
+		System.arraycopy(lengths, planarAxisCount, nonPlanar, 0,
+			nonPlanar.length);
+		return nonPlanar;
+	}
+
+	/** @return the number of planes in the image */
+	public long getPlaneCount() {
+		return planeCount;
+	}
+
+	/** @return the number of pixels in one plane */
+	public long getPlanePixels() {
+		return planePixels;
+	}
+
+	/**
+	 * @return the size, in bytes, of one plane
+	 * @throws IllegalArgumentException if the size of the whole image overflows
+	 *           a long, as with {@link ImageMetadata#getSize()}
+	 */
+	public long getPlaneSize() {
+		return ArrayUtils.safeMultiply64(sizeFactors) / planeCount;
+	}
+
+	/** @return the pixel type, as enumerated in {@link FormatTools} */
+	public int getPixelType() {
+		return pixelType;
+	}
+
+	/** @return the number of bytes used to store one pixel */
+	public int getBytesPerPixel() {
+		return bytesPerPixel;
+	}
+
+	/** @return true if the pixel data is stored in little endian order */
+	public boolean isLittleEndian() {
+		return littleEndian;
+	}
+
+	// -- Raster conversion --
+
+	/**
+	 * Computes the position along each non-planar axis of the given plane.
+	 *
+	 * @param planeIndex rasterized plane index
+	 * @param pos array of at least {@link #getNonPlanarAxisCount()} elements, to
+	 *          populate with the result
+	 * @return the given array
+	 */
+	public long[] planeToPosition(final long planeIndex, final long[] pos) {
+		return planeToPosition(planeIndex, pos, 0);
+	}
+
+	/**
+	 * Computes the position along each non-planar axis of the given plane,
+	 * storing the result in consecutive elements starting at the given offset.
+	 *
+	 * @param planeIndex rasterized plane index
+	 * @param pos array to populate with the result
+	 * @param offset index of the first element of {@code pos} to populate
+	 * @return the given array
+	 */
+	public long[] planeToPosition(final long planeIndex, final long[] pos,
+		final int offset)
+	{
+		return toPosition(planeIndex, planarAxisCount, types.length, pos, offset);
+	}
+
+	/**
+	 * @param pos position along each non-planar axis
+	 * @return the rasterized index of the plane at the given position
+	 */
+	public long positionToPlane(final long[] pos) {
+		return toRaster(pos, planarAxisCount);
+	}
+
+	/**
+	 * Computes the position along each planar axis of the given pixel.
+	 *
+	 * @param pixelIndex rasterized index of a pixel within a plane
+	 * @param pos array of at least {@link #getPlanarAxisCount()} elements, to
+	 *          populate with the result
+	 * @return the given array
+	 */
+	public long[] pixelToPosition(final long pixelIndex, final long[] pos) {
+		return toPosition(pixelIndex, 0, planarAxisCount, pos, 0);
+	}
+
+	/**
+	 * @param pos position along each planar axis
+	 * @return the rasterized index of the pixel at the given position
+	 */
+	public long positionToPixel(final long[] pos) {
+		return toRaster(pos, 0);
+	}
+
+	/**
+	 * Computes the position of the given plane or pixel along a single axis. For
+	 * a planar axis, the raster index is taken to be a pixel index; for a
+	 * non-planar axis, a plane index.
+	 *
+	 * @param raster rasterized pixel or plane index
+	 * @param axisIndex index of the axis
+	 * @return the position along the given axis
+	 */
+	public long getPosition(final long raster, final int axisIndex) {
+		final long position = raster / strides[axisIndex];
+		// NB: As in toPosition, the last planar and non-planar axes are not
+		// wrapped.
+		if (axisIndex == planarAxisCount - 1 || axisIndex == types.length - 1) {
+			return position;
+		}
+		return position % lengths[axisIndex];
+	}
+
+	// -- Helper methods --
+
+	private long[] toPosition(long raster, final int start, final int end,
+		final long[] pos, final int offset)
+	{
+		for (int i = start; i < end - 1; i++) {
+			pos[offset + i - start] = raster % lengths[i];
+			raster /= lengths[i];
+		}
+		// NB: As in FormatTools.rasterToPosition, the last axis is not wrapped.
+		if (end > start) pos[offset + end - 1 - start] = raster;
+		return pos;
+	}
+
+	private long toRaster(final long[] pos, final int start) {
+		// NB: As in FormatTools.positionToRaster, the position may cover fewer
+		// axes than there are; the missing positions are taken to be zero.
+		long raster = 0;
+		for (int i = 0; i < pos.length; i++) {
+			raster += strides[start + i] * pos[i];
+		}
+		return raster;
+	}
+}
@@ -329,6 +329,19 @@ public interface ImageMetadata extends Named, HasMetaTable {
 	 */
 	long getPlaneCount();
 
+	/**
+	 * Returns the current axis structure of this image as an immutable
+	 * {@link ImageLayout}, for use in per-plane and per-pixel loops. By
+	 * default, the layout is compiled on each call; implementations such as
+	 * {@link AbstractImageMetadata} return the same layout until the metadata
+	 * is modified.
+	 *
+	 * @return compiled layout of this image
+	 */
+	default ImageLayout getLayout() {
+		return ImageLayout.compile(this);
+	}
+
 	/**
 	 * Returns an array of the lengths for axes associated with the specified
 	 * image index.
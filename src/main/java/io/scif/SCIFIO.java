@@ -44,6 +44,7 @@ import io.scif.services.FilePatternService;
 import io.scif.services.FormatService;
 import io.scif.services.InitializeService;
 import io.scif.services.LocationService;
+import io.scif.services.MetricsService;
 import io.scif.services.TranslatorService;
 import io.scif.xml.XMLService;
 
@@ -187,6 +188,15 @@ public class SCIFIO extends AbstractGateway {
 		return get(MetadataService.class);
 	}
 
+	/**
+	 * Gets this application context's {@link MetricsService}.
+	 *
+	 * @return The {@link MetricsService} of this application context.
+	 */
+	public MetricsService metrics() {
+		return get(MetricsService.class);
+	}
+
 	/**
 	 * Gets this application context's {@link NIOService}.
 	 *
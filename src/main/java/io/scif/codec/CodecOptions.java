@@ -116,6 +116,25 @@ public class CodecOptions {
 	 */
 	public boolean ycbcr;
 
+	/**
+	 * Compression level for codecs that support one, from 0 (fastest) to 9
+	 * (smallest) for {@link ZlibCodec}. Default is -1, the codec's own default
+	 * (WRITE).
+	 */
+	public int compressionLevel = -1;
+
+	/**
+	 * Compression strategy for codecs that support one, as it would be provided
+	 * to {@link java.util.zip.Deflater#setStrategy(int)} (WRITE).
+	 */
+	public int compressionStrategy;
+
+	/**
+	 * Maximum number of threads a codec may use to compress one block of data.
+	 * Values below 2 compress on the calling thread (WRITE).
+	 */
+	public int compressionThreads;
+
 	// -- Constructors --
 
 	/** Construct a new CodecOptions. */
@@ -141,6 +160,9 @@ public class CodecOptions {
 			this.tileGridXOffset = options.tileGridXOffset;
 			this.tileGridYOffset = options.tileGridYOffset;
 			this.ycbcr = options.ycbcr;
+			this.compressionLevel = options.compressionLevel;
+			this.compressionStrategy = options.compressionStrategy;
+			this.compressionThreads = options.compressionThreads;
 		}
 	}
 
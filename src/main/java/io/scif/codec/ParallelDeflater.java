@@ -0,0 +1,249 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.codec;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+import org.scijava.thread.ThreadService;
+
+/**
+ * Deflates data supplied in pieces into a single raw deflate stream, leaving
+ * the zlib or gzip framing to the caller.
+ * <p>
+ * With more than one thread, each piece is split into {@link #CHUNK_SIZE}
+ * chunks that are deflated in parallel, pigz style: every chunk is primed with
+ * the preceding 32 KB of input as a preset dictionary and sync flushed so that
+ * it ends on a byte boundary, which lets the chunks be concatenated. With one
+ * thread, or without a {@link ThreadService}, a single {@link Deflater} is
+ * used for the whole stream.
+ * </p>
+ */
+public class ParallelDeflater {
+
+	// -- Constants --
+
+	/** Number of input bytes deflated by each task in parallel mode. */
+	public static final int CHUNK_SIZE = 128 * 1024;
+
+	/** Size of the deflate window, primed from the preceding input. */
+	private static final int DICTIONARY_SIZE = 32 * 1024;
+
+	/** How {@link #deflate} ends its output. */
+	private static final int NO_FLUSH = 0, SYNC_FLUSH = 1, FINISH = 2;
+
+	// -- Fields --
+
+	private final int level;
+
+	private final int strategy;
+
+	private final int threads;
+
+	private final ThreadService threadService;
+
+	/** The last bytes of input, priming the first chunk of the next piece. */
+	private final byte[] window = new byte[DICTIONARY_SIZE];
+
+	private int windowLength;
+
+	/** Deflater for the whole stream, in serial mode. */
+	private Deflater deflater;
+
+	// -- Constructor --
+
+	/**
+	 * @param level Deflate compression level, or -1 for the default.
+	 * @param strategy Deflate strategy, e.g. {@link Deflater#FILTERED}.
+	 * @param threads Maximum number of threads to deflate each piece with.
+	 * @param threadService Service running the deflate tasks; may be null.
+	 */
+	public ParallelDeflater(final int level, final int strategy,
+		final int threads, final ThreadService threadService)
+	{
+		this.level = level;
+		this.strategy = strategy;
+		this.threads = threadService == null ? 1 : Math.max(1, threads);
+		this.threadService = threadService;
+	}
+
+	// -- ParallelDeflater methods --
+
+	/** Gets the number of bytes worth passing to each {@link #deflate} call. */
+	public int getPreferredLength() {
+		return threads * CHUNK_SIZE;
+	}
+
+	/**
+	 * Deflates the given bytes as a continuation of everything deflated so far.
+	 *
+	 * @param finish Whether these are the last bytes of the stream.
+	 * @return The deflated bytes, which may be empty.
+	 */
+	public byte[] deflate(final byte[] data, final int off, final int len,
+		final boolean finish) throws IOException
+	{
+		if (threads == 1) {
+			if (deflater == null) deflater = newDeflater(level, strategy);
+			return deflate(deflater, data, off, len, finish ? FINISH : NO_FLUSH);
+		}
+		if (len == 0 && !finish) return new byte[0];
+
+		final int chunks = Math.max(1, (len + CHUNK_SIZE - 1) / CHUNK_SIZE);
+		final byte[][] deflated = new byte[chunks][];
+		final AtomicInteger nextChunk = new AtomicInteger();
+
+		final Callable<Void> worker = () -> {
+			final Deflater d = newDeflater(level, strategy);
+			try {
+				int chunk;
+				while ((chunk = nextChunk.getAndIncrement()) < chunks) {
+					final int start = off + chunk * CHUNK_SIZE;
+					final int length = Math.min(CHUNK_SIZE, off + len - start);
+					d.reset();
+					if (chunk > 0) {
+						final int dictionary = Math.min(DICTIONARY_SIZE, start - off);
+						d.setDictionary(data, start - dictionary, dictionary);
+					}
+					else if (windowLength > 0) {
+						d.setDictionary(window, 0, windowLength);
+					}
+					final boolean last = chunk == chunks - 1;
+					deflated[chunk] = deflate(d, data, start, length, last && finish
+						? FINISH : SYNC_FLUSH);
+				}
+			}
+			finally {
+				d.end();
+			}
+			return null;
+		};
+
+		final List<Future<Void>> futures = new ArrayList<>();
+		for (int t = 1; t < Math.min(threads, chunks); t++) {
+			futures.add(threadService.run(worker));
+		}
+		try {
+			worker.call();
+			for (final Future<Void> future : futures) {
+				future.get();
+			}
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while deflating");
+		}
+		catch (final ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+		catch (final Exception e) {
+			throw new IOException(e);
+		}
+		finally {
+			for (final Future<Void> future : futures) {
+				future.cancel(true);
+			}
+		}
+		updateWindow(data, off, len);
+
+		int length = 0;
+		for (final byte[] chunk : deflated) {
+			length += chunk.length;
+		}
+		final byte[] out = new byte[length];
+		int pos = 0;
+		for (final byte[] chunk : deflated) {
+			System.arraycopy(chunk, 0, out, pos, chunk.length);
+			pos += chunk.length;
+		}
+		return out;
+	}
+
+	/** Releases the native resources of this deflater. */
+	public void end() {
+		if (deflater != null) deflater.end();
+		deflater = null;
+	}
+
+	// -- Helper methods --
+
+	private static Deflater newDeflater(final int level, final int strategy) {
+		final Deflater deflater = new Deflater(level, true);
+		deflater.setStrategy(strategy);
+		return deflater;
+	}
+
+	/**
+	 * Deflates the given range with the given flush mode. Without flushing,
+	 * output is returned as far as the deflater has produced it.
+	 */
+	private static byte[] deflate(final Deflater deflater, final byte[] data,
+		final int off, final int len, final int mode)
+	{
+		deflater.setInput(data, off, len);
+		if (mode == FINISH) deflater.finish();
+		byte[] out = new byte[len + (len >> 12) + (len >> 14) + 64];
+		int n = 0;
+		while (true) {
+			n += deflater.deflate(out, n, out.length - n, mode == SYNC_FLUSH
+				? Deflater.SYNC_FLUSH : Deflater.NO_FLUSH);
+			// NB: the first call may only apply a new strategy, so check that all
+			// input was consumed as well as flushed
+			final boolean done = mode == FINISH ? deflater.finished() : deflater
+				.needsInput() && n < out.length;
+			if (done) return Arrays.copyOf(out, n);
+			if (n == out.length) out = Arrays.copyOf(out, 2 * out.length);
+		}
+	}
+
+	/** Keeps the last {@link #DICTIONARY_SIZE} bytes of input seen. */
+	private void updateWindow(final byte[] data, final int off, final int len) {
+		if (len >= DICTIONARY_SIZE) {
+			System.arraycopy(data, off + len - DICTIONARY_SIZE, window, 0,
+				DICTIONARY_SIZE);
+			windowLength = DICTIONARY_SIZE;
+			return;
+		}
+		final int keep = Math.min(windowLength, DICTIONARY_SIZE - len);
+		System.arraycopy(window, windowLength - keep, window, 0, keep);
+		System.arraycopy(data, off, window, keep, len);
+		windowLength = keep + len;
+	}
+
+}
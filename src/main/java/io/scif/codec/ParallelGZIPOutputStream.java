@@ -0,0 +1,154 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.codec;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
+import org.scijava.thread.ThreadService;
+
+/**
+ * Writes a single gzip member, deflating buffered input with a
+ * {@link ParallelDeflater} so that compression scales with the number of
+ * threads given. The output is a standard gzip stream.
+ */
+public class ParallelGZIPOutputStream extends FilterOutputStream {
+
+	// -- Fields --
+
+	private final ParallelDeflater deflater;
+
+	private final CRC32 crc = new CRC32();
+
+	private final byte[] buffer;
+
+	private int buffered;
+
+	private long size;
+
+	private boolean finished;
+
+	// -- Constructor --
+
+	/**
+	 * Writes the gzip header to the given stream.
+	 *
+	 * @param level Deflate compression level, or -1 for the default.
+	 * @param strategy Deflate strategy, e.g.
+	 *          {@link java.util.zip.Deflater#FILTERED}.
+	 * @param threads Maximum number of threads to deflate with.
+	 * @param threadService Service running the deflate tasks; may be null.
+	 */
+	public ParallelGZIPOutputStream(final OutputStream out, final int level,
+		final int strategy, final int threads, final ThreadService threadService)
+		throws IOException
+	{
+		super(out);
+		deflater = new ParallelDeflater(level, strategy, threads, threadService);
+		buffer = new byte[deflater.getPreferredLength()];
+		final int xfl = level == 9 ? 2 : level == 1 ? 4 : 0;
+		out.write(new byte[] { 0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, (byte) xfl,
+			(byte) 255 });
+	}
+
+	// -- ParallelGZIPOutputStream methods --
+
+	/**
+	 * Compresses any buffered input and writes the gzip trailer, without closing
+	 * the underlying stream.
+	 */
+	public void finish() throws IOException {
+		if (finished) return;
+		finished = true;
+		try {
+			out.write(deflater.deflate(buffer, 0, buffered, true));
+		}
+		finally {
+			deflater.end();
+		}
+		buffered = 0;
+		writeIntLE(crc.getValue());
+		writeIntLE(size);
+	}
+
+	// -- OutputStream methods --
+
+	@Override
+	public void write(final int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(final byte[] b, int off, int len) throws IOException {
+		if (finished) throw new IOException("Stream already finished");
+		crc.update(b, off, len);
+		size += len;
+		while (len > 0) {
+			if (buffered == 0 && len >= buffer.length) {
+				// deflate whole blocks straight from the caller's array
+				final int n = len - len % buffer.length;
+				out.write(deflater.deflate(b, off, n, false));
+				off += n;
+				len -= n;
+				continue;
+			}
+			final int n = Math.min(len, buffer.length - buffered);
+			System.arraycopy(b, off, buffer, buffered, n);
+			buffered += n;
+			off += n;
+			len -= n;
+			if (buffered == buffer.length) {
+				out.write(deflater.deflate(buffer, 0, buffered, false));
+				buffered = 0;
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			finish();
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	// -- Helper methods --
+
+	private void writeIntLE(final long v) throws IOException {
+		out.write(new byte[] { (byte) v, (byte) (v >> 8), (byte) (v >> 16),
+			(byte) (v >> 24) });
+	}
+
+}
@@ -35,36 +35,67 @@ import io.scif.io.RandomAccessInputStream;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.Adler32;
 import java.util.zip.Deflater;
 import java.util.zip.InflaterInputStream;
 
+import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
+import org.scijava.thread.ThreadService;
 
 /**
- * This class implements ZLIB decompression.
+ * This class implements ZLIB compression and decompression.
+ * <p>
+ * Compression honors {@link CodecOptions#compressionLevel} and
+ * {@link CodecOptions#compressionStrategy}. When
+ * {@link CodecOptions#compressionThreads} is greater than one, inputs larger
+ * than {@link #CHUNK_SIZE} are deflated in parallel chunks that are stitched
+ * into a single valid zlib stream.
+ * </p>
  *
  * @author Melissa Linkert
  */
 @Plugin(type = Codec.class)
 public class ZlibCodec extends AbstractCodec {
 
+	// -- Constants --
+
+	/** Number of input bytes deflated by each task in parallel mode. */
+	public static final int CHUNK_SIZE = ParallelDeflater.CHUNK_SIZE;
+
+	// -- Fields --
+
+	@Parameter(required = false)
+	private ThreadService threadService;
+
+	// -- Codec API methods --
+
 	@Override
 	public byte[] compress(final byte[] data, final CodecOptions options)
 		throws FormatException
 	{
 		if (data == null || data.length == 0) throw new IllegalArgumentException(
 			"No data to compress");
-		final Deflater deflater = new Deflater();
-		deflater.setInput(data);
-		deflater.finish();
-		final byte[] buf = new byte[8192];
-		final ByteVector bytes = new ByteVector();
-		int r = 0;
-		// compress until eof reached
-		while ((r = deflater.deflate(buf, 0, buf.length)) > 0) {
-			bytes.add(buf, 0, r);
+		final int level = options == null ? Deflater.DEFAULT_COMPRESSION
+			: options.compressionLevel;
+		final int strategy = options == null ? Deflater.DEFAULT_STRATEGY
+			: options.compressionStrategy;
+		final int threads = options == null ? 1 : options.compressionThreads;
+
+		if (threads > 1 && data.length > CHUNK_SIZE &&
+			threadService != null)
+		{
+			return compressParallel(data, level, strategy, threads);
+		}
+		final Deflater deflater = new Deflater(level);
+		deflater.setStrategy(strategy);
+		try {
+			return deflate(deflater, data);
+		}
+		finally {
+			deflater.end();
 		}
-		return bytes.toByteArray();
 	}
 
 	@Override
@@ -84,4 +115,65 @@ public class ZlibCodec extends AbstractCodec {
 		return bytes.toByteArray();
 	}
 
+	// -- Helper methods --
+
+	/**
+	 * Deflates the input with a {@link ParallelDeflater}, then adds the zlib
+	 * header and Adler-32 trailer.
+	 */
+	private byte[] compressParallel(final byte[] data, final int level,
+		final int strategy, final int threads) throws FormatException
+	{
+		final ParallelDeflater deflater =
+			new ParallelDeflater(level, strategy, threads, threadService);
+		final byte[] deflated;
+		try {
+			deflated = deflater.deflate(data, 0, data.length, true);
+		}
+		catch (final IOException e) {
+			throw new FormatException(e);
+		}
+		finally {
+			deflater.end();
+		}
+
+		final byte[] out = new byte[deflated.length + 6];
+		writeHeader(out, level);
+		System.arraycopy(deflated, 0, out, 2, deflated.length);
+		final Adler32 adler = new Adler32();
+		adler.update(data, 0, data.length);
+		final long checksum = adler.getValue();
+		int off = deflated.length + 2;
+		for (int shift = 24; shift >= 0; shift -= 8) {
+			out[off++] = (byte) (checksum >> shift);
+		}
+		return out;
+	}
+
+	private static byte[] deflate(final Deflater deflater, final byte[] data) {
+		deflater.setInput(data);
+		deflater.finish();
+		byte[] out = new byte[data.length + (data.length >> 12) + 64];
+		int n = 0;
+		while (!deflater.finished()) {
+			if (n == out.length) out = Arrays.copyOf(out, 2 * out.length);
+			n += deflater.deflate(out, n, out.length - n);
+		}
+		return Arrays.copyOf(out, n);
+	}
+
+	/** Writes the two-byte zlib header for a 32 KB deflate window. */
+	private static void writeHeader(final byte[] out, final int level) {
+		final int cmf = 0x78;
+		final int flevel;
+		if (level == 0 || level == 1) flevel = 0;
+		else if (level >= 2 && level <= 5) flevel = 1;
+		else if (level == Deflater.DEFAULT_COMPRESSION || level == 6) flevel = 2;
+		else flevel = 3;
+		int flg = flevel << 6;
+		flg += (31 - ((cmf << 8) + flg) % 31) % 31;
+		out[0] = (byte) cmf;
+		out[1] = (byte) flg;
+	}
+
 }
@@ -98,6 +98,12 @@ public class SCIFIOConfig extends HashMap<String, Object> {
 
 	private CodecOptions options = null;
 
+	private int compressionLevel = -1;
+
+	private int compressionStrategy = 0;
+
+	private int compressionThreads = 1;
+
 	// Groupable
 	/** Whether or not to group multi-file formats. */
 	private boolean group = false;
@@ -172,6 +178,9 @@ public class SCIFIOConfig extends HashMap<String, Object> {
 		fps = config.fps;
 		compression = config.compression;
 		options = config.options;
+		compressionLevel = config.compressionLevel;
+		compressionStrategy = config.compressionStrategy;
+		compressionThreads = config.compressionThreads;
 		group = config.group;
 		imgModes = config.imgModes;
 		range = config.range;
@@ -228,13 +237,18 @@ public class SCIFIOConfig extends HashMap<String, Object> {
 	}
 
 	/**
-	 * @return True if parsers should save original metadata.
+	 * @return True if parsers should save original metadata, even when parsing
+	 *         at {@link MetadataLevel#MINIMUM}.
 	 */
 	public boolean parserIsSaveOriginalMetadata() {
 		return saveOriginalMetadata;
 	}
 
 	/**
+	 * Sets whether parsers keep the original metadata tables. At
+	 * {@link MetadataLevel#MINIMUM}, tables are discarded unless this flag is
+	 * set; at other levels they are always kept.
+	 *
 	 * @param saveOriginalMetadata Desired metadata saving behavior for parsing.
 	 * @return This SCIFIOConfig for method chaining.
 	 */
@@ -331,6 +345,59 @@ public class SCIFIOConfig extends HashMap<String, Object> {
 		return options;
 	}
 
+	/**
+	 * @param level Desired compression level, e.g. 0-9 for deflate based
+	 *          compression, or -1 for the codec's default. Overrides
+	 *          {@link CodecOptions#compressionLevel}.
+	 * @return This SCIFIOConfig for method chaining.
+	 */
+	public SCIFIOConfig writerSetCompressionLevel(final int level) {
+		compressionLevel = level;
+		return this;
+	}
+
+	/**
+	 * @return The compression level writers will use, or -1 for the default.
+	 */
+	public int writerGetCompressionLevel() {
+		return compressionLevel;
+	}
+
+	/**
+	 * @param strategy Desired compression strategy, e.g.
+	 *          {@link java.util.zip.Deflater#FILTERED}. Overrides
+	 *          {@link CodecOptions#compressionStrategy}.
+	 * @return This SCIFIOConfig for method chaining.
+	 */
+	public SCIFIOConfig writerSetCompressionStrategy(final int strategy) {
+		compressionStrategy = strategy;
+		return this;
+	}
+
+	/**
+	 * @return The compression strategy writers will use.
+	 */
+	public int writerGetCompressionStrategy() {
+		return compressionStrategy;
+	}
+
+	/**
+	 * @param threads Maximum number of threads a codec may use to compress one
+	 *          block of data. Overrides {@link CodecOptions#compressionThreads}.
+	 * @return This SCIFIOConfig for method chaining.
+	 */
+	public SCIFIOConfig writerSetCompressionThreads(final int threads) {
+		compressionThreads = threads;
+		return this;
+	}
+
+	/**
+	 * @return The number of threads codecs may use to compress one block.
+	 */
+	public int writerGetCompressionThreads() {
+		return compressionThreads;
+	}
+
 	// -- Groupable methods --
 
 	/**
@@ -0,0 +1,499 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.convert;
+
+import io.scif.FormatException;
+import io.scif.ImageLayout;
+import io.scif.Plane;
+import io.scif.Reader;
+import io.scif.Writer;
+import io.scif.config.SCIFIOConfig;
+import io.scif.services.InitializeService;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.imagej.axis.Axes;
+
+import org.scijava.AbstractContextual;
+import org.scijava.Context;
+import org.scijava.plugin.Parameter;
+
+/**
+ * Converts datasets between formats by streaming tiles through a pipeline.
+ * <p>
+ * Tiles are read and decoded by one or more reader threads, each with its own
+ * {@link Reader} on the source, while the calling thread encodes and writes
+ * them in order. The stages are connected by a bounded buffer, so at most
+ * {@link #setQueueCapacity(int)} tiles are held in memory at once, and reading
+ * continues while a tile is being compressed and written. Writers opened by
+ * the engine compress each tile on {@link #setCompressionThreads(int)}
+ * threads, e.g. one TIFF strip per thread, so encoding is not bound to the
+ * writing thread either.
+ * </p>
+ * <p>
+ * Planes larger than {@link #setTileBytes(long)} are split into tiles based on
+ * the reader's optimal tile size: full-width bands of rows, or optimal tiles
+ * when a single row exceeds the limit. Tiles of one plane are written in
+ * row-major order with {@link Writer#savePlane(int, long, Plane, long[],
+ * long[])}, which the destination format must support (as TIFF does for row
+ * bands when not writing sequentially). Smaller planes are converted whole.
+ * </p>
+ *
+ * @see io.scif.util.FormatTools#convert(Reader, Writer, String)
+ */
+public class ConversionEngine extends AbstractContextual {
+
+	// -- Constants --
+
+	/** Default size limit for planes that are converted whole. */
+	public static final long DEFAULT_TILE_BYTES = 64L * 1024 * 1024;
+
+	/** Largest tile that fits into a single plane buffer. */
+	public static final long MAX_TILE_BYTES = Integer.MAX_VALUE - 8;
+
+	// -- Fields --
+
+	@Parameter
+	private InitializeService initializeService;
+
+	private int readerThreads = Math.min(4, Runtime.getRuntime()
+		.availableProcessors());
+
+	private int compressionThreads = Runtime.getRuntime().availableProcessors();
+
+	private int queueCapacity = -1;
+
+	private long tileBytes = DEFAULT_TILE_BYTES;
+
+	// -- Constructors --
+
+	public ConversionEngine(final Context context) {
+		setContext(context);
+	}
+
+	// -- ConversionEngine API methods --
+
+	/**
+	 * Sets the number of threads reading and decoding tiles in parallel. Each
+	 * thread uses its own reader.
+	 */
+	public ConversionEngine setReaderThreads(final int threads) {
+		if (threads < 1) throw new IllegalArgumentException(
+			"Invalid reader thread count: " + threads);
+		readerThreads = threads;
+		return this;
+	}
+
+	/** @return the number of threads reading and decoding tiles */
+	public int getReaderThreads() {
+		return readerThreads;
+	}
+
+	/**
+	 * Sets the number of threads compressing each tile, for writers opened by
+	 * {@link #convert(String, String, SCIFIOConfig)} whose configuration does
+	 * not already request more than one. Defaults to the number of processors.
+	 *
+	 * @see SCIFIOConfig#writerSetCompressionThreads(int)
+	 */
+	public ConversionEngine setCompressionThreads(final int threads) {
+		if (threads < 1) throw new IllegalArgumentException(
+			"Invalid compression thread count: " + threads);
+		compressionThreads = threads;
+		return this;
+	}
+
+	/** @return the number of threads compressing each tile */
+	public int getCompressionThreads() {
+		return compressionThreads;
+	}
+
+	/**
+	 * Sets the maximum number of tiles which have been read but not yet
+	 * written. Defaults to twice the number of reader threads.
+	 */
+	public ConversionEngine setQueueCapacity(final int capacity) {
+		if (capacity < 1) throw new IllegalArgumentException(
+			"Invalid queue capacity: " + capacity);
+		queueCapacity = capacity;
+		return this;
+	}
+
+	/** @return the maximum number of tiles which are read but not written */
+	public int getQueueCapacity() {
+		return queueCapacity < 0 ? 2 * readerThreads : queueCapacity;
+	}
+
+	/**
+	 * Sets the size, in bytes, above which planes are streamed as tiles rather
+	 * than converted whole. At most {@link #MAX_TILE_BYTES}.
+	 */
+	public ConversionEngine setTileBytes(final long bytes) {
+		if (bytes < 1) throw new IllegalArgumentException(
+			"Invalid tile size: " + bytes);
+		tileBytes = Math.min(bytes, MAX_TILE_BYTES);
+		return this;
+	}
+
+	/** @return the size above which planes are streamed as tiles */
+	public long getTileBytes() {
+		return tileBytes;
+	}
+
+	/**
+	 * Converts the given source to the given destination, choosing formats
+	 * by name.
+	 */
+	public void convert(final String source, final String destination)
+		throws FormatException, IOException
+	{
+		convert(source, destination, new SCIFIOConfig().checkerSetOpen(false));
+	}
+
+	/**
+	 * As {@link #convert(String, String)}, with configuration options for the
+	 * readers and the writer.
+	 */
+	public void convert(final String source, final String destination,
+		final SCIFIOConfig config) throws FormatException, IOException
+	{
+		final Reader input = initializeService.initializeReader(source, config);
+		final SCIFIOConfig writerConfig = new SCIFIOConfig(config);
+		if (config.writerGetCompressionThreads() <= 1) {
+			writerConfig.writerSetCompressionThreads(compressionThreads);
+		}
+		final Writer output;
+		try {
+			output = initializeService.initializeWriter(input.getMetadata(),
+				destination, writerConfig);
+		}
+		catch (final FormatException | IOException e) {
+			input.close();
+			throw e;
+		}
+		convert(input, () -> initializeService.initializeReader(source, config),
+			output, config);
+	}
+
+	/**
+	 * Converts all planes of the given reader to the given writer. Additional
+	 * reader threads obtain their readers from the given factory; if it is
+	 * null, the input reader is the only reader thread. All readers and the
+	 * writer are closed when the conversion ends.
+	 *
+	 * @param input the initialized reader of the source
+	 * @param readers factory of further readers of the same source, or null
+	 * @param output the initialized writer of the destination
+	 * @param config configuration used to open planes
+	 */
+	public void convert(final Reader input, final ReaderFactory readers,
+		final Writer output, final SCIFIOConfig config) throws FormatException,
+		IOException
+	{
+		final List<Reader> inputs = new ArrayList<>();
+		inputs.add(input);
+		try {
+			final int threads = readers == null ? 1 : readerThreads;
+			for (int i = 1; i < threads; i++) {
+				inputs.add(readers.createReader());
+			}
+			new Pipeline(inputs, output, config).run();
+		}
+		finally {
+			for (final Reader reader : inputs) {
+				reader.close();
+			}
+			output.close();
+		}
+	}
+
+	// -- Helper classes --
+
+	/** Creates readers of a source, for use by further reader threads. */
+	public interface ReaderFactory {
+
+		Reader createReader() throws FormatException, IOException;
+	}
+
+	/** Tile grid of one image. */
+	private static class ImageTiles {
+
+		private final long planeCount;
+
+		private final int xIndex, yIndex;
+
+		private final long width, height, tileWidth, tileHeight;
+
+		private final long tilesPerRow, tilesPerPlane;
+
+		private final long[] lengths;
+
+		private ImageTiles(final Reader reader, final int imageIndex,
+			final long tileBytes)
+		{
+			final ImageLayout layout = reader.getMetadata().get(imageIndex)
+				.getLayout();
+			planeCount = layout.getPlaneCount();
+			lengths = layout.getAxesLengthsPlanar();
+			xIndex = layout.getAxisIndex(Axes.X);
+			yIndex = layout.getAxisIndex(Axes.Y);
+			width = layout.getAxisLength(Axes.X);
+			height = layout.getAxisLength(Axes.Y);
+
+			final long planeSize = layout.getPlaneSize();
+			if (planeSize <= tileBytes || xIndex < 0 || yIndex < 0 ||
+				xIndex >= lengths.length || yIndex >= lengths.length)
+			{
+				tileWidth = width;
+				tileHeight = height;
+			}
+			else {
+				final long rowBytes = Math.max(1, planeSize / height);
+				final long optimalHeight = clamp(reader.getOptimalTileHeight(
+					imageIndex), height);
+				if (rowBytes <= tileBytes) {
+					// full-width bands, a whole number of optimal tiles high if possible
+					long rows = tileBytes / rowBytes;
+					if (rows >= optimalHeight) rows -= rows % optimalHeight;
+					tileWidth = width;
+					tileHeight = Math.min(height, rows);
+				}
+				else {
+					final long pixelBytes = Math.max(1, rowBytes / width);
+					tileWidth = Math.min(clamp(reader.getOptimalTileWidth(imageIndex),
+						width), Math.max(1, tileBytes / pixelBytes));
+					tileHeight = Math.max(1, Math.min(optimalHeight, tileBytes /
+						(tileWidth * pixelBytes)));
+				}
+			}
+			tilesPerRow = (width + tileWidth - 1) / tileWidth;
+			tilesPerPlane = tilesPerRow * ((height + tileHeight - 1) / tileHeight);
+		}
+
+		private long tileCount() {
+			return planeCount * tilesPerPlane;
+		}
+
+		/** Populates the bounds of the given tile of a plane. */
+		private void bounds(final long tile, final long[] min, final long[] max) {
+			System.arraycopy(lengths, 0, max, 0, lengths.length);
+			if (tilesPerPlane == 1) return;
+			min[xIndex] = (tile % tilesPerRow) * tileWidth;
+			min[yIndex] = (tile / tilesPerRow) * tileHeight;
+			max[xIndex] = Math.min(tileWidth, width - min[xIndex]);
+			max[yIndex] = Math.min(tileHeight, height - min[yIndex]);
+		}
+
+		private static long clamp(final long size, final long length) {
+			return size < 1 || size > length ? length : size;
+		}
+	}
+
+	/** A tile which has been read. */
+	private static class Tile {
+
+		private final int imageIndex;
+
+		private final long planeIndex;
+
+		private final long[] min, max;
+
+		private final Plane plane;
+
+		private Tile(final int imageIndex, final long planeIndex,
+			final long[] min, final long[] max, final Plane plane)
+		{
+			this.imageIndex = imageIndex;
+			this.planeIndex = planeIndex;
+			this.min = min;
+			this.max = max;
+			this.plane = plane;
+		}
+	}
+
+	/** State of a single conversion. */
+	private class Pipeline {
+
+		private final List<Reader> inputs;
+
+		private final Writer output;
+
+		private final SCIFIOConfig config;
+
+		private final ImageTiles[] images;
+
+		/** Index of the first tile of each image. */
+		private final long[] firstTiles;
+
+		private final long tileCount;
+
+		/** Next tile to be claimed by a reader thread. */
+		private final AtomicLong nextTile = new AtomicLong();
+
+		/** Bounds the number of tiles which are read but not yet written. */
+		private final Semaphore capacity = new Semaphore(getQueueCapacity());
+
+		/** Tiles which are read, by tile index. Guarded by itself. */
+		private final Map<Long, Tile> ready = new HashMap<>();
+
+		private volatile Throwable failure;
+
+		private Pipeline(final List<Reader> inputs, final Writer output,
+			final SCIFIOConfig config)
+		{
+			this.inputs = inputs;
+			this.output = output;
+			this.config = config;
+
+			final Reader reader = inputs.get(0);
+			final int imageCount = reader.getImageCount();
+			images = new ImageTiles[imageCount];
+			firstTiles = new long[imageCount];
+			long count = 0;
+			for (int i = 0; i < imageCount; i++) {
+				images[i] = new ImageTiles(reader, i, tileBytes);
+				firstTiles[i] = count;
+				count += images[i].tileCount();
+			}
+			tileCount = count;
+		}
+
+		private void run() throws FormatException, IOException {
+			final ExecutorService executor = Executors.newFixedThreadPool(inputs
+				.size(), new ThreadFactory() {
+
+					@Override
+					public Thread newThread(final Runnable r) {
+						final Thread t = new Thread(r, "ConversionEngine-reader");
+						t.setDaemon(true);
+						return t;
+					}
+				});
+			try {
+				for (final Reader reader : inputs) {
+					executor.execute(() -> read(reader));
+				}
+				for (long index = 0; index < tileCount; index++) {
+					final Tile tile = take(index);
+					output.savePlane(tile.imageIndex, tile.planeIndex, tile.plane,
+						tile.min, tile.max);
+					capacity.release();
+				}
+			}
+			catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Conversion interrupted", e);
+			}
+			finally {
+				nextTile.set(tileCount);
+				executor.shutdownNow();
+				try {
+					executor.awaitTermination(1, TimeUnit.MINUTES);
+				}
+				catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+
+		/** Reads claimed tiles until all are claimed or conversion fails. */
+		private void read(final Reader reader) {
+			try {
+				while (failure == null) {
+					capacity.acquire();
+					final long index = nextTile.getAndIncrement();
+					if (index >= tileCount) break;
+
+					int imageIndex = images.length - 1;
+					while (firstTiles[imageIndex] > index) {
+						imageIndex--;
+					}
+					final ImageTiles image = images[imageIndex];
+					final long offset = index - firstTiles[imageIndex];
+					final long planeIndex = offset / image.tilesPerPlane;
+					final long[] min = new long[image.lengths.length];
+					final long[] max = new long[image.lengths.length];
+					image.bounds(offset % image.tilesPerPlane, min, max);
+
+					final Plane plane = reader.openPlane(imageIndex, planeIndex, min,
+						max, config);
+					synchronized (ready) {
+						ready.put(index, new Tile(imageIndex, planeIndex, min, max,
+							plane));
+						ready.notifyAll();
+					}
+				}
+			}
+			catch (final InterruptedException e) {
+				// NB: Conversion was aborted.
+			}
+			catch (final Throwable t) {
+				synchronized (ready) {
+					if (failure == null) failure = t;
+					ready.notifyAll();
+				}
+			}
+		}
+
+		/** Waits for the given tile to be read. */
+		private Tile take(final long index) throws FormatException, IOException,
+			InterruptedException
+		{
+			synchronized (ready) {
+				while (!ready.containsKey(index)) {
+					if (failure != null) rethrow(failure);
+					ready.wait();
+				}
+				return ready.remove(index);
+			}
+		}
+
+		private void rethrow(final Throwable t) throws FormatException,
+			IOException
+		{
+			if (t instanceof FormatException) throw (FormatException) t;
+			if (t instanceof IOException) throw (IOException) t;
+			if (t instanceof RuntimeException) throw (RuntimeException) t;
+			if (t instanceof Error) throw (Error) t;
+			throw new IOException(t);
+		}
+	}
+}
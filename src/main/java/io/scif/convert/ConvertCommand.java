@@ -0,0 +1,122 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.convert;
+
+import io.scif.FormatException;
+import io.scif.SCIFIOService;
+import io.scif.config.SCIFIOConfig;
+import io.scif.formats.TIFFFormat;
+
+import java.io.IOException;
+
+import org.scijava.Context;
+import org.scijava.log.LogService;
+import org.scijava.service.SciJavaService;
+
+/**
+ * Headless entry point converting a dataset with a {@link ConversionEngine}.
+ *
+ * <pre>
+ * ConvertCommand [-threads n] [-queue n] [-tilebytes n]
+ *   [-compression name] [-bigtiff] source destination
+ * </pre>
+ */
+public class ConvertCommand {
+
+	private static final String USAGE = "Usage: ConvertCommand [-threads n] " +
+		"[-queue n] [-tilebytes n] [-compression name] [-bigtiff] " +
+		"source destination";
+
+	public static void main(final String[] args) throws FormatException,
+		IOException
+	{
+		final Context context =
+			new Context(SCIFIOService.class, SciJavaService.class);
+		try {
+			if (!run(args, context)) System.exit(1);
+		}
+		finally {
+			context.dispose();
+		}
+	}
+
+	/**
+	 * Runs a conversion with the given command line arguments.
+	 *
+	 * @return false if the arguments are invalid
+	 */
+	public static boolean run(final String[] args, final Context context)
+		throws FormatException, IOException
+	{
+		final LogService log = context.getService(LogService.class);
+		final ConversionEngine engine = new ConversionEngine(context);
+		final SCIFIOConfig config = new SCIFIOConfig().checkerSetOpen(false);
+		String source = null, destination = null;
+		try {
+			for (int i = 0; i < args.length; i++) {
+				final String arg = args[i];
+				if (arg.equals("-threads")) {
+					engine.setReaderThreads(Integer.parseInt(args[++i]));
+				}
+				else if (arg.equals("-queue")) {
+					engine.setQueueCapacity(Integer.parseInt(args[++i]));
+				}
+				else if (arg.equals("-tilebytes")) {
+					engine.setTileBytes(Long.parseLong(args[++i]));
+				}
+				else if (arg.equals("-compression")) {
+					config.writerSetCompression(args[++i]);
+				}
+				else if (arg.equals("-bigtiff")) {
+					config.put(TIFFFormat.Writer.BIG_TIFF_KEY, true);
+				}
+				else if (source == null) source = arg;
+				else if (destination == null) destination = arg;
+				else throw new IllegalArgumentException("Unexpected argument: " + arg);
+			}
+		}
+		catch (final IllegalArgumentException | IndexOutOfBoundsException e) {
+			log.error(e.getMessage() == null ? USAGE : e.getMessage() + "\n" +
+				USAGE);
+			return false;
+		}
+		if (destination == null) {
+			log.error(USAGE);
+			return false;
+		}
+
+		final long start = System.currentTimeMillis();
+		engine.convert(source, destination, config);
+		log.info("Converted " + source + " to " + destination + " in " + (System
+			.currentTimeMillis() - start) + " ms");
+		return true;
+	}
+}
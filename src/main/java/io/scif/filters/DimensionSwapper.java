@@ -31,10 +31,10 @@
 package io.scif.filters;
 
 import io.scif.FormatException;
+import io.scif.ImageLayout;
 import io.scif.Metadata;
 import io.scif.Plane;
 import io.scif.config.SCIFIOConfig;
-import io.scif.util.FormatTools;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -275,24 +275,18 @@ public class DimensionSwapper extends AbstractReaderFilter {
 	private long reorder(final int imageIndex, final long planeIndex) {
 		if (!metaCheck()) return planeIndex;
 
-		final long[] originalPosition =
-			FormatTools.rasterToPosition(getMetadata().get(imageIndex)
-				.getAxesLengthsNonPlanar(), planeIndex);
-
+		final ImageLayout layout = getMetadata().get(imageIndex).getLayout();
 		final List<AxisType> swappedOrder = getDimensionOrder(imageIndex);
-
-		final long[] swappedPosition = new long[originalPosition.length];
-		final long[] lengths = new long[originalPosition.length];
-
-		for (int i = 0; i < originalPosition.length; i++) {
-			final int offset = getMetadata().get(imageIndex).getPlanarAxisCount();
-			final AxisType type = swappedOrder.get(i + offset);
-			lengths[i] = getMetadata().get(imageIndex).getAxisLength(type);
-			swappedPosition[i] =
-				originalPosition[getMetadata().get(imageIndex).getAxisIndex(type) -
-					offset];
+		final int offset = layout.getPlanarAxisCount();
+
+		long raster = 0;
+		long stride = 1;
+		for (int i = offset; i < layout.getAxisCount(); i++) {
+			final int axisIndex = layout.getAxisIndex(swappedOrder.get(i));
+			raster += stride * layout.getPosition(planeIndex, axisIndex);
+			stride *= layout.getAxisLength(axisIndex);
 		}
 
-		return (int) FormatTools.positionToRaster(lengths, swappedPosition);
+		return (int) raster;
 	}
 }
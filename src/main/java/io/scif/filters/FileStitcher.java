@@ -45,13 +45,19 @@ import io.scif.services.LocationService;
 import io.scif.util.FormatTools;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import net.imagej.axis.Axes;
 
 import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
+import org.scijava.thread.ThreadService;
 
 /**
  * Logic to stitch together files with similar names. Assumes that all files
@@ -60,6 +66,11 @@ import org.scijava.plugin.Plugin;
 @Plugin(type = Filter.class)
 public class FileStitcher extends AbstractReaderFilter {
 
+	// -- Constants --
+
+	/** Number of file names checked for existence per parallel batch. */
+	private static final int EXISTS_BATCH_SIZE = 4096;
+
 	// -- Fields --
 
 	@Parameter
@@ -71,6 +82,9 @@ public class FileStitcher extends AbstractReaderFilter {
 	@Parameter
 	private LocationService locationService;
 
+	@Parameter
+	private ThreadService threadService;
+
 	/**
 	 * Whether string ids given should be treated as file patterns rather than
 	 * single file paths.
@@ -86,8 +100,6 @@ public class FileStitcher extends AbstractReaderFilter {
 
 	private Reader[] readers = null;
 
-	private String[] files = null;
-
 	private FilePattern pattern;
 
 	private boolean noStitch;
@@ -130,7 +142,8 @@ public class FileStitcher extends AbstractReaderFilter {
 	}
 
 	/**
-	 * Gets the reader appropriate for use with the given image.
+	 * Gets the reader appropriate for use with the given image, which reads
+	 * the file holding that image.
 	 */
 	public Reader getReader(final int imageIndex) throws FormatException,
 		IOException
@@ -139,7 +152,7 @@ public class FileStitcher extends AbstractReaderFilter {
 		final int[] fileIndex = computeFileIndex(imageIndex);
 		Reader r = readers[fileIndex[0]];
 		if (r == null) {
-			r = initializeService.initializeReader(files[imageIndex]);
+			r = initializeService.initializeReader(pattern.getFile(fileIndex[0]));
 			readers[fileIndex[0]] = r;
 		}
 		return r;
@@ -193,11 +206,11 @@ public class FileStitcher extends AbstractReaderFilter {
 		}
 		patternIds = false;
 		String[] patterns =
-			findPatterns(new FilePattern(getContext(), id).getFiles()[0]);
+			findPatterns(new FilePattern(getContext(), id).getFile(0));
 		if (patterns.length == 0) patterns = new String[] { id };
 		else {
 			final FilePattern test = new FilePattern(getContext(), patterns[0]);
-			if (test.getFiles().length == 0) patterns = new String[] { id };
+			if (test.getFileCount() == 0) patterns = new String[] { id };
 		}
 		patternIds = true;
 		return patterns;
@@ -216,7 +229,7 @@ public class FileStitcher extends AbstractReaderFilter {
 			// Determine if we we have a multi-element file pattern
 			FilePattern fp = new FilePattern(getContext(), source);
 			if (!patternIds) {
-				patternIds = fp.isValid() && fp.getFiles().length > 1;
+				patternIds = fp.isValid() && fp.getFileCount() > 1;
 			}
 			else {
 				patternIds =
@@ -229,7 +242,7 @@ public class FileStitcher extends AbstractReaderFilter {
 			if (patternIds) {
 				mustGroup =
 					fp.isValid() &&
-						getParent().fileGroupOption(fp.getFiles()[0]) == FormatTools.MUST_GROUP;
+						getParent().fileGroupOption(fp.getFile(0)) == FormatTools.MUST_GROUP;
 			}
 			else {
 				mustGroup =
@@ -243,7 +256,7 @@ public class FileStitcher extends AbstractReaderFilter {
 				getParent().close();
 
 				if (patternIds && fp.isValid()) {
-					getParent().setSource(fp.getFiles()[0], config);
+					getParent().setSource(fp.getFile(0), config);
 				}
 				else getParent().setSource(source, config);
 				return;
@@ -266,14 +279,14 @@ public class FileStitcher extends AbstractReaderFilter {
 			if (!fp.isValid()) {
 				throw new FormatException("Invalid file pattern: " + fp.getPattern());
 			}
-			getParent().setSource(fp.getFiles()[0], config);
+			getParent().setSource(fp.getFile(0), config);
 
 			final String msg = " Please rename your files or disable file stitching.";
 
 			// TODO need a new UsedFiles interface..
 			final int nPixelsFiles = 1;
 //	      getParent().getUsedFiles().length - getParent().getUsedFiles(true).length;
-			if (nPixelsFiles > 1 || fp.getFiles().length == 1) {
+			if (nPixelsFiles > 1 || fp.getFileCount() == 1) {
 				noStitch = true;
 				return;
 			}
@@ -284,27 +297,12 @@ public class FileStitcher extends AbstractReaderFilter {
 					(patternIds ? "file pattern" : "filename") + " (" + source + "): " +
 					fp.getErrorMessage() + msg);
 			}
-			final String[] files = fp.getFiles();
-
-			if (files == null) {
+			if (fp.getFileCount() == 0) {
 				throw new FormatException("No files matching pattern (" +
 					fp.getPattern() + "). " + msg);
 			}
 
-			for (int i = 0; i < files.length; i++) {
-				final String file = files[i];
-
-				// TODO remove this when virtual handle is in use
-				// HACK: skip file existence check for fake files
-				if (file.toLowerCase().endsWith(".fake")) continue;
-
-				if (!new Location(getContext(), file).exists()) {
-					throw new FormatException("File #" + i + " (" + file +
-						") does not exist.");
-				}
-			}
-
-			this.files = files;
+			checkFiles(fp);
 			pattern = fp;
 		}
 		catch (final IOException e) {
@@ -405,6 +403,77 @@ public class FileStitcher extends AbstractReaderFilter {
 		return 3.0;
 	}
 
+	// -- Helper methods --
+
+	/**
+	 * Verifies that every file of the given pattern exists. File names are
+	 * computed on demand and checked in parallel batches, so the full listing
+	 * is never held in memory, and the check stops at the first batch with a
+	 * missing file.
+	 */
+	private void checkFiles(final FilePattern fp) throws FormatException,
+		IOException
+	{
+		final long count = fp.getFileCount();
+		final int threads = (int) Math.max(1, Math.min(Runtime.getRuntime()
+			.availableProcessors(), (count + EXISTS_BATCH_SIZE - 1) /
+				EXISTS_BATCH_SIZE));
+		final List<Future<Long>> results = new ArrayList<>(threads);
+		for (long start = 0; start < count; start += (long) threads *
+			EXISTS_BATCH_SIZE)
+		{
+			results.clear();
+			for (int t = 0; t < threads; t++) {
+				final long first = start + (long) t * EXISTS_BATCH_SIZE;
+				if (first >= count) break;
+				final long last = Math.min(count, first + EXISTS_BATCH_SIZE);
+				if (threads == 1) {
+					final long missing = findMissing(fp, first, last);
+					if (missing >= 0) throw missingFile(fp, missing);
+					continue;
+				}
+				results.add(threadService.run(() -> findMissing(fp, first, last)));
+			}
+			for (final Future<Long> result : results) {
+				final long missing;
+				try {
+					missing = result.get();
+				}
+				catch (final InterruptedException e) {
+					throw new InterruptedIOException(e.getMessage());
+				}
+				catch (final ExecutionException e) {
+					throw new FormatException(e.getCause());
+				}
+				if (missing >= 0) throw missingFile(fp, missing);
+			}
+		}
+	}
+
+	/**
+	 * Returns the index of the first file in the given range which does not
+	 * exist, or -1 if all of them do.
+	 */
+	private long findMissing(final FilePattern fp, final long first,
+		final long last)
+	{
+		for (long i = first; i < last; i++) {
+			final String file = fp.getFile(i);
+
+			// TODO remove this when virtual handle is in use
+			// HACK: skip file existence check for fake files
+			if (file.toLowerCase().endsWith(".fake")) continue;
+
+			if (!new Location(getContext(), file).exists()) return i;
+		}
+		return -1;
+	}
+
+	private FormatException missingFile(final FilePattern fp, final long i) {
+		return new FormatException("File #" + i + " (" + fp.getFile(i) +
+			") does not exist.");
+	}
+
 	// -- Internal FormatReader API methods --
 
 	/**
@@ -412,8 +481,16 @@ public class FileStitcher extends AbstractReaderFilter {
 	 * desired global image index - at index 0, the corresponding local image
 	 * index
 	 */
-	private int[] computeFileIndex(int imageIndex) {
+	private int[] computeFileIndex(final int imageIndex) {
 		if (noStitch) return new int[] { imageIndex, 0 };
+		return computeFileIndex(imagesPerFile, imageIndex);
+	}
+
+	/**
+	 * As {@link #computeFileIndex(int)}, for files holding the given numbers of
+	 * images.
+	 */
+	static int[] computeFileIndex(final int[] imagesPerFile, int imageIndex) {
 		int fileIndex = 0;
 		while (imageIndex >= imagesPerFile[fileIndex]) {
 			imageIndex -= imagesPerFile[fileIndex++];
@@ -438,7 +515,6 @@ public class FileStitcher extends AbstractReaderFilter {
 		}
 
 		readers = null;
-		files = null;
 		pattern = null;
 
 		noStitch = false;
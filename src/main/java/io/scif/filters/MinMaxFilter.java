@@ -31,8 +31,8 @@
 package io.scif.filters;
 
 import io.scif.FormatException;
+import io.scif.ImageLayout;
 import io.scif.ImageMetadata;
-import io.scif.Metadata;
 import io.scif.Plane;
 import io.scif.config.SCIFIOConfig;
 import io.scif.util.FormatTools;
@@ -269,24 +269,34 @@ public class MinMaxFilter extends AbstractReaderFilter {
 		if (buf == null) return;
 		initMinMax();
 
-		final Metadata m = getMetadata();
-		final ImageMetadata iMeta = m.get(imageIndex);
-		final int pixelType = iMeta.getPixelType();
-		final int bpp = FormatTools.getBytesPerPixel(pixelType);
-		final long planeSize = iMeta.getPlaneSize();
+		final ImageLayout layout = getMetadata().get(imageIndex).getLayout();
+		final int pixelType = layout.getPixelType();
+		final int bpp = layout.getBytesPerPixel();
+		final long planeSize = layout.getPlaneSize();
 		// check whether min/max values have already been computed for this
 		// plane
 		// and that the buffer requested is actually the entire plane
 		if (len == planeSize &&
 			!Double.isNaN(planeMin[imageIndex][(int) planeIndex])) return;
 
-		final boolean little = iMeta.isLittleEndian();
+		final boolean little = layout.isLittleEndian();
 
 		final int pixels = len / bpp;
 
-		// populate the plane min/max to default values
-		planeMin[imageIndex][(int) planeIndex] = Double.POSITIVE_INFINITY;
-		planeMax[imageIndex][(int) planeIndex] = Double.NEGATIVE_INFINITY;
+		// look up the min/max arrays of each planar axis once per plane
+		final int planarAxes = layout.getPlanarAxisCount();
+		final long[] lengths = layout.getAxesLengthsPlanar();
+		final double[][] axisMin = new double[planarAxes][];
+		final double[][] axisMax = new double[planarAxes][];
+		for (int axis = 0; axis < planarAxes; axis++) {
+			final AxisType type = layout.getAxisType(axis);
+			axisMin[axis] = planarAxisMin.get(imageIndex).get(type);
+			axisMax[axis] = planarAxisMax.get(imageIndex).get(type);
+		}
+		final int[] position = new int[planarAxes];
+
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
 
 		final boolean signed = FormatTools.isSigned(pixelType);
 		final long threshold = (long) Math.pow(2, bpp * 8 - 1);
@@ -307,30 +317,26 @@ public class MinMaxFilter extends AbstractReaderFilter {
 			}
 
 			// Update the appropriate planar axis min/max if necessary
-			final long[] planarPositions =
-				FormatTools.rasterToPosition(iMeta.getAxesLengthsPlanar(), i);
-
-			for (int axis = 0; axis < planarPositions.length; axis++) {
-				final AxisType type = iMeta.getAxis(axis).type();
-				final double[] planarMin = planarAxisMin.get(imageIndex).get(type);
-				if (planarMin[(int) planarPositions[axis]] > v) {
-					planarMin[(int) planarPositions[axis]] = v;
-				}
-				final double[] planarMax = planarAxisMax.get(imageIndex).get(type);
-				if (planarMax[(int) planarPositions[axis]] < v) {
-					planarMax[(int) planarPositions[axis]] = v;
-				}
+			for (int axis = 0; axis < planarAxes; axis++) {
+				final int p = position[axis];
+				if (axisMin[axis][p] > v) axisMin[axis][p] = v;
+				if (axisMax[axis][p] < v) axisMax[axis][p] = v;
 			}
 
 			// Update the plane min/max if necessary
-			if (v > planeMax[imageIndex][(int) planeIndex]) {
-				planeMax[imageIndex][(int) planeIndex] = v;
-			}
-			if (v < planeMin[imageIndex][(int) planeIndex]) {
-				planeMin[imageIndex][(int) planeIndex] = v;
+			if (v > max) max = v;
+			if (v < min) min = v;
+
+			// Step to the position of the next pixel
+			for (int axis = 0; axis < planarAxes; axis++) {
+				if (++position[axis] < lengths[axis] || axis == planarAxes - 1) break;
+				position[axis] = 0;
 			}
 		}
 
+		planeMin[imageIndex][(int) planeIndex] = min;
+		planeMax[imageIndex][(int) planeIndex] = max;
+
 		// Set the number of planes complete for this image
 		minMaxDone[imageIndex] =
 			Math.max(minMaxDone[imageIndex], (int) planeIndex + 1);
@@ -32,6 +32,7 @@ package io.scif.filters;
 
 import io.scif.ByteArrayPlane;
 import io.scif.FormatException;
+import io.scif.ImageLayout;
 import io.scif.Metadata;
 import io.scif.Plane;
 import io.scif.config.SCIFIOConfig;
@@ -105,21 +106,22 @@ public class PlaneSeparator extends AbstractReaderFilter {
 		final long originalCount = getParent().getPlaneCount(imageIndex);
 
 		if (planeCount == originalCount) return planeIndex;
-		final long[] coords =
-			FormatTools.rasterToPosition(imageIndex, planeIndex, this);
 		int offset = 0;
 		if (PlaneSeparatorMetadata.class.isAssignableFrom(getMetadata().getClass()))
 		{
 			offset = ((PlaneSeparatorMetadata) getMetadata()).offset();
 		}
-		final long[] originalCoords = new long[coords.length - offset];
-		final long[] lengths = new long[coords.length - offset];
-		for (int i = 0; i < originalCoords.length; i++) {
-			originalCoords[i] = coords[i + offset];
-			lengths[i] =
-				getMetadata().get(imageIndex).getAxesLengthsNonPlanar()[i + offset];
+		// rasterize the position along the axes which were not split out
+		final ImageLayout layout = getMetadata().get(imageIndex).getLayout();
+		long originalIndex = 0;
+		long stride = 1;
+		for (int axis = layout.getPlanarAxisCount() + offset; axis < layout
+			.getAxisCount(); axis++)
+		{
+			originalIndex += stride * layout.getPosition(planeIndex, axis);
+			stride *= layout.getAxisLength(axis);
 		}
-		return FormatTools.positionToRaster(lengths, originalCoords);
+		return originalIndex;
 	}
 
 	// -- AbstractReaderFilter API Methods --
@@ -30,9 +30,14 @@
 
 package io.scif.filters;
 
+import io.scif.FormatException;
 import io.scif.Metadata;
+import io.scif.Plane;
 import io.scif.Reader;
+import io.scif.config.SCIFIOConfig;
+import io.scif.services.MetricsService;
 
+import java.io.IOException;
 import java.util.Set;
 
 /**
@@ -46,10 +51,24 @@ public class ReaderFilter extends AbstractReaderFilter implements
 	MasterFilter<Reader>
 {
 
+	// -- Constants --
+
+	/** Start time returned by {@link #startTimer()} when not collecting. */
+	private static final long NOT_TIMED = Long.MIN_VALUE;
+
 	// -- Fields --
 
 	private final MasterFilterHelper<Reader> fHelper;
 
+	/** Service collecting openPlane latencies, resolved on first use. */
+	private MetricsService metrics;
+
+	/**
+	 * Whether {@link #metrics} has been looked up, so that an absent service is
+	 * not looked up again on every openPlane.
+	 */
+	private boolean metricsResolved;
+
 	// -- Constructor --
 
 	/**
@@ -104,4 +123,72 @@ public class ReaderFilter extends AbstractReaderFilter implements
 	public Metadata getMetadata() {
 		return fHelper.getParent().getMetadata();
 	}
+
+	@Override
+	public Plane openPlane(final int imageIndex, final long planeIndex,
+		final SCIFIOConfig config) throws FormatException, IOException
+	{
+		final long start = startTimer();
+		final Plane plane = super.openPlane(imageIndex, planeIndex, config);
+		stopTimer(start);
+		return plane;
+	}
+
+	@Override
+	public Plane openPlane(final int imageIndex, final long planeIndex,
+		final long[] planeMin, final long[] planeMax, final SCIFIOConfig config)
+		throws FormatException, IOException
+	{
+		final long start = startTimer();
+		final Plane plane =
+			super.openPlane(imageIndex, planeIndex, planeMin, planeMax, config);
+		stopTimer(start);
+		return plane;
+	}
+
+	@Override
+	public Plane openPlane(final int imageIndex, final long planeIndex,
+		final Plane plane, final SCIFIOConfig config) throws FormatException,
+		IOException
+	{
+		final long start = startTimer();
+		final Plane p = super.openPlane(imageIndex, planeIndex, plane, config);
+		stopTimer(start);
+		return p;
+	}
+
+	@Override
+	public Plane openPlane(final int imageIndex, final long planeIndex,
+		final Plane plane, final long[] planeMin, final long[] planeMax,
+		final SCIFIOConfig config) throws FormatException, IOException
+	{
+		final long start = startTimer();
+		final Plane p =
+			super.openPlane(imageIndex, planeIndex, plane, planeMin, planeMax,
+				config);
+		stopTimer(start);
+		return p;
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * @return The current time in nanoseconds, or {@link #NOT_TIMED} if metrics
+	 *         are not being collected.
+	 */
+	private long startTimer() {
+		if (!metricsResolved) {
+			metrics = getContext().getService(MetricsService.class);
+			metricsResolved = true;
+		}
+		return metrics != null && metrics.isEnabled() ? System.nanoTime()
+			: NOT_TIMED;
+	}
+
+	/** Records the openPlane latency for this reader's format. */
+	private void stopTimer(final long start) {
+		if (start == NOT_TIMED) return;
+		metrics.time(MetricsService.OPEN_PLANE_PREFIX + getFormatName(), System
+			.nanoTime() - start);
+	}
 }
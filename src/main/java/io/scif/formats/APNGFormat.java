@@ -44,7 +44,9 @@ import io.scif.FormatException;
 import io.scif.ImageMetadata;
 import io.scif.Plane;
 import io.scif.Translator;
-import io.scif.common.DataTools;
+import io.scif.codec.CodecOptions;
+import io.scif.codec.CodecService;
+import io.scif.codec.ZlibCodec;
 import io.scif.config.SCIFIOConfig;
 import io.scif.gui.AWTImageTools;
 import io.scif.gui.BufferedImageReader;
@@ -61,10 +63,14 @@ import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.zip.CRC32;
-import java.util.zip.DeflaterOutputStream;
 
 import javax.imageio.ImageIO;
 
@@ -74,6 +80,7 @@ import net.imglib2.display.ColorTable8;
 
 import org.scijava.Priority;
 import org.scijava.plugin.Plugin;
+import org.scijava.thread.ThreadService;
 import org.scijava.util.Bytes;
 
 /**
@@ -724,6 +731,19 @@ public class APNGFormat extends AbstractFormat {
 	 */
 	public static class Writer extends AbstractWriter<Metadata> {
 
+		// -- Constants --
+
+		// PNG scanline filter types
+		private static final int FILTER_NONE = 0;
+
+		private static final int FILTER_SUB = 1;
+
+		private static final int FILTER_UP = 2;
+
+		private static final int FILTER_AVERAGE = 3;
+
+		private static final int FILTER_PAETH = 4;
+
 		// -- Fields --
 
 		// Number of frames written
@@ -738,6 +758,20 @@ public class APNGFormat extends AbstractFormat {
 		// ordering
 		private int nextSequenceNumber;
 
+		/** Compresses the filtered scanlines of each frame. */
+		private ZlibCodec zlib;
+
+		/** Deflate settings for each frame. */
+		private CodecOptions frameOptions;
+
+		private ThreadService threadService;
+
+		/** Number of frames to filter and compress concurrently. */
+		private int threads;
+
+		/** Frames being compressed ahead of the ordered write. */
+		private Deque<PendingFrame> pending;
+
 		// -- AbstractWriter Methods --
 
 		@Override
@@ -771,6 +805,22 @@ public class APNGFormat extends AbstractFormat {
 			FormatException
 		{
 			super.setDest(out, imageIndex, config);
+
+			// Movies are compressed a frame per thread; a single image is
+			// deflated in parallel chunks instead.
+			zlib = getContext().getService(CodecService.class).getCodec(
+				ZlibCodec.class);
+			frameOptions = new CodecOptions(getCodecOptions());
+			threadService = getContext().getService(ThreadService.class);
+			threads = 1;
+			if (threadService != null &&
+				getMetadata().get(imageIndex).getPlaneCount() > 1)
+			{
+				threads = Math.max(1, frameOptions.compressionThreads);
+				frameOptions.compressionThreads = 1;
+			}
+			pending = new ArrayDeque<>();
+
 			if (out.length() == 0) {
 				final int width =
 					(int) getMetadata().get(imageIndex).getAxisLength(Axes.X);
@@ -838,15 +888,33 @@ public class APNGFormat extends AbstractFormat {
 					"APNGWriter does not yet support saving image tiles.");
 			}
 
-			// write the data for this frame
+			// write the data for this frame; the first frame is also the
+			// default image
 
-			if (numFrames == 0) {
-				// This is the first frame, and also the default image
-				writePixels(imageIndex, "IDAT", plane, planeMin, planeMax);
+			final byte[] scanlines = getScanlines(imageIndex, plane);
+			final int height =
+				(int) getMetadata().get(imageIndex).getAxisLength(Axes.Y);
+			final int pixelBytes =
+				(int) (getMetadata().get(imageIndex).getAxisLength(Axes.CHANNEL) *
+					FormatTools.getBytesPerPixel(getMetadata().get(imageIndex)
+						.getPixelType()));
+			// as recommended for palette images, indices are not filtered
+			final boolean adaptive = !(getColorModel() instanceof IndexColorModel);
+			final boolean first = numFrames == 0;
+
+			if (threads <= 1) {
+				writeFrame(planeIndex, first, zlib.compress(filter(scanlines,
+					scanlines.length / height, pixelBytes, adaptive), frameOptions));
 			}
 			else {
-				writeFCTL(planeIndex);
-				writePixels(imageIndex, "fdAT", plane, planeMin, planeMax);
+				while (pending.size() >= threads || !pending.isEmpty() &&
+					pending.peek().data.isDone())
+				{
+					writePending();
+				}
+				pending.add(new PendingFrame(planeIndex, first, threadService.run(
+					() -> zlib.compress(filter(scanlines, scanlines.length / height,
+						pixelBytes, adaptive), frameOptions))));
 			}
 			numFrames++;
 		}
@@ -866,13 +934,32 @@ public class APNGFormat extends AbstractFormat {
 
 		@Override
 		public void close(final boolean fileOnly) throws IOException {
-			if (getStream() != null) {
-				writeFooter();
+			try {
+				if (getStream() != null) {
+					while (pending != null && !pending.isEmpty()) {
+						writePending();
+					}
+					writeFooter();
+				}
+			}
+			catch (final FormatException e) {
+				throw new IOException(e);
+			}
+			finally {
+				if (pending != null) {
+					for (final PendingFrame frame : pending) {
+						frame.data.cancel(true);
+					}
+				}
+				super.close(fileOnly);
+				numFrames = 0;
+				numFramesPointer = 0;
+				nextSequenceNumber = 0;
+				zlib = null;
+				frameOptions = null;
+				threadService = null;
+				pending = null;
 			}
-			super.close(fileOnly);
-			numFrames = 0;
-			numFramesPointer = 0;
-			nextSequenceNumber = 0;
 		}
 
 		// -- Helper Methods --
@@ -941,88 +1028,202 @@ public class APNGFormat extends AbstractFormat {
 			getStream().writeInt(crc(b));
 		}
 
-		private void writePixels(final int imageIndex, final String chunk,
-			final Plane plane, final long[] planeMin, final long[] planeMax)
-			throws FormatException, IOException
-		{
+		/**
+		 * Converts a plane to PNG scanlines, without their filter type bytes:
+		 * interleaved, big-endian and unsigned.
+		 */
+		private byte[] getScanlines(final int imageIndex, final Plane plane) {
 			final byte[] stream = plane.getBytes();
 
-			final long rgbCCount =
-				getMetadata().get(imageIndex).getAxisLength(Axes.CHANNEL);
+			final int rgbCCount =
+				(int) getMetadata().get(imageIndex).getAxisLength(Axes.CHANNEL);
 			final boolean interleaved =
 				plane.getImageMetadata().getInterleavedAxisCount() > 0;
+			final boolean little = getMetadata().get(0).isLittleEndian();
 
 			final int pixelType = getMetadata().get(imageIndex).getPixelType();
 			final boolean signed = FormatTools.isSigned(pixelType);
 
-			if (!SCIFIOMetadataTools.wholePlane(imageIndex, getMetadata(), planeMin,
-				planeMax))
-			{
-				throw new FormatException("APNGWriter does not support writing tiles.");
-			}
-
 			final int width =
 				(int) getMetadata().get(imageIndex).getAxisLength(Axes.X);
 			final int height =
 				(int) getMetadata().get(imageIndex).getAxisLength(Axes.Y);
+			final int bytesPerPixel = stream.length / (width * height * rgbCCount);
 
-			final ByteArrayOutputStream s = new ByteArrayOutputStream();
-			s.write(chunk.getBytes());
-			if (chunk.equals("fdAT")) {
-				s.write(Bytes.fromInt(nextSequenceNumber++, false));
-			}
-			final DeflaterOutputStream deflater = new DeflaterOutputStream(s);
-			final long planeSize = stream.length / rgbCCount;
-			final int rowLen = stream.length / height;
-			final int bytesPerPixel =
-				stream.length / (int) (width * height * rgbCCount);
-			final byte[] rowBuf = new byte[rowLen];
-			for (int i = 0; i < height; i++) {
-				deflater.write(0);
-				if (interleaved) {
-					if (getMetadata().get(0).isLittleEndian()) {
-						for (int col = 0; col < width * rgbCCount; col++) {
-							final int offset =
-								(int) (i * rgbCCount * width + col) * bytesPerPixel;
-							final int pixel =
-								Bytes.toInt(stream, offset, bytesPerPixel,
-									getMetadata().get(0).isLittleEndian());
-							Bytes.unpack(pixel, rowBuf, col * bytesPerPixel,
-								bytesPerPixel, false);
-						}
-					}
-					else System.arraycopy(stream, i * rowLen, rowBuf, 0, rowLen);
+			final byte[] rows = new byte[stream.length];
+			if (interleaved) {
+				if (!little || bytesPerPixel == 1) {
+					System.arraycopy(stream, 0, rows, 0, rows.length);
 				}
 				else {
-					final int max = (int) Math.pow(2, bytesPerPixel * 8 - 1);
-					for (int col = 0; col < width; col++) {
-						for (int c = 0; c < rgbCCount; c++) {
-							final int offset =
-								(int) (c * planeSize + (i * width + col) * bytesPerPixel);
-							int pixel =
-								Bytes.toInt(stream, offset, bytesPerPixel,
-									getMetadata().get(0).isLittleEndian());
-							if (signed) {
-								if (pixel < max) pixel += max;
-								else pixel -= max;
-							}
-							final int output = (int) (col * rgbCCount + c) * bytesPerPixel;
-							DataTools
-								.unpackBytes(pixel, rowBuf, output, bytesPerPixel, false);
+					for (int i = 0; i < rows.length; i += bytesPerPixel) {
+						for (int b = 0; b < bytesPerPixel; b++) {
+							rows[i + b] = stream[i + bytesPerPixel - 1 - b];
 						}
 					}
 				}
-				deflater.write(rowBuf);
+				return rows;
 			}
-			deflater.finish();
-			final byte[] b = s.toByteArray();
 
-			// write chunk length
-			getStream().writeInt(b.length - 4);
-			getStream().write(b);
+			// interleave the channels, shifting signed values by half their range,
+			// i.e. flipping the most significant bit
+			final int planeSize = stream.length / rgbCCount;
+			final int pixelBytes = rgbCCount * bytesPerPixel;
+			for (int c = 0; c < rgbCCount; c++) {
+				int src = c * planeSize;
+				for (int dest = c * bytesPerPixel; dest < rows.length; dest +=
+					pixelBytes)
+				{
+					for (int b = 0; b < bytesPerPixel; b++) {
+						rows[dest + b] = stream[src + (little ? bytesPerPixel - 1 - b : b)];
+					}
+					if (signed) rows[dest] ^= 0x80;
+					src += bytesPerPixel;
+				}
+			}
+			return rows;
+		}
 
-			// write checksum
-			getStream().writeInt(crc(b));
+		/**
+		 * Prefixes each scanline with its filter type and filters it. With
+		 * adaptive filtering, each row uses the filter giving the minimum sum of
+		 * absolute differences, taken as signed bytes; otherwise rows are left
+		 * unfiltered.
+		 *
+		 * @param rows unfiltered scanlines
+		 * @param rowLength length of a scanline, in bytes
+		 * @param pixelBytes length of a complete pixel, in bytes
+		 * @param adaptive whether to select a filter for each row
+		 */
+		private static byte[] filter(final byte[] rows, final int rowLength,
+			final int pixelBytes, final boolean adaptive)
+		{
+			final int height = rows.length / rowLength;
+			final byte[] filtered = new byte[height * (rowLength + 1)];
+			final int bpp = Math.max(1, pixelBytes);
+			for (int row = 0; row < height; row++) {
+				final int in = row * rowLength;
+				final int out = row * (rowLength + 1) + 1;
+				if (!adaptive) {
+					System.arraycopy(rows, in, filtered, out, rowLength);
+					continue;
+				}
+
+				// sum the absolute differences of all filters in one pass
+				final int prior = in - rowLength;
+				long none = 0, sub = 0, up = 0, average = 0, paeth = 0;
+				for (int i = 0; i < rowLength; i++) {
+					final int x = rows[in + i] & 0xff;
+					final int a = i < bpp ? 0 : rows[in + i - bpp] & 0xff;
+					final int b = row == 0 ? 0 : rows[prior + i] & 0xff;
+					final int c = i < bpp || row == 0 ? 0 : rows[prior + i - bpp] & 0xff;
+					none += Math.abs((byte) x);
+					sub += Math.abs((byte) (x - a));
+					up += Math.abs((byte) (x - b));
+					average += Math.abs((byte) (x - ((a + b) >> 1)));
+					paeth += Math.abs((byte) (x - paethPredictor(a, b, c)));
+				}
+				int type = FILTER_NONE;
+				long best = none;
+				if (sub < best) {
+					type = FILTER_SUB;
+					best = sub;
+				}
+				if (up < best) {
+					type = FILTER_UP;
+					best = up;
+				}
+				if (average < best) {
+					type = FILTER_AVERAGE;
+					best = average;
+				}
+				if (paeth < best) type = FILTER_PAETH;
+
+				filtered[out - 1] = (byte) type;
+				for (int i = 0; i < rowLength; i++) {
+					final int x = rows[in + i] & 0xff;
+					final int a = i < bpp ? 0 : rows[in + i - bpp] & 0xff;
+					final int b = row == 0 ? 0 : rows[prior + i] & 0xff;
+					final int c = i < bpp || row == 0 ? 0 : rows[prior + i - bpp] & 0xff;
+					final int predictor;
+					switch (type) {
+						case FILTER_SUB:
+							predictor = a;
+							break;
+						case FILTER_UP:
+							predictor = b;
+							break;
+						case FILTER_AVERAGE:
+							predictor = (a + b) >> 1;
+							break;
+						case FILTER_PAETH:
+							predictor = paethPredictor(a, b, c);
+							break;
+						default:
+							predictor = 0;
+					}
+					filtered[out + i] = (byte) (x - predictor);
+				}
+			}
+			return filtered;
+		}
+
+		private static int paethPredictor(final int a, final int b, final int c) {
+			final int p = a + b - c;
+			final int pa = Math.abs(p - a);
+			final int pb = Math.abs(p - b);
+			final int pc = Math.abs(p - c);
+			if (pa <= pb && pa <= pc) return a;
+			if (pb <= pc) return b;
+			return c;
+		}
+
+		/** Writes the oldest frame being compressed, once it is done. */
+		private void writePending() throws FormatException, IOException {
+			final PendingFrame frame = pending.poll();
+			final byte[] data;
+			try {
+				data = frame.data.get();
+			}
+			catch (final InterruptedException e) {
+				throw new InterruptedIOException("Interrupted while compressing frame");
+			}
+			catch (final ExecutionException e) {
+				if (e.getCause() instanceof FormatException) {
+					throw (FormatException) e.getCause();
+				}
+				throw new FormatException(e.getCause());
+			}
+			writeFrame(frame.planeIndex, frame.first, data);
+		}
+
+		/**
+		 * Writes the compressed data of a frame: as IDAT for the first frame,
+		 * and otherwise as fdAT following the frame's fcTL. Sequence numbers and
+		 * CRCs are assigned here, in write order.
+		 */
+		private void writeFrame(final long planeIndex, final boolean first,
+			final byte[] data) throws IOException
+		{
+			if (!first) writeFCTL(planeIndex);
+
+			final byte[] type = (first ? "IDAT" : "fdAT").getBytes();
+			final CRC32 crc = new CRC32();
+			crc.update(type);
+			if (first) {
+				getStream().writeInt(data.length);
+				getStream().write(type);
+			}
+			else {
+				final byte[] sequence = Bytes.fromInt(nextSequenceNumber++, false);
+				crc.update(sequence);
+				getStream().writeInt(data.length + sequence.length);
+				getStream().write(type);
+				getStream().write(sequence);
+			}
+			crc.update(data);
+			getStream().write(data);
+			getStream().writeInt((int) crc.getValue());
 		}
 
 		private void writeFooter() throws IOException {
@@ -1045,6 +1246,26 @@ public class APNGFormat extends AbstractFormat {
 				.getActl().getNumPlays(), b, 8, 4, false);
 			getStream().writeInt(crc(b));
 		}
+
+		// -- Helper classes --
+
+		/** A frame being compressed, with what is needed to write it in order. */
+		private static final class PendingFrame {
+
+			private final long planeIndex;
+
+			private final boolean first;
+
+			private final Future<byte[]> data;
+
+			private PendingFrame(final long planeIndex, final boolean first,
+				final Future<byte[]> data)
+			{
+				this.planeIndex = planeIndex;
+				this.first = first;
+				this.data = data;
+			}
+		}
 	}
 
 	/**
@@ -48,6 +48,7 @@ import io.scif.UnsupportedCompressionException;
 import io.scif.codec.BitBuffer;
 import io.scif.codec.CodecOptions;
 import io.scif.codec.CodecService;
+import io.scif.codec.CompressionType;
 import io.scif.codec.JPEGCodec;
 import io.scif.codec.MSRLECodec;
 import io.scif.codec.MSVideoCodec;
@@ -61,8 +62,16 @@ import io.scif.util.SCIFIOMetadataTools;
 
 import java.awt.image.IndexColorModel;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import net.imagej.axis.Axes;
 import net.imglib2.display.ColorTable;
@@ -70,6 +79,7 @@ import net.imglib2.display.ColorTable8;
 
 import org.scijava.Priority;
 import org.scijava.plugin.Plugin;
+import org.scijava.thread.ThreadService;
 
 /**
  * AVIReader is the file format reader for AVI files. Much of this code was
@@ -761,7 +771,10 @@ public class AVIFormat extends AbstractFormat {
 									while (type.startsWith("ix") || type.endsWith("tx") ||
 										type.equals("JUNK"))
 									{
+										// NB: OpenDML ix## indices may end the movi LIST
 										getSource().skipBytes(size);
+										spos = getSource().getFilePointer();
+										if (spos + 8 >= getSource().length()) return;
 										readTypeAndSize();
 									}
 
@@ -1087,6 +1100,13 @@ public class AVIFormat extends AbstractFormat {
 
 		// -- Constants --
 
+		public static final String COMPRESSION_UNCOMPRESSED =
+			CompressionType.UNCOMPRESSED.getCompression();
+
+		/** Motion JPEG: each frame is a baseline JPEG image. */
+		public static final String COMPRESSION_JPEG =
+			CompressionType.JPEG.getCompression();
+
 		private static final long SAVE_MOVI = 4092;
 
 		private static final long SAVE_FILE_SIZE = 4;
@@ -1098,29 +1118,57 @@ public class AVIFormat extends AbstractFormat {
 
 		private static final long SAVE_STRN_POS = SAVE_STRF_SIZE + 1068;
 
-		private static final long SAVE_JUNK_SIG = SAVE_STRN_POS + 24;
+		// location of the OpenDML super index, which follows strn at the end of
+		// the strl LIST
+		private static final long SAVE_INDX = SAVE_STRN_POS + 24;
+
+		// maximum number of RIFF segments, i.e. of entries in the super index
+		private static final int MAX_SEGMENTS = 128;
+
+		// length of the super index CHUNK - not including the first 8 bytes
+		private static final int INDX_SIZE = 24 + 16 * MAX_SEGMENTS;
+
+		// location of the OpenDML extended header LIST, which follows strl
+		private static final long SAVE_ODML = SAVE_INDX + 8 + INDX_SIZE;
+
+		// length of the dmlh sub-CHUNK - not including the first 8 bytes
+		private static final int DMLH_SIZE = 248;
+
+		private static final long SAVE_JUNK_SIG = SAVE_ODML + 20 + DMLH_SIZE;
 
 		// location of length of CHUNK with first LIST - not including first 8
 		// bytes with LIST and size. JUNK follows the end of this CHUNK
 		private static final long SAVE_LIST1_SIZE = 16;
 
 		// location of length of CHUNK with second LIST - not including first 8
-		// bytes with LIST and size. Note that saveLIST1subSize = saveLIST1Size
-		// +
-		// 76, and that the length size written to saveLIST2Size is 76 less than
-		// that written to saveLIST1Size. JUNK follows the end of this CHUNK.
+		// bytes with LIST and size. The odml LIST follows the end of this CHUNK.
 		private static final long SAVE_LIST1_SUBSIZE = 92;
 
 		private static final long FRAME_OFFSET = 48;
 
 		private static final long FRAME_OFFSET_2 = 140;
 
-		private static final long PADDING_BYTES = 4076 - SAVE_JUNK_SIG;
+		// locations of dwSuggestedBufferSize in avih and strh
+		private static final long BUFFER_SIZE_OFFSET = 60;
+
+		private static final long BUFFER_SIZE_OFFSET_2 = 144;
+
+		// location of biCompression in strf
+		private static final long SAVE_COMPRESSION = 188;
+
+		private static final int PADDING_BYTES = (int) (4076 - SAVE_JUNK_SIG);
 
 		private static final long SAVE_LIST2_SIZE = 4088;
 
+		// size of the legacy 'AVI ' RIFF, and of each 'AVIX' RIFF that follows
+		private static final long MAX_RIFF_SIZE = 1L << 30;
+
 		private static final String DATA_SIGNATURE = "00db";
 
+		private static final String JPEG_SIGNATURE = "00dc";
+
+		private static final int AVIIF_KEYFRAME = 0x10;
+
 		// -- Fields --
 
 		private int planesWritten = 0;
@@ -1131,19 +1179,66 @@ public class AVIFormat extends AbstractFormat {
 
 		private int microSecPerFrame;
 
-		private Vector<Long> savedbLength;
+		/** Whether frames are compressed as Motion JPEG. */
+		private boolean jpeg;
+
+		/** CHUNK identifier of the frames. */
+		private String signature;
+
+		/** File offset of the data of each frame written so far. */
+		private long[] frameOffsets;
+
+		/** Length of the data of each frame written so far. */
+		private int[] frameLengths;
+
+		/** Length of the largest frame written so far. */
+		private int maxFrameLength;
+
+		/** Location of the current RIFF segment. */
+		private long riffPos;
+
+		/** Location of the movi LIST of the current RIFF segment. */
+		private long moviPos;
+
+		/** Index of the first frame of the current RIFF segment. */
+		private int segmentStart;
+
+		/** Number of RIFF segments finished so far. */
+		private int segments;
+
+		/** Location, length and frame count of each segment's ix00 index. */
+		private long[] indexOffsets;
+
+		private int[] indexLengths;
+
+		private int[] indexFrames;
+
+		private long maxRiffSize = MAX_RIFF_SIZE;
+
+		/** Frame assembled from tiles, in the layout written to the file. */
+		private byte[] frame;
+
+		/** Index of the plane in {@link #frame}, or -1 if none. */
+		private long bufferedPlane = -1;
 
-		private long idx1Pos;
+		private JPEGCodec jpegCodec;
 
-		private long endPos;
+		private ThreadService threadService;
 
-		private long saveidx1Length;
+		/** Number of Motion JPEG frames to encode concurrently. */
+		private int threads;
+
+		/** Layout of the frames given to the Motion JPEG codec. */
+		private CodecOptions jpegOptions;
+
+		/** Motion JPEG frames being encoded ahead of the ordered write. */
+		private Deque<Future<byte[]>> pending;
 
 		// -- AbstractWriter Methods --
 
 		@Override
 		protected String[] makeCompressionTypes() {
-			return new String[0];
+			return new String[] { COMPRESSION_UNCOMPRESSED, COMPRESSION_JPEG };
 		}
 
 		// -- Writer API Methods --
@@ -1159,112 +1254,62 @@ public class AVIFormat extends AbstractFormat {
 				plane.getImageMetadata().getInterleavedAxisCount() > 0;
 
 			checkParams(imageIndex, planeIndex, buf, planeMin, planeMax);
-			if (!SCIFIOMetadataTools.wholePlane(imageIndex, meta, planeMin, planeMax))
-			{
-				throw new FormatException(
-					"AVIWriter does not yet support saving image tiles.");
-			}
 
 			final int nChannels =
 				(int) plane.getImageMetadata().getAxisLength(Axes.CHANNEL);
+			final int xAxis = meta.get(imageIndex).getAxisIndex(Axes.X);
+			final int yAxis = meta.get(imageIndex).getAxisIndex(Axes.Y);
+			final int x = (int) planeMin[xAxis], y = (int) planeMin[yAxis], w =
+				(int) planeMax[xAxis], h = (int) planeMax[yAxis];
+			final boolean wholePlane =
+				SCIFIOMetadataTools.wholePlane(imageIndex, meta, planeMin, planeMax);
+
+			// Frames are written in the order their planes arrive; tiles of a
+			// plane are assembled into a frame until another plane is written.
+			if (planeIndex != bufferedPlane) {
+				flushFrame();
+				if (wholePlane && jpeg && threads <= 1) {
+					// the codec reads the plane in its own layout
+					final CodecOptions options = new CodecOptions(jpegOptions);
+					options.channels = nChannels;
+					options.interleaved = interleaved;
+					final byte[] data = jpegCodec.compress(buf, options);
+					writeFrame(data, data.length);
+					return;
+				}
+				if (frame == null) frame = new byte[bytesPerPixel * xDim * yDim];
+				else if (!wholePlane) Arrays.fill(frame, (byte) 0);
+				bufferedPlane = planeIndex;
+			}
 
 			// Write the data. Each 3-byte triplet in the bitmap array
-			// represents the
-			// relative intensities of blue, green, and red, respectively, for a
-			// pixel.
-			// The color bytes are in reverse order from the Windows convention.
-
-			final int width = xDim - xPad;
-			final int height = buf.length / (width * bytesPerPixel);
-
-			getStream().seek(idx1Pos);
-			getStream().writeBytes(DATA_SIGNATURE);
-			savedbLength.add(new Long(getStream().getFilePointer()));
-
-			// Write the data length
-			getStream().writeInt(bytesPerPixel * xDim * yDim);
-
-			final int rowPad = xPad * bytesPerPixel;
-
-			final byte[] rowBuffer = new byte[width * bytesPerPixel + rowPad];
-
-			for (int row = height - 1; row >= 0; row--) {
-				for (int col = 0; col < width; col++) {
-					int offset = row * width + col;
-					if (interleaved) offset *= nChannels;
-					final byte r = buf[offset];
-					if (nChannels > 1) {
-						final byte g = buf[offset + (interleaved ? 1 : width * height)];
-						byte b = 0;
-						if (nChannels > 2) {
-							b = buf[offset + (interleaved ? 2 : 2 * width * height)];
-						}
+			// represents the relative intensities of blue, green, and red,
+			// respectively, for a pixel. The color bytes are in reverse order
+			// from the Windows convention, and rows are stored bottom-up.
+			// Motion JPEG frames keep the pixel layout of the plane.
 
-						rowBuffer[col * bytesPerPixel] = b;
-						rowBuffer[col * bytesPerPixel + 1] = g;
+			final int stride = bytesPerPixel * xDim;
+			final int rowLength = nChannels * w;
+			for (int row = 0; row < h; row++) {
+				final int dest =
+					(jpeg ? y + row : yDim - 1 - y - row) * stride + x * bytesPerPixel;
+				if (nChannels == 1 || (jpeg && interleaved)) {
+					System.arraycopy(buf, row * rowLength, frame, dest, rowLength);
+					continue;
+				}
+				final int step = interleaved ? nChannels : 1;
+				for (int c = 0; c < nChannels; c++) {
+					int src = interleaved ? row * rowLength + c : (c * h + row) * w;
+					int index = dest + (jpeg ? c : bytesPerPixel - 1 - c);
+					for (int col = 0; col < w; col++) {
+						frame[index] = buf[src];
+						src += step;
+						index += bytesPerPixel;
 					}
-					rowBuffer[col * bytesPerPixel + bytesPerPixel - 1] = r;
 				}
-				getStream().write(rowBuffer);
 			}
 
-			planesWritten++;
-
-			// Write the idx1 CHUNK
-			// Write the 'idx1' signature
-			idx1Pos = getStream().getFilePointer();
-			getStream().seek(SAVE_LIST2_SIZE);
-			getStream().writeInt((int) (idx1Pos - (SAVE_LIST2_SIZE + 4)));
-
-			getStream().seek(idx1Pos);
-			getStream().writeBytes("idx1");
-
-			saveidx1Length = getStream().getFilePointer();
-
-			// Write the length of the idx1 CHUNK not including the idx1
-			// signature
-			getStream().writeInt(4 + (planesWritten * 16));
-
-			for (int z = 0; z < planesWritten; z++) {
-				// In the ckid field write the 4 character code to identify the
-				// chunk
-				// 00db or 00dc
-				getStream().writeBytes(DATA_SIGNATURE);
-				// Write the flags - select AVIIF_KEYFRAME
-				if (z == 0) getStream().writeInt(0x10);
-				else getStream().writeInt(0x00);
-
-				// AVIIF_KEYFRAME 0x00000010L
-				// The flag indicates key frames in the video sequence.
-				// Key frames do not need previous video information to be
-				// decompressed.
-				// AVIIF_NOTIME 0x00000100L The CHUNK does not influence video
-				// timing
-				// (for example a palette change CHUNK).
-				// AVIIF_LIST 0x00000001L Marks a LIST CHUNK.
-				// AVIIF_TWOCC 2L
-				// AVIIF_COMPUSE 0x0FFF0000L These bits are for compressor use.
-				getStream().writeInt((int) (savedbLength.get(z) - 4 - SAVE_MOVI));
-
-				// Write the offset (relative to the 'movi' field) to the
-				// relevant
-				// CHUNK. Write the length of the relevant CHUNK. Note that this
-				// length
-				// is also written at savedbLength
-				getStream().writeInt(bytesPerPixel * xDim * yDim);
-			}
-			endPos = getStream().getFilePointer();
-			getStream().seek(SAVE_FILE_SIZE);
-			getStream().writeInt((int) (endPos - (SAVE_FILE_SIZE + 4)));
-
-			getStream().seek(saveidx1Length);
-			getStream().writeInt((int) (endPos - (saveidx1Length + 4)));
-
-			// write the total number of planes
-			getStream().seek(FRAME_OFFSET);
-			getStream().writeInt(planesWritten);
-			getStream().seek(FRAME_OFFSET_2);
-			getStream().writeInt(planesWritten);
+			if (wholePlane) flushFrame();
 		}
 
 		@Override
@@ -1278,16 +1323,39 @@ public class AVIFormat extends AbstractFormat {
 		}
 
 		@Override
-		public void close() throws IOException {
-			super.close();
-			planesWritten = 0;
-			bytesPerPixel = 0;
-			xDim = yDim = zDim = tDim = xPad = 0;
-			microSecPerFrame = 0;
-			savedbLength = null;
-			idx1Pos = 0;
-			endPos = 0;
-			saveidx1Length = 0;
+		public void close(final boolean fileOnly) throws IOException {
+			try {
+				if (getStream() != null && frameOffsets != null) finish();
+			}
+			catch (final FormatException e) {
+				throw new IOException(e);
+			}
+			finally {
+				if (pending != null) {
+					for (final Future<byte[]> future : pending) {
+						future.cancel(true);
+					}
+				}
+				planesWritten = 0;
+				bytesPerPixel = 0;
+				xDim = yDim = zDim = tDim = xPad = 0;
+				microSecPerFrame = 0;
+				frameOffsets = null;
+				frameLengths = null;
+				maxFrameLength = 0;
+				segmentStart = 0;
+				segments = 0;
+				indexOffsets = null;
+				indexLengths = null;
+				indexFrames = null;
+				frame = null;
+				bufferedPlane = -1;
+				jpegCodec = null;
+				jpegOptions = null;
+				threadService = null;
+				pending = null;
+				super.close(fileOnly);
+			}
 		}
 
 		@Override
@@ -1296,32 +1364,70 @@ public class AVIFormat extends AbstractFormat {
 			IOException
 		{
 			super.setDest(out, imageIndex, config);
-			savedbLength = new Vector<>();
 
 			final Metadata meta = getMetadata();
 
+			jpeg = COMPRESSION_JPEG.equals(getCompression());
+			signature = jpeg ? JPEG_SIGNATURE : DATA_SIGNATURE;
+			frameOffsets = new long[64];
+			frameLengths = new int[64];
+			indexOffsets = new long[MAX_SEGMENTS];
+			indexLengths = new int[MAX_SEGMENTS];
+			indexFrames = new int[MAX_SEGMENTS];
+			riffPos = 0;
+			moviPos = SAVE_LIST2_SIZE - 4;
+			pending = new ArrayDeque<>();
+			threads = 1;
+			if (jpeg) {
+				jpegCodec =
+					getContext().getService(CodecService.class).getCodec(JPEGCodec.class);
+				threadService = getContext().getService(ThreadService.class);
+				if (threadService != null && getCodecOptions() != null) {
+					threads = Math.max(1, getCodecOptions().compressionThreads);
+				}
+			}
+
 			if (out.length() > 0) {
 				final RandomAccessInputStream in =
 					new RandomAccessInputStream(getContext(), meta.getDatasetName());
-				in.order(true);
-				in.seek(FRAME_OFFSET);
-				planesWritten = in.readInt();
-
-				in.seek(SAVE_FILE_SIZE);
-				endPos = in.readInt() + SAVE_FILE_SIZE + 4;
-
-				in.seek(SAVE_LIST2_SIZE);
-				idx1Pos = in.readInt() + SAVE_LIST2_SIZE + 4;
-				saveidx1Length = idx1Pos + 4;
-
-				if (planesWritten > 0) in.seek(saveidx1Length + 4);
-				for (int z = 0; z < planesWritten; z++) {
-					in.skipBytes(8);
-					savedbLength.add(in.readInt() + 4 + SAVE_MOVI);
-					in.skipBytes(4);
+				try {
+					in.order(true);
+					in.seek(SAVE_FILE_SIZE);
+					if (in.readInt() + SAVE_FILE_SIZE + 4 < in.length()) {
+						throw new FormatException(
+							"Cannot append to an AVI file with more than one RIFF segment.");
+					}
+					in.seek(SAVE_COMPRESSION);
+					if (in.readInt() != (jpeg ? JPEG : 0)) {
+						throw new FormatException("Cannot append " +
+							(jpeg ? "Motion JPEG" : "uncompressed") +
+							" frames to an AVI file with different compression.");
+					}
+
+					in.seek(FRAME_OFFSET);
+					planesWritten = in.readInt();
+					if (planesWritten > frameOffsets.length) {
+						frameOffsets = new long[planesWritten];
+						frameLengths = new int[planesWritten];
+					}
+
+					// read the frames back from the idx1 CHUNK, which follows movi
+					in.seek(SAVE_LIST2_SIZE);
+					in.seek(in.readInt() + SAVE_LIST2_SIZE + 12);
+					long end = SAVE_MOVI + 4;
+					for (int z = 0; z < planesWritten; z++) {
+						in.skipBytes(8);
+						frameOffsets[z] = in.readInt() + SAVE_MOVI + 8;
+						frameLengths[z] = in.readInt();
+						maxFrameLength = Math.max(maxFrameLength, frameLengths[z]);
+						end = frameOffsets[z] + frameLengths[z];
+					}
+					// new frames overwrite the indices, which are written on close
+					out.seek(end);
+				}
+				finally {
+					in.close();
 				}
-				in.close();
-				out.seek(idx1Pos);
 			}
 
 			out.order(true);
@@ -1336,13 +1442,24 @@ public class AVIFormat extends AbstractFormat {
 			bytesPerPixel = FormatTools.getBytesPerPixel(pixelType);
 			bytesPerPixel *= meta.get(imageIndex).getAxisLength(Axes.CHANNEL);
 
+			// DIB scan lines are padded to a multiple of 4 bytes
 			xPad = 0;
 			final int xMod = xDim % 4;
-			if (xMod != 0) {
+			if (xMod != 0 && !jpeg) {
 				xPad = 4 - xMod;
 				xDim += xPad;
 			}
 
+			if (jpeg) {
+				jpegOptions = new CodecOptions(getCodecOptions());
+				jpegOptions.width = xDim;
+				jpegOptions.height = yDim;
+				jpegOptions.channels = bytesPerPixel;
+				jpegOptions.bitsPerSample = 8;
+				jpegOptions.interleaved = true;
+				jpegOptions.signed = false;
+			}
+
 			byte[][] lut = null;
 
 			if (getColorModel() instanceof IndexColorModel) {
@@ -1466,7 +1583,8 @@ public class AVIFormat extends AbstractFormat {
 				// are
 				// sometimes used for uncompressed AVI videos: 'RGB ', 'RAW ',
 				// 0x00000000
-				out.writeBytes("DIB ");
+				// Motion JPEG streams use MJPG.
+				out.writeBytes(jpeg ? "MJPG" : "DIB ");
 
 				out.writeInt(0); // dwFlags
 
@@ -1586,20 +1704,22 @@ public class AVIFormat extends AbstractFormat {
 				// This must be set to 1.
 				out.writeShort(1);
 
-				final int bitsPerPixel = (bytesPerPixel == 3) ? 24 : 8;
+				final int bitsPerPixel = (jpeg || bytesPerPixel == 3) ? 24 : 8;
 
 				// biBitCount - number of bits per pixel #
 				// 0L for BI_RGB, uncompressed data as bitmap
 				out.writeShort((short) bitsPerPixel);
 
-				out.writeInt(0); // biSizeImage #
-				out.writeInt(0); // biCompression - compression type
+				// biCompression - compression type
+				out.writeInt(jpeg ? JPEG : 0);
+				// biSizeImage - size of a decompressed frame, 0 for BI_RGB
+				out.writeInt(jpeg ? 3 * xDim * yDim : 0);
 				// biXPelsPerMeter - horizontal resolution in pixels
 				out.writeInt(0);
 				// biYPelsPerMeter - vertical resolution in pixels per meter
 				out.writeInt(0);
 
-				final int nColors = 256;
+				final int nColors = jpeg ? 0 : 256;
 				out.writeInt(nColors);
 
 				// biClrImportant - specifies that the first x colors of the
@@ -1615,7 +1735,7 @@ public class AVIFormat extends AbstractFormat {
 				// Write the LUTa.getExtents()[1] color table entries here. They
 				// are
 				// written: blue byte, green byte, red byte, 0 byte
-				if (bytesPerPixel == 1) {
+				if (bytesPerPixel == 1 && !jpeg) {
 					if (lut != null) {
 						for (int i = 0; i < 256; i++) {
 							out.write(lut[2][i]);
@@ -1646,27 +1766,232 @@ public class AVIFormat extends AbstractFormat {
 				out.writeInt(16); // Write length of strn sub-CHUNK
 				out.writeBytes("FileAVI write  ");
 
-				out.seek(SAVE_LIST1_SIZE);
-				out.writeInt((int) (SAVE_JUNK_SIG - (SAVE_LIST1_SIZE + 4)));
-				out.seek(SAVE_LIST1_SUBSIZE);
-				out.writeInt((int) (SAVE_JUNK_SIG - (SAVE_LIST1_SUBSIZE + 4)));
-				out.seek(SAVE_JUNK_SIG);
-
-				// write a JUNK CHUNK for padding
-				out.writeBytes("JUNK");
-				out.writeInt((int) PADDING_BYTES);
-				for (int i = 0; i < PADDING_BYTES / 2; i++) {
-					out.writeShort((short) 0);
-				}
+				// write the OpenDML indices, and a JUNK CHUNK for padding
+				writeHeaderIndex();
+				out.seek(SAVE_JUNK_SIG + 8);
+				out.write(new byte[PADDING_BYTES]);
 
 				// Write the second LIST chunk, which contains the actual data
 				out.writeBytes("LIST");
 
 				out.writeInt(4); // For now write 0
 				out.writeBytes("movi"); // Write CHUNK type 'movi'
-				idx1Pos = out.getFilePointer();
 			}
 		}
+
+		// -- Helper methods --
+
+		/**
+		 * Sets the size at which the current RIFF is closed and an 'AVIX' RIFF
+		 * is started. Intended for testing.
+		 */
+		void setMaxRiffSize(final long maxRiffSize) {
+			this.maxRiffSize = maxRiffSize;
+		}
+
+		/** Writes the frame assembled from tiles, if any. */
+		private void flushFrame() throws FormatException, IOException {
+			if (bufferedPlane < 0) return;
+			bufferedPlane = -1;
+			if (!jpeg) {
+				writeFrame(frame, frame.length);
+			}
+			else if (threads <= 1) {
+				final byte[] data = jpegCodec.compress(frame, jpegOptions);
+				writeFrame(data, data.length);
+			}
+			else {
+				// encode ahead, while earlier frames are written in order
+				while (pending.size() >= threads ||
+					!pending.isEmpty() && pending.peek().isDone())
+				{
+					writePending();
+				}
+				final byte[] pixels = frame;
+				final CodecOptions options = jpegOptions;
+				pending.add(threadService.run(() -> jpegCodec.compress(pixels,
+					options)));
+				frame = null;
+			}
+		}
+
+		/** Writes the oldest frame being encoded, once it is done. */
+		private void writePending() throws FormatException, IOException {
+			final byte[] data;
+			try {
+				data = pending.poll().get();
+			}
+			catch (final InterruptedException e) {
+				throw new InterruptedIOException("Interrupted while encoding frame");
+			}
+			catch (final ExecutionException e) {
+				if (e.getCause() instanceof FormatException) {
+					throw (FormatException) e.getCause();
+				}
+				throw new FormatException(e.getCause());
+			}
+			writeFrame(data, data.length);
+		}
+
+		/**
+		 * Writes a frame CHUNK, first starting a new RIFF if the current one
+		 * would grow past {@link #maxRiffSize} along with its indices.
+		 */
+		private void writeFrame(final byte[] data, final int length)
+			throws FormatException, IOException
+		{
+			final RandomAccessOutputStream out = getStream();
+
+			// CHUNKs are word aligned; pad odd frames within the CHUNK
+			final int padded = length + (length & 1);
+			final int frames = planesWritten - segmentStart + 1;
+			long riffSize = out.getFilePointer() + 40 + padded + 8L * frames;
+			if (segments == 0) riffSize += 8 + 16L * frames;
+			if (riffSize - riffPos > maxRiffSize && frames > 1) startSegment();
+
+			if (planesWritten == frameOffsets.length) {
+				frameOffsets = Arrays.copyOf(frameOffsets, 2 * planesWritten);
+				frameLengths = Arrays.copyOf(frameLengths, 2 * planesWritten);
+			}
+			out.writeBytes(signature);
+			out.writeInt(padded);
+			frameOffsets[planesWritten] = out.getFilePointer();
+			frameLengths[planesWritten] = padded;
+			out.write(data, 0, length);
+			if (padded > length) out.write(0);
+
+			maxFrameLength = Math.max(maxFrameLength, padded);
+			planesWritten++;
+		}
+
+		/** Finishes the current RIFF and starts an OpenDML 'AVIX' RIFF. */
+		private void startSegment() throws FormatException, IOException {
+			if (segments + 2 > MAX_SEGMENTS) {
+				throw new FormatException("AVI files are limited to " +
+					MAX_SEGMENTS + " RIFF segments.");
+			}
+			finishSegment();
+
+			final RandomAccessOutputStream out = getStream();
+			riffPos = out.getFilePointer();
+			out.writeBytes("RIFF");
+			out.writeInt(0);
+			out.writeBytes("AVIX");
+			moviPos = out.getFilePointer();
+			out.writeBytes("LIST");
+			out.writeInt(0);
+			out.writeBytes("movi");
+			segmentStart = planesWritten;
+		}
+
+		/**
+		 * Writes the ix00 index of the current RIFF at the end of its movi LIST,
+		 * followed by the legacy idx1 index if this is the first RIFF, and fills
+		 * in the lengths of the LIST and the RIFF.
+		 */
+		private void finishSegment() throws IOException {
+			final RandomAccessOutputStream out = getStream();
+			final int frames = planesWritten - segmentStart;
+			final byte[] id = signature.getBytes(Constants.ENCODING);
+
+			final ByteBuffer ix =
+				ByteBuffer.allocate(32 + 8 * frames).order(ByteOrder.LITTLE_ENDIAN);
+			ix.put("ix00".getBytes(Constants.ENCODING)).putInt(24 + 8 * frames);
+			// wLongsPerEntry, bIndexSubType, bIndexType (AVI_INDEX_OF_CHUNKS)
+			ix.putShort((short) 2).put((byte) 0).put((byte) 1);
+			ix.putInt(frames).put(id).putLong(riffPos).putInt(0);
+			for (int z = segmentStart; z < planesWritten; z++) {
+				// offsets are relative to the RIFF; all frames are key frames
+				ix.putInt((int) (frameOffsets[z] - riffPos)).putInt(frameLengths[z]);
+			}
+			indexOffsets[segments] = out.getFilePointer();
+			indexLengths[segments] = ix.capacity();
+			indexFrames[segments] = frames;
+			segments++;
+			out.write(ix.array());
+
+			long end = out.getFilePointer();
+			out.seek(moviPos + 4);
+			out.writeInt((int) (end - (moviPos + 8)));
+
+			if (riffPos == 0) {
+				final ByteBuffer idx1 =
+					ByteBuffer.allocate(8 + 16 * frames).order(ByteOrder.LITTLE_ENDIAN);
+				idx1.put("idx1".getBytes(Constants.ENCODING)).putInt(16 * frames);
+				for (int z = 0; z < frames; z++) {
+					// AVIIF_KEYFRAME, offset relative to 'movi', and length
+					idx1.put(id).putInt(AVIIF_KEYFRAME);
+					idx1.putInt((int) (frameOffsets[z] - 8 - SAVE_MOVI));
+					idx1.putInt(frameLengths[z]);
+				}
+				out.seek(end);
+				out.write(idx1.array());
+				end = out.getFilePointer();
+			}
+
+			out.seek(riffPos + 4);
+			out.writeInt((int) (end - (riffPos + 8)));
+			out.seek(end);
+		}
+
+		/**
+		 * Writes the OpenDML super index and extended header, which follow strn,
+		 * and the JUNK header that pads the header LIST.
+		 */
+		private void writeHeaderIndex() throws IOException {
+			final RandomAccessOutputStream out = getStream();
+			final ByteBuffer header =
+				ByteBuffer.allocate((int) (SAVE_JUNK_SIG + 8 - SAVE_INDX)).order(
+					ByteOrder.LITTLE_ENDIAN);
+
+			header.put("indx".getBytes(Constants.ENCODING)).putInt(INDX_SIZE);
+			// wLongsPerEntry, bIndexSubType, bIndexType (AVI_INDEX_OF_INDEXES)
+			header.putShort((short) 4).put((byte) 0).put((byte) 0);
+			header.putInt(segments).put(signature.getBytes(Constants.ENCODING));
+			header.position(32);
+			for (int s = 0; s < segments; s++) {
+				header.putLong(indexOffsets[s]).putInt(indexLengths[s]).putInt(
+					indexFrames[s]);
+			}
+
+			header.position((int) (SAVE_ODML - SAVE_INDX));
+			header.put("LIST".getBytes(Constants.ENCODING)).putInt(12 + DMLH_SIZE);
+			header.put("odml".getBytes(Constants.ENCODING));
+			// dwTotalFrames, across all RIFFs
+			header.put("dmlh".getBytes(Constants.ENCODING)).putInt(DMLH_SIZE);
+			header.putInt(planesWritten);
+
+			header.position((int) (SAVE_JUNK_SIG - SAVE_INDX));
+			header.put("JUNK".getBytes(Constants.ENCODING)).putInt(PADDING_BYTES);
+
+			out.seek(SAVE_INDX);
+			out.write(header.array());
+			out.seek(SAVE_LIST1_SIZE);
+			out.writeInt((int) (SAVE_JUNK_SIG - (SAVE_LIST1_SIZE + 4)));
+			out.seek(SAVE_LIST1_SUBSIZE);
+			out.writeInt((int) (SAVE_ODML - (SAVE_LIST1_SUBSIZE + 4)));
+		}
+
+		/** Writes the remaining frames, the indices and the frame counts. */
+		private void finish() throws FormatException, IOException {
+			flushFrame();
+			while (!pending.isEmpty()) {
+				writePending();
+			}
+			finishSegment();
+			writeHeaderIndex();
+
+			final RandomAccessOutputStream out = getStream();
+			// dwTotalFrames of avih counts the frames of the first RIFF only
+			out.seek(FRAME_OFFSET);
+			out.writeInt(indexFrames[0]);
+			out.seek(FRAME_OFFSET_2);
+			out.writeInt(planesWritten);
+			out.seek(BUFFER_SIZE_OFFSET);
+			out.writeInt(maxFrameLength + 8);
+			out.seek(BUFFER_SIZE_OFFSET_2);
+			out.writeInt(maxFrameLength + 8);
+		}
 	}
 
 	@Plugin(type = io.scif.Translator.class, priority = Priority.LOW_PRIORITY)
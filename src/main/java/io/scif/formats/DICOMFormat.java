@@ -862,12 +862,11 @@ public class DICOMFormat extends AbstractFormat {
 				// could contain matching files
 
 				directory = directory.getParentFile();
-				final String[] subdirs = directory.list(true);
+				final String[] subdirs = directory.listSubdirectories(true);
 				if (subdirs != null) {
 					for (final String subdir : subdirs) {
 						final Location f = new Location(getContext(), directory, subdir)
 							.getAbsoluteFile();
-						if (!f.isDirectory()) continue;
 						scanDirectory(fileList, f, true);
 					}
 				}
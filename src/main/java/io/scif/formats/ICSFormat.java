@@ -42,6 +42,9 @@ import io.scif.FormatException;
 import io.scif.ImageMetadata;
 import io.scif.Plane;
 import io.scif.Translator;
+import io.scif.codec.CodecOptions;
+import io.scif.codec.CompressionType;
+import io.scif.codec.ParallelGZIPOutputStream;
 import io.scif.common.DateTools;
 import io.scif.config.SCIFIOConfig;
 import io.scif.img.axes.SCIFIOAxes;
@@ -51,7 +54,6 @@ import io.scif.io.RandomAccessOutputStream;
 import io.scif.util.FormatTools;
 import io.scif.util.SCIFIOMetadataTools;
 
-import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.Arrays;
@@ -69,6 +71,7 @@ import net.imagej.axis.CalibratedAxis;
 
 import org.scijava.Priority;
 import org.scijava.plugin.Plugin;
+import org.scijava.thread.ThreadService;
 
 /**
  * SCIFIO Format supporting the <a
@@ -1251,7 +1254,7 @@ public class ICSFormat extends AbstractFormat {
 			}
 
 			// check which version of ICS
-			final Object icsVersion = meta.getTable().get("ics_version");
+			final String icsVersion = meta.keyValPairs.get("ics_version");
 			if (icsVersion == null) {
 				reader.close();
 				throw new FormatException("Cannot discern ICS version");
@@ -1526,7 +1529,7 @@ public class ICSFormat extends AbstractFormat {
 		@Override
 		public void setMetadata(final Metadata meta) throws IOException {
 			super.setMetadata(meta);
-			gzip = getMetadata().get("representation compression").equals("gzip");
+			gzip = Writer.COMPRESSION_GZIP.equals(getMetadata().getCompression());
 			prevPlane = -1;
 			gzipStream = null;
 			invertY = false;
@@ -1567,6 +1570,14 @@ public class ICSFormat extends AbstractFormat {
 	 */
 	public static class Writer extends AbstractWriter<Metadata> {
 
+		// -- Constants --
+
+		public static final String COMPRESSION_UNCOMPRESSED =
+			CompressionType.UNCOMPRESSED.getCompression();
+
+		/** Compression named as in the ICS "representation compression" key. */
+		public static final String COMPRESSION_GZIP = "gzip";
+
 		// -- Fields --
 
 		private long dimensionOffset;
@@ -1579,11 +1590,26 @@ public class ICSFormat extends AbstractFormat {
 
 		private RandomAccessOutputStream pixels;
 
+		/** Compresses the pixels, when writing gzip-compressed data. */
+		private ParallelGZIPOutputStream gzip;
+
+		/** Plane assembled from sub-regions before it is compressed. */
+		private byte[] planeBuffer;
+
+		/** Index of the plane in {@link #planeBuffer}, or -1 if none. */
+		private long bufferedPlane = -1;
+
+		/** Index of the next plane to compress. */
+		private long nextPlane;
+
+		/** Row of interleaved pixels, for writing planar channels. */
+		private byte[] rowBuffer;
+
 		// -- AbstractWriter Methods --
 
 		@Override
 		protected String[] makeCompressionTypes() {
-			return new String[0];
+			return new String[] { COMPRESSION_UNCOMPRESSED, COMPRESSION_GZIP };
 		}
 
 		@Override
@@ -1591,7 +1617,7 @@ public class ICSFormat extends AbstractFormat {
 			final long[] planeMin, final long[] planeMax) throws FormatException,
 			IOException
 		{
-			if (!isInitialized(imageIndex, (int) planeIndex)) {
+			if (gzip == null && !isInitialized(imageIndex, (int) planeIndex)) {
 
 				if (!SCIFIOMetadataTools.wholePlane(imageIndex, getMetadata(),
 					planeMin, planeMax))
@@ -1631,31 +1657,76 @@ public class ICSFormat extends AbstractFormat {
 			final int sizeX = (int) meta.get(imageIndex).getAxisLength(Axes.X);
 			final int pixelType = getMetadata().get(imageIndex).getPixelType();
 			final int bytesPerPixel = FormatTools.getBytesPerPixel(pixelType);
-			final int planeSize =
-				(int) (meta.get(0).getSize() / meta.get(0).getPlaneCount());
-
-			pixels.seek(pixelOffset + planeIndex * planeSize);
-			if (SCIFIOMetadataTools.wholePlane(imageIndex, meta, planeMin, planeMax) &&
-				(interleaved || rgbChannels == 1))
-			{
-				pixels.write(plane.getBytes());
+			final int planeSize = planeSize();
+			final byte[] bytes = plane.getBytes();
+			final boolean contiguous = interleaved || rgbChannels == 1;
+
+			if (gzip != null) {
+				if (planeIndex < nextPlane) {
+					throw new FormatException("Planes of gzip-compressed ICS data " +
+						"must be written in order: plane " + planeIndex +
+						" was already written");
+				}
+				if (planeIndex != bufferedPlane) compressPlanes(planeIndex, planeSize);
+				if (contiguous &&
+					SCIFIOMetadataTools.wholePlane(imageIndex, meta, planeMin, planeMax))
+				{
+					if (bufferedPlane == planeIndex) {
+						// the whole plane replaces the regions buffered so far
+						Arrays.fill(planeBuffer, (byte) 0);
+						bufferedPlane = -1;
+					}
+					gzip.write(bytes, 0, planeSize);
+					nextPlane = planeIndex + 1;
+					lastPlane = planeIndex;
+					return;
+				}
+				if (planeBuffer == null) planeBuffer = new byte[planeSize];
+				bufferedPlane = planeIndex;
 			}
 			else {
-				pixels.skipBytes(bytesPerPixel * rgbChannels * sizeX * y);
-				for (int row = 0; row < h; row++) {
-					final ByteArrayOutputStream strip = new ByteArrayOutputStream();
-					for (int col = 0; col < w; col++) {
-						for (int c = 0; c < rgbChannels; c++) {
-							final int index =
-								interleaved ? rgbChannels * (row * w + col) + c : w *
-									(c * h + row) + col;
-							strip.write(plane.getBytes(), index * bytesPerPixel,
+				pixels.seek(pixelOffset + planeIndex * planeSize);
+				if (contiguous &&
+					SCIFIOMetadataTools.wholePlane(imageIndex, meta, planeMin, planeMax))
+				{
+					pixels.write(bytes);
+					lastPlane = planeIndex;
+					return;
+				}
+			}
+
+			final int pixelBytes = bytesPerPixel * rgbChannels;
+			final int rowLength = pixelBytes * w;
+			if (!contiguous && (rowBuffer == null || rowBuffer.length < rowLength)) {
+				rowBuffer = new byte[rowLength];
+			}
+			for (int row = 0; row < h; row++) {
+				byte[] src = bytes;
+				int srcOffset = row * rowLength;
+				if (!contiguous) {
+					// interleave the channels of this row
+					for (int c = 0; c < rgbChannels; c++) {
+						int index = w * (c * h + row) * bytesPerPixel;
+						for (int dest = c * bytesPerPixel; dest < rowLength; dest +=
+							pixelBytes)
+						{
+							if (bytesPerPixel == 1) rowBuffer[dest] = bytes[index];
+							else System.arraycopy(bytes, index, rowBuffer, dest,
 								bytesPerPixel);
+							index += bytesPerPixel;
 						}
 					}
-					pixels.skipBytes(bytesPerPixel * rgbChannels * x);
-					pixels.write(strip.toByteArray());
-					pixels.skipBytes(bytesPerPixel * rgbChannels * (sizeX - w - x));
+					src = rowBuffer;
+					srcOffset = 0;
+				}
+				final long rowOffset = ((long) (y + row) * sizeX + x) * pixelBytes;
+				if (gzip != null) {
+					System.arraycopy(src, srcOffset, planeBuffer, (int) rowOffset,
+						rowLength);
+				}
+				else {
+					pixels.seek(pixelOffset + planeIndex * planeSize + rowOffset);
+					pixels.write(src, srcOffset, rowLength);
 				}
 			}
 			lastPlane = planeIndex;
@@ -1673,22 +1744,49 @@ public class ICSFormat extends AbstractFormat {
 				FormatTools.UINT32, FormatTools.FLOAT };
 		}
 
+		/**
+		 * Closes the writer. The header declares every plane of the image, so
+		 * planes which were not written are stored as blank planes, whether or
+		 * not the pixels are compressed.
+		 */
+		@Override
+		public void close(final boolean fileOnly) throws IOException {
+			try {
+				if (gzip != null) {
+					compressPlanes(getMetadata().get(0).getPlaneCount(), planeSize());
+					gzip.close();
+				}
+				else if (pixels != null && lastPlane >= 0) {
+					final long end = pixelOffset + getMetadata().get(0)
+						.getPlaneCount() * planeSize();
+					if (pixels.length() < end) {
+						pixels.seek(end - 1);
+						pixels.writeByte(0);
+					}
+				}
+			}
+			finally {
+				gzip = null;
+				planeBuffer = null;
+				bufferedPlane = -1;
+				nextPlane = 0;
+				pixelOffset = 0;
+				lastPlane = -1;
+				dimensionOffset = 0;
+				dimensionLength = 0;
+				if (pixels != null) pixels.close();
+				pixels = null;
+				super.close(fileOnly);
+			}
+		}
+
 		public void close(final int imageIndex) throws IOException {
 			if (lastPlane != getMetadata().get(imageIndex).getPlaneCount() - 1 &&
 				getStream() != null)
 			{
 				overwriteDimensions(getMetadata(), imageIndex);
 			}
-
-			super.close();
-			pixelOffset = 0;
-			lastPlane = -1;
-			dimensionOffset = 0;
-			dimensionLength = 0;
-			if (pixels != null) {
-				pixels.close();
-			}
-			pixels = null;
+			close();
 		}
 
 		@Override
@@ -1747,6 +1845,12 @@ public class ICSFormat extends AbstractFormat {
 
 			super.setDest(out, imageIndex, config);
 
+			final boolean compress = COMPRESSION_GZIP.equals(getCompression());
+			if (compress && out.length() != 0) {
+				throw new FormatException(
+					"Cannot append gzip-compressed pixels to an existing ICS file");
+			}
+
 			if (out.length() == 0) {
 				out.writeBytes("\t\n");
 				if (FormatTools.checkSuffix(currentId, "ids")) {
@@ -1778,7 +1882,8 @@ public class ICSFormat extends AbstractFormat {
 					(pixelType == FormatTools.FLOAT ? "real\n" : "integer\n"));
 				out.writeBytes("representation\tsign\t" +
 					(signed ? "signed\n" : "unsigned\n"));
-				out.writeBytes("representation\tcompression\tuncompressed\n");
+				out.writeBytes("representation\tcompression\t" +
+					(compress ? COMPRESSION_GZIP : "uncompressed") + "\n");
 				out.writeBytes("representation\tbyte_order\t");
 				for (int i = 0; i < sizes[0] / 8; i++) {
 					if ((littleEndian && (sizes[0] < 32 || pixelType == FormatTools.FLOAT)) ||
@@ -1832,10 +1937,45 @@ public class ICSFormat extends AbstractFormat {
 			if (pixels == null) {
 				pixels = new RandomAccessOutputStream(getContext(), currentId);
 			}
+			if (compress && gzip == null) {
+				final CodecOptions options = getCodecOptions() == null ? CodecOptions
+					.getDefaultOptions() : getCodecOptions();
+				pixels.seek(pixelOffset);
+				gzip = new ParallelGZIPOutputStream(pixels, options.compressionLevel,
+					options.compressionStrategy, options.compressionThreads,
+					getContext().getService(ThreadService.class));
+			}
 		}
 
 		// -- Helper methods --
 
+		/** Gets the number of bytes in each plane of the pixel data. */
+		private int planeSize() {
+			final Metadata meta = getMetadata();
+			return (int) (meta.get(0).getSize() / meta.get(0).getPlaneCount());
+		}
+
+		/**
+		 * Compresses the buffered plane, if any, followed by blank planes up to
+		 * the given plane index.
+		 */
+		private void compressPlanes(final long planeIndex, final int planeSize)
+			throws IOException
+		{
+			if (bufferedPlane >= 0) {
+				gzip.write(planeBuffer, 0, planeSize);
+				Arrays.fill(planeBuffer, (byte) 0);
+				nextPlane = bufferedPlane + 1;
+				bufferedPlane = -1;
+			}
+			if (nextPlane < planeIndex && planeBuffer == null) {
+				planeBuffer = new byte[planeSize];
+			}
+			for (; nextPlane < planeIndex; nextPlane++) {
+				gzip.write(planeBuffer, 0, planeSize);
+			}
+		}
+
 		/* Sets the ICS Metadta icsId and idsId fields */
 		private void updateMetadataIds(final String id) {
 			getMetadata().idsId =
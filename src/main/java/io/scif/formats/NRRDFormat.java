@@ -42,11 +42,16 @@ import io.scif.ImageMetadata;
 import io.scif.MetadataLevel;
 import io.scif.UnsupportedCompressionException;
 import io.scif.config.SCIFIOConfig;
+import io.scif.io.BZip2Handle;
+import io.scif.io.GZipHandle;
 import io.scif.io.Location;
 import io.scif.io.RandomAccessInputStream;
+import io.scif.io.StreamHandle;
 import io.scif.services.FormatService;
 import io.scif.util.FormatTools;
+import io.scif.util.SCIFIOMetadataTools;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 
@@ -150,6 +155,16 @@ public class NRRDFormat extends AbstractFormat {
 			this.initializeHelper = initializeHelper;
 		}
 
+		/** Returns true if the pixel data is gzip-compressed. */
+		public boolean isGzip() {
+			return "gzip".equals(encoding) || "gz".equals(encoding);
+		}
+
+		/** Returns true if the pixel data is bzip2-compressed. */
+		public boolean isBzip2() {
+			return "bzip2".equals(encoding) || "bz2".equals(encoding);
+		}
+
 		// -- Metadata API methods --
 
 		@Override
@@ -372,7 +387,8 @@ public class NRRDFormat extends AbstractFormat {
 					dataFile =
 						new Location(getContext(), parent, dataFile).getAbsolutePath();
 				}
-				meta.setInitializeHelper(!meta.getEncoding().equals("raw"));
+				meta.setInitializeHelper(!meta.getEncoding().equals("raw") &&
+					!meta.isGzip() && !meta.isBzip2());
 			}
 
 			if (meta.isInitializeHelper()) {
@@ -421,6 +437,17 @@ public class NRRDFormat extends AbstractFormat {
 
 	public static class Reader extends ByteArrayReader<Metadata> {
 
+		// -- Fields --
+
+		/* Stream over the detached data file, kept open between planes. */
+		private RandomAccessInputStream dataStream;
+
+		/* Handle over the gzip or bzip2 encoded pixel data. */
+		private StreamHandle compressedData;
+
+		/* Buffer for decompressed planes of which only a region is requested. */
+		private byte[] data;
+
 		// -- AbstractReader API Methods --
 
 		@Override
@@ -468,27 +495,43 @@ public class NRRDFormat extends AbstractFormat {
 			FormatTools.checkPlaneForReading(meta, imageIndex, planeIndex,
 				buf.length, planeMin, planeMax);
 
-			// TODO : add support for additional encoding types
-			if (meta.getDataFile() == null) {
-				if (meta.getEncoding().equals("raw")) {
-					final long planeSize = FormatTools.getPlaneSize(this, imageIndex);
-					getStream().seek(meta.getOffset() + planeIndex * planeSize);
+			final long planeSize = FormatTools.getPlaneSize(this, imageIndex);
 
-					readPlane(getStream(), imageIndex, planeMin, planeMax, plane);
-					return plane;
+			// TODO : add support for additional encoding types
+			if (meta.getEncoding().equals("raw")) {
+				final RandomAccessInputStream s = getDataStream();
+				s.seek(meta.getOffset() + planeIndex * planeSize);
+				readPlane(s, imageIndex, planeMin, planeMax, plane);
+				return plane;
+			}
+			else if (meta.isGzip() || meta.isBzip2()) {
+				// attached data starts at the header's end; for detached data, the
+				// byte skip applies to the decompressed data
+				final long start = meta.getDataFile() == null ? meta.getOffset() : 0;
+				final long skip = meta.getDataFile() == null ? 0 : meta.getOffset();
+				final long pos = skip + planeIndex * planeSize;
+
+				if (SCIFIOMetadataTools.wholePlane(imageIndex, meta, planeMin,
+					planeMax))
+				{
+					decompress(start, pos, buf, (int) planeSize);
+				}
+				else {
+					if (data == null || data.length != planeSize) {
+						data = new byte[(int) planeSize];
+					}
+					decompress(start, pos, data, data.length);
+					final RandomAccessInputStream s =
+						new RandomAccessInputStream(getContext(), data);
+					readPlane(s, imageIndex, planeMin, planeMax, plane);
+					s.close();
 				}
+				return plane;
+			}
+			else if (meta.getDataFile() == null) {
 				throw new UnsupportedCompressionException("Unsupported encoding: " +
 					meta.getEncoding());
 			}
-			else if (meta.getEncoding().equals("raw")) {
-				final RandomAccessInputStream s =
-					new RandomAccessInputStream(getContext(), meta.getDataFile());
-				s.seek(meta.getOffset() + planeIndex *
-					FormatTools.getPlaneSize(this, imageIndex));
-				readPlane(s, imageIndex, planeMin, planeMax, plane);
-				s.close();
-				return plane;
-			}
 
 			// open the data file using our helper format
 			if (meta.isInitializeHelper() && meta.getDataFile() != null &&
@@ -502,5 +545,55 @@ public class NRRDFormat extends AbstractFormat {
 			throw new FormatException("Could not find a supporting Format");
 		}
 
+		@Override
+		public void close(final boolean fileOnly) throws IOException {
+			if (compressedData != null) compressedData.close();
+			compressedData = null;
+			if (dataStream != null) dataStream.close();
+			dataStream = null;
+			data = null;
+			super.close(fileOnly);
+		}
+
+		// -- Helper methods --
+
+		/**
+		 * Gets the stream holding the pixel data: either this reader's own
+		 * stream, or a stream over the detached data file which is opened once
+		 * and reused for every plane.
+		 */
+		private RandomAccessInputStream getDataStream() throws IOException {
+			if (getMetadata().getDataFile() == null) return getStream();
+			if (dataStream == null) {
+				dataStream =
+					new RandomAccessInputStream(getContext(), getMetadata()
+						.getDataFile());
+			}
+			return dataStream;
+		}
+
+		/**
+		 * Reads {@code len} decompressed bytes at position {@code pos} of the
+		 * compressed data starting at {@code start}.
+		 */
+		private void decompress(final long start, final long pos,
+			final byte[] b, final int len) throws FormatException, IOException
+		{
+			if (compressedData == null) {
+				final Metadata meta = getMetadata();
+				final String file = meta.getDataFile() == null ? getCurrentFile()
+					: meta.getDataFile();
+				compressedData = meta.isGzip() ? new GZipHandle(getContext(), file,
+					start) : new BZip2Handle(getContext(), file, start);
+			}
+			compressedData.seek(pos);
+			try {
+				compressedData.readFully(b, 0, len);
+			}
+			catch (final EOFException e) {
+				throw new FormatException("Unexpected end of " + getMetadata()
+					.getEncoding() + " data", e);
+			}
+		}
 	}
 }
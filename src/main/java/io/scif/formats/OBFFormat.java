@@ -40,14 +40,15 @@ import io.scif.Format;
 import io.scif.FormatException;
 import io.scif.ImageMetadata;
 import io.scif.config.SCIFIOConfig;
+import io.scif.io.IndexedInflater;
 import io.scif.io.RandomAccessInputStream;
 import io.scif.util.FormatTools;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.DataFormatException;
 import java.util.zip.Inflater;
+import java.util.zip.ZipException;
 
 import net.imagej.axis.Axes;
 
@@ -77,10 +78,10 @@ public class OBFFormat extends AbstractFormat {
 
 		private Frame currentInflatedFrame = new Frame();
 
-		private Inflater inflater = new Inflater();
-
 		private List<Stack> stacks = new ArrayList<>();
 
+		private Inflater inflater;
+
 		// -- OBFMetadata getters and setters --
 
 		public Frame getCurrentInflatedFrame() {
@@ -91,12 +92,30 @@ public class OBFFormat extends AbstractFormat {
 			this.currentInflatedFrame = currentInflatedFrame;
 		}
 
+		/**
+		 * @deprecated Planes are inflated through the {@link IndexedInflater} of
+		 *             each {@link Stack}; the returned inflater is not used for
+		 *             reading.
+		 */
+		@Deprecated
 		public Inflater getInflater() {
+			if (inflater == null) inflater = new Inflater();
 			return inflater;
 		}
 
+		/**
+		 * Replaces the legacy inflater and discards the {@link IndexedInflater} of
+		 * each {@link Stack}, so that subsequent planes are inflated afresh.
+		 *
+		 * @deprecated Planes are inflated through the {@link IndexedInflater} of
+		 *             each {@link Stack}.
+		 */
+		@Deprecated
 		public void setInflater(final Inflater inflater) {
 			this.inflater = inflater;
+			for (final Stack stack : stacks) {
+				stack.setInflater(null);
+			}
 		}
 
 		public List<Stack> getStacks() {
@@ -120,9 +139,12 @@ public class OBFFormat extends AbstractFormat {
 
 		@Override
 		public void close(final boolean fileOnly) throws IOException {
+			for (final Stack stack : stacks) {
+				stack.setInflater(null);
+			}
 			stacks = new ArrayList<>();
 			currentInflatedFrame = new Frame();
-			inflater = new Inflater();
+			inflater = null;
 
 			super.close(fileOnly);
 		}
@@ -369,6 +391,12 @@ public class OBFFormat extends AbstractFormat {
 
 	public static class Reader extends ByteArrayReader<Metadata> {
 
+		// -- Constants --
+
+		private static final int MIN_CHECKPOINT_SPAN = 256 * 1024;
+
+		private static final int MAX_CHECKPOINT_SPAN = 4 * 1024 * 1024;
+
 		// -- AbstractReader API Methods --
 
 		@Override
@@ -395,75 +423,101 @@ public class OBFFormat extends AbstractFormat {
 			final int bytesPerPixel = meta.get(imageIndex).getBitsPerPixel() / 8;
 
 			final Stack stack = meta.getStacks().get(imageIndex);
+			final int rowBytes = columns * bytesPerPixel;
+			final long planeOffset = planeIndex * rows * rowBytes;
 			if (stack.isCompression()) {
+				final IndexedInflater inflater = getInflater(stack, rows * rowBytes);
 				final Frame cInflatedFrame = meta.getCurrentInflatedFrame();
 
 				if (imageIndex != cInflatedFrame.getImageIndex()) {
-					cInflatedFrame.setBytes(new byte[rows * columns * bytesPerPixel]);
+					cInflatedFrame.setBytes(null);
 					cInflatedFrame.setImageIndex(imageIndex);
 					cInflatedFrame.setNumber(-1);
 				}
 
-				final byte[] bytes = cInflatedFrame.getBytes();
-				if (planeIndex != cInflatedFrame.getNumber()) {
-					if (planeIndex < cInflatedFrame.getNumber()) {
+				if (w == columns && planeIndex != cInflatedFrame.getNumber()) {
+					// full-width region: inflate straight into the plane
+					inflate(inflater, planeOffset + (long) y * rowBytes, buffer, 0, h *
+						rowBytes);
+				}
+				else {
+					if (planeIndex != cInflatedFrame.getNumber()) {
+						if (cInflatedFrame.getBytes() == null) {
+							cInflatedFrame.setBytes(new byte[rows * rowBytes]);
+						}
+						final byte[] bytes = cInflatedFrame.getBytes();
 						cInflatedFrame.setNumber(-1);
+						inflate(inflater, planeOffset, bytes, 0, bytes.length);
+						cInflatedFrame.setNumber((int) planeIndex);
 					}
-					if (cInflatedFrame.getNumber() == -1) {
-						getStream().seek(stack.getPosition());
-						meta.getInflater().reset();
-					}
-
-					final byte[] input = new byte[8192];
-					while (planeIndex != cInflatedFrame.getNumber()) {
-						int offset = 0;
-						while (offset != bytes.length) {
-							if (meta.getInflater().needsInput()) {
-								final long remainder =
-									stack.getPosition() + stack.getLength() -
-										getStream().getFilePointer();
-								if (remainder > 0) {
-									final int length =
-										remainder > input.length ? input.length : (int) remainder;
-
-									getStream().read(input, 0, length);
-									meta.getInflater().setInput(input, 0, length);
-								}
-								else {
-									throw new FormatException("Corrupted zlib compression");
-								}
-							}
-							else if (meta.getInflater().needsDictionary()) {
-								throw new FormatException("Unsupported zlib compression");
-							}
-							try {
-								offset +=
-									meta.getInflater().inflate(bytes, offset,
-										bytes.length - offset);
-							}
-							catch (final DataFormatException exception) {
-								throw new FormatException(exception.getMessage());
-							}
-						}
-						cInflatedFrame.setNumber(cInflatedFrame.getNumber() + 1);
+					final byte[] bytes = cInflatedFrame.getBytes();
+					for (int row = 0; row != h; ++row) {
+						System.arraycopy(bytes, (row + y) * rowBytes + x * bytesPerPixel,
+							buffer, row * w * bytesPerPixel, w * bytesPerPixel);
 					}
 				}
-				for (int row = 0; row != h; ++row) {
-					System.arraycopy(bytes, ((row + y) * columns + x) * bytesPerPixel,
-						buffer, row * w * bytesPerPixel, w * bytesPerPixel);
-				}
+			}
+			else if (w == columns) {
+				// contiguous rows: a single bulk read
+				getStream().seek(stack.getPosition() + planeOffset + (long) y *
+					rowBytes);
+				getStream().read(buffer, 0, h * rowBytes);
 			}
 			else {
 				for (int row = 0; row != h; ++row) {
 					getStream().seek(
-						stack.getPosition() +
-							((planeIndex * rows + row + y) * columns + x) * bytesPerPixel);
+						stack.getPosition() + planeOffset + (long) (row + y) * rowBytes +
+							x * bytesPerPixel);
 					getStream().read(buffer, row * w * bytesPerPixel, w * bytesPerPixel);
 				}
 			}
 
 			return plane;
 		}
+
+		// -- Helper Methods --
+
+		/**
+		 * Gets the inflate index of the given stack, creating it on first use.
+		 * Checkpoints are spaced about one frame apart, so that any frame can be
+		 * inflated without decompressing its predecessors again.
+		 */
+		private IndexedInflater getInflater(final Stack stack,
+			final int frameBytes) throws IOException, FormatException
+		{
+			if (stack.getInflater() == null || stack.getSource() != getStream()) {
+				getStream().seek(stack.getPosition());
+				final int cmf = getStream().readUnsignedByte();
+				final int flg = getStream().readUnsignedByte();
+				if ((cmf & 0x0f) != 8 || ((cmf << 8) + flg) % 31 != 0) {
+					throw new FormatException("Corrupted zlib compression");
+				}
+				if ((flg & 0x20) != 0) {
+					throw new FormatException("Unsupported zlib compression");
+				}
+				final int span =
+					Math.max(MIN_CHECKPOINT_SPAN, Math.min(frameBytes,
+						MAX_CHECKPOINT_SPAN));
+				stack.setInflater(new IndexedInflater(getStream(),
+					stack.getPosition() + 2, stack.getLength() - 2, span));
+				stack.setSource(getStream());
+			}
+			return stack.getInflater();
+		}
+
+		private void inflate(final IndexedInflater inflater, final long pos,
+			final byte[] bytes, final int offset, final int length)
+			throws FormatException, IOException
+		{
+			try {
+				if (inflater.read(pos, bytes, offset, length) != length) {
+					throw new FormatException("Corrupted zlib compression");
+				}
+			}
+			catch (final ZipException exception) {
+				throw new FormatException(exception.getMessage(), exception);
+			}
+		}
 	}
 
 	// -- Helper Classes --
@@ -560,6 +614,10 @@ public class OBFFormat extends AbstractFormat {
 
 		private boolean compression;
 
+		private IndexedInflater inflater;
+
+		private RandomAccessInputStream source;
+
 		// -- Getters and Setters --
 
 		public long getPosition() {
@@ -585,6 +643,23 @@ public class OBFFormat extends AbstractFormat {
 		public void setCompression(final boolean compression) {
 			this.compression = compression;
 		}
+
+		public IndexedInflater getInflater() {
+			return inflater;
+		}
+
+		public void setInflater(final IndexedInflater inflater) {
+			if (this.inflater != null) this.inflater.close();
+			this.inflater = inflater;
+		}
+
+		public RandomAccessInputStream getSource() {
+			return source;
+		}
+
+		public void setSource(final RandomAccessInputStream source) {
+			this.source = source;
+		}
 	}
 
 	private static class Frame {
@@ -1149,6 +1149,9 @@ public class TIFFFormat extends AbstractFormat {
 				case 2:
 					predictor = "Horizontal differencing";
 					break;
+				case 3:
+					predictor = "Floating point horizontal differencing";
+					break;
 			}
 			table.put("Predictor", predictor);
 
@@ -1358,6 +1361,9 @@ public class TIFFFormat extends AbstractFormat {
 		public static final String COMPRESSION_LZW = //
 			CompressionType.LZW.getCompression();
 
+		public static final String COMPRESSION_ZLIB = //
+			CompressionType.ZLIB.getCompression();
+
 		public static final String COMPRESSION_J2K = //
 			CompressionType.J2K.getCompression();
 
@@ -1388,7 +1394,8 @@ public class TIFFFormat extends AbstractFormat {
 		@Override
 		protected String[] makeCompressionTypes() {
 			return new String[] { COMPRESSION_UNCOMPRESSED, COMPRESSION_LZW,
-				COMPRESSION_J2K, COMPRESSION_J2K_LOSSY, COMPRESSION_JPEG };
+				COMPRESSION_ZLIB, COMPRESSION_J2K, COMPRESSION_J2K_LOSSY,
+				COMPRESSION_JPEG };
 		}
 
 		// -- TIFFWriter API Methods --
@@ -1574,6 +1581,9 @@ public class TIFFFormat extends AbstractFormat {
 				if (getCompression().equals(COMPRESSION_LZW)) {
 					compressType = TiffCompression.LZW;
 				}
+				else if (getCompression().equals(COMPRESSION_ZLIB)) {
+					compressType = TiffCompression.DEFLATE;
+				}
 				else if (getCompression().equals(COMPRESSION_J2K)) {
 					compressType = TiffCompression.JPEG_2000;
 				}
@@ -41,15 +41,15 @@ import io.scif.FormatException;
 import io.scif.ImageMetadata;
 import io.scif.common.Constants;
 import io.scif.config.SCIFIOConfig;
-import io.scif.io.IRandomAccess;
 import io.scif.io.RandomAccessInputStream;
-import io.scif.services.LocationService;
 import io.scif.util.FormatTools;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -57,16 +57,17 @@ import java.util.List;
 import net.imagej.axis.Axes;
 
 import org.scijava.log.LogService;
-import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
-import org.scijava.util.Bytes;
 
 /**
- * Reader for text files containing tables of data. All image planes are stored
- * in memory as 32-bit floats until the file is closed, so very large text
- * documents will require commensurate available RAM. Text format is flexible,
- * but assumed to be in tabular form with a consistent number of columns, and a
- * labeled header line immediately preceding the data.
+ * Reader for text files containing tables of data. The file is tokenized
+ * straight from its bytes in two streaming passes: the first finds the header
+ * and the image extents, the second stores the values as 32-bit floats.
+ * Small tables are kept in memory; larger ones are stored in a memory-mapped
+ * temporary file until the file is closed, so that the heap does not need to
+ * hold the whole table. Text format is flexible, but assumed to be in tabular
+ * form with a consistent number of columns, and a labeled header line
+ * immediately preceding the data.
  *
  * @author Curtis Rueden
  * @author Mark Hiner
@@ -88,10 +89,17 @@ public class TextFormat extends AbstractFormat {
 		// -- Fields --
 
 		/**
-		 * Because we have no way of indexing into the text file efficiently in
-		 * general, we cheat and store the entire file's data in a giant array.
+		 * Pixel values of each plane, stored as big-endian floats in plane
+		 * order. The buffers are either on the heap or mapped from
+		 * {@link #storeFile}.
 		 */
-		private float[][] data;
+		private ByteBuffer[] planes;
+
+		/** Temporary file backing the plane buffers, if any. */
+		private File storeFile;
+
+		/** Offset of the first data row within the file. */
+		private long dataOffset;
 
 		/** Current row number. */
 		private int row;
@@ -116,12 +124,65 @@ public class TextFormat extends AbstractFormat {
 
 		// -- TextMetadata getters and setters --
 
+		/**
+		 * Gets a copy of the pixel values of each plane.
+		 *
+		 * @deprecated Use {@link #getPlanes()}, which does not copy the values.
+		 */
+		@Deprecated
 		public float[][] getData() {
+			if (planes == null) return null;
+			final float[][] data = new float[planes.length][];
+			for (int i = 0; i < planes.length; i++) {
+				final ByteBuffer plane = planes[i].duplicate();
+				plane.clear();
+				data[i] = new float[plane.capacity() / 4];
+				plane.asFloatBuffer().get(data[i]);
+			}
 			return data;
 		}
 
+		/**
+		 * Sets the pixel values of each plane, which are copied into heap
+		 * buffers.
+		 *
+		 * @deprecated Use {@link #setPlanes(ByteBuffer[])}.
+		 */
+		@Deprecated
 		public void setData(final float[][] data) {
-			this.data = data;
+			if (data == null) {
+				planes = null;
+				return;
+			}
+			planes = new ByteBuffer[data.length];
+			for (int i = 0; i < data.length; i++) {
+				planes[i] = ByteBuffer.allocate(4 * data[i].length);
+				planes[i].asFloatBuffer().put(data[i]);
+			}
+		}
+
+		public ByteBuffer[] getPlanes() {
+			return planes;
+		}
+
+		public void setPlanes(final ByteBuffer[] planes) {
+			this.planes = planes;
+		}
+
+		public File getStoreFile() {
+			return storeFile;
+		}
+
+		public void setStoreFile(final File storeFile) {
+			this.storeFile = storeFile;
+		}
+
+		public long getDataOffset() {
+			return dataOffset;
+		}
+
+		public void setDataOffset(final long dataOffset) {
+			this.dataOffset = dataOffset;
 		}
 
 		public int getRow() {
@@ -198,7 +259,13 @@ public class TextFormat extends AbstractFormat {
 		public void close(final boolean fileOnly) throws IOException {
 			super.close(fileOnly);
 			if (!fileOnly) {
-				data = null;
+				planes = null;
+				if (storeFile != null && !storeFile.delete()) {
+					// still mapped on some platforms; clean up at exit instead
+					storeFile.deleteOnExit();
+				}
+				storeFile = null;
+				dataOffset = 0;
 				rowLength = 0;
 				xIndex = yIndex = -1;
 				channels = null;
@@ -223,8 +290,6 @@ public class TextFormat extends AbstractFormat {
 		{
 			final int blockLen = 8192;
 			if (!FormatTools.validStream(stream, blockLen, false)) return false;
-			final String data = stream.readString(blockLen);
-			final List<String> lines = Arrays.asList(data.split("\n"));
 			Metadata meta = null;
 			try {
 				meta = (Metadata) getFormat().createMetadata();
@@ -234,16 +299,16 @@ public class TextFormat extends AbstractFormat {
 				return false;
 			}
 			meta.createImageMetadata(1);
-			meta.setRow(0);
 
-			final String[] line = TextUtils.getNextLine(lines, meta);
-			if (line == null) return false;
-			int headerRows = 0;
+			final Tokenizer tokenizer = new Tokenizer(stream, 0, blockLen);
+			if (!tokenizer.nextLine()) return false;
 			try {
-				headerRows = TextUtils.parseFileHeader(lines, meta, log());
+				TextUtils.parseFileHeader(tokenizer, meta, log());
 			}
-			catch (final FormatException e) {}
-			return headerRows > 0;
+			catch (final FormatException e) {
+				return false;
+			}
+			return true;
 		}
 	}
 
@@ -254,10 +319,8 @@ public class TextFormat extends AbstractFormat {
 		/** How often to report progress during initialization, in milliseconds. */
 		private static final long TIME_OFFSET = 2000;
 
-		// -- Fields --
-
-		@Parameter
-		private LocationService locationService;
+		/** Largest table, in bytes, which is stored on the heap. */
+		private static final long MAX_HEAP_STORE = 64 * 1024 * 1024;
 
 		// -- AbstractParser API Methods --
 
@@ -269,124 +332,137 @@ public class TextFormat extends AbstractFormat {
 			meta.createImageMetadata(1);
 			final ImageMetadata iMeta = meta.get(0);
 
-			// read file into memory
-			log().info("Reading file");
-			final List<String> lines = readFile(stream.getFileName());
-
-			// parse file header
+			// parse file header, and scan the table for the image extents
 			log().info("Parsing file header");
-			final int headerRows = TextUtils.parseFileHeader(lines, meta, log());
+			final long length = stream.length();
+			final Tokenizer tokenizer = new Tokenizer(stream, 0, length);
+			TextUtils.parseFileHeader(tokenizer, meta, log());
 
-			// allocate memory for image data
+			// allocate storage for image data
 			final int sizeZ = 1, sizeT = 1; // no Z or T for now
 			final int sizeC = meta.getChannels().length;
 			final int planeCount = sizeZ * sizeC * sizeT;
-			final int planeSize =
-				(int) iMeta.getAxisLength(Axes.X) * (int) iMeta.getAxisLength(Axes.Y);
-			final float[][] data = new float[planeCount][planeSize];
+			final long planeSize =
+				iMeta.getAxisLength(Axes.X) * iMeta.getAxisLength(Axes.Y);
+			if (planeSize * 4 > Integer.MAX_VALUE) {
+				throw new FormatException("Image plane too large: " +
+					iMeta.getAxisLength(Axes.X) + " x " + iMeta.getAxisLength(Axes.Y));
+			}
 			iMeta.setAxisLength(Axes.Z, sizeZ);
 			iMeta.setAxisLength(Axes.CHANNEL, sizeC);
 			iMeta.setAxisLength(Axes.TIME, 1);
-			meta.setData(data);
-
-			// flag all values as missing by default
-			for (int i = 0; i < planeCount; i++)
-				Arrays.fill(data[i], Float.NaN);
+			meta.setPlanes(allocatePlanes(planeCount, (int) planeSize * 4,
+				MAX_HEAP_STORE, meta));
 
-			// read data into float array
-			parseTableData(lines, headerRows, meta);
+			// read data into the float store
+			log().info("Reading file");
+			parseTableData(new Tokenizer(stream, meta.getDataOffset(), length),
+				meta);
 		}
 
 		// -- Helper Methods --
 
-		/** Reads the tabular data into the data array. */
-		private void parseTableData(final List<String> lines,
-			final int linesToSkip, final Metadata meta)
+		/**
+		 * Allocates one buffer per plane, with all values flagged as missing.
+		 * Tables larger than {@code maxHeapStore} bytes are mapped from a
+		 * temporary file.
+		 */
+		static ByteBuffer[] allocatePlanes(final int planeCount,
+			final int planeBytes, final long maxHeapStore, final Metadata meta)
+			throws IOException
 		{
-			meta.setRow(linesToSkip); // skip header lines
+			final ByteBuffer[] planes = new ByteBuffer[planeCount];
+			if ((long) planeCount * planeBytes <= maxHeapStore) {
+				for (int i = 0; i < planeCount; i++) {
+					planes[i] = ByteBuffer.allocate(planeBytes);
+				}
+			}
+			else {
+				final File file = File.createTempFile("scifio-text", ".raw");
+				file.deleteOnExit();
+				meta.setStoreFile(file);
+				final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+				try {
+					raf.setLength((long) planeCount * planeBytes);
+					final FileChannel channel = raf.getChannel();
+					for (int i = 0; i < planeCount; i++) {
+						planes[i] =
+							channel.map(FileChannel.MapMode.READ_WRITE, (long) i *
+								planeBytes, planeBytes);
+					}
+				}
+				finally {
+					// the mappings remain valid after the file is closed
+					raf.close();
+				}
+			}
+
+			// flag all values as missing by default
+			final byte[] nan = new byte[Math.min(planeBytes, 65536)];
+			final ByteBuffer nanBuffer = ByteBuffer.wrap(nan);
+			while (nanBuffer.hasRemaining()) {
+				nanBuffer.putFloat(Float.NaN);
+			}
+			for (final ByteBuffer plane : planes) {
+				while (plane.hasRemaining()) {
+					plane.put(nan, 0, Math.min(nan.length, plane.remaining()));
+				}
+				plane.clear();
+			}
+			return planes;
+		}
 
+		/** Reads the tabular data into the plane buffers. */
+		private void parseTableData(final Tokenizer tokenizer,
+			final Metadata meta) throws IOException
+		{
 			final double[] rowData = new double[meta.getRowLength()];
-			while (true) {
-				final String[] tokens = TextUtils.getNextLine(lines, meta);
-				if (tokens == null) break; // eof
-				if (tokens.length != meta.getRowLength()) {
-					log().warn("Ignoring deviant row #" + meta.getRow());
+			long time = System.currentTimeMillis();
+			while (tokenizer.nextLine()) {
+				time = checkTime(time, tokenizer);
+				if (tokenizer.getTokenCount() != meta.getRowLength()) {
+					log().warn(
+						"Ignoring deviant row #" + (meta.getRow() + tokenizer.getRow()));
 					continue;
 				}
 
 				// parse values from row
-				final boolean success = TextUtils.getRowData(tokens, rowData);
+				final boolean success = tokenizer.parseRow(rowData);
 				if (!success) {
-					log().warn("Ignoring non-numeric row #" + meta.getRow());
+					log().warn("Ignoring non-numeric row #" + (meta.getRow() +
+						tokenizer.getRow()));
 					continue;
 				}
 
-				// copy values into array
+				// copy values into the plane buffers
 				assignValues(rowData, meta);
 			}
 		}
 
-		/** Assigns values from the given row into the data array. */
+		/** Assigns values from the given row into the plane buffers. */
 		private void assignValues(final double[] rowData, final Metadata meta) {
 			final int x = TextUtils.getX(rowData, meta);
 			final int y = TextUtils.getY(rowData, meta);
 			int c = 0;
-			final int index = (int) meta.get(0).getAxisLength(Axes.X) * y + x;
+			final int index = 4 * ((int) meta.get(0).getAxisLength(Axes.X) * y + x);
+			final ByteBuffer[] planes = meta.getPlanes();
 			for (int i = 0; i < meta.getRowLength(); i++) {
 				if (i == meta.getxIndex() || i == meta.getyIndex()) continue;
-				meta.getData()[c++][index] = (float) rowData[i];
-			}
-		}
-
-		private List<String> readFile(final String id) throws IOException {
-			final List<String> lines = new ArrayList<>();
-			long time = System.currentTimeMillis();
-			final IRandomAccess handle = locationService.getMappedFile(id);
-			if (handle == null) {
-				// HACK: Read using vanilla BufferedReader, since it's faster.
-				final String mapId = locationService.getMappedId(id);
-				final BufferedReader in =
-					new BufferedReader(new InputStreamReader(new FileInputStream(mapId),
-						Constants.ENCODING));
-				int no = 0;
-				while (true) {
-					no++;
-					time = checkTime(time, no, 0, 0);
-					final String line = in.readLine();
-					if (line == null) break; // eof
-					lines.add(line);
-				}
-				in.close();
-			}
-			else {
-				// read data using RandomAccessInputStream (data may not be a
-				// file)
-				final RandomAccessInputStream in =
-					new RandomAccessInputStream(getContext(), handle);
-				int no = 0;
-				while (true) {
-					no++;
-					time = checkTime(time, no, in.getFilePointer(), in.length());
-					final String line = in.readLine();
-					if (line == null) break; // eof
-					lines.add(line);
-				}
-				in.close();
+				planes[c++].putFloat(index, (float) rowData[i]);
 			}
-			return lines;
 		}
 
-		private long checkTime(long time, final int no, final long pos,
-			final long len)
-		{
+		private long checkTime(long time, final Tokenizer tokenizer) {
 			final long t = System.currentTimeMillis();
 			if (t - time > TIME_OFFSET) {
 				// some time has passed; report progress
+				final long len = tokenizer.getEnd();
 				if (len > 0) {
-					final int percent = (int) (100 * pos / len);
-					log().info("Reading line " + no + " (" + percent + "%)");
+					final int percent = (int) (100 * tokenizer.getLineOffset() / len);
+					log().info("Reading line " + tokenizer.getRow() + " (" + percent +
+						"%)");
 				}
-				else log().info("Reading line " + no);
+				else log().info("Reading line " + tokenizer.getRow());
 				time = t;
 			}
 			return time;
@@ -419,24 +495,289 @@ public class TextFormat extends AbstractFormat {
 			final int yAxis = meta.get(imageIndex).getAxisIndex(Axes.Y);
 			final int x = (int) planeMin[xAxis], y = (int) planeMin[yAxis], w =
 				(int) planeMax[xAxis], h = (int) planeMax[yAxis];
-			// copy floating point data into byte buffer
-			final float[] planeFloats = getMetadata().getData()[(int) planeIndex];
-			int q = 0;
+			final int sizeX = (int) meta.get(0).getAxisLength(Axes.X);
+
+			// copy the stored floats, row by row, into the byte buffer
+			final ByteBuffer planeBytes =
+				getMetadata().getPlanes()[(int) planeIndex].duplicate();
 			for (int j = 0; j < h; j++) {
-				final int yy = y + j;
-				for (int i = 0; i < w; i++) {
-					final int xx = x + i;
-					final int index = yy * (int) meta.get(0).getAxisLength(Axes.X) + xx;
-					final int bits = Float.floatToIntBits(planeFloats[index]);
-					Bytes.unpack(bits, buf, q, 4, TextUtils.LITTLE_ENDIAN);
-					q += 4;
-				}
+				planeBytes.position(4 * ((y + j) * sizeX + x));
+				planeBytes.get(buf, 4 * j * w, 4 * w);
 			}
 
 			return plane;
 		}
 	}
 
+	/**
+	 * Splits a range of a stream into lines and tokens, working directly on the
+	 * bytes rather than on decoded strings. Tokens are delimited by each
+	 * whitespace or comma character, as with {@code line.trim().split("[\\s,]")}.
+	 */
+	static class Tokenizer {
+
+		// -- Constants --
+
+		private static final int BUFFER_SIZE = 256 * 1024;
+
+		/** Powers of ten exactly representable as doubles. */
+		private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4,
+			1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17,
+			1e18, 1e19, 1e20, 1e21, 1e22 };
+
+		// -- Fields --
+
+		private final RandomAccessInputStream in;
+
+		/** End of the tokenized range. */
+		private final long end;
+
+		/** Stream offset of the first byte in the buffer. */
+		private long bufferOffset;
+
+		private byte[] buffer = new byte[BUFFER_SIZE];
+
+		private int bufferLength;
+
+		/** Buffer index from which the next line is searched. */
+		private int next;
+
+		private boolean eof;
+
+		private int lineStart;
+
+		/** Number of lines read so far, including blank lines. */
+		private int row;
+
+		private int[] tokenStarts = new int[16];
+
+		private int[] tokenEnds = new int[16];
+
+		private int tokenCount;
+
+		// -- Constructor --
+
+		public Tokenizer(final RandomAccessInputStream in, final long start,
+			final long end)
+		{
+			this.in = in;
+			this.end = end;
+			bufferOffset = start;
+		}
+
+		// -- Tokenizer methods --
+
+		/**
+		 * Advances to the next line which is not blank.
+		 *
+		 * @return false at the end of the range
+		 */
+		public boolean nextLine() throws IOException {
+			while (true) {
+				final int lineEnd = readLine();
+				if (lineEnd < 0) return false;
+				row++;
+				split(lineEnd);
+				if (tokenCount > 0) return true;
+			}
+		}
+
+		public int getRow() {
+			return row;
+		}
+
+		public long getEnd() {
+			return end;
+		}
+
+		/** Gets the stream offset of the current line. */
+		public long getLineOffset() {
+			return bufferOffset + lineStart;
+		}
+
+		public int getTokenCount() {
+			return tokenCount;
+		}
+
+		public String[] getTokens() throws IOException {
+			final String[] tokens = new String[tokenCount];
+			for (int i = 0; i < tokenCount; i++) {
+				tokens[i] =
+					new String(buffer, tokenStarts[i], tokenEnds[i] - tokenStarts[i],
+						Constants.ENCODING);
+			}
+			return tokens;
+		}
+
+		/**
+		 * Parses numerical row data from the current line.
+		 *
+		 * @param rowData array to fill in with the data; length must match the
+		 *          token count
+		 * @return true if the data could be parsed
+		 */
+		public boolean parseRow(final double[] rowData) {
+			try {
+				for (int i = 0; i < rowData.length; i++) {
+					rowData[i] = parseDouble(tokenStarts[i], tokenEnds[i]);
+				}
+				return true;
+			}
+			catch (final NumberFormatException exc) {
+				// not a data row
+				return false;
+			}
+		}
+
+		// -- Helper methods --
+
+		/**
+		 * Finds the next line, refilling the buffer as needed.
+		 *
+		 * @return the buffer index at which the line ends, or -1 at the end of
+		 *         the range
+		 */
+		private int readLine() throws IOException {
+			int i = next;
+			while (true) {
+				while (i < bufferLength && buffer[i] != '\n') {
+					i++;
+				}
+				if (i < bufferLength) {
+					lineStart = next;
+					next = i + 1;
+					return i;
+				}
+				if (eof) {
+					if (next == bufferLength) return -1;
+					lineStart = next;
+					next = bufferLength;
+					return bufferLength;
+				}
+				// move the partial line to the front, and read more
+				i -= next;
+				System.arraycopy(buffer, next, buffer, 0, bufferLength - next);
+				bufferOffset += next;
+				bufferLength -= next;
+				next = 0;
+				if (bufferLength == buffer.length) {
+					buffer = Arrays.copyOf(buffer, buffer.length * 2);
+				}
+				final long remaining = end - (bufferOffset + bufferLength);
+				int n = -1;
+				if (remaining > 0) {
+					in.seek(bufferOffset + bufferLength);
+					n =
+						in.read(buffer, bufferLength, (int) Math.min(buffer.length -
+							bufferLength, remaining));
+				}
+				if (n <= 0) eof = true;
+				else bufferLength += n;
+			}
+		}
+
+		private void split(final int lineEnd) {
+			int s = lineStart, e = lineEnd;
+			while (s < e && (buffer[s] & 0xff) <= ' ') {
+				s++;
+			}
+			while (e > s && (buffer[e - 1] & 0xff) <= ' ') {
+				e--;
+			}
+			tokenCount = 0;
+			if (s == e) return;
+			int start = s;
+			for (int i = s; i < e; i++) {
+				if (isDelimiter(buffer[i])) {
+					addToken(start, i);
+					start = i + 1;
+				}
+			}
+			addToken(start, e);
+			// as with String.split, trailing empty tokens are discarded
+			while (tokenCount > 0 &&
+				tokenStarts[tokenCount - 1] == tokenEnds[tokenCount - 1])
+			{
+				tokenCount--;
+			}
+		}
+
+		private void addToken(final int start, final int end) {
+			if (tokenCount == tokenStarts.length) {
+				tokenStarts = Arrays.copyOf(tokenStarts, tokenCount * 2);
+				tokenEnds = Arrays.copyOf(tokenEnds, tokenCount * 2);
+			}
+			tokenStarts[tokenCount] = start;
+			tokenEnds[tokenCount++] = end;
+		}
+
+		private boolean isDelimiter(final byte b) {
+			return b == ',' || b == ' ' || b == '\t' || b == '\n' || b == '\r' ||
+				b == 0x0b || b == '\f';
+		}
+
+		/**
+		 * Parses plain decimal numbers directly from the buffer. Anything else
+		 * (and decimals which cannot be converted exactly this way) is handed to
+		 * {@link Double#parseDouble(String)}.
+		 */
+		private double parseDouble(final int start, final int end) {
+			int i = start;
+			boolean negative = false;
+			if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+				negative = buffer[i++] == '-';
+			}
+			long mantissa = 0;
+			int digits = 0, exponent = 0;
+			boolean valid = false;
+			for (; i < end && buffer[i] >= '0' && buffer[i] <= '9'; i++) {
+				valid = true;
+				if (digits < 18) {
+					mantissa = 10 * mantissa + buffer[i] - '0';
+					if (mantissa != 0) digits++;
+				}
+				else exponent++;
+			}
+			if (i < end && buffer[i] == '.') {
+				for (i++; i < end && buffer[i] >= '0' && buffer[i] <= '9'; i++) {
+					valid = true;
+					if (digits < 18) {
+						mantissa = 10 * mantissa + buffer[i] - '0';
+						if (mantissa != 0) digits++;
+						exponent--;
+					}
+				}
+			}
+			if (valid && i < end && (buffer[i] == 'e' || buffer[i] == 'E')) {
+				i++;
+				boolean negativeExponent = false;
+				if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+					negativeExponent = buffer[i++] == '-';
+				}
+				int e = 0;
+				valid = false;
+				for (; i < end && buffer[i] >= '0' && buffer[i] <= '9'; i++) {
+					valid = true;
+					if (e < 10000) e = 10 * e + buffer[i] - '0';
+				}
+				exponent += negativeExponent ? -e : e;
+			}
+			if (valid && i == end && mantissa < 1L << 53) {
+				if (mantissa == 0) return negative ? -0.0 : 0.0;
+				if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+					final double v = mantissa * POWERS_OF_TEN[exponent];
+					return negative ? -v : v;
+				}
+				if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+					final double v = mantissa / POWERS_OF_TEN[-exponent];
+					return negative ? -v : v;
+				}
+			}
+			return Double.parseDouble(new String(buffer, start, end - start,
+				StandardCharsets.UTF_8));
+		}
+	}
+
 	private static class TextUtils {
 
 		// -- Constants --
@@ -450,41 +791,43 @@ public class TextFormat extends AbstractFormat {
 		/**
 		 * Parses the file looking for the file header. Determines image extents
 		 * (sets sizeX and sizeY). Determines channel names (populates channels
-		 * array).
-		 *
-		 * @return number of rows in the header
+		 * array). Records the offset of the first data row.
 		 */
-		private static int parseFileHeader(final List<String> lines,
-			final Metadata meta, final LogService log) throws FormatException
+		private static void parseFileHeader(final Tokenizer tokenizer,
+			final Metadata meta, final LogService log) throws FormatException,
+			IOException
 		{
 			String[] lastTokens = null;
 			double[] rowData = null;
 			while (true) {
-				final String[] tokens = getNextLine(lines, meta);
-				if (tokens == null) throw new FormatException("No tabular data found");
-				if (tokens.length >= 3 && // need at least 3 columns of data
-					lastTokens != null && lastTokens.length == tokens.length)
+				if (!tokenizer.nextLine()) {
+					throw new FormatException("No tabular data found");
+				}
+				final int tokenCount = tokenizer.getTokenCount();
+				if (tokenCount >= 3 && // need at least 3 columns of data
+					lastTokens != null && lastTokens.length == tokenCount)
 				{
 					// consistent number of tokens; might be the header and
 					// first data row
 
 					// allocate rowData as needed
-					if (rowData == null || rowData.length != tokens.length) {
-						rowData = new double[tokens.length];
+					if (rowData == null || rowData.length != tokenCount) {
+						rowData = new double[tokenCount];
 					}
 
 					// try to parse the first data row
-					if (getRowData(tokens, rowData)) {
-						log.info("Found header on line " + (meta.getRow() - 1));
+					if (tokenizer.parseRow(rowData)) {
+						log.info("Found header on line " + (tokenizer.getRow() - 1));
 						// looks like tabular data; assume previous line is the
 						// header
 						parseHeaderRow(lastTokens, meta);
 						break;
 					}
 				}
-				lastTokens = tokens;
+				lastTokens = tokenizer.getTokens();
 			}
-			final int headerRows = meta.getRow() - 1;
+			meta.setRow(tokenizer.getRow() - 1);
+			meta.setDataOffset(tokenizer.getLineOffset());
 
 			if (meta.getxIndex() < 0) throw new FormatException(
 				"No X coordinate column found");
@@ -498,48 +841,25 @@ public class TextFormat extends AbstractFormat {
 					// expand dimensional extents as needed
 					final int x = getX(rowData, meta);
 					if (x < 0) {
-						throw new FormatException("Row #" + meta.getRow() +
+						throw new FormatException("Row #" + tokenizer.getRow() +
 							": invalid X: " + x);
 					}
 					if (meta.get(0).getAxisLength(Axes.X) <= x) meta.get(0)
 						.setAxisLength(Axes.X, x + 1);
 					final int y = getY(rowData, meta);
 					if (y < 0) {
-						throw new FormatException("Row #" + meta.getRow() +
-							": invalid Y: " + x);
+						throw new FormatException("Row #" + tokenizer.getRow() +
+							": invalid Y: " + y);
 					}
 					if (meta.get(0).getAxisLength(Axes.Y) <= y) meta.get(0)
 						.setAxisLength(Axes.Y, y + 1);
 				}
 
 				// parse next row
-				final String[] tokens = getNextLine(lines, meta);
-				if (tokens == null) break; // eof
-				checkRow = getRowData(tokens, rowData);
-			}
-
-			return headerRows;
-		}
-
-		/**
-		 * Parses numerical row data from the given tokens.
-		 *
-		 * @param tokens list of token strings to parse
-		 * @param rowData array to fill in with the data; length must match tokens
-		 * @return true if the data could be parsed
-		 */
-		private static boolean getRowData(final String[] tokens,
-			final double[] rowData)
-		{
-			try {
-				for (int i = 0; i < tokens.length; i++) {
-					rowData[i] = Double.parseDouble(tokens[i]);
-				}
-				return true;
-			}
-			catch (final NumberFormatException exc) {
-				// not a data row
-				return false;
+				if (!tokenizer.nextLine()) break; // eof
+				checkRow =
+					tokenizer.getTokenCount() == rowData.length &&
+						tokenizer.parseRow(rowData);
 			}
 		}
 
@@ -561,19 +881,6 @@ public class TextFormat extends AbstractFormat {
 			meta.setChannels(channelsList.toArray(new String[0]));
 		}
 
-		private static String[] getNextLine(final List<String> lines,
-			final Metadata meta)
-		{
-			while (true) {
-				if (meta.getRow() >= lines.size()) return null; // end of list
-				String line = lines.get(meta.getRow());
-				meta.setRow(meta.getRow() + 1);
-				line = line.trim();
-				if (line.equals("")) continue; // skip blank lines
-				return line.split("[\\s,]");
-			}
-		}
-
 		private static int getX(final double[] rowData, final Metadata meta) {
 			return (int) rowData[meta.getxIndex()];
 		}
@@ -57,19 +57,11 @@ public class DefaultTiffService extends AbstractService implements TiffService {
 		final int predictor = ifd.getIFDIntValue(IFD.PREDICTOR, 1);
 		if (predictor == 2) {
 			log.debug("performing horizontal differencing");
-			final int[] bitsPerSample = ifd.getBitsPerSample();
-			final long width = ifd.getImageWidth();
-			final boolean little = ifd.isLittleEndian();
-			final int planarConfig = ifd.getPlanarConfiguration();
-			final int bytes = ifd.getBytesPerSample()[0];
-			final int len = bytes * (planarConfig == 2 ? 1 : bitsPerSample.length);
-
-			for (int b = input.length - bytes; b >= 0; b -= bytes) {
-				if (b / len % width == 0) continue;
-				int value = Bytes.toInt(input, b, bytes, little);
-				value -= Bytes.toInt(input, b - len, bytes, little);
-				Bytes.unpack(value, input, b, bytes, little);
-			}
+			horizontal(input, ifd, false);
+		}
+		else if (predictor == 3) {
+			log.debug("performing floating point horizontal differencing");
+			floatingPoint(input, ifd, false);
 		}
 		else if (predictor != 1) {
 			throw new FormatException("Unknown Predictor (" + predictor + ")");
@@ -83,27 +75,207 @@ public class DefaultTiffService extends AbstractService implements TiffService {
 		final int predictor = ifd.getIFDIntValue(IFD.PREDICTOR, 1);
 		if (predictor == 2) {
 			log.debug("reversing horizontal differencing");
-			final int[] bitsPerSample = ifd.getBitsPerSample();
-			int len = bitsPerSample.length;
-			final long width = ifd.getImageWidth();
-			final boolean little = ifd.isLittleEndian();
-			final int planarConfig = ifd.getPlanarConfiguration();
-
-			final int bytes = ifd.getBytesPerSample()[0];
-
-			if (planarConfig == 2 || bitsPerSample[len - 1] == 0) len = 1;
-			len *= bytes;
-
-			for (int b = 0; b <= input.length - bytes; b += bytes) {
-				if (b / len % width == 0) continue;
-				int value = Bytes.toInt(input, b, bytes, little);
-				value += Bytes.toInt(input, b - len, bytes, little);
-				Bytes.unpack(value, input, b, bytes, little);
-			}
+			horizontal(input, ifd, true);
+		}
+		else if (predictor == 3) {
+			log.debug("reversing floating point horizontal differencing");
+			floatingPoint(input, ifd, true);
 		}
 		else if (predictor != 1) {
 			throw new FormatException("Unknown Predictor (" + predictor + ")");
 		}
 	}
 
+	// -- Helper methods --
+
+	/**
+	 * Applies or reverses predictor 2 one row at a time, using a kernel
+	 * specialized for the sample size and byte order.
+	 */
+	private void horizontal(final byte[] input, final IFD ifd,
+		final boolean reverse) throws FormatException
+	{
+		final int bytes = ifd.getBytesPerSample()[0];
+		final int len = samplesPerPixel(ifd) * bytes;
+		final int rowBytes = (int) ifd.getTileWidth() * len;
+		final boolean little = ifd.isLittleEndian();
+
+		for (int row = 0; row < input.length; row += rowBytes) {
+			final int rowEnd = Math.min(row + rowBytes, input.length);
+			final int end = row + (rowEnd - row) / bytes * bytes;
+			switch (bytes) {
+				case 1:
+					if (reverse) undifference8(input, row, end, len);
+					else difference8(input, row, end, len);
+					break;
+				case 2:
+					if (reverse) undifference16(input, row, end, len, little);
+					else difference16(input, row, end, len, little);
+					break;
+				case 4:
+					if (reverse) undifference32(input, row, end, len, little);
+					else difference32(input, row, end, len, little);
+					break;
+				default:
+					if (reverse) undifferenceN(input, row, end, len, bytes, little);
+					else differenceN(input, row, end, len, bytes, little);
+			}
+		}
+	}
+
+	/**
+	 * Applies or reverses predictor 3 (Adobe TIFF Technical Note 3): each row is
+	 * split into byte planes, most significant byte first, which are then
+	 * differenced bytewise. Decoded samples are left in the IFD's byte order.
+	 */
+	private void floatingPoint(final byte[] input, final IFD ifd,
+		final boolean reverse) throws FormatException
+	{
+		final int bytes = ifd.getBytesPerSample()[0];
+		final int stride = samplesPerPixel(ifd);
+		final int rowBytes = (int) ifd.getTileWidth() * stride * bytes;
+		final int samples = rowBytes / bytes;
+		final boolean little = ifd.isLittleEndian();
+		final byte[] tmp = new byte[rowBytes];
+
+		for (int row = 0; row + rowBytes <= input.length; row += rowBytes) {
+			if (reverse) {
+				undifference8(input, row, row + rowBytes, stride);
+				System.arraycopy(input, row, tmp, 0, rowBytes);
+				for (int plane = 0; plane < bytes; plane++) {
+					final int src = plane * samples;
+					int dest = row + (little ? bytes - 1 - plane : plane);
+					for (int s = 0; s < samples; s++, dest += bytes) {
+						input[dest] = tmp[src + s];
+					}
+				}
+			}
+			else {
+				for (int plane = 0; plane < bytes; plane++) {
+					final int dest = plane * samples;
+					int src = row + (little ? bytes - 1 - plane : plane);
+					for (int s = 0; s < samples; s++, src += bytes) {
+						tmp[dest + s] = input[src];
+					}
+				}
+				System.arraycopy(tmp, 0, input, row, rowBytes);
+				difference8(input, row, row + rowBytes, stride);
+			}
+		}
+	}
+
+	/** Gets the number of interleaved samples differenced against each other. */
+	private int samplesPerPixel(final IFD ifd) throws FormatException {
+		final int[] bitsPerSample = ifd.getBitsPerSample();
+		final int planarConfig = ifd.getPlanarConfiguration();
+		if (planarConfig == 2 || bitsPerSample[bitsPerSample.length - 1] == 0) {
+			return 1;
+		}
+		return bitsPerSample.length;
+	}
+
+	// -- Predictor kernels --
+
+	// Each kernel works on the samples in [start, end) of a single row, where
+	// len is the distance in bytes between a sample and its predecessor.
+
+	private static void difference8(final byte[] b, final int start,
+		final int end, final int len)
+	{
+		for (int i = end - 1; i >= start + len; i--) {
+			b[i] -= b[i - len];
+		}
+	}
+
+	private static void undifference8(final byte[] b, final int start,
+		final int end, final int len)
+	{
+		for (int i = start + len; i < end; i++) {
+			b[i] += b[i - len];
+		}
+	}
+
+	private static void difference16(final byte[] b, final int start,
+		final int end, final int len, final boolean little)
+	{
+		final int lo = little ? 0 : 1, hi = 1 - lo;
+		for (int i = end - 2; i >= start + len; i -= 2) {
+			final int j = i - len;
+			final int v = ((b[i + hi] & 0xff) << 8 | b[i + lo] & 0xff) -
+				((b[j + hi] & 0xff) << 8 | b[j + lo] & 0xff);
+			b[i + lo] = (byte) v;
+			b[i + hi] = (byte) (v >> 8);
+		}
+	}
+
+	private static void undifference16(final byte[] b, final int start,
+		final int end, final int len, final boolean little)
+	{
+		final int lo = little ? 0 : 1, hi = 1 - lo;
+		for (int i = start + len; i < end; i += 2) {
+			final int j = i - len;
+			final int v = ((b[i + hi] & 0xff) << 8 | b[i + lo] & 0xff) +
+				((b[j + hi] & 0xff) << 8 | b[j + lo] & 0xff);
+			b[i + lo] = (byte) v;
+			b[i + hi] = (byte) (v >> 8);
+		}
+	}
+
+	private static void difference32(final byte[] b, final int start,
+		final int end, final int len, final boolean little)
+	{
+		final int o0 = little ? 0 : 3, o1 = little ? 1 : 2;
+		final int o2 = little ? 2 : 1, o3 = little ? 3 : 0;
+		for (int i = end - 4; i >= start + len; i -= 4) {
+			final int j = i - len;
+			final int v = get32(b, i, o0, o1, o2, o3) - get32(b, j, o0, o1, o2, o3);
+			b[i + o0] = (byte) v;
+			b[i + o1] = (byte) (v >> 8);
+			b[i + o2] = (byte) (v >> 16);
+			b[i + o3] = (byte) (v >> 24);
+		}
+	}
+
+	private static void undifference32(final byte[] b, final int start,
+		final int end, final int len, final boolean little)
+	{
+		final int o0 = little ? 0 : 3, o1 = little ? 1 : 2;
+		final int o2 = little ? 2 : 1, o3 = little ? 3 : 0;
+		for (int i = start + len; i < end; i += 4) {
+			final int j = i - len;
+			final int v = get32(b, i, o0, o1, o2, o3) + get32(b, j, o0, o1, o2, o3);
+			b[i + o0] = (byte) v;
+			b[i + o1] = (byte) (v >> 8);
+			b[i + o2] = (byte) (v >> 16);
+			b[i + o3] = (byte) (v >> 24);
+		}
+	}
+
+	private static int get32(final byte[] b, final int i, final int o0,
+		final int o1, final int o2, final int o3)
+	{
+		return (b[i + o3] & 0xff) << 24 | (b[i + o2] & 0xff) << 16 |
+			(b[i + o1] & 0xff) << 8 | b[i + o0] & 0xff;
+	}
+
+	private static void differenceN(final byte[] b, final int start,
+		final int end, final int len, final int bytes, final boolean little)
+	{
+		for (int i = end - bytes; i >= start + len; i -= bytes) {
+			final long v = Bytes.toLong(b, i, bytes, little) -
+				Bytes.toLong(b, i - len, bytes, little);
+			Bytes.unpack(v, b, i, bytes, little);
+		}
+	}
+
+	private static void undifferenceN(final byte[] b, final int start,
+		final int end, final int len, final int bytes, final boolean little)
+	{
+		for (int i = start + len; i < end; i += bytes) {
+			final long v = Bytes.toLong(b, i, bytes, little) +
+				Bytes.toLong(b, i - len, bytes, little);
+			Bytes.unpack(v, b, i, bytes, little);
+		}
+	}
+
 }
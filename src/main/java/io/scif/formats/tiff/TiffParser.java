@@ -37,6 +37,7 @@ import io.scif.codec.CodecOptions;
 import io.scif.common.Constants;
 import io.scif.enumeration.EnumException;
 import io.scif.io.RandomAccessInputStream;
+import io.scif.services.MetricsService;
 
 import java.io.IOException;
 import java.util.HashSet;
@@ -88,6 +89,9 @@ public class TiffParser extends AbstractContextual {
 
 	private final LogService log;
 
+	/** Service collecting decoding times, or null if unavailable. */
+	private final MetricsService metrics;
+
 	/** Codec options to be used when decoding compressed pixel data. */
 	private CodecOptions codecOptions = CodecOptions.getDefaultOptions();
 
@@ -105,6 +109,7 @@ public class TiffParser extends AbstractContextual {
 		setContext(context);
 		scifio = new SCIFIO(context);
 		log = scifio.log();
+		metrics = scifio.getContext().getService(MetricsService.class);
 		this.in = in;
 		doCaching = true;
 		try {
@@ -700,9 +705,9 @@ public class TiffParser extends AbstractContextual {
 			final byte[] q = new byte[jpegTable.length + tile.length - 4];
 			System.arraycopy(jpegTable, 0, q, 0, jpegTable.length - 2);
 			System.arraycopy(tile, 2, q, jpegTable.length - 2, tile.length - 2);
-			tile = compression.decompress(scifio.codec(), q, codecOptions);
+			tile = decompress(compression, q);
 		}
-		else tile = compression.decompress(scifio.codec(), tile, codecOptions);
+		else tile = decompress(compression, tile);
 		scifio.tiff().undifference(tile, ifd);
 		unpackBytes(buf, 0, tile, ifd);
 
@@ -975,6 +980,26 @@ public class TiffParser extends AbstractContextual {
 
 	// -- Helper methods - byte stream decoding --
 
+	/**
+	 * Decodes a strip or tile, recording the time taken and the bytes in and
+	 * out per compression type if metrics are enabled.
+	 */
+	private byte[] decompress(final TiffCompression compression,
+		final byte[] input) throws FormatException
+	{
+		if (metrics == null || !metrics.isEnabled()) {
+			return compression.decompress(scifio.codec(), input, codecOptions);
+		}
+		final String prefix = MetricsService.CODEC_PREFIX + compression.name();
+		final long start = System.nanoTime();
+		final byte[] output =
+			compression.decompress(scifio.codec(), input, codecOptions);
+		metrics.time(prefix + ".time", System.nanoTime() - start);
+		metrics.count(prefix + ".bytesIn", input.length);
+		metrics.count(prefix + ".bytesOut", output.length);
+		return output;
+	}
+
 	/**
 	 * Extracts pixel information from the given byte array according to the bits
 	 * per sample, photometric interpretation and color map IFD directory entry
@@ -41,14 +41,18 @@ import io.scif.util.FormatTools;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.scijava.AbstractContextual;
 import org.scijava.Context;
 import org.scijava.log.LogService;
+import org.scijava.thread.ThreadService;
 
 /**
  * Writes TIFF data to an output location.
@@ -376,19 +380,50 @@ public class TiffSaver extends AbstractContextual {
 		// this operation is NOT synchronized and is the ONLY portion of the
 		// TiffWriter.saveBytes() --> TiffSaver.writeImage() stack that is NOT
 		// synchronized.
+		final int channels = interleaved ? nChannels : 1;
 		final byte[][] strips = new byte[nStrips][];
-		for (int strip = 0; strip < nStrips; strip++) {
-			strips[strip] = stripBuf[strip].toByteArray();
-			scifio.tiff().difference(strips[strip], ifd);
-			final CodecOptions codecOptions =
-				compression.getCompressionCodecOptions(ifd, options);
-			codecOptions.height = tileHeight;
-			codecOptions.width = tileWidth;
-			codecOptions.channels = interleaved ? nChannels : 1;
-
-			strips[strip] =
-				compression.compress(scifio.codec(), strips[strip], codecOptions);
-			if (log.isDebug()) {
+		final ThreadService threadService = getContext() == null ? null
+			: getContext().getService(ThreadService.class);
+		final int threads = options == null ? 1 : Math.min(nStrips,
+			options.compressionThreads);
+		if (threadService == null || threads <= 1) {
+			for (int strip = 0; strip < nStrips; strip++) {
+				strips[strip] = compressStrip(stripBuf[strip], ifd, compression,
+					tileWidth, tileHeight, channels, false);
+			}
+		}
+		else {
+			// Compress a strip per thread, keeping each codec single-threaded.
+			final List<Future<byte[]>> pending = new ArrayList<>(threads);
+			try {
+				int next = 0;
+				for (int strip = 0; strip < nStrips; strip++) {
+					while (next < nStrips && pending.size() < threads) {
+						final ByteArrayOutputStream in = stripBuf[next++];
+						pending.add(threadService.run(() -> compressStrip(in, ifd,
+							compression, tileWidth, tileHeight, channels, true)));
+					}
+					strips[strip] = pending.remove(0).get();
+				}
+			}
+			catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while compressing strip");
+			}
+			catch (final ExecutionException e) {
+				if (e.getCause() instanceof FormatException) {
+					throw (FormatException) e.getCause();
+				}
+				throw new FormatException(e.getCause());
+			}
+			finally {
+				for (final Future<byte[]> f : pending) {
+					f.cancel(true);
+				}
+			}
+		}
+		if (log.isDebug()) {
+			for (int strip = 0; strip < nStrips; strip++) {
 				log.debug(String.format("Compressed strip %d/%d length %d", strip + 1,
 					nStrips, strips[strip].length));
 			}
@@ -400,6 +435,28 @@ public class TiffSaver extends AbstractContextual {
 		}
 	}
 
+	/**
+	 * Applies differencing and compression to one strip of pixels.
+	 *
+	 * @param singleThreaded Whether the codec must not use threads of its own,
+	 *          because strips are already being compressed in parallel.
+	 */
+	private byte[] compressStrip(final ByteArrayOutputStream stripBuf,
+		final IFD ifd, final TiffCompression compression, final int tileWidth,
+		final int tileHeight, final int channels, final boolean singleThreaded)
+		throws FormatException
+	{
+		final byte[] strip = stripBuf.toByteArray();
+		scifio.tiff().difference(strip, ifd);
+		final CodecOptions codecOptions =
+			compression.getCompressionCodecOptions(ifd, options);
+		codecOptions.height = tileHeight;
+		codecOptions.width = tileWidth;
+		codecOptions.channels = channels;
+		if (singleThreaded) codecOptions.compressionThreads = 1;
+		return compression.compress(scifio.codec(), strip, codecOptions);
+	}
+
 	/**
 	 * Performs the actual work of dealing with IFD data and writing it to the
 	 * TIFF for a given image or sub-image.
@@ -40,7 +40,12 @@ import io.scif.SCIFIOService;
  */
 public interface TiffService extends SCIFIOService {
 
-	/** Performs in-place differencing according to the given predictor value. */
+	/**
+	 * Performs in-place differencing according to the given predictor value:
+	 * 1 (none), 2 (horizontal differencing) or 3 (floating point horizontal
+	 * differencing). The input is one strip or tile, {@link IFD#getTileWidth()}
+	 * pixels wide.
+	 */
 	void difference(byte[] input, IFD ifd) throws FormatException;
 
 	/** Undoes in-place differencing according to the given predictor value. */
@@ -70,6 +70,7 @@ import javax.swing.JScrollPane;
 import javax.swing.JSlider;
 import javax.swing.ProgressMonitor;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
 import javax.swing.border.BevelBorder;
 import javax.swing.border.EmptyBorder;
 import javax.swing.event.ChangeEvent;
@@ -135,7 +136,8 @@ public class ImageViewer extends JFrame implements ActionListener,
 
 	private String filename;
 
-	private BufferedImage[] images;
+	/** Source of the displayed images, loaded on demand. */
+	private LazyImageModel model;
 
 	private boolean anim = false;
 
@@ -263,19 +265,8 @@ public class ImageViewer extends JFrame implements ActionListener,
 		try {
 			canCloseReader = true;
 			myReader = initializeService.initializeReader(id);
-			final long planeCount = myReader.getMetadata().get(0).getPlaneCount();
-			final ProgressMonitor progress =
-				new ProgressMonitor(this, "Reading " + id, null, 0, 1);
-			progress.setProgress(1);
-			final BufferedImage[] img = new BufferedImage[(int) planeCount];
-			for (long planeIndex = 0; planeIndex < planeCount; planeIndex++) {
-				if (progress.isCanceled()) break;
-				final Plane plane = myReader.openPlane(0, planeIndex);
-				img[(int) planeIndex] = AWTImageTools.openImage(plane, myReader, 0);
-			}
-			progress.setProgress(2);
-			setImages(myReader, img);
-			myReader.close(true);
+			// planes are read as they are displayed, so the reader stays open
+			setModel(myReader, LazyImageModel.forReader(myReader, 0));
 		}
 		catch (final FormatException exc) {
 			logService.info("", exc);
@@ -295,23 +286,23 @@ public class ImageViewer extends JFrame implements ActionListener,
 	 * writer.
 	 */
 	public void save(final String id) {
-		if (images == null) return;
+		if (model == null) return;
 		wait(true);
 		try {
 			myWriter.setDest(id);
 			final boolean stack = myWriter.canDoStacks();
 			final ProgressMonitor progress =
 				new ProgressMonitor(this, "Saving " + id, null, 0, stack
-					? images.length : 1);
+					? model.getImageCount() : 1);
 			if (stack) {
 				// save entire stack
-				for (int i = 0; i < images.length; i++) {
+				for (int i = 0; i < model.getImageCount(); i++) {
 					progress.setProgress(i);
 					final boolean canceled = progress.isCanceled();
-					myWriter.savePlane(0, i, getPlane(images[i]));
+					myWriter.savePlane(0, i, getPlane(model.getImage(i)));
 					if (canceled) break;
 				}
-				progress.setProgress(images.length);
+				progress.setProgress(model.getImageCount());
 			}
 			else {
 				// save current image only
@@ -339,19 +330,31 @@ public class ImageViewer extends JFrame implements ActionListener,
 	 * metadata from the specified format reader.
 	 */
 	public void setImages(final Reader reader, final BufferedImage[] img) {
+		setModel(reader, LazyImageModel.forImages(img));
+	}
+
+	/**
+	 * Sets the viewer to display the images of the given model, obtaining
+	 * corresponding core metadata from the specified format reader. Only the
+	 * first image is loaded before returning; the others are loaded as they are
+	 * displayed.
+	 */
+	public void setModel(final Reader reader, final LazyImageModel lazyModel) {
 		filename = reader == null ? null : reader.getCurrentFile();
 		myReader = reader;
-		images = img;
+		if (model != null && model != lazyModel) model.close();
+		model = lazyModel;
+		final int imageCount = model.getImageCount();
 
 		fileView.setEnabled(true);
 
 		fileSave.setEnabled(true);
 		nSlider.removeChangeListener(this);
 		nSlider.setValue(1);
-		nSlider.setMaximum(images.length);
-		nSlider.setEnabled(images.length > 1);
+		nSlider.setMaximum(imageCount);
+		nSlider.setEnabled(imageCount > 1);
 		nSlider.addChangeListener(this);
-		sliderPanel.setVisible(images.length > 1);
+		sliderPanel.setVisible(imageCount > 1);
 
 		updateLabel(-1, -1);
 		sb.setLength(0);
@@ -370,14 +373,33 @@ public class ImageViewer extends JFrame implements ActionListener,
 		if (filename != null || format != null) sb.append("- ");
 		sb.append(TITLE);
 		setTitle(sb.toString());
-		if (images != null) icon.setImage(images[0]);
+		final BufferedImage first = imageCount > 0 ? getImage() : null;
+		if (first != null) icon.setImage(first);
 		pack();
 	}
 
-	/** Gets the currently displayed image. */
+	/** Gets the model supplying the displayed images. */
+	public LazyImageModel getModel() {
+		return model;
+	}
+
+	/**
+	 * Gets the currently displayed image, waiting for it to be loaded if
+	 * necessary.
+	 */
 	public BufferedImage getImage() {
 		final int ndx = getPlaneIndex();
-		return images == null || ndx >= images.length ? null : images[ndx];
+		if (model == null || ndx >= model.getImageCount()) return null;
+		try {
+			return model.getImage(ndx);
+		}
+		catch (final FormatException exc) {
+			logService.info("", exc);
+		}
+		catch (final IOException exc) {
+			logService.info("", exc);
+		}
+		return null;
 	}
 
 	public Plane getPlane(final BufferedImage image) {
@@ -485,18 +507,39 @@ public class ImageViewer extends JFrame implements ActionListener,
 	/** Handles slider events. */
 	@Override
 	public void stateChanged(final ChangeEvent e) {
-		final boolean outOfBounds = false;
 		updateLabel(-1, -1);
-		final BufferedImage image = outOfBounds ? null : getImage();
-		if (image == null) {
-			iconLabel.setIcon(null);
-			iconLabel.setText("No image plane");
+		final int ndx = getPlaneIndex();
+		if (model == null || ndx >= model.getImageCount()) {
+			showImage(null);
+			return;
 		}
-		else {
-			icon.setImage(image);
-			iconLabel.setIcon(icon);
-			iconLabel.setText(null);
+		final BufferedImage image = model.getCachedImage(ndx);
+		if (image != null) {
+			showImage(image);
+			return;
 		}
+		iconLabel.setText("Loading image plane...");
+		model.request(ndx, new LazyImageModel.Listener() {
+
+			@Override
+			public void imageLoaded(final int index, final BufferedImage loaded) {
+				SwingUtilities.invokeLater(new Runnable() {
+
+					@Override
+					public void run() {
+						// the slider may have moved on in the meantime
+						if (index != getPlaneIndex()) return;
+						showImage(loaded);
+						updateLabel(-1, -1);
+					}
+				});
+			}
+
+			@Override
+			public void loadFailed(final int index, final Throwable cause) {
+				logService.info("", cause);
+			}
+		});
 	}
 
 	// -- KeyListener API methods --
@@ -568,6 +611,9 @@ public class ImageViewer extends JFrame implements ActionListener,
 			if (myWriter != null) {
 				myWriter.close();
 			}
+			if (model != null) {
+				model.close();
+			}
 			if (canCloseReader && myReader != null) {
 				myReader.close();
 			}
@@ -581,22 +627,24 @@ public class ImageViewer extends JFrame implements ActionListener,
 
 	/** Updates cursor probe label. */
 	protected void updateLabel(int x, int y) {
-		if (images == null) return;
+		if (model == null) return;
 		final int ndx = getPlaneIndex();
+		final int imageCount = model.getImageCount();
+		if (ndx >= imageCount) return;
 		sb.setLength(0);
-		if (images.length > 1) {
+		if (imageCount > 1) {
 			sb.append("N=");
 			sb.append(ndx + 1);
 			sb.append("/");
-			sb.append(images.length);
+			sb.append(imageCount);
 		}
-		final BufferedImage image = images[ndx];
+		final BufferedImage image = model.getCachedImage(ndx);
 		final int w = image == null ? -1 : image.getWidth();
 		final int h = image == null ? -1 : image.getHeight();
 		if (x >= w) x = w - 1;
 		if (y >= h) y = h - 1;
 		if (x >= 0 && y >= 0) {
-			if (images.length > 1) sb.append("; ");
+			if (imageCount > 1) sb.append("; ");
 			sb.append("X=");
 			sb.append(x);
 			if (w > 0) {
@@ -628,6 +676,19 @@ public class ImageViewer extends JFrame implements ActionListener,
 		probeLabel.setText(sb.toString());
 	}
 
+	/** Displays the given image, or a placeholder if there is none. */
+	protected void showImage(final BufferedImage image) {
+		if (image == null) {
+			iconLabel.setIcon(null);
+			iconLabel.setText("No image plane");
+		}
+		else {
+			icon.setImage(image);
+			iconLabel.setIcon(icon);
+			iconLabel.setText(null);
+		}
+	}
+
 	/** Toggles wait cursor. */
 	protected void wait(final boolean wait) {
 		setCursor(wait ? Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR) : null);
@@ -643,6 +704,8 @@ public class ImageViewer extends JFrame implements ActionListener,
 			@Override
 			public void run() {
 				try {
+					// stop loading from the old reader before closing it
+					if (model != null) model.close();
 					myReader.close();
 				}
 				catch (final IOException exc) {
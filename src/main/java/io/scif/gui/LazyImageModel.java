@@ -0,0 +1,431 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.gui;
+
+import io.scif.FormatException;
+import io.scif.Plane;
+import io.scif.Reader;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the planes of an image on demand as {@link BufferedImage}s, keeping
+ * the most recently used ones in a cache bounded by their total size in bytes.
+ * Whenever an image is requested, its neighbours in the direction of travel
+ * are loaded in the background, so that stepping through a stack stays
+ * smooth.
+ * <p>
+ * All loading happens on a single worker thread, so the underlying
+ * {@link Reader} is never accessed concurrently. This class has no Swing
+ * dependencies: callers on the event dispatch thread should use
+ * {@link #getCachedImage} and {@link #request}, and leave blocking
+ * {@link #getImage} calls to other threads.
+ * </p>
+ */
+public class LazyImageModel implements Closeable {
+
+	// -- Constants --
+
+	/** Default size of the image cache, in bytes. */
+	public static final long DEFAULT_CACHE_BYTES = Math.min(256L << 20, Runtime
+		.getRuntime().maxMemory() / 4);
+
+	/** Default number of images to prefetch ahead of the current one. */
+	public static final int DEFAULT_PREFETCH = 2;
+
+	// -- Fields --
+
+	private final int imageCount;
+
+	private final ImageLoader loader;
+
+	private final long maxBytes;
+
+	private final int prefetch;
+
+	/** Cached images, in access order. */
+	private final LinkedHashMap<Integer, BufferedImage> cache =
+		new LinkedHashMap<>(16, 0.75f, true);
+
+	private long cacheBytes;
+
+	/** Loads which have been submitted but have not completed yet. */
+	private final Map<Integer, Future<BufferedImage>> pending = new HashMap<>();
+
+	private final ExecutorService executor;
+
+	/** Most recently requested index. */
+	private volatile int current;
+
+	/** Direction in which the requested index last moved. */
+	private int direction = 1;
+
+	// -- Constructors --
+
+	/** Creates a model with the default cache size and prefetch distance. */
+	public LazyImageModel(final int imageCount, final ImageLoader loader) {
+		this(imageCount, loader, DEFAULT_CACHE_BYTES, DEFAULT_PREFETCH);
+	}
+
+	/**
+	 * Creates a model for {@code imageCount} images.
+	 *
+	 * @param loader loads images by index; only ever called from one thread
+	 * @param maxBytes maximum total size of the cached images. The most
+	 *          recently used image is always kept, even if larger.
+	 * @param prefetch number of images to load ahead of a requested one
+	 */
+	public LazyImageModel(final int imageCount, final ImageLoader loader,
+		final long maxBytes, final int prefetch)
+	{
+		this.imageCount = imageCount;
+		this.loader = loader;
+		this.maxBytes = maxBytes;
+		this.prefetch = prefetch;
+		executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread t = new Thread(r, "LazyImageModel-Loader");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * Creates a model rendering the planes of the given image of a reader
+	 * with {@link AWTImageTools#openImage}.
+	 */
+	public static LazyImageModel forReader(final Reader reader,
+		final int imageIndex)
+	{
+		final long planeCount =
+			reader.getMetadata().get(imageIndex).getPlaneCount();
+		return new LazyImageModel((int) planeCount, new ImageLoader() {
+
+			@Override
+			public BufferedImage load(final int index) throws FormatException,
+				IOException
+			{
+				final Plane plane = reader.openPlane(imageIndex, index);
+				return AWTImageTools.openImage(plane, reader, imageIndex);
+			}
+		});
+	}
+
+	/** Creates a model serving the given, already loaded, images. */
+	public static LazyImageModel forImages(final BufferedImage[] images) {
+		return new LazyImageModel(images.length, new ImageLoader() {
+
+			@Override
+			public BufferedImage load(final int index) {
+				return images[index];
+			}
+		}, Long.MAX_VALUE, 0);
+	}
+
+	// -- LazyImageModel methods --
+
+	public int getImageCount() {
+		return imageCount;
+	}
+
+	/**
+	 * Gets the image at the given index, loading it first if needed, and
+	 * starts prefetching its neighbours.
+	 */
+	public BufferedImage getImage(final int index) throws FormatException,
+		IOException
+	{
+		while (true) {
+			final Future<BufferedImage> future;
+			synchronized (this) {
+				final BufferedImage image = hit(index);
+				if (image != null) return image;
+				future = submit(index);
+				prefetch(index);
+			}
+			final BufferedImage image = await(index, future);
+			// null means a prefetch was skipped as stale just before this request
+			if (image != null) return image;
+		}
+	}
+
+	/**
+	 * Gets the image at the given index if it is cached, without blocking.
+	 * Neighbouring images are prefetched either way.
+	 *
+	 * @return the image, or null if it has not been loaded yet
+	 */
+	public synchronized BufferedImage getCachedImage(final int index) {
+		final BufferedImage image = hit(index);
+		if (image == null) submit(index);
+		prefetch(index);
+		return image;
+	}
+
+	/**
+	 * Loads the image at the given index in the background, notifying the
+	 * listener on the loader thread once it is available. If the image is
+	 * already cached, the listener is notified immediately.
+	 */
+	public void request(final int index, final Listener listener) {
+		final BufferedImage image;
+		synchronized (this) {
+			image = hit(index);
+			if (image == null) notifyWhenLoaded(index, submit(index), listener);
+			prefetch(index);
+		}
+		if (image != null) listener.imageLoaded(index, image);
+	}
+
+	/**
+	 * Checks whether the image at the given index is cached, without counting
+	 * as a request for it.
+	 */
+	public synchronized boolean isCached(final int index) {
+		return cache.containsKey(index);
+	}
+
+	/** Gets the number of images currently cached. */
+	public synchronized int getCachedCount() {
+		return cache.size();
+	}
+
+	/** Gets the total size of the images currently cached, in bytes. */
+	public synchronized long getCachedBytes() {
+		return cacheBytes;
+	}
+
+	// -- Closeable API methods --
+
+	/**
+	 * Stops the loader thread and empties the cache. Waits for any load in
+	 * progress to finish, so the underlying reader may safely be closed
+	 * afterwards; hence this must not be called from a {@link Listener}.
+	 */
+	@Override
+	public void close() {
+		executor.shutdownNow();
+		try {
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (this) {
+			cache.clear();
+			cacheBytes = 0;
+			pending.clear();
+		}
+	}
+
+	// -- Helper methods --
+
+	/** Waits for a load to complete, unwrapping any failure. */
+	private BufferedImage await(final int index,
+		final Future<BufferedImage> future) throws FormatException, IOException
+	{
+		try {
+			return future.get();
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while loading image " + index, e);
+		}
+		catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof FormatException) throw (FormatException) cause;
+			if (cause instanceof IOException) throw (IOException) cause;
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Notifies the listener on the loader thread once the given load completes.
+	 * If the load was a prefetch skipped as stale just before the request, it is
+	 * submitted again while the index is still current, as in
+	 * {@link #getImage}; otherwise the listener is told the load failed.
+	 */
+	void notifyWhenLoaded(final int index, final Future<BufferedImage> future,
+		final Listener listener)
+	{
+		executor.submit(new Runnable() {
+
+			@Override
+			public void run() {
+				final BufferedImage loaded;
+				try {
+					loaded = future.get();
+				}
+				catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+				catch (final ExecutionException e) {
+					listener.loadFailed(index, e.getCause());
+					return;
+				}
+				if (loaded != null) {
+					listener.imageLoaded(index, loaded);
+					return;
+				}
+				final BufferedImage cached;
+				synchronized (LazyImageModel.this) {
+					if (index != current) cached = null;
+					else {
+						cached = cache.get(index);
+						if (cached == null) {
+							notifyWhenLoaded(index, submit(index), listener);
+							return;
+						}
+					}
+				}
+				if (cached != null) listener.imageLoaded(index, cached);
+				else {
+					listener.loadFailed(index, new CancellationException("Image " +
+						index + " was no longer current when loaded"));
+				}
+			}
+		});
+	}
+
+	/** Records a request for the given index, and returns its image if cached. */
+	private BufferedImage hit(final int index) {
+		if (index < 0 || index >= imageCount) {
+			throw new IndexOutOfBoundsException("Invalid image index: " + index);
+		}
+		if (index != current) direction = index > current ? 1 : -1;
+		current = index;
+		return cache.get(index);
+	}
+
+	/** Queues the images following the given index in the current direction. */
+	private void prefetch(final int index) {
+		for (int i = 1; i <= prefetch; i++) {
+			final int next = index + i * direction;
+			if (next < 0 || next >= imageCount) break;
+			if (!cache.containsKey(next)) submit(next);
+		}
+	}
+
+	/** Submits a load of the given index, unless one is already pending. */
+	private Future<BufferedImage> submit(final int index) {
+		Future<BufferedImage> future = pending.get(index);
+		if (future != null) return future;
+		future = executor.submit(new Callable<BufferedImage>() {
+
+			@Override
+			public BufferedImage call() throws Exception {
+				try {
+					synchronized (LazyImageModel.this) {
+						final BufferedImage cached = cache.get(index);
+						if (cached != null) return cached;
+						if (Math.abs(index - current) > prefetch) {
+							// the viewer has moved on; a stale prefetch is not needed
+							return null;
+						}
+					}
+					final BufferedImage image = loader.load(index);
+					synchronized (LazyImageModel.this) {
+						store(index, image);
+					}
+					return image;
+				}
+				finally {
+					synchronized (LazyImageModel.this) {
+						pending.remove(index);
+					}
+				}
+			}
+		});
+		pending.put(index, future);
+		return future;
+	}
+
+	/** Adds an image to the cache, evicting the least recently used ones. */
+	private void store(final int index, final BufferedImage image) {
+		if (image == null) return;
+		final BufferedImage old = cache.put(index, image);
+		if (old != null) cacheBytes -= sizeOf(old);
+		cacheBytes += sizeOf(image);
+		final Iterator<Map.Entry<Integer, BufferedImage>> iter =
+			cache.entrySet().iterator();
+		while (cacheBytes > maxBytes && cache.size() > 1 && iter.hasNext()) {
+			final Map.Entry<Integer, BufferedImage> entry = iter.next();
+			if (entry.getKey() == current) continue;
+			cacheBytes -= sizeOf(entry.getValue());
+			iter.remove();
+		}
+	}
+
+	/** Estimates the memory held by an image's pixels. */
+	private static long sizeOf(final BufferedImage image) {
+		final DataBuffer buffer = image.getRaster().getDataBuffer();
+		return (long) buffer.getSize() * buffer.getNumBanks() *
+			DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+	}
+
+	// -- Helper classes --
+
+	/** Loads an image by index. */
+	public interface ImageLoader {
+
+		BufferedImage load(int index) throws FormatException, IOException;
+	}
+
+	/** Receives asynchronously loaded images. */
+	public interface Listener {
+
+		/** Called once the image at the given index is available. */
+		void imageLoaded(int index, BufferedImage image);
+
+		/** Called if the image at the given index could not be loaded. */
+		void loadFailed(int index, Throwable cause);
+	}
+}
@@ -34,6 +34,7 @@ import io.scif.img.cell.SCIFIOImgCells.CellCache;
 import io.scif.img.cell.cache.CacheService;
 import io.scif.img.cell.loaders.SCIFIOArrayLoader;
 import io.scif.refs.RefManagerService;
+import io.scif.services.MetricsService;
 
 import java.lang.ref.WeakReference;
 import java.util.Map;
@@ -70,6 +71,9 @@ public class SCIFIOCellCache<A extends ArrayDataAccess<?>> implements
 	@Parameter
 	private LogService logService;
 
+	@Parameter(required = false)
+	private MetricsService metricsService;
+
 	// -- Fields --
 
 	/**
@@ -138,6 +142,11 @@ public class SCIFIOCellCache<A extends ArrayDataAccess<?>> implements
 	{
 		SCIFIOCell<A> cell = checkCache(cacheId, index);
 
+		if (metricsService != null && metricsService.isEnabled()) {
+			metricsService.count(cell == null ? MetricsService.CACHE_MISSES
+				: MetricsService.CACHE_HITS, 1);
+		}
+
 		if (cell != null) {
 			return cell;
 		}
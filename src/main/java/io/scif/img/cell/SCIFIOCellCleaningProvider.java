@@ -56,6 +56,14 @@ public class SCIFIOCellCleaningProvider extends AbstractSCIFIOPlugin implements
 	RefProvider
 {
 
+	// -- Parameters --
+
+	@Parameter
+	private LogService logService;
+
+	@Parameter
+	private CacheService<SCIFIOCell<?>> cacheService;
+
 	// -- RefProvider API --
 
 	@Override
@@ -69,9 +77,8 @@ public class SCIFIOCellCleaningProvider extends AbstractSCIFIOPlugin implements
 	public Reference makeRef(final Object referent, final ReferenceQueue queue,
 		final Object... params)
 	{
-		final Reference ref = new SCIFIOCellCleaner(referent, queue);
-		getContext().inject(ref);
-		return ref;
+		// NB: Avoid injecting each reference, as a cell scan makes millions.
+		return new SCIFIOCellCleaner(referent, queue, logService, cacheService);
 	}
 
 	// -- Provided reference class --
@@ -116,8 +123,16 @@ public class SCIFIOCellCleaningProvider extends AbstractSCIFIOPlugin implements
 		// -- Constructor --
 
 		public SCIFIOCellCleaner(final Object referent, final ReferenceQueue queue)
+		{
+			this(referent, queue, null, null);
+		}
+
+		public SCIFIOCellCleaner(final Object referent, final ReferenceQueue queue,
+			final LogService logService, final CacheService<SCIFIOCell<?>> service)
 		{
 			super((SCIFIOCell<A>) referent, queue);
+			this.logService = logService;
+			this.service = service;
 			// The cell needs to be reconstructed, basically, to cache it.
 			// So we need to store every non-transient field.
 			final SCIFIOCell<A> cell = (SCIFIOCell<A>) referent;
@@ -47,8 +47,6 @@ import net.imagej.axis.CalibratedAxis;
 import net.imglib2.display.ColorTable;
 import net.imglib2.type.numeric.RealType;
 
-import org.scijava.plugin.Parameter;
-
 /**
  * Abstract superclass for all {@link SCIFIOArrayLoader} implementations.
  * <p>
@@ -69,17 +67,27 @@ public abstract class AbstractArrayLoader<A> implements SCIFIOArrayLoader<A> {
 
 	final private boolean compatible;
 
-	@Parameter
-	private ImgUtilityService imgUtilityService;
+	final private ImgUtilityService imgUtilityService;
 
 	private List<List<ColorTable>> tables;
 
 	private boolean[][] loadedTable;
 
 	public AbstractArrayLoader(final Reader reader, final ImageRegion subRegion) {
+		this(reader, subRegion, reader.getContext().getService(
+			ImgUtilityService.class));
+	}
+
+	/**
+	 * Creates a loader with the given utility service, rather than looking it
+	 * up in the reader's context. Useful when many loaders are created.
+	 */
+	public AbstractArrayLoader(final Reader reader, final ImageRegion subRegion,
+		final ImgUtilityService imgUtilityService)
+	{
 		this.reader = reader;
 		this.subRegion = subRegion;
-		reader.getContext().inject(this);
+		this.imgUtilityService = imgUtilityService;
 		final RealType<?> inputType =
 			imgUtilityService.makeType(reader.getMetadata().get(0).getPixelType());
 		compatible = outputClass().isAssignableFrom(inputType.getClass());
@@ -33,6 +33,7 @@ package io.scif.img.cell.loaders;
 import io.scif.ImageMetadata;
 import io.scif.Reader;
 import io.scif.img.ImageRegion;
+import io.scif.img.ImgUtilityService;
 import io.scif.util.FormatTools;
 
 import net.imglib2.img.basictypeaccess.array.ByteArray;
@@ -49,6 +50,12 @@ public class ByteArrayLoader extends AbstractArrayLoader<ByteArray> {
 		super(reader, subRegion);
 	}
 
+	public ByteArrayLoader(final Reader reader, final ImageRegion subRegion,
+		final ImgUtilityService imgUtilityService)
+	{
+		super(reader, subRegion, imgUtilityService);
+	}
+
 	@Override
 	public void convertBytes(final ByteArray data, final byte[] bytes,
 		final int planesRead)
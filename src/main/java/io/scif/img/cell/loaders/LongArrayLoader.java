@@ -33,6 +33,7 @@ package io.scif.img.cell.loaders;
 import io.scif.ImageMetadata;
 import io.scif.Reader;
 import io.scif.img.ImageRegion;
+import io.scif.img.ImgUtilityService;
 import io.scif.util.FormatTools;
 
 import java.nio.ByteBuffer;
@@ -52,6 +53,12 @@ public class LongArrayLoader extends AbstractArrayLoader<LongArray> {
 		super(reader, subRegion);
 	}
 
+	public LongArrayLoader(final Reader reader, final ImageRegion subRegion,
+		final ImgUtilityService imgUtilityService)
+	{
+		super(reader, subRegion, imgUtilityService);
+	}
+
 	@Override
 	public void convertBytes(final LongArray data, final byte[] bytes,
 		final int planesRead)
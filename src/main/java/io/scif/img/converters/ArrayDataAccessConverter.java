@@ -32,6 +32,8 @@ package io.scif.img.converters;
 
 import io.scif.Reader;
 import io.scif.config.SCIFIOConfig;
+import io.scif.img.ImgUtilityService;
+import io.scif.img.cell.loaders.AbstractArrayLoader;
 import io.scif.img.cell.loaders.ByteArrayLoader;
 import io.scif.img.cell.loaders.CharArrayLoader;
 import io.scif.img.cell.loaders.DoubleArrayLoader;
@@ -40,6 +42,11 @@ import io.scif.img.cell.loaders.IntArrayLoader;
 import io.scif.img.cell.loaders.LongArrayLoader;
 import io.scif.img.cell.loaders.ShortArrayLoader;
 
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+
 import net.imagej.ImgPlus;
 import net.imglib2.img.array.ArrayImg;
 import net.imglib2.img.basictypeaccess.array.ByteArray;
@@ -51,17 +58,38 @@ import net.imglib2.img.basictypeaccess.array.LongArray;
 import net.imglib2.img.basictypeaccess.array.ShortArray;
 import net.imglib2.type.numeric.RealType;
 
+import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
 
 /**
  * {@link PlaneConverter} implementation specialized for populating
  * {@link ArrayImg} instances.
+ * <p>
+ * The array loader that converts planes is reused for each reader and
+ * thread until the next garbage collection, rather than created once per
+ * plane, so converting a long series costs a few loader constructions rather
+ * than thousands.
+ * </p>
  *
  * @author Mark Hiner
  */
 @Plugin(type = PlaneConverter.class, name = "ArrayDataAccess")
 public class ArrayDataAccessConverter extends AbstractPlaneConverter {
 
+	@Parameter
+	private ImgUtilityService imgUtilityService;
+
+	/**
+	 * Loaders of each thread, by reader. A loader refers to its reader, so
+	 * loaders are weakly held too: otherwise the weakly held reader keys would
+	 * never be collected, and a singleton converter would keep every reader
+	 * alive. A loader is thus reused until the next garbage collection, rather
+	 * than being created for every plane. Entries are also purged once their
+	 * reader is closed.
+	 */
+	private final ThreadLocal<Map<Reader, CachedLoader>> loaders = ThreadLocal
+		.withInitial(WeakHashMap::new);
+
 	@Override
 	public <T extends RealType<T>> void populatePlane(final Reader reader,
 		final int imageIndex, final int planeIndex, final byte[] source,
@@ -71,8 +99,6 @@ public class ArrayDataAccessConverter extends AbstractPlaneConverter {
 
 		final Object store = arrayImg.update(null);
 
-		// FIXME actually do need to pass a reader w/ metadata to the loader
-
 		// FIXME loaders are faster than byte buffers but of course slower than
 		// a
 		// direct system.arraycopy call, and slower still than passing the array
@@ -80,42 +106,106 @@ public class ArrayDataAccessConverter extends AbstractPlaneConverter {
 		// however that simply may not be feasible given the variety of data
 		// types.
 
+		@SuppressWarnings("unchecked")
+		final AbstractArrayLoader<Object> loader =
+			(AbstractArrayLoader<Object>) getLoader(reader, store, config);
+		if (loader != null) loader.convertBytes(store, source, planeIndex);
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * @return a loader for the given reader and store, or null if the store is
+	 *         not a supported array type
+	 */
+	AbstractArrayLoader<?> getLoader(final Reader reader,
+		final Object store, final SCIFIOConfig config)
+	{
+		final int pixelType = reader.getMetadata().get(0).getPixelType();
+		final Map<Reader, CachedLoader> threadLoaders = loaders.get();
+		final CachedLoader cached = threadLoaders.get(reader);
+		AbstractArrayLoader<?> loader = cached == null || !cached.matches(
+			pixelType, store) ? null : cached.loader.get();
+		if (loader == null) {
+			// NB: The loader's subregion is not used when converting planes.
+			loader = createLoader(reader, store, config);
+			if (loader == null) return null;
+			purgeClosed(threadLoaders);
+			threadLoaders.put(reader, new CachedLoader(pixelType, store, loader));
+		}
+		return loader;
+	}
+
+	/** Removes the loaders of readers which have been closed. */
+	private static void purgeClosed(final Map<Reader, CachedLoader> map) {
+		final Iterator<Reader> iter = map.keySet().iterator();
+		while (iter.hasNext()) {
+			if (iter.next().getMetadata() == null) iter.remove();
+		}
+	}
+
+	/** @return the number of loaders cached for the current thread */
+	int cachedLoaderCount() {
+		purgeClosed(loaders.get());
+		return loaders.get().size();
+	}
+
+	private AbstractArrayLoader<?> createLoader(final Reader reader,
+		final Object store, final SCIFIOConfig config)
+	{
 		if (store instanceof ByteArray) {
-			final ByteArrayLoader loader =
-				new ByteArrayLoader(reader, config.imgOpenerGetRegion());
-			loader.convertBytes((ByteArray) store, source, planeIndex);
+			return new ByteArrayLoader(reader, config.imgOpenerGetRegion(),
+				imgUtilityService);
 		}
-		else if (store instanceof ShortArray) {
-			final ShortArrayLoader loader =
-				new ShortArrayLoader(reader, config.imgOpenerGetRegion());
-			loader.convertBytes((ShortArray) store, source, planeIndex);
+		if (store instanceof ShortArray) {
+			return new ShortArrayLoader(reader, config.imgOpenerGetRegion(),
+				imgUtilityService);
 		}
-		else if (store instanceof LongArray) {
-			final LongArrayLoader loader =
-				new LongArrayLoader(reader, config.imgOpenerGetRegion());
-			loader.convertBytes((LongArray) store, source, planeIndex);
+		if (store instanceof LongArray) {
+			return new LongArrayLoader(reader, config.imgOpenerGetRegion(),
+				imgUtilityService);
 		}
-		else if (store instanceof CharArray) {
-			final CharArrayLoader loader =
-				new CharArrayLoader(reader, config.imgOpenerGetRegion());
-			loader.convertBytes((CharArray) store, source, planeIndex);
+		if (store instanceof CharArray) {
+			return new CharArrayLoader(reader, config.imgOpenerGetRegion(),
+				imgUtilityService);
 		}
-		else if (store instanceof DoubleArray) {
-			final DoubleArrayLoader loader =
-				new DoubleArrayLoader(reader, config.imgOpenerGetRegion());
-			loader.convertBytes((DoubleArray) store, source, planeIndex);
+		if (store instanceof DoubleArray) {
+			return new DoubleArrayLoader(reader, config.imgOpenerGetRegion(),
+				imgUtilityService);
 		}
-		else if (store instanceof FloatArray) {
-			final FloatArrayLoader loader =
-				new FloatArrayLoader(reader, config.imgOpenerGetRegion());
-			loader.convertBytes((FloatArray) store, source, planeIndex);
+		if (store instanceof FloatArray) {
+			return new FloatArrayLoader(reader, config.imgOpenerGetRegion(),
+				imgUtilityService);
 		}
-		else if (store instanceof IntArray) {
-			final IntArrayLoader loader =
-				new IntArrayLoader(reader, config.imgOpenerGetRegion());
-			loader.convertBytes((IntArray) store, source, planeIndex);
+		if (store instanceof IntArray) {
+			return new IntArrayLoader(reader, config.imgOpenerGetRegion(),
+				imgUtilityService);
 		}
+		return null;
+	}
+
+	// -- Helper classes --
+
+	/** A weakly held loader along with the state it was created for. */
+	private static class CachedLoader {
 
+		private final int pixelType;
+
+		private final Class<?> storeClass;
+
+		private final WeakReference<AbstractArrayLoader<?>> loader;
+
+		private CachedLoader(final int pixelType, final Object store,
+			final AbstractArrayLoader<?> loader)
+		{
+			this.pixelType = pixelType;
+			this.storeClass = store.getClass();
+			this.loader = new WeakReference<>(loader);
+		}
+
+		private boolean matches(final int type, final Object store) {
+			return pixelType == type && storeClass == store.getClass();
+		}
 	}
 
 }
@@ -42,6 +42,12 @@ import org.scijava.plugin.SingletonPlugin;
 /**
  * Interface for using planes read by SCIFIO {@link Reader}s to populate
  * {@link ImgPlus} instances.
+ * <p>
+ * Plane converters are singletons, so implementations must keep no state
+ * between calls that could be observed by other callers, and must be thread
+ * safe: {@link #populatePlane} may be called concurrently for different planes
+ * of the same or different images.
+ * </p>
  *
  * @author Mark Hiner
  */
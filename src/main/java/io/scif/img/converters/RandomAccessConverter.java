@@ -30,12 +30,11 @@
 
 package io.scif.img.converters;
 
-import io.scif.ImageMetadata;
+import io.scif.ImageLayout;
 import io.scif.Metadata;
 import io.scif.Reader;
 import io.scif.config.SCIFIOConfig;
 import io.scif.img.ImgUtilityService;
-import io.scif.util.FormatTools;
 
 import net.imagej.ImgPlus;
 import net.imglib2.RandomAccess;
@@ -69,8 +68,9 @@ public class RandomAccessConverter extends AbstractPlaneConverter {
 	{
 		final Metadata m = reader.getMetadata();
 
-		final int pixelType = m.get(imageIndex).getPixelType();
-		final boolean little = m.get(imageIndex).isLittleEndian();
+		final ImageLayout layout = m.get(imageIndex).getLayout();
+		final int pixelType = layout.getPixelType();
+		final boolean little = layout.isLittleEndian();
 
 		final long[] dimLengths =
 			imgUtilService.getDimLengths(m, imageIndex, config);
@@ -109,13 +109,7 @@ public class RandomAccessConverter extends AbstractPlaneConverter {
 	private void getPosition(final Metadata m, final int imageIndex,
 		final int planeIndex, final long[] pos)
 	{
-		final ImageMetadata meta = m.get(imageIndex);
-		final int offset = meta.getAxes().size() - meta.getAxesNonPlanar().size();
-
-		final long[] axesPositions =
-			FormatTools.rasterToPosition(imageIndex, planeIndex, m);
-		for (int i = 0; i < axesPositions.length; i++) {
-			pos[i + offset] = axesPositions[i];
-		}
+		final ImageLayout layout = m.get(imageIndex).getLayout();
+		layout.planeToPosition(planeIndex, pos, layout.getPlanarAxisCount());
 	}
 }
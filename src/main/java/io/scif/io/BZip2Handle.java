@@ -30,12 +30,26 @@
 
 package io.scif.io;
 
+import io.scif.common.CRC;
 import io.scif.common.Constants;
 
-import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.scijava.Context;
 import org.scijava.log.LogService;
@@ -45,6 +59,21 @@ import org.scijava.plugin.Plugin;
 /**
  * StreamHandle implementation for reading from BZip2-compressed files or byte
  * arrays. Instances of BZip2Handle are read-only.
+ * <p>
+ * A bzip2 file is a sequence of independently compressed blocks, each
+ * starting with a 48-bit magic number at an arbitrary bit offset. When a file
+ * is opened, the candidate block boundaries are located with a single scan.
+ * The blocks are then decompressed on a worker pool as reads reach them,
+ * which determines their sizes, and recently used blocks are kept in a
+ * bounded cache, so seeking never restarts decompression from the beginning
+ * of the file.
+ * </p>
+ * <p>
+ * The magic numbers may also occur by chance within the compressed data, so
+ * each block is checked against the CRC stored in its header. When the check
+ * fails, the block is decompressed again together with the data following
+ * the boundary it ended at, as a sequential decoder would read it.
+ * </p>
  *
  * @see StreamHandle
  * @author Melissa Linkert
@@ -52,9 +81,82 @@ import org.scijava.plugin.Plugin;
 @Plugin(type = IStreamAccess.class)
 public class BZip2Handle extends StreamHandle {
 
+	// -- Constants --
+
+	/** Magic number at the start of each block (the BCD digits of pi). */
+	private static final long BLOCK_MAGIC = 0x314159265359L;
+
+	/** Magic number at the end of each stream (the BCD digits of sqrt(pi)). */
+	private static final long END_MAGIC = 0x177245385090L;
+
+	private static final long MAGIC_MASK = (1L << 48) - 1;
+
+	/** Maximum total size of the decompressed blocks kept in memory. */
+	private static final long CACHE_BYTES = 64L * 1024 * 1024;
+
+	/** Generous upper bound of the compressed size of a block, in bits. */
+	private static final long MAX_BLOCK_BITS = 2L * 1024 * 1024 * 8;
+
+	/** Size of the chunks read when scanning for block boundaries. */
+	private static final int SCAN_CHUNK = 1024 * 1024;
+
+	// -- Fields --
+
 	@Parameter
 	private LogService log;
 
+	/** Offset of the bzip2 data within the file. */
+	private long dataOffset;
+
+	/**
+	 * Whether the data is embedded in a file of another type, which is then
+	 * recognized by its content rather than its name.
+	 */
+	private boolean embedded;
+
+	/** Handle to the compressed file. */
+	private IRandomAccess raw;
+
+	/** Number of blocks. */
+	private int blockCount;
+
+	/** Bit offsets of the start of each block. */
+	private long[] blockStarts;
+
+	/** Bit offsets of the end of each block. */
+	private long[] blockEnds;
+
+	/** Bit offsets of the end-of-stream magic numbers found. */
+	private long[] streamEnds;
+
+	/** Number of end-of-stream magic numbers found. */
+	private int streamEndCount;
+
+	/** Number of blocks whose decompressed size is known. */
+	private int measured;
+
+	/**
+	 * Decompressed offsets of the measured blocks, followed by the offset of
+	 * the next block.
+	 */
+	private long[] blockOffsets;
+
+	/** Decompressed blocks, in access order. */
+	private final LinkedHashMap<Integer, byte[]> blocks =
+		new LinkedHashMap<>(16, 0.75f, true);
+
+	/** Total size of the cached blocks. */
+	private long cachedBytes;
+
+	/** Last block read, for detecting sequential access. */
+	private int lastBlock = -1;
+
+	/** Executor decompressing blocks, created on demand. */
+	private ExecutorService executor;
+
+	/** Decompressed position of the next byte read from the stream. */
+	private long position;
+
 	// -- Constructor --
 
 	/**
@@ -82,51 +184,540 @@ public class BZip2Handle extends StreamHandle {
 		setFile(file);
 	}
 
+	/**
+	 * Construct a new BZip2Handle for the bzip2 data starting at the given
+	 * offset of a file, such as data attached to a header.
+	 *
+	 * @throws HandleException if there is no bzip2 data at the given offset.
+	 */
+	public BZip2Handle(final Context context, final String file,
+		final long offset) throws IOException
+	{
+		super(context);
+		dataOffset = offset;
+		embedded = true;
+		setFile(file);
+	}
+
+	// -- BZip2Handle API methods --
+
+	/**
+	 * Gets the number of compressed blocks of the file, decompressing them all
+	 * if necessary.
+	 */
+	public int getBlockCount() throws IOException {
+		measure(Long.MAX_VALUE);
+		return blockCount;
+	}
+
+	// -- IRandomAccess API methods --
+
+	@Override
+	public void seek(final long pos) throws IOException {
+		setFp(pos);
+		position = pos;
+	}
+
+	@Override
+	public void close() throws IOException {
+		super.close();
+		closeIndex();
+	}
+
+	@Override
+	public long length() throws IOException {
+		if (getLength() < 0 && raw != null) {
+			measure(Long.MAX_VALUE);
+			setLength(blockOffsets[blockCount]);
+		}
+		return getLength();
+	}
+
+	// -- DataInput API methods --
+
+	@Override
+	public int skipBytes(final int n) throws IOException {
+		final int skipped = (int) Math.max(0, Math.min(n, length() - getFp()));
+		seek(getFp() + skipped);
+		return skipped;
+	}
+
 	// -- IStreamAccess API methods --
 
 	@Override
 	public boolean isConstructable(final String file) throws IOException {
-		if (!file.toLowerCase().endsWith(".bz2")) return false;
+		if (!isCandidate(file)) return false;
 
 		final FileInputStream s = new FileInputStream(file);
 		final byte[] b = new byte[2];
 		s.read(b);
 		s.close();
-		return new String(b, Constants.ENCODING).equals("BZ");
+		return isConstructable(file, b);
 	}
 
 	@Override
-	public void resetStream() throws IOException {
-		final BufferedInputStream bis =
-			new BufferedInputStream(new FileInputStream(getFile()),
-				RandomAccessInputStream.MAX_OVERHEAD);
-		int skipped = 0;
-		while (skipped < 2) {
-			skipped += bis.skip(2 - skipped);
-		}
-		setStream(new DataInputStream(new CBZip2InputStream(bis, log)));
+	public boolean isCandidate(final String id) {
+		return id.toLowerCase().endsWith(".bz2");
 	}
 
-	// -- IStreamAccess API methods --
+	@Override
+	public boolean isConstructable(final String id, final byte[] header)
+		throws IOException
+	{
+		return isCandidate(id) && header != null && header.length >= 2 &&
+			new String(header, 0, 2, Constants.ENCODING).equals("BZ");
+	}
+
+	@Override
+	public void resetStream() throws IOException {
+		// NB: the stream reads at the current position, so nothing needs to be
+		// decompressed again
+		setFp(0);
+		setMark(0);
+		position = 0;
+	}
 
 	@Override
 	public void setFile(final String file) throws IOException {
 		super.setFile(file);
-		if (!isConstructable(file)) {
+		if (!embedded && !isConstructable(file)) {
 			throw new HandleException(file + " is not a BZip2 file.");
 		}
 
+		closeIndex();
+		raw = new FileHandle(file, "r");
+		if (embedded && !isStreamHeader(dataOffset)) {
+			closeIndex();
+			throw new HandleException(file + " has no bzip2 data at offset " +
+				dataOffset);
+		}
+		scanBlocks();
+
+		setStream(new DataInputStream(new DecompressedStream()));
+		setLength(-1);
 		resetStream();
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Locates the blocks by scanning the file for block and end-of-stream magic
+	 * numbers at every bit offset.
+	 */
+	private void scanBlocks() throws IOException {
+		blockStarts = new long[16];
+		blockEnds = new long[16];
+		streamEnds = new long[16];
+		final long fileLength = raw.length();
+		final byte[] buf = new byte[SCAN_CHUNK];
+		long bits = 0;
+		long pos = dataOffset;
+		raw.seek(pos);
+		while (pos < fileLength) {
+			final int n = (int) Math.min(buf.length, fileLength - pos);
+			raw.readFully(buf, 0, n);
+			for (int i = 0; i < n; i++) {
+				bits = bits << 8 | (buf[i] & 0xff);
+				final long end = (pos + i + 1) * 8;
+				if (end - dataOffset * 8 < 56) continue;
+				// check the magic numbers ending at each of the last 8 bit offsets
+				for (int shift = 7; shift >= 0; shift--) {
+					final long magic = (bits >>> shift) & MAGIC_MASK;
+					if (magic == BLOCK_MAGIC) {
+						final long start = end - shift - 48;
+						endBlock(start);
+						addBlock(start);
+					}
+					else if (magic == END_MAGIC) {
+						endBlock(end - shift - 48);
+						addStreamEnd(end - shift - 48);
+					}
+				}
+			}
+			pos += n;
+		}
+		endBlock(fileLength * 8);
+		blockOffsets = new long[blockCount + 1];
+	}
 
-		int length = 0;
+	private boolean isStreamHeader(final long offset) throws IOException {
+		if (offset + 2 > raw.length()) return false;
+		raw.seek(offset);
+		return raw.readUnsignedByte() == 'B' && raw.readUnsignedByte() == 'Z';
+	}
+
+	private void addBlock(final long start) {
+		if (blockCount == blockStarts.length) {
+			blockStarts = Arrays.copyOf(blockStarts, blockCount * 2);
+			blockEnds = Arrays.copyOf(blockEnds, blockCount * 2);
+		}
+		blockStarts[blockCount] = start;
+		blockEnds[blockCount] = -1;
+		blockCount++;
+	}
+
+	private void addStreamEnd(final long end) {
+		if (streamEndCount == streamEnds.length) {
+			streamEnds = Arrays.copyOf(streamEnds, streamEndCount * 2);
+		}
+		streamEnds[streamEndCount++] = end;
+	}
+
+	/** Ends the current block, if any, at the given bit offset. */
+	private void endBlock(final long end) {
+		if (blockCount > 0 && blockEnds[blockCount - 1] < 0) {
+			blockEnds[blockCount - 1] = end;
+		}
+	}
+
+	/**
+	 * Decompresses blocks, in batches on the worker pool, until the size of the
+	 * block containing the given position is known.
+	 */
+	private void measure(final long pos) throws IOException {
+		while (measured < blockCount && blockOffsets[measured] <= pos) {
+			final int end = Math.min(blockCount, measured + threadCount());
+			final List<Integer> indices = new ArrayList<>();
+			for (int i = measured; i < end; i++) {
+				indices.add(i);
+			}
+			final List<byte[]> decoded = decodeBlocks(indices, null);
+			for (int i = 0; i < decoded.size(); i++) {
+				final byte[] block = decoded.get(i);
+				if (block == null) {
+					// NB: the following blocks must be decoded again after merging
+					mergeBlock(measured);
+					break;
+				}
+				blockOffsets[measured + 1] = blockOffsets[measured] + block.length;
+				cache(measured, block);
+				measured++;
+			}
+		}
+	}
+
+	/**
+	 * Extends a block which failed to decompress over the boundary it ends at,
+	 * on the assumption that the magic number found there was part of the
+	 * compressed data.
+	 */
+	private void mergeBlock(final int index) throws IOException {
+		final long end = blockEnds[index];
+		final boolean blockEnd = index + 1 < blockCount &&
+			blockStarts[index + 1] == end;
+		final long next = blockEnd ? blockEnds[index + 1] : end;
+		if (next - blockStarts[index] > MAX_BLOCK_BITS) {
+			throw new IOException(getFile() + ": corrupt bzip2 block " + index);
+		}
+		final int streamEnd = Arrays.binarySearch(streamEnds, 0, streamEndCount,
+			end);
+		if (blockEnd) {
+			// drop the block magic number
+			blockEnds[index] = next;
+			System.arraycopy(blockStarts, index + 2, blockStarts, index + 1,
+				blockCount - index - 2);
+			System.arraycopy(blockEnds, index + 2, blockEnds, index + 1,
+				blockCount - index - 2);
+			blockCount--;
+		}
+		else if (streamEnd >= 0) {
+			// drop the end-of-stream magic number
+			System.arraycopy(streamEnds, streamEnd + 1, streamEnds, streamEnd,
+				streamEndCount - streamEnd - 1);
+			streamEndCount--;
+			long limit = raw.length() * 8;
+			if (streamEnd < streamEndCount) limit = streamEnds[streamEnd];
+			if (index + 1 < blockCount) {
+				limit = Math.min(limit, blockStarts[index + 1]);
+			}
+			blockEnds[index] = limit;
+		}
+		else {
+			throw new IOException(getFile() + ": corrupt bzip2 block " + index);
+		}
+	}
+
+	/** Reads decompressed data at the given position. */
+	private int readDecompressed(final long pos, final byte[] b, final int off,
+		int len) throws IOException
+	{
+		measure(pos + len - 1);
+		final long length = blockOffsets[measured];
+		if (pos >= length) return -1;
+		len = (int) Math.min(len, length - pos);
+
+		final int first = findBlock(pos);
+		final int last = findBlock(pos + len - 1);
+		int end = last;
+		if (first == lastBlock || first == lastBlock + 1) {
+			// decompress the following measured blocks ahead of sequential reads
+			end = Math.min(measured - 1, last + threadCount() - 1);
+		}
+		lastBlock = last;
+
+		final byte[][] needed = new byte[last - first + 1][];
+		final List<Integer> missing = new ArrayList<>();
+		for (int i = first; i <= end; i++) {
+			final byte[] block = blocks.get(i);
+			if (block == null) missing.add(i);
+			else if (i <= last) needed[i - first] = block;
+		}
+		final List<byte[]> decoded = decodeBlocks(missing, blockOffsets);
+		for (int i = 0; i < missing.size(); i++) {
+			final int index = missing.get(i);
+			if (index <= last) needed[index - first] = decoded.get(i);
+			cache(index, decoded.get(i));
+		}
+
+		int n = 0;
+		for (int i = 0; i < needed.length; i++) {
+			final int blockOff = (int) (pos + n - blockOffsets[first + i]);
+			final int count = Math.min(needed[i].length - blockOff, len - n);
+			System.arraycopy(needed[i], blockOff, b, off + n, count);
+			n += count;
+		}
+		return n;
+	}
+
+	/**
+	 * Decompresses the given blocks, in parallel if there are several.
+	 *
+	 * @param offsets decompressed block offsets, if already known
+	 * @return the decompressed blocks; when the offsets are unknown, blocks
+	 *         which fail to decompress or to match their CRC are null
+	 */
+	private List<byte[]> decodeBlocks(final List<Integer> indices,
+		final long[] offsets) throws IOException
+	{
+		final List<Callable<byte[]>> tasks = new ArrayList<>();
+		for (final int index : indices) {
+			final byte[] stream = extractBlock(index);
+			final int size = offsets == null ? -1 : (int) (offsets[index + 1] -
+				offsets[index]);
+			tasks.add(new Callable<byte[]>() {
+
+				@Override
+				public byte[] call() throws IOException {
+					if (size >= 0) return decodeBlock(stream, size);
+					try {
+						return decodeBlock(stream, size);
+					}
+					catch (final IOException | RuntimeException e) {
+						// NB: a block split at a false magic number may fail in any way
+						return null;
+					}
+				}
+			});
+		}
+
+		final List<byte[]> decoded = new ArrayList<>();
+		try {
+			if (tasks.size() == 1) {
+				decoded.add(tasks.get(0).call());
+				return decoded;
+			}
+			for (final Future<byte[]> result : executor().invokeAll(tasks)) {
+				decoded.add(result.get());
+			}
+			return decoded;
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while decompressing " + getFile(), e);
+		}
+		catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException) throw (IOException) cause;
+			throw new IOException(cause);
+		}
+		catch (final IOException e) {
+			throw e;
+		}
+		catch (final Exception e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Copies a block into a byte-aligned, self-contained bzip2 stream: the
+	 * stream header, the block itself and an end-of-stream marker whose
+	 * combined CRC is that of the block.
+	 */
+	private byte[] extractBlock(final int index) throws IOException {
+		final long start = blockStarts[index];
+		final long bits = blockEnds[index] - start;
+		final int shift = (int) (start & 7);
+		final byte[] src =
+			new byte[(int) ((blockEnds[index] + 7) / 8 - start / 8)];
+		raw.seek(start / 8);
+		raw.readFully(src);
+
+		final byte[] stream = new byte[2 + (int) ((bits + 80 + 7) / 8)];
+		// NB: the largest block size, so that any block fits
+		stream[0] = 'h';
+		stream[1] = '9';
+		final int dataBytes = (int) ((bits + 7) / 8);
+		for (int i = 0; i < dataBytes; i++) {
+			int v = (src[i] & 0xff) << shift;
+			if (shift > 0 && i + 1 < src.length) {
+				v |= (src[i + 1] & 0xff) >>> (8 - shift);
+			}
+			stream[2 + i] = (byte) v;
+		}
+		final long crc = readBits(stream, 16 + 48, 32);
+		writeBits(stream, 16 + bits, END_MAGIC, 48);
+		writeBits(stream, 16 + bits + 48, crc, 32);
+		return stream;
+	}
+
+	/**
+	 * Decompresses a self-contained single-block stream, checking the result
+	 * against the CRC of the block.
+	 *
+	 * @param size decompressed size of the block, or -1 if unknown
+	 */
+	private byte[] decodeBlock(final byte[] stream, final int size)
+		throws IOException
+	{
+		final CBZip2InputStream in =
+			new CBZip2InputStream(new ByteArrayInputStream(stream), log);
+		byte[] block = new byte[size < 0 ? 1024 * 1024 : size];
+		int n = 0;
 		while (true) {
-			final int skip = getStream().skipBytes(1024);
-			if (skip <= 0) break;
-			length += skip;
+			if (n == block.length) {
+				if (size >= 0) break;
+				block = Arrays.copyOf(block, block.length * 2);
+			}
+			final int r = in.read(block, n, block.length - n);
+			if (r < 0) break;
+			n += r;
+		}
+		in.close();
+		if (size >= 0 && n != size) {
+			throw new IOException(getFile() + ": unexpected bzip2 block size");
+		}
+		final CRC crc = new CRC();
+		crc.initialiseCRC();
+		for (int i = 0; i < n; i++) {
+			crc.updateCRC(block[i] & 0xff);
 		}
+		if (crc.getFinalCRC() != (int) readBits(stream, 16 + 48, 32)) {
+			throw new IOException(getFile() + ": bzip2 block CRC mismatch");
+		}
+		return n == block.length ? block : Arrays.copyOf(block, n);
+	}
 
-		setLength(length);
+	private static long readBits(final byte[] b, final long pos, final int n) {
+		long v = 0;
+		for (int i = 0; i < n; i++) {
+			final long bit = pos + i;
+			v = v << 1 | ((b[(int) (bit >>> 3)] >>> (7 - (bit & 7))) & 1);
+		}
+		return v;
+	}
 
-		resetStream();
+	private static void writeBits(final byte[] b, final long pos, final long v,
+		final int n)
+	{
+		for (int i = 0; i < n; i++) {
+			final long bit = pos + i;
+			final int mask = 0x80 >>> (bit & 7);
+			if (((v >>> (n - 1 - i)) & 1) != 0) b[(int) (bit >>> 3)] |= mask;
+			else b[(int) (bit >>> 3)] &= ~mask;
+		}
+	}
+
+	/** Adds a block to the cache, evicting the least recently used ones. */
+	private void cache(final int index, final byte[] block) {
+		final byte[] old = blocks.put(index, block);
+		if (old != null) cachedBytes -= old.length;
+		cachedBytes += block.length;
+		final Iterator<byte[]> iter = blocks.values().iterator();
+		while (cachedBytes > CACHE_BYTES && blocks.size() > 1) {
+			cachedBytes -= iter.next().length;
+			iter.remove();
+		}
+	}
+
+	/** Gets the block containing the given decompressed position. */
+	private int findBlock(final long pos) {
+		final int index = Arrays.binarySearch(blockOffsets, 0, measured, pos);
+		if (index >= 0) {
+			// skip over empty blocks starting at the same position
+			int block = index;
+			while (block + 1 < measured && blockOffsets[block + 1] == pos) {
+				block++;
+			}
+			return block;
+		}
+		return -index - 2;
+	}
+
+	private int threadCount() {
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	private ExecutorService executor() {
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(threadCount(),
+				new ThreadFactory() {
+
+					@Override
+					public Thread newThread(final Runnable r) {
+						final Thread t = new Thread(r, "BZip2Handle-Decoder");
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		}
+		return executor;
+	}
+
+	private void closeIndex() throws IOException {
+		if (executor != null) executor.shutdownNow();
+		if (raw != null) raw.close();
+		raw = null;
+		executor = null;
+		blockStarts = blockEnds = blockOffsets = streamEnds = null;
+		blockCount = measured = streamEndCount = 0;
+		blocks.clear();
+		cachedBytes = 0;
+		lastBlock = -1;
+		position = 0;
+	}
+
+	// -- Helper classes --
+
+	/** Stream of decompressed data, read from the current position. */
+	private class DecompressedStream extends InputStream {
+
+		private final byte[] one = new byte[1];
+
+		@Override
+		public int read() throws IOException {
+			return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len)
+			throws IOException
+		{
+			if (len == 0) return 0;
+			final int n = readDecompressed(position, b, off, len);
+			if (n > 0) position += n;
+			return n;
+		}
+
+		@Override
+		public long skip(final long n) throws IOException {
+			final long skipped = Math.max(0, Math.min(n, length() - position));
+			position += skipped;
+			return skipped;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return (int) Math.min(Integer.MAX_VALUE, length() - position);
+		}
 	}
 }
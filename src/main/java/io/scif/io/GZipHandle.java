@@ -30,11 +30,25 @@
 
 package io.scif.io;
 
-import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.DataFormatException;
 import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
 
 import org.scijava.Context;
 import org.scijava.plugin.Plugin;
@@ -43,6 +57,16 @@ import org.scijava.util.Bytes;
 /**
  * StreamHandle implementation for reading from gzip-compressed files or byte
  * arrays. Instances of GZipHandle are read-only.
+ * <p>
+ * Seeking is supported without reinflating the file from its start: each
+ * gzip member is read through an {@link IndexedInflater}, which records
+ * checkpoints as the data is inflated. Members are discovered as reading
+ * reaches them. The length is taken from the trailer of the file when the
+ * limits of deflate compression make it unambiguous, and is otherwise only
+ * counted, by inflating the rest of the file, when first requested. Files in
+ * the BGZF format (as written by bgzip) are indexed from their block headers
+ * alone, and their blocks are inflated in parallel.
+ * </p>
  *
  * @see StreamHandle
  * @author Melissa Linkert
@@ -50,6 +74,85 @@ import org.scijava.util.Bytes;
 @Plugin(type = IStreamAccess.class)
 public class GZipHandle extends StreamHandle {
 
+	// -- Constants --
+
+	/** Number of inflated bytes between two checkpoints. */
+	private static final int CHECKPOINT_SPAN = 4 * 1024 * 1024;
+
+	/** Maximum number of inflated BGZF blocks kept in memory. */
+	private static final int BGZF_CACHE_BLOCKS = 256;
+
+	/** Size of a BGZF block header. */
+	private static final int BGZF_HEADER = 18;
+
+	/** Size of a gzip member trailer. */
+	private static final int TRAILER = 8;
+
+	/** Upper bound of the deflate compression ratio. */
+	private static final int MAX_DEFLATE_RATIO = 1032;
+
+	// -- Fields --
+
+	/** Offset of the gzip data within the file. */
+	private long dataOffset;
+
+	/**
+	 * Whether the data is embedded in a file of another type, which is then
+	 * recognized by its content rather than its name.
+	 */
+	private boolean embedded;
+
+	/** Handle to the compressed file. */
+	private IRandomAccess raw;
+
+	/** Whether the file is in the BGZF format. */
+	private boolean bgzf;
+
+	/** Number of gzip members found so far. */
+	private int memberCount;
+
+	/** Whether all members have been found, and the last one indexed. */
+	private boolean membersComplete;
+
+	/**
+	 * Compressed offsets of the gzip members, followed by the end of the last
+	 * one.
+	 */
+	private long[] memberOffsets;
+
+	/**
+	 * Inflated offsets of the gzip members, followed by the total length.
+	 */
+	private long[] memberStarts;
+
+	/** Inflaters of non-BGZF members, created on demand. */
+	private IndexedInflater[] inflaters;
+
+	/** Inflated BGZF blocks, in access order. */
+	private final LinkedHashMap<Integer, byte[]> blocks =
+		new LinkedHashMap<Integer, byte[]>(16, 0.75f, true)
+		{
+
+			@Override
+			protected boolean removeEldestEntry(
+				final Map.Entry<Integer, byte[]> eldest)
+			{
+				return size() > BGZF_CACHE_BLOCKS;
+			}
+		};
+
+	/** Last BGZF block read, for detecting sequential access. */
+	private int lastBlock = -1;
+
+	/** BGZF blocks to inflate, reused between reads. */
+	private final List<Integer> missingBlocks = new ArrayList<>();
+
+	/** Executor inflating BGZF blocks, created on demand. */
+	private ExecutorService executor;
+
+	/** Inflated position of the next byte read from the stream. */
+	private long position;
+
 	// -- Constructor --
 
 	/**
@@ -77,49 +180,513 @@ public class GZipHandle extends StreamHandle {
 		setFile(file);
 	}
 
+	/**
+	 * Construct a new GZipHandle for the gzip data starting at the given offset
+	 * of a file, such as data attached to a header.
+	 *
+	 * @throws HandleException if there is no gzip data at the given offset.
+	 */
+	public GZipHandle(final Context context, final String file,
+		final long offset) throws IOException
+	{
+		super(context);
+		dataOffset = offset;
+		embedded = true;
+		setFile(file);
+	}
+
+	// -- GZipHandle API methods --
+
+	/** Returns true if the file is in the BGZF format. */
+	public boolean isBGZF() {
+		return bgzf;
+	}
+
+	/**
+	 * Gets the number of gzip members (or BGZF blocks) of the file, finding
+	 * them all if necessary.
+	 */
+	public int getMemberCount() throws IOException {
+		indexMembers();
+		return memberCount;
+	}
+
+	// -- IRandomAccess API methods --
+
+	@Override
+	public void seek(final long pos) throws IOException {
+		setFp(pos);
+		position = pos;
+	}
+
+	@Override
+	public void close() throws IOException {
+		super.close();
+		closeIndex();
+	}
+
+	@Override
+	public long length() throws IOException {
+		// NB: a length taken from the trailer is verified once it is reached
+		final boolean verify = getLength() >= 0 && getFp() >= getLength() &&
+			!membersComplete;
+		if ((getLength() < 0 || verify) && raw != null) {
+			indexMembers();
+			setLength(memberStarts[memberCount]);
+		}
+		return getLength();
+	}
+
+	// -- DataInput API methods --
+
+	@Override
+	public int skipBytes(final int n) throws IOException {
+		final int skipped = (int) Math.max(0, Math.min(n, length() - getFp()));
+		seek(getFp() + skipped);
+		return skipped;
+	}
+
 	// -- IStreamAccess API methods --
 
 	@Override
 	public boolean isConstructable(final String file) throws IOException {
-		if (!file.toLowerCase().endsWith(".gz")) return false;
+		if (!isCandidate(file)) return false;
 
 		final FileInputStream s = new FileInputStream(file);
 		final byte[] b = new byte[2];
 		s.read(b);
 		s.close();
-		return Bytes.toInt(b, true) == GZIPInputStream.GZIP_MAGIC;
+		return isConstructable(file, b);
 	}
 
 	@Override
-	public void resetStream() throws IOException {
-		if (getStream() != null) getStream().close();
-		final BufferedInputStream bis =
-			new BufferedInputStream(new FileInputStream(getFile()),
-				RandomAccessInputStream.MAX_OVERHEAD);
-		setStream(new DataInputStream(new GZIPInputStream(bis)));
+	public boolean isCandidate(final String id) {
+		return id.toLowerCase().endsWith(".gz");
 	}
 
-	// -- IStreamAccess API methods --
+	@Override
+	public boolean isConstructable(final String id, final byte[] header) {
+		return isCandidate(id) && header != null && header.length >= 2 && Bytes
+			.toInt(header, 0, 2, true) == GZIPInputStream.GZIP_MAGIC;
+	}
+
+	@Override
+	public void resetStream() throws IOException {
+		// NB: the stream reads at the current position, so nothing needs to be
+		// inflated again
+		setFp(0);
+		setMark(0);
+		position = 0;
+	}
 
 	@Override
 	public void setFile(final String file) throws IOException {
 		super.setFile(file);
-		if (!isConstructable(file)) {
+		if (!embedded && !isConstructable(file)) {
 			throw new HandleException(file + " is not a gzip file.");
 		}
 
+		closeIndex();
+		raw = new FileHandle(file, "r");
+		if (embedded && (dataOffset + 2 > raw.length() ||
+			!isMemberHeader(dataOffset)))
+		{
+			closeIndex();
+			throw new HandleException(file + " has no gzip data at offset " +
+				dataOffset);
+		}
+		if (isBGZFBlock(dataOffset)) {
+			indexBGZF();
+			setLength(memberStarts[memberCount]);
+		}
+		else {
+			addMember(dataOffset, 0);
+			setLength(trailerLength());
+		}
+
+		setStream(new DataInputStream(new InflatedStream()));
 		resetStream();
+	}
+
+	// -- Helper methods --
 
-		int length = 0;
-		while (true) {
-			final int skip = getStream().skipBytes(1024);
-			if (skip <= 0) break;
-			length += skip;
+	/** Reads inflated data at the given position. */
+	private int readInflated(long pos, final byte[] b, int off, int len)
+		throws IOException
+	{
+		if (bgzf) {
+			final long length = memberStarts[memberCount];
+			if (pos >= length) return -1;
+			return readBlocks(pos, b, off, (int) Math.min(len, length - pos));
 		}
 
-		setLength(length);
+		int total = 0;
+		while (len > 0) {
+			final int member = findMember(pos);
+			final boolean last = member == memberCount - 1 && !membersComplete;
+			final int count = last ? len : (int) Math.min(len,
+				memberStarts[member + 1] - pos);
+			if (count <= 0) break;
+			final int n = getInflater(member).read(pos - memberStarts[member], b,
+				off, count);
+			if (n <= 0) {
+				if (!last) throw new ZipException("Unexpected end of gzip member");
+				// the member ended, so look for the next one
+				nextMember();
+				continue;
+			}
+			pos += n;
+			off += n;
+			len -= n;
+			total += n;
+		}
+		return total == 0 ? -1 : total;
+	}
 
-		resetStream();
+	/**
+	 * Reads inflated BGZF data, inflating the missing blocks in parallel.
+	 * Sequential reads also inflate the following blocks ahead of time.
+	 */
+	private int readBlocks(final long pos, final byte[] b, final int off,
+		final int len) throws IOException
+	{
+		final int first = findMember(pos);
+		final int last = findMember(pos + len - 1);
+		int end = last;
+		if (first == lastBlock || first == lastBlock + 1) {
+			end = Math.min(memberCount - 1, last + threadCount());
+		}
+		lastBlock = last;
+
+		missingBlocks.clear();
+		for (int i = first; i <= end; i++) {
+			if (!blocks.containsKey(i)) missingBlocks.add(i);
+		}
+		inflateBlocks(missingBlocks);
+
+		int n = 0;
+		for (int i = first; i <= last; i++) {
+			final byte[] block = blocks.get(i);
+			final int blockOff = (int) (pos + n - memberStarts[i]);
+			final int count = Math.min(block.length - blockOff, len - n);
+			System.arraycopy(block, blockOff, b, off + n, count);
+			n += count;
+		}
+		return n;
 	}
 
+	/** Inflates the given BGZF blocks, in parallel if there are several. */
+	private void inflateBlocks(final List<Integer> indices) throws IOException {
+		if (indices.isEmpty()) return;
+		final List<Callable<byte[]>> tasks = new ArrayList<>();
+		for (final int index : indices) {
+			final long offset = memberOffsets[index];
+			final byte[] compressed =
+				new byte[(int) (memberOffsets[index + 1] - offset)];
+			raw.seek(offset);
+			raw.readFully(compressed);
+			final int size = (int) (memberStarts[index + 1] - memberStarts[index]);
+			tasks.add(new Callable<byte[]>() {
+
+				@Override
+				public byte[] call() throws DataFormatException {
+					return inflateBlock(compressed, size);
+				}
+			});
+		}
+
+		try {
+			if (tasks.size() == 1) {
+				blocks.put(indices.get(0), tasks.get(0).call());
+				return;
+			}
+			final List<Future<byte[]>> results = executor().invokeAll(tasks);
+			for (int i = 0; i < indices.size(); i++) {
+				blocks.put(indices.get(i), results.get(i).get());
+			}
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while inflating " + getFile(), e);
+		}
+		catch (final ExecutionException e) {
+			throw invalidBlock(e.getCause());
+		}
+		catch (final Exception e) {
+			throw invalidBlock(e);
+		}
+	}
+
+	/** Inflates a single BGZF block. */
+	private static byte[] inflateBlock(final byte[] compressed, final int size)
+		throws DataFormatException
+	{
+		final byte[] block = new byte[size];
+		final Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(compressed, BGZF_HEADER, compressed.length -
+				BGZF_HEADER - TRAILER);
+			int n = 0;
+			while (n < size) {
+				final int r = inflater.inflate(block, n, size - n);
+				if (r == 0 && (inflater.finished() || inflater.needsInput())) {
+					throw new DataFormatException("Truncated BGZF block");
+				}
+				n += r;
+			}
+		}
+		finally {
+			inflater.end();
+		}
+		return block;
+	}
+
+	private ZipException invalidBlock(final Throwable cause) {
+		final ZipException e = new ZipException("Invalid BGZF block in " +
+			getFile());
+		e.initCause(cause);
+		return e;
+	}
+
+	/** Gets the inflater of the given non-BGZF member. */
+	private IndexedInflater getInflater(final int member) throws IOException {
+		if (inflaters[member] == null) {
+			final long start = IndexedInflater.readGzipHeader(raw,
+				memberOffsets[member]);
+			// NB: the end of the last member is unknown until it is indexed
+			final long end = member == memberCount - 1 && !membersComplete ? raw
+				.length() : memberOffsets[member + 1] - TRAILER;
+			inflaters[member] = new IndexedInflater(raw, start, end - start,
+				CHECKPOINT_SPAN);
+		}
+		return inflaters[member];
+	}
+
+	/** Gets the member containing the given inflated position. */
+	private int findMember(final long pos) {
+		final int index = Arrays.binarySearch(memberStarts, 0, memberCount, pos);
+		if (index >= 0) {
+			// skip over empty members starting at the same position
+			int member = index;
+			while (member + 1 < memberCount && memberStarts[member + 1] == pos) {
+				member++;
+			}
+			return member;
+		}
+		return -index - 2;
+	}
+
+	/** Checks for a BGZF block header at the given offset. */
+	private boolean isBGZFBlock(final long offset) throws IOException {
+		if (offset + BGZF_HEADER + TRAILER > raw.length()) return false;
+		final byte[] header = new byte[BGZF_HEADER];
+		raw.seek(offset);
+		raw.readFully(header);
+		// magic, deflate, FEXTRA, XLEN = 6 and the "BC" subfield of length 2
+		return (header[0] & 0xff) == 0x1f && (header[1] & 0xff) == 0x8b &&
+			header[2] == 8 && (header[3] & 0x04) != 0 && header[10] == 6 &&
+			header[11] == 0 && header[12] == 'B' && header[13] == 'C' &&
+			header[14] == 2 && header[15] == 0;
+	}
+
+	/**
+	 * Indexes a BGZF file by hopping from block header to block header, taking
+	 * the inflated size of each block from its trailer.
+	 */
+	private void indexBGZF() throws IOException {
+		bgzf = true;
+		final long fileLength = raw.length();
+		long offset = dataOffset, out = 0;
+		while (offset < fileLength) {
+			if (!isBGZFBlock(offset)) {
+				throw new ZipException(getFile() + ": invalid BGZF block at offset " +
+					offset);
+			}
+			raw.seek(offset + 16);
+			final int blockSize = (int) readLE(2) + 1;
+			raw.seek(offset + blockSize - 4);
+			final long size = readLE(4);
+			addMember(offset, out);
+			offset += blockSize;
+			out += size;
+		}
+		finishMembers(offset, out);
+		membersComplete = true;
+	}
+
+	/**
+	 * Gets the inflated length recorded in the trailer of the file, if the
+	 * limits of deflate compression leave a single possible value for it.
+	 * <p>
+	 * The trailer only holds the length modulo 2^32 of the last member, so the
+	 * value is trusted only as long as no second member has been found.
+	 * </p>
+	 *
+	 * @return the length, or -1 if it is ambiguous
+	 */
+	private long trailerLength() throws IOException {
+		final long fileLength = raw.length();
+		final long dataStart = IndexedInflater.readGzipHeader(raw, dataOffset);
+		final long compressed = fileLength - TRAILER - dataStart;
+		if (compressed <= 0) return -1;
+
+		raw.seek(fileLength - 4);
+		final long isize = readLE(4);
+		final long min = Math.max(0, (compressed - 5) / 65540 * 65535);
+		final long max = (compressed + 1) * MAX_DEFLATE_RATIO;
+		long size = -1;
+		for (long candidate = isize; candidate <= max; candidate += 1L << 32) {
+			if (candidate < min) continue;
+			if (size >= 0) return -1;
+			size = candidate;
+		}
+		return size;
+	}
+
+	/**
+	 * Indexes the last member found so far, and records the member following
+	 * it, if any.
+	 */
+	private void nextMember() throws IOException {
+		final int member = memberCount - 1;
+		final IndexedInflater inflater = getInflater(member);
+		inflater.index();
+		final long offset = inflater.getEnd() + TRAILER;
+		final long out = memberStarts[member] + inflater.getInflatedLength();
+		if (offset + TRAILER < raw.length() && isMemberHeader(offset)) {
+			addMember(offset, out);
+			// NB: the trailer of the file only describes the last member
+			setLength(-1);
+		}
+		else {
+			// NB: like gunzip, ignore any trailing garbage such as zero padding
+			finishMembers(offset, out);
+			membersComplete = true;
+		}
+	}
+
+	/** Finds and indexes all remaining members. */
+	private void indexMembers() throws IOException {
+		while (!bgzf && memberCount > 0 && !membersComplete) {
+			nextMember();
+		}
+	}
+
+	private boolean isMemberHeader(final long offset) throws IOException {
+		raw.seek(offset);
+		return raw.readUnsignedByte() == 0x1f && raw.readUnsignedByte() == 0x8b;
+	}
+
+	/** Records a member starting at the given offsets. */
+	private void addMember(final long offset, final long out) {
+		ensureCapacity(memberCount + 2);
+		memberOffsets[memberCount] = offset;
+		memberStarts[memberCount] = out;
+		memberCount++;
+	}
+
+	/** Records the end offsets of the last member. */
+	private void finishMembers(final long offset, final long out) {
+		ensureCapacity(memberCount + 1);
+		memberOffsets[memberCount] = offset;
+		memberStarts[memberCount] = out;
+	}
+
+	private void ensureCapacity(final int size) {
+		if (memberOffsets == null) {
+			memberOffsets = new long[Math.max(16, size)];
+			memberStarts = new long[memberOffsets.length];
+			inflaters = new IndexedInflater[memberOffsets.length];
+		}
+		else if (size > memberOffsets.length) {
+			final int capacity = Math.max(size, memberOffsets.length * 2);
+			memberOffsets = Arrays.copyOf(memberOffsets, capacity);
+			memberStarts = Arrays.copyOf(memberStarts, capacity);
+			inflaters = Arrays.copyOf(inflaters, capacity);
+		}
+	}
+
+	/** Reads an unsigned little-endian integer of the given size. */
+	private long readLE(final int bytes) throws IOException {
+		long v = 0;
+		for (int i = 0; i < bytes; i++) {
+			v |= (long) raw.readUnsignedByte() << (8 * i);
+		}
+		return v;
+	}
+
+	private int threadCount() {
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	private ExecutorService executor() {
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(threadCount(),
+				new ThreadFactory() {
+
+					@Override
+					public Thread newThread(final Runnable r) {
+						final Thread t = new Thread(r, "GZipHandle-Inflater");
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		}
+		return executor;
+	}
+
+	private void closeIndex() throws IOException {
+		if (inflaters != null) {
+			for (final IndexedInflater inflater : inflaters) {
+				if (inflater != null) inflater.close();
+			}
+		}
+		if (executor != null) executor.shutdownNow();
+		if (raw != null) raw.close();
+		raw = null;
+		executor = null;
+		inflaters = null;
+		memberOffsets = memberStarts = null;
+		memberCount = 0;
+		membersComplete = false;
+		bgzf = false;
+		blocks.clear();
+		lastBlock = -1;
+		position = 0;
+	}
+
+	// -- Helper classes --
+
+	/** Stream of inflated data, read from the current position. */
+	private class InflatedStream extends InputStream {
+
+		private final byte[] one = new byte[1];
+
+		@Override
+		public int read() throws IOException {
+			return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len)
+			throws IOException
+		{
+			if (len == 0) return 0;
+			final int n = readInflated(position, b, off, len);
+			if (n > 0) position += n;
+			return n;
+		}
+
+		@Override
+		public long skip(final long n) throws IOException {
+			final long skipped = Math.max(0, Math.min(n, length() - position));
+			position += skipped;
+			return skipped;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return (int) Math.min(Integer.MAX_VALUE, length() - position);
+		}
+	}
 }
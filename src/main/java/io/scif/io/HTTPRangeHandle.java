@@ -0,0 +1,657 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.io;
+
+import io.scif.common.Constants;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Provides random access to HTTP resources using range requests. Data is
+ * fetched in aligned blocks, which are kept in a least recently used cache, so
+ * that seeking backwards does not reread the resource from its start. Runs of
+ * missing blocks are fetched with a single request, and sequential reads
+ * prefetch the following blocks concurrently. Instances of HTTPRangeHandle
+ * are read-only.
+ *
+ * @see IRandomAccess
+ * @see URLHandle
+ */
+public class HTTPRangeHandle extends AbstractNIOHandle {
+
+	// -- Constants --
+
+	/** Default size of the fetched blocks. */
+	public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+	/** Default number of cached blocks. */
+	public static final int DEFAULT_CACHE_BLOCKS = 256;
+
+	/** Default number of blocks to prefetch during sequential reads. */
+	public static final int DEFAULT_PREFETCH_BLOCKS = 4;
+
+	/** Maximum number of blocks fetched by a single request. */
+	private static final int MAX_REQUEST_BLOCKS = 64;
+
+	/** Number of concurrent prefetch requests. */
+	private static final int PREFETCH_THREADS = 4;
+
+	// -- Fields --
+
+	private final URL url;
+
+	private final long length;
+
+	private final int blockSize;
+
+	private final int prefetchBlocks;
+
+	/** Cached blocks, in access order. */
+	private final LinkedHashMap<Long, byte[]> cache;
+
+	/** Blocks currently being fetched. */
+	private final Map<Long, Future<byte[]>> pending = new HashMap<>();
+
+	/** Executor for prefetch requests, created on first use. */
+	private ExecutorService executor;
+
+	/** Most recently read block. */
+	private long lastBlock = -1;
+
+	/** Current position within the resource. */
+	private long fp;
+
+	/** Byte ordering of this stream. */
+	private ByteOrder order = ByteOrder.BIG_ENDIAN;
+
+	/** Scratch space for primitive reads. */
+	private final byte[] scratch = new byte[8];
+
+	// -- Constructors --
+
+	/**
+	 * Constructs a new HTTPRangeHandle using the given URL, with the default
+	 * block size and cache size.
+	 *
+	 * @throws HandleException if the server does not advertise support for byte
+	 *           range requests, or does not report the resource length
+	 */
+	public HTTPRangeHandle(final String url) throws IOException {
+		this(url, DEFAULT_BLOCK_SIZE, DEFAULT_CACHE_BLOCKS,
+			DEFAULT_PREFETCH_BLOCKS);
+	}
+
+	/**
+	 * Constructs a new HTTPRangeHandle using the given URL.
+	 *
+	 * @param blockSize size of the fetched blocks
+	 * @param cacheBlocks maximum number of cached blocks
+	 * @param prefetchBlocks number of blocks to prefetch during sequential reads
+	 * @throws HandleException if the server does not advertise support for byte
+	 *           range requests, or does not report the resource length
+	 */
+	public HTTPRangeHandle(final String url, final int blockSize,
+		final int cacheBlocks, final int prefetchBlocks) throws IOException
+	{
+		if (!isConstructable(url)) {
+			throw new HandleException(url + " is not an HTTP url.");
+		}
+		this.url = new URL(url);
+		this.blockSize = blockSize;
+		this.prefetchBlocks = prefetchBlocks;
+		cache = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<Long, byte[]> e) {
+				return size() > Math.max(cacheBlocks, 1);
+			}
+		};
+
+		final HttpURLConnection conn = (HttpURLConnection) this.url
+			.openConnection();
+		try {
+			conn.setRequestMethod("HEAD");
+			conn.setRequestProperty("Accept-Encoding", "identity");
+			final int code = conn.getResponseCode();
+			if (code != HttpURLConnection.HTTP_OK) {
+				throw new HandleException(url + ": HTTP " + code);
+			}
+			if (!supportsRanges(conn)) {
+				throw new HandleException(url + " does not support range requests.");
+			}
+			length = conn.getContentLengthLong();
+			if (length < 0) {
+				throw new HandleException(url + " does not report its length.");
+			}
+		}
+		finally {
+			conn.disconnect();
+		}
+	}
+
+	// -- HTTPRangeHandle API methods --
+
+	/** Returns true if the given id is an HTTP or HTTPS url. */
+	public static boolean isConstructable(final String id) {
+		return id != null && (id.startsWith("http:") || id.startsWith("https:"));
+	}
+
+	/**
+	 * Returns true if the response of the given connection advertises support
+	 * for byte range requests.
+	 */
+	public static boolean supportsRanges(final URLConnection conn) {
+		final String ranges = conn.getHeaderField("Accept-Ranges");
+		return ranges != null && ranges.trim().equalsIgnoreCase("bytes");
+	}
+
+	/** Gets the URL of this handle. */
+	public String getURL() {
+		return url.toString();
+	}
+
+	/** Gets the size of the fetched blocks. */
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	// -- AbstractNIOHandle API methods --
+
+	@Override
+	protected void setLength(final long length) throws IOException {
+		throw new HandleException("This stream is read-only.");
+	}
+
+	// -- IRandomAccess API methods --
+
+	@Override
+	public void close() throws IOException {
+		if (executor != null) executor.shutdownNow();
+		synchronized (cache) {
+			cache.clear();
+			pending.clear();
+		}
+	}
+
+	@Override
+	public long getFilePointer() {
+		return fp;
+	}
+
+	@Override
+	public long length() {
+		return length;
+	}
+
+	@Override
+	public int read(final byte[] b) throws IOException {
+		return read(b, 0, b.length);
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, int len) throws IOException {
+		if (fp + len > length) len = (int) Math.max(length - fp, 0);
+		if (len == 0) return 0;
+
+		final long first = fp / blockSize;
+		final long last = (fp + len - 1) / blockSize;
+		final byte[][] blocks = getBlocks(first, last);
+		int n = 0;
+		for (int i = 0; i < blocks.length; i++) {
+			final int blockOff = (int) (fp + n - (first + i) * blockSize);
+			final int count = Math.min(blocks[i].length - blockOff, len - n);
+			System.arraycopy(blocks[i], blockOff, b, off + n, count);
+			n += count;
+		}
+		fp += n;
+		return n;
+	}
+
+	@Override
+	public int read(final ByteBuffer buf) throws IOException {
+		return read(buf, 0, buf.capacity());
+	}
+
+	@Override
+	public int read(final ByteBuffer buf, final int off, final int len)
+		throws IOException
+	{
+		if (buf.hasArray()) {
+			return read(buf.array(), buf.arrayOffset() + off, len);
+		}
+
+		final byte[] b = new byte[len];
+		final int n = read(b);
+		buf.position(off);
+		buf.put(b, 0, n);
+		return n;
+	}
+
+	@Override
+	public void seek(final long pos) throws IOException {
+		fp = pos;
+	}
+
+	@Override
+	public ByteOrder getOrder() {
+		return order;
+	}
+
+	@Override
+	public void setOrder(final ByteOrder order) {
+		this.order = order;
+	}
+
+	@Override
+	public void write(final ByteBuffer buf) throws IOException {
+		throw new HandleException("This stream is read-only.");
+	}
+
+	@Override
+	public void write(final ByteBuffer buf, final int off, final int len)
+		throws IOException
+	{
+		throw new HandleException("This stream is read-only.");
+	}
+
+	// -- DataInput API methods --
+
+	@Override
+	public boolean readBoolean() throws IOException {
+		return readByte() != 0;
+	}
+
+	@Override
+	public byte readByte() throws IOException {
+		readFully(scratch, 0, 1);
+		return scratch[0];
+	}
+
+	@Override
+	public char readChar() throws IOException {
+		return (char) readShort();
+	}
+
+	@Override
+	public double readDouble() throws IOException {
+		return Double.longBitsToDouble(readLong());
+	}
+
+	@Override
+	public float readFloat() throws IOException {
+		return Float.intBitsToFloat(readInt());
+	}
+
+	@Override
+	public void readFully(final byte[] b) throws IOException {
+		readFully(b, 0, b.length);
+	}
+
+	@Override
+	public void readFully(final byte[] b, final int off, final int len)
+		throws IOException
+	{
+		if (fp + len > length) throw new EOFException(EOF_ERROR_MSG);
+		read(b, off, len);
+	}
+
+	@Override
+	public int readInt() throws IOException {
+		readFully(scratch, 0, 4);
+		return ByteBuffer.wrap(scratch).order(order).getInt();
+	}
+
+	@Override
+	public String readLine() throws IOException {
+		throw new IOException("Unimplemented");
+	}
+
+	@Override
+	public long readLong() throws IOException {
+		readFully(scratch, 0, 8);
+		return ByteBuffer.wrap(scratch).order(order).getLong();
+	}
+
+	@Override
+	public short readShort() throws IOException {
+		readFully(scratch, 0, 2);
+		return ByteBuffer.wrap(scratch).order(order).getShort();
+	}
+
+	@Override
+	public int readUnsignedByte() throws IOException {
+		return readByte() & 0xff;
+	}
+
+	@Override
+	public int readUnsignedShort() throws IOException {
+		return readShort() & 0xffff;
+	}
+
+	@Override
+	public String readUTF() throws IOException {
+		final int length = readUnsignedShort();
+		final byte[] b = new byte[length];
+		readFully(b);
+		return new String(b, Constants.ENCODING);
+	}
+
+	@Override
+	public int skipBytes(final int n) throws IOException {
+		final int skipped = (int) Math.min(n, length - fp);
+		if (skipped < 0) return 0;
+		fp += skipped;
+		return skipped;
+	}
+
+	// -- DataOutput API methods --
+
+	@Override
+	public void write(final byte[] b) throws IOException {
+		throw new HandleException("This stream is read-only.");
+	}
+
+	@Override
+	public void write(final byte[] b, final int off, final int len)
+		throws IOException
+	{
+		throw new HandleException("This stream is read-only.");
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+		throw new HandleException("This stream is read-only.");
+	}
+
+	@Override
+	public void writeBoolean(final boolean v) throws IOException {
+		throw new HandleException("This stream is read-only.");
+	}
+
+	@Override
+	public void writeByte(final int v) throws IOException {
+		throw new HandleException("This stream is read-only.");
+	}
+
+	@Override
+	public void writeBytes(final String s) throws IOException {
+		throw new HandleException("This stream is read-only.");
+	}
+
+	@Override
+	public void writeChar(final int v) throws IOException {
+		throw new HandleException("This stream is read-only.");
+	}
+
+	@Override
+	public void writeChars(final String s) throws IOException {
+		throw new HandleException("This stream is read-only.");
+	}
+
+	@Override
+	public void writeDouble(final double v) throws IOException {
+		throw new HandleException("This stream is read-only.");
+	}
+
+	@Override
+	public void writeFloat(final float v) throws IOException {
+		throw new HandleException("This stream is read-only.");
+	}
+
+	@Override
+	public void writeInt(final int v) throws IOException {
+		throw new HandleException("This stream is read-only.");
+	}
+
+	@Override
+	public void writeLong(final long v) throws IOException {
+		throw new HandleException("This stream is read-only.");
+	}
+
+	@Override
+	public void writeShort(final int v) throws IOException {
+		throw new HandleException("This stream is read-only.");
+	}
+
+	@Override
+	public void writeUTF(final String str) throws IOException {
+		throw new HandleException("This stream is read-only.");
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Gets the blocks in the given range, fetching each run of missing blocks
+	 * with a single request and waiting for those already being prefetched.
+	 */
+	private byte[][] getBlocks(final long first, final long last)
+		throws IOException
+	{
+		final int count = (int) (last - first + 1);
+		final byte[][] blocks = new byte[count][];
+		final Map<Integer, Future<byte[]>> waits = new HashMap<>();
+		synchronized (cache) {
+			for (int i = 0; i < count; i++) {
+				blocks[i] = cache.get(first + i);
+				if (blocks[i] != null) continue;
+				final Future<byte[]> future = pending.get(first + i);
+				if (future != null) waits.put(i, future);
+			}
+		}
+
+		// fetch runs of blocks which are neither cached nor pending
+		int i = 0;
+		while (i < count) {
+			if (blocks[i] != null || waits.containsKey(i)) {
+				i++;
+				continue;
+			}
+			int end = i + 1;
+			while (end < count && end - i < MAX_REQUEST_BLOCKS &&
+				blocks[end] == null && !waits.containsKey(end))
+			{
+				end++;
+			}
+			final byte[][] fetched = fetch(first + i, end - i);
+			System.arraycopy(fetched, 0, blocks, i, fetched.length);
+			i = end;
+		}
+
+		for (final Map.Entry<Integer, Future<byte[]>> wait : waits.entrySet()) {
+			final int index = wait.getKey();
+			blocks[index] = await(first + index, wait.getValue());
+		}
+
+		if (first == lastBlock || first == lastBlock + 1) prefetch(last + 1);
+		lastBlock = last;
+		return blocks;
+	}
+
+	/**
+	 * Fetches the given number of blocks with a single range request. A full
+	 * response, from a server or proxy which ignored the range, is read from the
+	 * requested offset; a partial response for any other range is rejected.
+	 */
+	private byte[][] fetch(final long block, final int count) throws IOException {
+		final long start = block * blockSize;
+		final long end = Math.min(start + (long) count * blockSize, length);
+		final byte[] data = new byte[(int) (end - start)];
+
+		final HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+		conn.setRequestProperty("Accept-Encoding", "identity");
+		conn.setRequestProperty("Range", "bytes=" + start + "-" + (end - 1));
+		try {
+			final int code = conn.getResponseCode();
+			long skip = 0;
+			if (code == HttpURLConnection.HTTP_PARTIAL) {
+				final String range = conn.getHeaderField("Content-Range");
+				if (!coversRange(range, start, end - 1)) {
+					throw new HandleException(url + ": requested bytes " + start + "-" +
+						(end - 1) + " but got Content-Range " + range);
+				}
+			}
+			else if (code == HttpURLConnection.HTTP_OK) {
+				// the range was ignored, as by some proxies: skip to the offset
+				skip = start;
+			}
+			else {
+				throw new HandleException(url + ": expected partial content for " +
+					"bytes " + start + "-" + (end - 1) + " but got HTTP " + code);
+			}
+			try (final InputStream in = conn.getInputStream()) {
+				while (skip > 0) {
+					final long r = in.skip(skip);
+					if (r > 0) skip -= r;
+					else if (in.read() >= 0) skip--;
+					else throw new EOFException(url + ": truncated response");
+				}
+				int n = 0;
+				while (n < data.length) {
+					final int r = in.read(data, n, data.length - n);
+					if (r < 0) throw new EOFException(url + ": truncated response");
+					n += r;
+				}
+			}
+		}
+		finally {
+			conn.disconnect();
+		}
+
+		final byte[][] blocks = new byte[count][];
+		synchronized (cache) {
+			for (int i = 0; i < count; i++) {
+				final int off = i * blockSize;
+				blocks[i] = new byte[Math.min(blockSize, data.length - off)];
+				System.arraycopy(data, off, blocks[i], 0, blocks[i].length);
+				cache.put(block + i, blocks[i]);
+			}
+		}
+		return blocks;
+	}
+
+	/**
+	 * Checks that a Content-Range header, such as {@code bytes 0-499/1234},
+	 * covers exactly the given inclusive byte range.
+	 */
+	private static boolean coversRange(final String contentRange,
+		final long first, final long last)
+	{
+		if (contentRange == null) return false;
+		final String range = contentRange.trim();
+		if (!range.regionMatches(true, 0, "bytes ", 0, 6)) return false;
+		final int dash = range.indexOf('-', 6);
+		final int slash = range.indexOf('/', dash + 1);
+		if (dash < 0 || slash < 0) return false;
+		try {
+			return Long.parseLong(range.substring(6, dash).trim()) == first && Long
+				.parseLong(range.substring(dash + 1, slash).trim()) == last;
+		}
+		catch (final NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/** Fetches the blocks following a sequential read in the background. */
+	private void prefetch(final long next) {
+		if (prefetchBlocks <= 0) return;
+		final long blockCount = (length + blockSize - 1) / blockSize;
+		synchronized (cache) {
+			for (long block = next; block < next + prefetchBlocks &&
+				block < blockCount; block++)
+			{
+				if (cache.containsKey(block) || pending.containsKey(block)) continue;
+				final long b = block;
+				pending.put(b, executor().submit(new Callable<byte[]>() {
+
+					@Override
+					public byte[] call() throws IOException {
+						try {
+							return fetch(b, 1)[0];
+						}
+						finally {
+							synchronized (cache) {
+								pending.remove(b);
+							}
+						}
+					}
+				}));
+			}
+		}
+	}
+
+	/** Waits for a prefetched block, fetching it directly if that failed. */
+	private byte[] await(final long block, final Future<byte[]> future)
+		throws IOException
+	{
+		try {
+			return future.get();
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while reading " + url, e);
+		}
+		catch (final ExecutionException e) {
+			return fetch(block, 1)[0];
+		}
+	}
+
+	private synchronized ExecutorService executor() {
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(PREFETCH_THREADS,
+				new ThreadFactory() {
+
+					@Override
+					public Thread newThread(final Runnable r) {
+						final Thread t = new Thread(r, "HTTPRangeHandle-Prefetch");
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		}
+		return executor;
+	}
+}
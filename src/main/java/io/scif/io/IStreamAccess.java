@@ -49,6 +49,32 @@ public interface IStreamAccess extends SCIFIOPlugin, IRandomAccess {
 	 */
 	boolean isConstructable(String id) throws IOException;
 
+	/**
+	 * Returns true if this handle might be constructable from the provided id,
+	 * judging by the id alone (e.g., by its suffix). This check must not perform
+	 * any I/O, so that handles can be ruled out cheaply. By default, every id
+	 * is a candidate.
+	 */
+	default boolean isCandidate(final String id) {
+		return true;
+	}
+
+	/**
+	 * Returns true if this handle can be constructed from the provided id, given
+	 * the first bytes of the corresponding file. This allows the bytes to be
+	 * read once and shared among several handles. By default, the header is
+	 * ignored and {@link #isConstructable(String)} is called.
+	 *
+	 * @param header the first bytes of the file, or null if they could not be
+	 *          read
+	 * @throws IOException
+	 */
+	default boolean isConstructable(final String id, final byte[] header)
+		throws IOException
+	{
+		return isConstructable(id);
+	}
+
 	/**
 	 * Initializes the current handle using the provided file id.
 	 *
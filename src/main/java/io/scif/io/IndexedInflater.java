@@ -0,0 +1,859 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.io;
+
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Random access to the inflated contents of a raw deflate stream.
+ * <p>
+ * The first pass over the stream is decoded by a small pure-Java inflater
+ * which records a checkpoint at a deflate block boundary roughly every
+ * {@code span} inflated bytes. A checkpoint holds the bit position of the
+ * boundary and the 32 KB of output preceding it, which is all that is needed
+ * to restart decoding there. Regions that have already been indexed are then
+ * inflated by a native {@link Inflater}, primed with the checkpoint window as
+ * preset dictionary and fed with input that has been realigned to the
+ * boundary bit. Reading the stream backwards or in random order thus costs at
+ * most {@code span} bytes of extra inflation per access.
+ * </p>
+ * <p>
+ * Instances are not thread-safe, and share the file pointer of the source
+ * they were created from.
+ * </p>
+ */
+public class IndexedInflater implements Closeable {
+
+	// -- Constants --
+
+	/** Default number of inflated bytes between two checkpoints. */
+	public static final int DEFAULT_SPAN = 1024 * 1024;
+
+	/** Magic number at the start of each gzip member. */
+	private static final int GZIP_MAGIC = 0x1f8b;
+
+	private static final int FHCRC = 0x02, FEXTRA = 0x04, FNAME = 0x08,
+			FCOMMENT = 0x10;
+
+	/** Size of the deflate history window. */
+	private static final int WINDOW = 32768;
+
+	/** Longest possible deflate match. */
+	private static final int MAX_MATCH = 258;
+
+	/** Size of the compressed input chunks read from the source. */
+	private static final int CHUNK = 65536;
+
+	private static final int[] LENGTH_BASE = { 3, 4, 5, 6, 7, 8, 9, 10, 11, 13,
+		15, 17, 19, 23, 27, 31, 35, 43, 51, 59, 67, 83, 99, 115, 131, 163, 195,
+		227, 258 };
+
+	private static final int[] LENGTH_EXTRA = { 0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1,
+		1, 2, 2, 2, 2, 3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 0 };
+
+	private static final int[] DIST_BASE = { 1, 2, 3, 4, 5, 7, 9, 13, 17, 25,
+		33, 49, 65, 97, 129, 193, 257, 385, 513, 769, 1025, 1537, 2049, 3073,
+		4097, 6145, 8193, 12289, 16385, 24577 };
+
+	private static final int[] DIST_EXTRA = { 0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4,
+		4, 5, 5, 6, 6, 7, 7, 8, 8, 9, 9, 10, 10, 11, 11, 12, 12, 13, 13 };
+
+	private static final int[] CODE_LENGTH_ORDER = { 16, 17, 18, 0, 8, 7, 9, 6,
+		10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15 };
+
+	// -- Fields --
+
+	private final Source source;
+
+	/** Offset of the first deflate byte within the source. */
+	private final long start;
+
+	/** Number of compressed bytes available to the deflate stream. */
+	private final long length;
+
+	private final int span;
+
+	private final List<Checkpoint> checkpoints = new ArrayList<>();
+
+	private final Scanner scanner = new Scanner();
+
+	/** Native inflater resuming from checkpoints, created on demand. */
+	private Inflater inflater;
+
+	/** Inflated position of the next byte produced by {@link #inflater}. */
+	private long inflaterOut = -1;
+
+	/** Compressed position of the next byte fed to {@link #inflater}. */
+	private long inflaterIn;
+
+	/** Number of bits to discard from the first fed byte. */
+	private int inflaterShift;
+
+	/** Last raw byte read but not yet fed because of bit realignment. */
+	private int inflaterCarry;
+
+	private final byte[] raw = new byte[CHUNK];
+
+	private final byte[] shifted = new byte[CHUNK + 1];
+
+	private byte[] skipBuffer;
+
+	// -- Constructors --
+
+	/**
+	 * Creates an inflater for the raw deflate data occupying {@code length}
+	 * bytes from offset {@code start} of the given stream.
+	 */
+	public IndexedInflater(final RandomAccessInputStream in, final long start,
+		final long length, final int span)
+	{
+		this(new Source() {
+
+			@Override
+			public int read(final long pos, final byte[] b, final int off,
+				final int len) throws IOException
+			{
+				in.seek(pos);
+				return in.read(b, off, len);
+			}
+		}, start, length, span);
+	}
+
+	/**
+	 * Creates an inflater for the raw deflate data occupying {@code length}
+	 * bytes from offset {@code start} of the given handle.
+	 */
+	public IndexedInflater(final IRandomAccess in, final long start,
+		final long length, final int span)
+	{
+		this(new Source() {
+
+			@Override
+			public int read(final long pos, final byte[] b, final int off,
+				final int len) throws IOException
+			{
+				in.seek(pos);
+				return in.read(b, off, len);
+			}
+		}, start, length, span);
+	}
+
+	private IndexedInflater(final Source source, final long start,
+		final long length, final int span)
+	{
+		if (span <= 0) throw new IllegalArgumentException("Invalid span: " + span);
+		this.source = source;
+		this.start = start;
+		this.length = length;
+		this.span = span;
+		checkpoints.add(new Checkpoint(0, 0, 0, new byte[0]));
+	}
+
+	// -- IndexedInflater methods --
+
+	/**
+	 * Reads up to {@code len} inflated bytes, starting at inflated position
+	 * {@code pos}.
+	 *
+	 * @return the number of bytes read, which is less than {@code len} only at
+	 *         the end of the stream, or -1 if {@code pos} lies beyond it.
+	 */
+	public int read(long pos, final byte[] b, int off, int len)
+		throws IOException
+	{
+		if (pos < 0) throw new IllegalArgumentException("Negative position: " +
+			pos);
+		int total = 0;
+		while (len > 0) {
+			int n;
+			if (pos >= scanner.historyStart()) {
+				if (pos < scanner.out) n = scanner.copy(pos, b, off, len);
+				else if (scanner.finished) break;
+				else n = scanner.inflate(pos, b, off, len);
+			}
+			else {
+				n = inflate(pos, b, off,
+					(int) Math.min(len, scanner.historyStart() - pos));
+				if (n <= 0) throw new EOFException("Unexpected end of deflate stream");
+			}
+			pos += n;
+			off += n;
+			len -= n;
+			total += n;
+		}
+		return total == 0 && len > 0 ? -1 : total;
+	}
+
+	/**
+	 * Parses the gzip member header at the given offset.
+	 *
+	 * @return the offset of the member's deflate data
+	 * @throws ZipException if there is no valid gzip header at the offset
+	 */
+	public static long readGzipHeader(final RandomAccessInputStream in,
+		final long offset) throws IOException
+	{
+		in.seek(offset);
+		return offset + parseGzipHeader(in);
+	}
+
+	/**
+	 * Parses the gzip member header at the given offset.
+	 *
+	 * @return the offset of the member's deflate data
+	 * @throws ZipException if there is no valid gzip header at the offset
+	 */
+	public static long readGzipHeader(final IRandomAccess in, final long offset)
+		throws IOException
+	{
+		in.seek(offset);
+		return offset + parseGzipHeader(in);
+	}
+
+	/** Indexes the remainder of the stream, if not already done. */
+	public void index() throws IOException {
+		while (!scanner.finished) {
+			scanner.inflate(scanner.out, null, 0, Integer.MAX_VALUE);
+		}
+	}
+
+	/**
+	 * Gets the total number of inflated bytes, or -1 if the stream has not
+	 * been fully indexed yet.
+	 *
+	 * @see #index()
+	 */
+	public long getInflatedLength() {
+		return scanner.finished ? scanner.out : -1;
+	}
+
+	/**
+	 * Gets the offset within the source of the first byte following the
+	 * deflate stream, or -1 if the stream has not been fully indexed yet.
+	 */
+	public long getEnd() {
+		return scanner.finished ? start + (scanner.consumedBits() + 7) / 8 : -1;
+	}
+
+	/** Gets the number of checkpoints recorded so far. */
+	public int getCheckpointCount() {
+		return checkpoints.size();
+	}
+
+	// -- Closeable API methods --
+
+	@Override
+	public void close() {
+		if (inflater != null) inflater.end();
+		inflater = null;
+		inflaterOut = -1;
+	}
+
+	// -- Helper methods --
+
+	/** Reads a gzip member header, returning its length in bytes. */
+	private static int parseGzipHeader(final DataInput in) throws IOException {
+		final int magic = in.readUnsignedByte() << 8 | in.readUnsignedByte();
+		if (magic != GZIP_MAGIC) {
+			throw new ZipException("Not in gzip format");
+		}
+		if (in.readUnsignedByte() != 8) {
+			throw new ZipException("Unsupported gzip compression method");
+		}
+		final int flags = in.readUnsignedByte();
+		// skip MTIME, XFL and OS
+		in.readFully(new byte[6]);
+		int length = 10;
+		if ((flags & FEXTRA) != 0) {
+			final int b0 = in.readUnsignedByte();
+			final int b1 = in.readUnsignedByte();
+			final int extra = b0 | b1 << 8;
+			in.readFully(new byte[extra]);
+			length += 2 + extra;
+		}
+		if ((flags & FNAME) != 0) length += skipCString(in);
+		if ((flags & FCOMMENT) != 0) length += skipCString(in);
+		if ((flags & FHCRC) != 0) {
+			in.readFully(new byte[2]);
+			length += 2;
+		}
+		return length;
+	}
+
+	/** Skips a null-terminated string, returning its length in bytes. */
+	private static int skipCString(final DataInput in) throws IOException {
+		int length = 1;
+		while (in.readByte() != 0) {
+			length++;
+		}
+		return length;
+	}
+
+	/** Inflates with the native inflater, resuming from a checkpoint if needed. */
+	private int inflate(final long pos, final byte[] b, final int off,
+		final int len) throws IOException
+	{
+		final Checkpoint c = checkpoints.get(floorCheckpoint(pos));
+		if (inflater == null || inflaterOut > pos || c.out > inflaterOut) {
+			resume(c);
+		}
+		if (inflaterOut < pos && skipBuffer == null) skipBuffer = new byte[CHUNK];
+		while (inflaterOut < pos) {
+			final int n =
+				nativeInflate(skipBuffer, 0, (int) Math.min(CHUNK, pos - inflaterOut));
+			if (n < 0) return -1;
+			inflaterOut += n;
+		}
+		final int n = nativeInflate(b, off, len);
+		if (n > 0) inflaterOut += n;
+		return n;
+	}
+
+	private int floorCheckpoint(final long pos) {
+		int lo = 0, hi = checkpoints.size() - 1;
+		while (lo < hi) {
+			final int mid = (lo + hi + 1) >>> 1;
+			if (checkpoints.get(mid).out <= pos) lo = mid;
+			else hi = mid - 1;
+		}
+		return lo;
+	}
+
+	private void resume(final Checkpoint c) {
+		if (inflater == null) inflater = new Inflater(true);
+		else inflater.reset();
+		if (c.window.length > 0) inflater.setDictionary(c.window);
+		inflaterOut = c.out;
+		inflaterIn = c.in;
+		inflaterShift = c.bits;
+		inflaterCarry = -1;
+	}
+
+	private int nativeInflate(final byte[] b, final int off, final int len)
+		throws IOException
+	{
+		try {
+			while (true) {
+				final int n = inflater.inflate(b, off, len);
+				if (n > 0) return n;
+				if (inflater.finished()) return -1;
+				if (inflater.needsDictionary()) {
+					throw new ZipException("Unexpected preset dictionary");
+				}
+				if (inflater.needsInput() && !feed()) {
+					throw new EOFException("Unexpected end of deflate stream");
+				}
+			}
+		}
+		catch (final DataFormatException e) {
+			final ZipException exc = new ZipException(e.getMessage());
+			exc.initCause(e);
+			throw exc;
+		}
+	}
+
+	/**
+	 * Feeds the next chunk of compressed data to the native inflater, shifting
+	 * it by {@link #inflaterShift} bits if the checkpoint was not byte aligned.
+	 */
+	private boolean feed() throws IOException {
+		final int n = readSource(inflaterIn, raw, 0, CHUNK);
+		if (n > 0) inflaterIn += n;
+		if (inflaterShift == 0) {
+			if (n <= 0) return false;
+			inflater.setInput(raw, 0, n);
+			return true;
+		}
+		final int k = inflaterShift;
+		int count = 0;
+		int prev = inflaterCarry;
+		for (int i = 0; i < n; i++) {
+			final int next = raw[i] & 0xff;
+			if (prev >= 0) {
+				shifted[count++] = (byte) ((prev >>> k) | (next << (8 - k)));
+			}
+			prev = next;
+		}
+		if (n <= 0) {
+			if (prev < 0) return false;
+			// flush the remaining high bits of the final byte
+			shifted[count++] = (byte) (prev >>> k);
+			prev = -1;
+		}
+		inflaterCarry = prev;
+		if (count == 0) return feed();
+		inflater.setInput(shifted, 0, count);
+		return true;
+	}
+
+	/** Reads compressed bytes at the given offset relative to {@link #start}. */
+	private int readSource(final long pos, final byte[] b, final int off,
+		final int len) throws IOException
+	{
+		final long remaining = length - pos;
+		if (remaining <= 0) return -1;
+		final int n = (int) Math.min(len, remaining);
+		final int r = source.read(start + pos, b, off, n);
+		return r <= 0 ? -1 : r;
+	}
+
+	// -- Helper classes --
+
+	/** Random access to the compressed bytes. */
+	private interface Source {
+
+		int read(long pos, byte[] b, int off, int len) throws IOException;
+	}
+
+	/** A position at which inflation can be restarted. */
+	private static class Checkpoint {
+
+		/** Compressed offset of the byte containing the boundary. */
+		private final long in;
+
+		/** Number of bits of that byte belonging to the previous block. */
+		private final int bits;
+
+		/** Inflated position of the boundary. */
+		private final long out;
+
+		/** Up to 32 KB of inflated data preceding the boundary. */
+		private final byte[] window;
+
+		public Checkpoint(final long in, final int bits, final long out,
+			final byte[] window)
+		{
+			this.in = in;
+			this.bits = bits;
+			this.out = out;
+			this.window = window;
+		}
+	}
+
+	/**
+	 * Pure-Java inflater making a single forward pass over the stream, and
+	 * recording checkpoints at block boundaries along the way.
+	 */
+	private class Scanner {
+
+		// -- Input state --
+
+		private final byte[] input = new byte[CHUNK];
+
+		private int inputLength;
+
+		private int inputIndex;
+
+		/** Compressed offset of the byte following the loaded input. */
+		private long inputEnd;
+
+		/** Number of zero bytes appended past the end of the stream. */
+		private int padding;
+
+		private long bitBuffer;
+
+		private int bitCount;
+
+		// -- Output state --
+
+		/** Inflated history, compacted to its last 32 KB when full. */
+		private final byte[] history = new byte[4 * WINDOW];
+
+		private int historyIndex;
+
+		/** Inflated position following the last decoded byte. */
+		private long out;
+
+		// -- Block state --
+
+		private boolean finished;
+
+		private boolean inBlock;
+
+		private boolean lastBlock;
+
+		/** Remaining bytes of the current stored block, or -1 if Huffman. */
+		private int stored;
+
+		private final int[] literalTable = new int[1 << 15];
+
+		private int literalBits;
+
+		private final int[] distanceTable = new int[1 << 15];
+
+		private int distanceBits;
+
+		private final byte[] lengths = new byte[320];
+
+		/** First inflated position still present in {@link #history}. */
+		private long historyStart() {
+			return out - historyIndex;
+		}
+
+		private long consumedBits() {
+			return (inputEnd - (inputLength - inputIndex)) * 8 - bitCount;
+		}
+
+		/** Copies already inflated data from the history. */
+		private int copy(final long pos, final byte[] b, final int off,
+			final int len)
+		{
+			final int n = (int) Math.min(len, out - pos);
+			System.arraycopy(history, historyIndex - (int) (out - pos), b, off, n);
+			return n;
+		}
+
+		/**
+		 * Inflates until {@code pos + len} is reached, copying the data within
+		 * that range to {@code b} as it is produced.
+		 *
+		 * @return the number of bytes copied to {@code b}
+		 */
+		private int inflate(final long pos, final byte[] b, final int off,
+			final int len) throws IOException
+		{
+			final long end = pos + len;
+			int done = 0;
+			while (out < end && !finished) {
+				step();
+				final long from = pos + done;
+				if (b != null && out > from) {
+					final int n = (int) (Math.min(out, end) - from);
+					System.arraycopy(history, historyIndex - (int) (out - from), b,
+						off + done, n);
+					done += n;
+				}
+				if (historyIndex >= history.length - MAX_MATCH) {
+					System.arraycopy(history, historyIndex - WINDOW, history, 0, WINDOW);
+					historyIndex = WINDOW;
+				}
+			}
+			return done;
+		}
+
+		/**
+		 * Decodes until the history is full or the current block ends.
+		 */
+		private void step() throws IOException {
+			if (!inBlock) {
+				if (lastBlock) {
+					finished = true;
+					return;
+				}
+				if (out - checkpoints.get(checkpoints.size() - 1).out >= span) {
+					addCheckpoint();
+				}
+				readBlockHeader();
+			}
+			if (stored >= 0) copyStored();
+			else decodeHuffman();
+		}
+
+		private void addCheckpoint() {
+			final long bits = consumedBits();
+			final int size = (int) Math.min(WINDOW, out);
+			final byte[] window =
+				Arrays.copyOfRange(history, historyIndex - size, historyIndex);
+			checkpoints.add(new Checkpoint(bits >>> 3, (int) (bits & 7), out,
+				window));
+		}
+
+		private void readBlockHeader() throws IOException {
+			lastBlock = bits(1) == 1;
+			final int type = bits(2);
+			inBlock = true;
+			switch (type) {
+				case 0:
+					// stored block: skip to byte boundary, then read LEN and NLEN
+					drop(bitCount & 7);
+					final int len = bits(16);
+					final int nlen = bits(16);
+					if (len != (~nlen & 0xffff)) {
+						throw new ZipException("Invalid stored block lengths");
+					}
+					stored = len;
+					break;
+				case 1:
+					stored = -1;
+					fixedTables();
+					break;
+				case 2:
+					stored = -1;
+					dynamicTables();
+					break;
+				default:
+					throw new ZipException("Invalid block type");
+			}
+		}
+
+		private void copyStored() throws IOException {
+			while (stored > 0 && historyIndex < history.length) {
+				int n;
+				if (bitCount >= 8) {
+					// drain whole bytes already buffered
+					history[historyIndex++] = (byte) bitBuffer;
+					drop(8);
+					n = 1;
+				}
+				else {
+					if (inputIndex == inputLength && !fill()) {
+						throw new EOFException("Unexpected end of deflate stream");
+					}
+					n = Math.min(Math.min(stored, history.length - historyIndex),
+						inputLength - inputIndex);
+					System.arraycopy(input, inputIndex, history, historyIndex, n);
+					inputIndex += n;
+					historyIndex += n;
+				}
+				out += n;
+				stored -= n;
+			}
+			if (stored == 0) inBlock = false;
+		}
+
+		private void decodeHuffman() throws IOException {
+			final byte[] h = history;
+			final int limit = h.length - MAX_MATCH;
+			final int literalMask = (1 << literalBits) - 1;
+			final int distanceMask = (1 << distanceBits) - 1;
+			int hi = historyIndex;
+			try {
+				while (hi < limit) {
+					if (bitCount < 15) refill(15);
+					final int entry = literalTable[(int) bitBuffer & literalMask];
+					final int n = entry & 15;
+					if (n == 0) throw new ZipException("Invalid literal/length code");
+					bitBuffer >>>= n;
+					bitCount -= n;
+					final int symbol = entry >>> 4;
+					if (symbol < 256) {
+						h[hi++] = (byte) symbol;
+						continue;
+					}
+					if (symbol == 256) {
+						inBlock = false;
+						break;
+					}
+					final int li = symbol - 257;
+					if (li >= LENGTH_BASE.length) {
+						throw new ZipException("Invalid literal/length code");
+					}
+					final int length = LENGTH_BASE[li] + bits(LENGTH_EXTRA[li]);
+					if (bitCount < 15) refill(15);
+					final int dentry = distanceTable[(int) bitBuffer & distanceMask];
+					final int dn = dentry & 15;
+					if (dn == 0) throw new ZipException("Invalid distance code");
+					bitBuffer >>>= dn;
+					bitCount -= dn;
+					final int di = dentry >>> 4;
+					if (di >= DIST_BASE.length) {
+						throw new ZipException("Invalid distance code");
+					}
+					final int distance = DIST_BASE[di] + bits(DIST_EXTRA[di]);
+					if (distance > out + hi - historyIndex) {
+						throw new ZipException("Invalid distance too far back");
+					}
+					int from = hi - distance;
+					if (distance >= length) {
+						System.arraycopy(h, from, h, hi, length);
+						hi += length;
+					}
+					else {
+						for (int i = 0; i < length; i++) {
+							h[hi++] = h[from++];
+						}
+					}
+				}
+			}
+			finally {
+				out += hi - historyIndex;
+				historyIndex = hi;
+			}
+		}
+
+		private void fixedTables() throws ZipException {
+			for (int i = 0; i < 288; i++) {
+				lengths[i] = (byte) (i < 144 ? 8 : i < 256 ? 9 : i < 280 ? 7 : 8);
+			}
+			literalBits = buildTable(lengths, 0, 288, literalTable);
+			Arrays.fill(lengths, 0, 30, (byte) 5);
+			distanceBits = buildTable(lengths, 0, 30, distanceTable);
+		}
+
+		private void dynamicTables() throws IOException {
+			final int nlit = bits(5) + 257;
+			final int ndist = bits(5) + 1;
+			final int ncode = bits(4) + 4;
+			if (nlit > 286 || ndist > 30) {
+				throw new ZipException("Too many length or distance codes");
+			}
+			Arrays.fill(lengths, 0, 19, (byte) 0);
+			for (int i = 0; i < ncode; i++) {
+				lengths[CODE_LENGTH_ORDER[i]] = (byte) bits(3);
+			}
+			final int codeBits = buildTable(lengths, 0, 19, literalTable);
+			final int codeMask = (1 << codeBits) - 1;
+			int i = 0;
+			while (i < nlit + ndist) {
+				if (bitCount < 15) refill(15);
+				final int entry = literalTable[(int) bitBuffer & codeMask];
+				final int n = entry & 15;
+				if (n == 0) throw new ZipException("Invalid code lengths code");
+				drop(n);
+				final int symbol = entry >>> 4;
+				if (symbol < 16) {
+					lengths[i++] = (byte) symbol;
+					continue;
+				}
+				int repeat;
+				byte value = 0;
+				if (symbol == 16) {
+					if (i == 0) throw new ZipException("Invalid bit length repeat");
+					value = lengths[i - 1];
+					repeat = 3 + bits(2);
+				}
+				else if (symbol == 17) repeat = 3 + bits(3);
+				else repeat = 11 + bits(7);
+				if (i + repeat > nlit + ndist) {
+					throw new ZipException("Invalid bit length repeat");
+				}
+				Arrays.fill(lengths, i, i + repeat, value);
+				i += repeat;
+			}
+			if (lengths[256] == 0) {
+				throw new ZipException("Missing end-of-block code");
+			}
+			// distance lengths follow the literal/length ones
+			final byte[] distances = Arrays.copyOfRange(lengths, nlit, nlit + ndist);
+			literalBits = buildTable(lengths, 0, nlit, literalTable);
+			distanceBits = buildTable(distances, 0, ndist, distanceTable);
+		}
+
+		/** Reads {@code n} bits, least significant first. */
+		private int bits(final int n) throws IOException {
+			if (n == 0) return 0;
+			if (bitCount < n) refill(n);
+			final int v = (int) bitBuffer & ((1 << n) - 1);
+			bitBuffer >>>= n;
+			bitCount -= n;
+			return v;
+		}
+
+		private void drop(final int n) {
+			bitBuffer >>>= n;
+			bitCount -= n;
+		}
+
+		/**
+		 * Ensures at least {@code n} bits are buffered. Past the end of the
+		 * stream, a few zero bytes are supplied so that Huffman codes can be
+		 * looked up with a fixed-width peek.
+		 */
+		private void refill(final int n) throws IOException {
+			while (bitCount <= 56) {
+				if (inputIndex == inputLength && !fill()) {
+					if (bitCount >= n) return;
+					if (++padding > 4) {
+						throw new EOFException("Unexpected end of deflate stream");
+					}
+					inputEnd++;
+					bitCount += 8;
+					continue;
+				}
+				bitBuffer |= (long) (input[inputIndex++] & 0xff) << bitCount;
+				bitCount += 8;
+			}
+		}
+
+		private boolean fill() throws IOException {
+			if (padding > 0) return false;
+			final int n = readSource(inputEnd, input, 0, input.length);
+			if (n <= 0) return false;
+			inputIndex = 0;
+			inputLength = n;
+			inputEnd += n;
+			return true;
+		}
+	}
+
+	/**
+	 * Builds a lookup table for the canonical Huffman code with the given code
+	 * lengths. Each entry holds the symbol shifted left by 4 bits, and the code
+	 * length in the low 4 bits (0 for unused entries).
+	 *
+	 * @return the number of bits used to index the table
+	 */
+	private static int buildTable(final byte[] lengths, final int off,
+		final int n, final int[] table) throws ZipException
+	{
+		final int[] count = new int[16];
+		int maxBits = 1;
+		for (int i = 0; i < n; i++) {
+			final int len = lengths[off + i];
+			count[len]++;
+			if (len > maxBits) maxBits = len;
+		}
+		count[0] = 0;
+		final int[] next = new int[16];
+		int code = 0, left = 1;
+		for (int len = 1; len < 16; len++) {
+			left = (left << 1) - count[len];
+			if (left < 0) throw new ZipException("Over-subscribed Huffman code");
+			code = (code + count[len - 1]) << 1;
+			next[len] = code;
+		}
+		final int size = 1 << maxBits;
+		Arrays.fill(table, 0, size, 0);
+		for (int symbol = 0; symbol < n; symbol++) {
+			final int len = lengths[off + symbol];
+			if (len == 0) continue;
+			// deflate codes are packed starting with the most significant bit
+			int c = next[len]++, reversed = 0;
+			for (int i = 0; i < len; i++) {
+				reversed = (reversed << 1) | (c & 1);
+				c >>>= 1;
+			}
+			for (int i = reversed; i < size; i += 1 << len) {
+				table[i] = symbol << 4 | len;
+			}
+		}
+		return maxBits;
+	}
+}
@@ -119,6 +119,13 @@ public class Location extends AbstractSCIFIOPlugin {
 	 * @see java.io.File#list()
 	 */
 	public String[] list(final boolean noHiddenFiles) {
+		if (!isURL) {
+			if (file == null) return null;
+			final String[] result = locationService.listDirectory(file
+				.getAbsolutePath(), noHiddenFiles);
+			return result == null || result.length == 0 ? null : result;
+		}
+
 		final String path = getAbsolutePath();
 		final String key = path + Boolean.toString(noHiddenFiles);
 		String[] result = null;
@@ -127,53 +134,38 @@ public class Location extends AbstractSCIFIOPlugin {
 		if (result != null) return result;
 
 		final ArrayList<String> files = new ArrayList<>();
-		if (isURL) {
-			try {
-				final URLConnection c = url.openConnection();
-				final InputStream is = c.getInputStream();
-				boolean foundEnd = false;
-
-				while (!foundEnd) {
-					final byte[] b = new byte[is.available()];
-					is.read(b);
-					String s = new String(b, Constants.ENCODING);
-					if (s.toLowerCase().contains("</html>")) foundEnd = true;
-
-					while (s.contains("a href")) {
-						final int ndx = s.indexOf("a href") + 8;
-						final int idx = s.indexOf("\"", ndx);
-						if (idx < 0) break;
-						final String f = s.substring(ndx, idx);
-						if (files.size() > 0 && f.startsWith("/")) {
-							return null;
-						}
-						s = s.substring(idx + 1);
-						if (f.startsWith("?")) continue;
-						final Location check =
-							new Location(getContext(), path, f);
-						if (check.exists() && (!noHiddenFiles || !check.isHidden())) {
-							files.add(check.getName());
-						}
+		try {
+			final URLConnection c = url.openConnection();
+			final InputStream is = c.getInputStream();
+			boolean foundEnd = false;
+
+			while (!foundEnd) {
+				final byte[] b = new byte[is.available()];
+				is.read(b);
+				String s = new String(b, Constants.ENCODING);
+				if (s.toLowerCase().contains("</html>")) foundEnd = true;
+
+				while (s.contains("a href")) {
+					final int ndx = s.indexOf("a href") + 8;
+					final int idx = s.indexOf("\"", ndx);
+					if (idx < 0) break;
+					final String f = s.substring(ndx, idx);
+					if (files.size() > 0 && f.startsWith("/")) {
+						return null;
+					}
+					s = s.substring(idx + 1);
+					if (f.startsWith("?")) continue;
+					final Location check =
+						new Location(getContext(), path, f);
+					if (check.exists() && (!noHiddenFiles || !check.isHidden())) {
+						files.add(check.getName());
 					}
 				}
 			}
-			catch (final IOException e) {
-				log().trace("Could not retrieve directory listing", e);
-				return null;
-			}
 		}
-		else {
-			if (file == null) return null;
-			final String[] f = file.list();
-			if (f == null) return null;
-			for (final String name : f) {
-				if (!noHiddenFiles ||
-					!(name.startsWith(".") || new Location(getContext(), path, name)
-						.isHidden()))
-				{
-					files.add(name);
-				}
-			}
+		catch (final IOException e) {
+			log().trace("Could not retrieve directory listing", e);
+			return null;
 		}
 
 		if (files.size() == 0) return null;
@@ -185,6 +177,17 @@ public class Location extends AbstractSCIFIOPlugin {
 		return result;
 	}
 
+	/**
+	 * Return a list of the subdirectories of this directory, without checking
+	 * each entry separately. If 'noHiddenFiles' is set to true, then hidden
+	 * directories are omitted. URLs are not supported, and yield null.
+	 */
+	public String[] listSubdirectories(final boolean noHiddenFiles) {
+		if (isURL || file == null) return null;
+		return locationService.listSubdirectories(file.getAbsolutePath(),
+			noHiddenFiles);
+	}
+
 	// -- File API methods --
 
 	/**
@@ -31,18 +31,33 @@
 package io.scif.io;
 
 import io.scif.common.Constants;
+import io.scif.services.MetricsService;
 
 import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.RandomAccessFile;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.AsynchronousFileChannel;
 import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * A wrapper for buffered NIO logic that implements the IRandomAccess interface.
+ * <p>
+ * Read-only handles can optionally buffer adaptively: a single buffer is
+ * reused, its window doubles (up to the buffer size) while reads continue
+ * where the previous ones ended and halves when they jump elsewhere,
+ * sequential scans read the next window ahead asynchronously, and bulk reads
+ * at least as large as the window bypass the buffer. Adaptive handles do not
+ * memory map, regardless of the {@link NIOService} settings.
+ * </p>
  *
  * @see IRandomAccess
  * @see java.io.RandomAccessFile
@@ -50,6 +65,14 @@ import java.nio.channels.FileChannel;
  */
 public class NIOFileHandle extends AbstractNIOHandle {
 
+	// -- Constants --
+
+	/** Smallest window used by adaptive buffering. */
+	private static final int MIN_WINDOW = 4096;
+
+	/** Window with which adaptive buffering starts. */
+	private static final int INITIAL_WINDOW = 65536;
+
 	// -- Static fields --
 
 	/** Default NIO buffer size to facilitate buffered I/O. */
@@ -60,6 +83,10 @@ public class NIOFileHandle extends AbstractNIOHandle {
 	 */
 	private static int defaultRWBufferSize = 8192;
 
+	/** Whether read-only handles buffer adaptively by default. */
+	private static boolean defaultAdaptiveBuffering = Boolean.parseBoolean(System
+		.getProperty("adaptiveBuffers"));
+
 	// -- Fields --
 
 	/** The random access file object backing this FileHandle. */
@@ -89,6 +116,42 @@ public class NIOFileHandle extends AbstractNIOHandle {
 	/** Service which provides NIO byte buffers, allocated or memory mapped. */
 	private final NIOService nioService;
 
+	/** Service collecting I/O counters, or null if none was attached. */
+	private MetricsService metrics;
+
+	/** Whether the buffer window adapts to the access pattern. */
+	private final boolean adaptive;
+
+	/** The file path, used to open the read-ahead channel. */
+	private final Path path;
+
+	/** The current adaptive window size. */
+	private int windowSize;
+
+	/**
+	 * The absolute start of the region most recently read from the file, or -1
+	 * if nothing was read yet.
+	 */
+	private long lastReadStart = -1;
+
+	/** The absolute end of the region most recently read from the file. */
+	private long lastReadEnd = -1;
+
+	/** Channel for reading ahead, opened on first use. */
+	private AsynchronousFileChannel aheadChannel;
+
+	/** Buffer for the next window, reused while read-ahead hits. */
+	private ByteBuffer aheadBuffer;
+
+	/** The pending read-ahead, or null if none is in flight. */
+	private Future<Integer> aheadRead;
+
+	/** The absolute position of the start of the pending read-ahead. */
+	private long aheadStart;
+
+	/** The number of bytes requested by the pending read-ahead. */
+	private int aheadLength;
+
 	// -- Constructors --
 
 	/**
@@ -97,6 +160,18 @@ public class NIOFileHandle extends AbstractNIOHandle {
 	 */
 	public NIOFileHandle(final NIOService nioService, final File file,
 		final String mode, final int bufferSize) throws IOException
+	{
+		this(nioService, file, mode, bufferSize, defaultAdaptiveBuffering);
+	}
+
+	/**
+	 * Creates a random access file stream to read from, and optionally to write
+	 * to, the file specified by the File argument. Adaptive buffering only
+	 * applies to read-only handles; the buffer size is then the largest window.
+	 */
+	public NIOFileHandle(final NIOService nioService, final File file,
+		final String mode, final int bufferSize, final boolean adaptive)
+		throws IOException
 	{
 		this.nioService = nioService;
 		this.bufferSize = bufferSize;
@@ -104,8 +179,14 @@ public class NIOFileHandle extends AbstractNIOHandle {
 		if (mode.equals("rw")) {
 			mapMode = FileChannel.MapMode.READ_WRITE;
 		}
+		this.adaptive = adaptive && mapMode == FileChannel.MapMode.READ_ONLY;
+		path = file.toPath();
 		raf = new RandomAccessFile(file, mode);
 		channel = raf.getChannel();
+		if (this.adaptive) {
+			order = ByteOrder.BIG_ENDIAN;
+			windowSize = Math.min(INITIAL_WINDOW, bufferSize);
+		}
 		buffer(position, 0);
 	}
 
@@ -150,6 +231,23 @@ public class NIOFileHandle extends AbstractNIOHandle {
 		defaultRWBufferSize = size;
 	}
 
+	/**
+	 * Set whether read-only files are buffered adaptively. Subsequent uses of
+	 * the constructors without an explicit setting will use this value, which
+	 * defaults to the "adaptiveBuffers" system property.
+	 */
+	public static void setDefaultAdaptiveBuffering(final boolean adaptive) {
+		defaultAdaptiveBuffering = adaptive;
+	}
+
+	/**
+	 * Attaches a {@link MetricsService} which will count the bytes this handle
+	 * reads and buffers.
+	 */
+	public void setMetrics(final MetricsService metrics) {
+		this.metrics = metrics;
+	}
+
 	// -- FileHandle and Channel API methods --
 
 	/** Gets the random access file object backing this FileHandle. */
@@ -167,6 +265,11 @@ public class NIOFileHandle extends AbstractNIOHandle {
 		return bufferSize;
 	}
 
+	/** Gets whether this handle buffers adaptively. */
+	public boolean isAdaptive() {
+		return adaptive;
+	}
+
 	// -- AbstractNIOHandle API methods --
 
 	@Override
@@ -180,6 +283,7 @@ public class NIOFileHandle extends AbstractNIOHandle {
 
 	@Override
 	public void close() throws IOException {
+		if (aheadChannel != null) aheadChannel.close();
 		raf.close();
 	}
 
@@ -227,10 +331,14 @@ public class NIOFileHandle extends AbstractNIOHandle {
 	public int read(final ByteBuffer buf, final int off, final int len)
 		throws IOException
 	{
+		if (adaptive) return readAdaptive(buf, off, len);
 		buf.position(off);
 		buf.limit(off + len);
 		channel.position(position);
 		final int readLength = channel.read(buf);
+		if (metrics != null && metrics.isEnabled() && readLength > 0) {
+			metrics.count(MetricsService.HANDLE_BYTES_READ, readLength);
+		}
 		buffer(position + readLength, 0);
 		// Return value of NIO channel's is -1 when zero bytes are read at the
 		// end
@@ -519,6 +627,10 @@ public class NIOFileHandle extends AbstractNIOHandle {
 	 *           the buffer.
 	 */
 	private void buffer(long offset, final int size) throws IOException {
+		if (adaptive) {
+			bufferAdaptive(offset, size);
+			return;
+		}
 		position = offset;
 		final long newPosition = offset + size;
 		if (newPosition < bufferStartPosition ||
@@ -540,6 +652,10 @@ public class NIOFileHandle extends AbstractNIOHandle {
 				nioService.allocate(channel, mapMode, bufferStartPosition,
 					(int) newSize);
 			if (byteOrder != null) setOrder(byteOrder);
+			if (metrics != null && metrics.isEnabled()) {
+				metrics.count(MetricsService.HANDLE_BUFFER_REFILLS, 1);
+				metrics.count(MetricsService.HANDLE_BYTES_BUFFERED, newSize);
+			}
 		}
 		buffer.position((int) (offset - bufferStartPosition));
 		if (buffer.position() + size > buffer.limit() &&
@@ -549,6 +665,196 @@ public class NIOFileHandle extends AbstractNIOHandle {
 		}
 	}
 
+	/**
+	 * Positions the adaptive window over the requested range, refilling it only
+	 * when data is actually needed, so that seeks are free.
+	 *
+	 * @param offset The location within the file to read from.
+	 * @param size The requested read length.
+	 * @throws IOException If there is an issue reading the window.
+	 */
+	private void bufferAdaptive(final long offset, final int size)
+		throws IOException
+	{
+		position = offset;
+		if (size == 0) return;
+		if (buffer == null || offset < bufferStartPosition ||
+			offset + size > bufferStartPosition + buffer.limit())
+		{
+			refill(offset, size);
+		}
+		buffer.position((int) (offset - bufferStartPosition));
+	}
+
+	/**
+	 * Moves the adaptive window to the given offset. Continuing from the last
+	 * read grows the window and starts reading the next one ahead; jumping
+	 * elsewhere shrinks it.
+	 */
+	private void refill(final long offset, final int size) throws IOException {
+		final boolean sequential =
+			lastReadStart >= 0 && offset >= lastReadStart && offset <= lastReadEnd;
+		if (sequential) {
+			windowSize =
+				windowSize <= bufferSize / 2 ? windowSize * 2 : bufferSize;
+		}
+		else if (lastReadStart >= 0) {
+			windowSize = Math.max(Math.min(MIN_WINDOW, bufferSize), windowSize / 2);
+		}
+
+		if (!takeReadAhead(offset, size)) {
+			final int length = Math.max(windowSize, size);
+			if (buffer == null || buffer.capacity() < length) {
+				buffer = ByteBuffer.allocate(length);
+			}
+			bufferStartPosition = offset;
+			fill(buffer, offset, length);
+			if (metrics != null && metrics.isEnabled()) {
+				metrics.count(MetricsService.HANDLE_BYTES_BUFFERED, buffer.limit());
+			}
+		}
+		buffer.order(order);
+		lastReadStart = bufferStartPosition;
+		lastReadEnd = bufferStartPosition + buffer.limit();
+		if (metrics != null && metrics.isEnabled()) {
+			metrics.count(MetricsService.HANDLE_BUFFER_REFILLS, 1);
+		}
+		if (sequential && buffer.limit() > 0 && lastReadEnd < length()) {
+			readAhead(lastReadEnd);
+		}
+	}
+
+	/**
+	 * Swaps in the pending read-ahead if it covers the requested range.
+	 *
+	 * @return true iff the window now covers the requested range.
+	 */
+	private boolean takeReadAhead(final long offset, final int size)
+		throws IOException
+	{
+		if (aheadRead == null) return false;
+		final Future<Integer> pending = aheadRead;
+		aheadRead = null;
+		if (offset < aheadStart || offset + size > aheadStart + aheadLength) {
+			// NB: The read may still be filling the buffer, so let it go.
+			pending.cancel(false);
+			aheadBuffer = null;
+			return false;
+		}
+		final int n;
+		try {
+			n = Math.max(0, pending.get());
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while reading ahead");
+		}
+		catch (final ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+		aheadBuffer.flip();
+		if (offset + size > aheadStart + n) return false;
+		final ByteBuffer window = aheadBuffer;
+		aheadBuffer = buffer;
+		buffer = window;
+		bufferStartPosition = aheadStart;
+		if (metrics != null && metrics.isEnabled()) {
+			metrics.count(MetricsService.HANDLE_READ_AHEAD_HITS, 1);
+			metrics.count(MetricsService.HANDLE_BYTES_BUFFERED, n);
+		}
+		return true;
+	}
+
+	/** Starts reading the window following the current one. */
+	private void readAhead(final long start) throws IOException {
+		if (aheadChannel == null) {
+			aheadChannel =
+				AsynchronousFileChannel.open(path, StandardOpenOption.READ);
+		}
+		if (aheadBuffer == null || aheadBuffer.capacity() < windowSize) {
+			aheadBuffer = ByteBuffer.allocate(windowSize);
+		}
+		aheadBuffer.clear();
+		aheadBuffer.limit(windowSize);
+		aheadStart = start;
+		aheadLength = windowSize;
+		aheadRead = aheadChannel.read(aheadBuffer, start);
+	}
+
+	/**
+	 * Reads from the adaptive window where it overlaps the request; requests at
+	 * least as large as the window are read straight into the destination.
+	 */
+	private int readAdaptive(final ByteBuffer buf, final int off, final int len)
+		throws IOException
+	{
+		buf.limit(off + len);
+		buf.position(off);
+		int n = copyWindow(buf, len);
+		if (n < len && len - n >= windowSize) {
+			n += readDirect(buf, len - n);
+		}
+		else if (n < len) {
+			bufferAdaptive(position, len - n);
+			n += copyWindow(buf, len - n);
+		}
+		return n;
+	}
+
+	/**
+	 * Copies up to the given number of bytes at the current position from the
+	 * adaptive window.
+	 *
+	 * @return The number of bytes copied.
+	 */
+	private int copyWindow(final ByteBuffer buf, final int len) {
+		if (buffer == null || position < bufferStartPosition) return 0;
+		final long available = bufferStartPosition + buffer.limit() - position;
+		if (available <= 0) return 0;
+		final int n = (int) Math.min(len, available);
+		buf.put(buffer.array(), buffer.arrayOffset() +
+			(int) (position - bufferStartPosition), n);
+		position += n;
+		return n;
+	}
+
+	/**
+	 * Reads up to the given number of bytes at the current position directly
+	 * from the file channel.
+	 *
+	 * @return The number of bytes read.
+	 */
+	private int readDirect(final ByteBuffer buf, final int len)
+		throws IOException
+	{
+		final long start = position;
+		int n = 0;
+		while (n < len) {
+			final int r = channel.read(buf, position);
+			if (r < 0) break;
+			n += r;
+			position += r;
+		}
+		lastReadStart = start;
+		lastReadEnd = position;
+		if (metrics != null && metrics.isEnabled()) {
+			metrics.count(MetricsService.HANDLE_BYTES_READ, n);
+		}
+		return n;
+	}
+
+	/** Fills the buffer from the file channel, stopping at the end of file. */
+	private void fill(final ByteBuffer dst, final long start, final int length)
+		throws IOException
+	{
+		dst.clear();
+		dst.limit(length);
+		while (dst.hasRemaining()) {
+			if (channel.read(dst, start + dst.position()) < 0) break;
+		}
+		dst.flip();
+	}
+
 	private void writeSetup(final int length) throws IOException {
 		validateLength(length);
 		buffer(position, length);
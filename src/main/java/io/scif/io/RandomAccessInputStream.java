@@ -32,6 +32,7 @@ package io.scif.io;
 
 import io.scif.SCIFIO;
 import io.scif.common.Constants;
+import io.scif.services.MetricsService;
 
 import java.io.DataInput;
 import java.io.IOException;
@@ -79,6 +80,9 @@ public class RandomAccessInputStream extends InputStream implements DataInput {
 
 	private final LogService log;
 
+	/** Service collecting stream counters, or null if unavailable. */
+	private final MetricsService metrics;
+
 	// -- Constructors --
 
 	/**
@@ -106,6 +110,7 @@ public class RandomAccessInputStream extends InputStream implements DataInput {
 	{
 		scifio = new SCIFIO(context);
 		log = scifio.log();
+		metrics = scifio.getContext().getService(MetricsService.class);
 		if (log.isTrace()) {
 			log.trace("RandomAccessInputStream " + hashCode() + " OPEN");
 		}
@@ -136,6 +141,9 @@ public class RandomAccessInputStream extends InputStream implements DataInput {
 
 	/** Seeks to the given offset within the stream. */
 	public void seek(final long pos) throws IOException {
+		if (metrics != null && metrics.isEnabled()) {
+			metrics.count(MetricsService.STREAM_SEEKS, 1);
+		}
 		raf.seek(pos);
 	}
 
@@ -434,6 +442,7 @@ public class RandomAccessInputStream extends InputStream implements DataInput {
 	/** Read bytes from the stream into the given array. */
 	@Override
 	public int read(final byte[] array) throws IOException {
+		countRead(array.length);
 		int rtn = raf.read(array);
 		if (rtn == 0 && raf.getFilePointer() >= raf.length() - 1) rtn = -1;
 		return rtn;
@@ -446,6 +455,7 @@ public class RandomAccessInputStream extends InputStream implements DataInput {
 	public int read(final byte[] array, final int offset, final int n)
 		throws IOException
 	{
+		countRead(n);
 		int rtn = raf.read(array, offset, n);
 		if (rtn == 0 && raf.getFilePointer() >= raf.length() - 1) rtn = -1;
 		return rtn;
@@ -453,6 +463,7 @@ public class RandomAccessInputStream extends InputStream implements DataInput {
 
 	/** Read bytes from the stream into the given buffer. */
 	public int read(final ByteBuffer buf) throws IOException {
+		countRead(buf.capacity());
 		return raf.read(buf);
 	}
 
@@ -462,12 +473,14 @@ public class RandomAccessInputStream extends InputStream implements DataInput {
 	public int read(final ByteBuffer buf, final int offset, final int n)
 		throws IOException
 	{
+		countRead(n);
 		return raf.read(buf, offset, n);
 	}
 
 	/** Read bytes from the stream into the given array. */
 	@Override
 	public void readFully(final byte[] array) throws IOException {
+		countRead(array.length);
 		raf.readFully(array);
 	}
 
@@ -478,6 +491,7 @@ public class RandomAccessInputStream extends InputStream implements DataInput {
 	public void readFully(final byte[] array, final int offset, final int n)
 		throws IOException
 	{
+		countRead(n);
 		raf.readFully(array, offset, n);
 	}
 
@@ -521,4 +535,13 @@ public class RandomAccessInputStream extends InputStream implements DataInput {
 	public String getFileName() {
 		return this.file;
 	}
+
+	// -- Helper methods --
+
+	/** Counts the bytes requested by a bulk read, if metrics are enabled. */
+	private void countRead(final int n) {
+		if (metrics != null && metrics.isEnabled()) {
+			metrics.count(MetricsService.STREAM_BYTES_READ, n);
+		}
+	}
 }
@@ -139,6 +139,17 @@ public class URLHandle extends StreamHandle {
 		return false;
 	}
 
+	@Override
+	public boolean isCandidate(final String id) {
+		for (String protocol : SUPPORTED_PROTOCOLS) {
+			if (id.startsWith(protocol)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
 	// -- StreamHandle API methods --
 
 	@Override
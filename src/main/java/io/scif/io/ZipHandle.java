@@ -105,7 +105,7 @@ public class ZipHandle extends StreamHandle {
 	/** Returns true if the given filename is a Zip file. */
 	@Override
 	public boolean isConstructable(final String file) throws IOException {
-		if (!file.toLowerCase().endsWith(".zip")) return false;
+		if (!isCandidate(file)) return false;
 
 		final IRandomAccess handle = getHandle(file);
 		final byte[] b = new byte[2];
@@ -116,6 +116,22 @@ public class ZipHandle extends StreamHandle {
 		return new String(b, Constants.ENCODING).equals("PK");
 	}
 
+	@Override
+	public boolean isCandidate(final String id) {
+		return id.toLowerCase().endsWith(".zip");
+	}
+
+	@Override
+	public boolean isConstructable(final String id, final byte[] header)
+		throws IOException
+	{
+		if (!isCandidate(id)) return false;
+		// NB: the id may be mapped to a handle rather than a file on disk
+		if (header == null) return isConstructable(id);
+		return header.length >= 2 &&
+			new String(header, 0, 2, Constants.ENCODING).equals("PK");
+	}
+
 	// -- ZipHandle API methods --
 
 	/** Get the name of the backing Zip entry. */
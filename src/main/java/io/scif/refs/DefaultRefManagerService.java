@@ -32,10 +32,13 @@ package io.scif.refs;
 
 import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
-import java.util.HashSet;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.scijava.log.LogService;
 import org.scijava.plugin.Parameter;
@@ -43,10 +46,16 @@ import org.scijava.plugin.Plugin;
 import org.scijava.plugin.PluginService;
 import org.scijava.service.AbstractService;
 import org.scijava.service.Service;
-import org.scijava.thread.ThreadService;
 
 /**
  * Default {@link RefManagerService} implementation.
+ * <p>
+ * {@link RefProvider} plugins are instantiated once, and the providers that
+ * handle a given combination of referent and parameter types are remembered,
+ * so that only those are consulted for later referents of the same types.
+ * Registration is lock free, and a single daemon thread cleans up all managed
+ * references for the life of the service.
+ * </p>
  *
  * @author Mark Hiner
  */
@@ -57,9 +66,6 @@ public class DefaultRefManagerService extends AbstractService implements
 
 	// -- Parameters --
 
-	@Parameter
-	private ThreadService threadService;
-
 	@Parameter
 	private PluginService pluginService;
 
@@ -68,174 +74,222 @@ public class DefaultRefManagerService extends AbstractService implements
 
 	// -- Fields --
 
+	/** Set when this service is disposed, to stop the {@link RefCleaner}. */
+	private volatile boolean disposed;
+
+	/** All {@link RefProvider} plugins, created on first use. */
+	private volatile List<RefProvider> refProviders;
+
 	/**
-	 * Flag passed by reference to {@link RefCleaner} instances to indicate when
-	 * this service has been disposed.
+	 * Providers that accepted referents and parameters of a given signature.
+	 * Providers that declined a signature are not asked again for it.
 	 */
-	private final boolean[] disposed = new boolean[1];
+	private final Map<Signature, RefProvider[]> providersBySignature =
+		new ConcurrentHashMap<>();
 
 	/**
-	 * Maps managed objects to the reference types which refer to them, ensuring
-	 * individual instances are not managed in the same way.
+	 * Maps managed objects to the provider types which made references to them,
+	 * ensuring individual instances are not managed in the same way. Entries
+	 * are removed by the {@link RefCleaner} once their referent is collected.
 	 */
-	private final Map<Object, Set<Class<?>>> managed =
-		new WeakHashMap<>();
+	private final Map<ManagedKey, Set<Class<?>>> managed =
+		new ConcurrentHashMap<>();
 
 	/**
-	 * A list of all managed references.
+	 * All managed references, strongly held until they are cleaned up.
 	 */
-	private final Set<Reference> knownRefs = new HashSet<>();
+	private final Set<Reference> knownRefs = ConcurrentHashMap.newKeySet();
 
 	/**
 	 * Queue used for all references. This is polled on a separate thread, and
 	 * whenever a reference is pulled from the queue its
 	 * {@link CleaningRef#cleanup()} method is called.
 	 */
-	private ReferenceQueue queue;
+	private final ReferenceQueue queue = new ReferenceQueue();
+
+	/** The cleaner thread, started when the first reference is managed. */
+	private volatile Thread cleaner;
 
 	// -- RefManagerService API --
 
 	@Override
 	public void manage(final Object toManage, final Object... params) {
-		// Check known RefProviders for all appropriate constructors
-		for (final RefProvider refProvider : pluginService
-			.createInstancesOfType(RefProvider.class))
-		{
-			if (!isManaged(toManage, refProvider.getClass()) &&
-				refProvider.handles(toManage, params))
-			{
-				// found a match
-				final Reference ref = refProvider.makeRef(toManage, queue, params);
-
-				synchronized (managed) {
-					Set<Class<?>> refs = managed.get(toManage);
-
-					if (refs == null) {
-						refs = new HashSet<>();
-						managed.put(toManage, refs);
-					}
-					refs.add(ref.getClass());
-				}
+		ManagedKey key = null;
+		for (final RefProvider refProvider : getProviders(toManage, params)) {
+			if (!refProvider.handles(toManage, params)) continue;
+
+			if (key == null) key = new ManagedKey(toManage, queue);
+			final Set<Class<?>> providers = managed.computeIfAbsent(key,
+				k -> ConcurrentHashMap.newKeySet());
+			if (!providers.add(refProvider.getClass())) continue;
+
+			// found a match
+			final Reference ref = refProvider.makeRef(toManage, queue, params);
+			knownRefs.add(ref);
+			if (cleaner == null) startCleaner();
+		}
+	}
 
-				synchronized (knownRefs) {
-					knownRefs.add(ref);
+	// -- DefaultRefManagerService methods --
 
-					if (knownRefs.size() == 1) {
-						// If this is the first entry in knownRefs, start a
-						// RefCleaner
-						// thread
-						threadService.run(new RefCleaner(queue, knownRefs, logService,
-							disposed));
-					}
-				}
-			}
-		}
+	/** @return the number of references which are not yet cleaned up */
+	int knownRefCount() {
+		return knownRefs.size();
 	}
 
 	// -- Service API --
 
 	/**
-	 * Signal to any active {@link RefCleaner} that this service has been
-	 * disposed. That should trigger an end of polling operations.
+	 * Signal to the {@link RefCleaner} that this service has been disposed. That
+	 * ends polling, and cleans up all references still known.
 	 */
 	@Override
 	public void dispose() {
-		disposed[0] = false;
-	}
-
-	@Override
-	public void initialize() {
-		// Set default values
-		queue = new ReferenceQueue();
-		disposed[0] = true;
+		disposed = true;
+		synchronized (this) {
+			if (cleaner != null) cleaner.interrupt();
+		}
 	}
 
 	// -- Helper Methods --
 
 	/**
-	 * @return true iff a {@link RefProvider} of the given class was constructed
-	 *         around the given object
+	 * @return the providers which may handle the given referent and parameters
 	 */
-	private boolean isManaged(final Object referent, final Class<?> pClass) {
-		synchronized (managed) {
-			final Set<Class<?>> refs = managed.get(referent);
-			if (refs != null && refs.contains(pClass)) return true;
+	private RefProvider[] getProviders(final Object referent,
+		final Object[] params)
+	{
+		final Signature signature = new Signature(referent, params);
+		RefProvider[] providers = providersBySignature.get(signature);
+		if (providers == null) {
+			final List<RefProvider> handlers = new ArrayList<>();
+			for (final RefProvider refProvider : getRefProviders()) {
+				if (refProvider.handles(referent, params)) handlers.add(refProvider);
+			}
+			providers = handlers.toArray(new RefProvider[handlers.size()]);
+			providersBySignature.put(signature, providers);
 		}
-		return false;
+		return providers;
 	}
 
-	// -- Helper class --
-
-	/**
-	 * {@link ReferenceQueue} manager for running on a separate thread. As long as
-	 * the set of references provided is not empty, the queue will be polled.
-	 * Removed {@link CleaningRef} instances will have their
-	 * {@link CleaningRef#cleanup()} method invoked, and then will be removed from
-	 * the originally provided {@code RefProvider} set.
-	 * <p>
-	 * NB: make sure that as new refs are added to the provided ref set, they are
-	 * registered with the given queue! Otherwise it's quite possible this thread
-	 * will never die and resources will not properly be cleaned.
-	 * </p>
-	 *
-	 * @author Mark Hiner
-	 */
-	private static class RefCleaner implements Runnable {
-
-		// -- Fields --
-
-		private final ReferenceQueue queue;
-
-		private final Set<Reference> refs;
-
-		private final LogService logService;
+	private List<RefProvider> getRefProviders() {
+		if (refProviders == null) {
+			synchronized (this) {
+				if (refProviders == null) {
+					refProviders =
+						pluginService.createInstancesOfType(RefProvider.class);
+				}
+			}
+		}
+		return refProviders;
+	}
 
-		private final boolean[] run;
+	private synchronized void startCleaner() {
+		if (cleaner != null || disposed) return;
+		cleaner = new Thread(new RefCleaner(), "SCIFIO-RefCleaner");
+		cleaner.setDaemon(true);
+		cleaner.start();
+	}
 
-		// -- Constructor --
+	// -- Helper classes --
 
-		public RefCleaner(final ReferenceQueue queue, final Set<Reference> refs,
-			final LogService log, final boolean[] runFlag)
-		{
-			this.queue = queue;
-			this.refs = refs;
-			logService = log;
-			run = runFlag;
-		}
+	/**
+	 * Polls the reference queue until this service is disposed. Removed
+	 * {@link CleaningRef} instances have their {@link CleaningRef#cleanup()}
+	 * method invoked, and are then forgotten; removed {@link ManagedKey}s are
+	 * dropped from the managed objects.
+	 */
+	private class RefCleaner implements Runnable {
 
 		// -- Runnable API --
 
 		@Override
 		public void run() {
-			int size = refs.size();
-			while (size > 0 && run[0]) {
-				CleaningRef cleaningRef = null;
+			while (!disposed) {
+				final Reference ref;
 				try {
-					cleaningRef = (CleaningRef) queue.remove(50);
+					ref = queue.remove();
 				}
 				catch (final InterruptedException e) {
-					logService.error("RefCleaner: interrupted while polling queue", e);
-				}
-				synchronized (refs) {
-					if (cleaningRef != null) {
-						// When a reference is pulled from the queue, call its
-						// cleanup
-						// method and remove it from the list
-						cleaningRef.cleanup();
-						refs.remove(cleaningRef);
+					if (!disposed) {
+						logService.error("RefCleaner: interrupted while polling queue", e);
 					}
-					size = refs.size();
+					break;
 				}
+				if (ref instanceof ManagedKey) managed.remove(ref);
+				else if (knownRefs.remove(ref)) cleanup((CleaningRef) ref);
 			}
 			// If the RefManagerService was manually disposed, we should force
 			// cleaning of all known refs, as they may not have been enqueued
 			// via normal procedures.
-			if (!run[0]) {
-				for (final Reference ref : refs) {
-					final CleaningRef cleaningRef = (CleaningRef) ref;
-					cleaningRef.cleanup();
-				}
+			for (final Reference ref : knownRefs) {
+				if (knownRefs.remove(ref)) cleanup((CleaningRef) ref);
+			}
+		}
+
+		private void cleanup(final CleaningRef ref) {
+			try {
+				ref.cleanup();
+			}
+			catch (final RuntimeException e) {
+				logService.error("RefCleaner: error cleaning up reference", e);
+			}
+		}
+	}
+
+	/**
+	 * Identity key for a managed object, which does not keep it alive and is
+	 * enqueued once it is collected.
+	 */
+	private static class ManagedKey extends WeakReference<Object> {
+
+		private final int hash;
+
+		private ManagedKey(final Object referent, final ReferenceQueue queue) {
+			super(referent, queue);
+			hash = System.identityHashCode(referent);
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (o == this) return true;
+			if (!(o instanceof ManagedKey)) return false;
+			final Object referent = get();
+			return referent != null && referent == ((ManagedKey) o).get();
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	/** The types of a referent and its parameters. */
+	private static class Signature {
+
+		private final Class<?>[] types;
+
+		private final int hash;
+
+		private Signature(final Object referent, final Object[] params) {
+			final int count = params == null ? 0 : params.length;
+			types = new Class<?>[count + 1];
+			types[0] = referent.getClass();
+			for (int i = 0; i < count; i++) {
+				types[i + 1] = params[i] == null ? null : params[i].getClass();
 			}
+			hash = Arrays.hashCode(types);
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			return o instanceof Signature && Arrays.equals(types,
+				((Signature) o).types);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
 		}
 	}
 }
@@ -39,7 +39,11 @@ import java.io.File;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 import org.scijava.plugin.Plugin;
@@ -100,8 +104,20 @@ public class DefaultFilePatternService extends AbstractService implements
 	}
 
 	@Override
-	public String findPattern(final String name, String dir,
-		final String[] nameList, int[] excludeAxes)
+	public String findPattern(final String name, final String dir,
+		final String[] nameList, final int[] excludeAxes)
+	{
+		return findPattern(name, dir, new NameIndex(nameList), excludeAxes);
+	}
+
+	/**
+	 * Finds the pattern for the given name among the names of an index. Each
+	 * numerical block is analyzed against the group of names differing from
+	 * the given one only in that block, so the cost does not grow with the
+	 * size of the listing.
+	 */
+	private String findPattern(final String name, String dir,
+		final NameIndex index, int[] excludeAxes)
 	{
 		if (excludeAxes == null) excludeAxes = new int[0];
 
@@ -154,42 +170,22 @@ public class DefaultFilePatternService extends AbstractService implements
 			}
 
 			sb.append(prefix);
-			final String pre = name.substring(0, indexList[i]);
-			final String post = name.substring(endList[i]);
 
-			final NumberFilter filter = new NumberFilter(pre, post);
-			final String[] list = matchFiles(nameList, filter);
-			if (list == null || list.length == 0) return null;
+			final NameGroup group = index.get(name, indexList[i], endList[i]);
+			if (group == null) return null;
+			final String[] list = group.names;
 			if (list.length == 1) {
 				// false alarm; this number block is constant
 				sb.append(name.substring(indexList[i], endList[i]));
 				continue;
 			}
-			boolean fix = true;
-			for (final String s : list) {
-				if (s.length() != len) {
-					fix = false;
-					break;
-				}
-			}
-			if (fix) {
+			final int width = endList[i] - indexList[i];
+			if (group.getWidth(name, indexList[i], endList[i]) == width) {
 				// tricky; this fixed-width block could represent multiple
 				// numberings
-				final int width = endList[i] - indexList[i];
 
 				// check each character for duplicates
-				final boolean[] same = new boolean[width];
-				for (int j = 0; j < width; j++) {
-					same[j] = true;
-					final int jx = indexList[i] + j;
-					final char c = name.charAt(jx);
-					for (final String s : list) {
-						if (s.charAt(jx) != c) {
-							same[j] = false;
-							break;
-						}
-					}
-				}
+				final boolean[] same = group.getSame(name, indexList[i], width);
 
 				// break down each sub-block
 				int j = 0;
@@ -203,7 +199,7 @@ public class DefaultFilePatternService extends AbstractService implements
 						while (j < width && !same[j])
 							j++;
 						final String p =
-							findPattern(name, nameList, jx, indexList[i] + j, "");
+							findPattern(name, list, index, jx, indexList[i] + j, "");
 						final char c =
 							indexList[i] > 0 ? name.charAt(indexList[i] - 1) : '.';
 						// check if this block represents the series axis
@@ -221,12 +217,7 @@ public class DefaultFilePatternService extends AbstractService implements
 			}
 			else {
 				// assume variable-width block represents only one numbering
-				final BigInteger[] numbers = new BigInteger[list.length];
-				for (int j = 0; j < list.length; j++) {
-					numbers[j] = filter.getNumber(list[j]);
-				}
-				Arrays.sort(numbers);
-				final String bounds = getBounds(numbers, false);
+				final String bounds = group.getBounds(name, indexList[i], endList[i]);
 				if (bounds == null) return null;
 				sb.append(bounds);
 			}
@@ -281,10 +272,13 @@ public class DefaultFilePatternService extends AbstractService implements
 		if (dot < 0) baseSuffix = "";
 		else baseSuffix = baseSuffix.substring(dot + 1);
 
-		final ArrayList<String> patterns = new ArrayList<>();
+		// index the listing once, rather than rescanning it for every name
+		final NameIndex index = new NameIndex(nameList);
+		final Set<String> patterns = new HashSet<>();
+		final Map<String, Boolean> containsBase = new HashMap<>();
 		final int[] exclude = new int[] { AxisGuesser.S_AXIS };
 		for (final String name : nameList) {
-			final String pattern = findPattern(name, dir, nameList, exclude);
+			final String pattern = findPattern(name, dir, index, exclude);
 			if (pattern == null) continue;
 			int start = pattern.lastIndexOf(File.separator) + 1;
 			if (start < 0) start = 0;
@@ -293,17 +287,20 @@ public class DefaultFilePatternService extends AbstractService implements
 			if (dot < 0) patternSuffix = "";
 			else patternSuffix = patternSuffix.substring(dot + 1);
 
-			final String checkPattern = findPattern(name, dir, nameList);
-			final String[] checkFiles =
-				new FilePattern(getContext(), checkPattern).getFiles();
-
-			if (!patterns.contains(pattern) &&
-				(!new Location(getContext(), pattern).exists() || base.equals(pattern)) &&
-				patternSuffix.equals(baseSuffix) &&
-				ArrayUtils.indexOf(checkFiles, base) >= 0)
+			if (patterns.contains(pattern) || !patternSuffix.equals(baseSuffix) ||
+				new Location(getContext(), pattern).exists() && !base.equals(pattern))
 			{
-				patterns.add(pattern);
+				continue;
+			}
+
+			final String checkPattern = findPattern(name, dir, index, null);
+			Boolean matches = containsBase.get(checkPattern);
+			if (matches == null) {
+				matches =
+					new FilePattern(getContext(), checkPattern).getIndex(base) >= 0;
+				containsBase.put(checkPattern, matches);
 			}
+			if (matches) patterns.add(pattern);
 		}
 		final String[] s = patterns.toArray(new String[patterns.size()]);
 		Arrays.sort(s);
@@ -314,21 +311,29 @@ public class DefaultFilePatternService extends AbstractService implements
 
 	/** Recursive method for parsing a fixed-width numerical block. */
 	private String findPattern(final String name, final String[] nameList,
-		final int ndx, final int end, final String p)
+		final NameIndex index, final int ndx, final int end, final String p)
 	{
 		if (ndx == end) return p;
 		for (int i = end - ndx; i >= 1; i--) {
-			final NumberFilter filter =
-				new NumberFilter(name.substring(0, ndx), name.substring(ndx + i));
-			final String[] list = matchFiles(nameList, filter);
-			final BigInteger[] numbers = new BigInteger[list.length];
-			for (int j = 0; j < list.length; j++) {
-				numbers[j] = new BigInteger(list[j].substring(ndx, ndx + i));
+			// names of a group share most sub-blocks; analyze each only once
+			final String key = NameIndex.key(name, ndx, ndx + i);
+			final String bounds;
+			if (index.bounds.containsKey(key)) bounds = index.bounds.get(key);
+			else {
+				final NumberFilter filter =
+					new NumberFilter(name.substring(0, ndx), name.substring(ndx + i));
+				final String[] list = matchFiles(nameList, filter);
+				final BigInteger[] numbers = new BigInteger[list.length];
+				for (int j = 0; j < list.length; j++) {
+					numbers[j] = new BigInteger(list[j].substring(ndx, ndx + i));
+				}
+				Arrays.sort(numbers);
+				bounds = getBounds(numbers, true);
+				index.bounds.put(key, bounds);
 			}
-			Arrays.sort(numbers);
-			final String bounds = getBounds(numbers, true);
 			if (bounds == null) continue;
-			final String pat = findPattern(name, nameList, ndx + i, end, p + bounds);
+			final String pat =
+				findPattern(name, nameList, index, ndx + i, end, p + bounds);
 			if (pat != null) return pat;
 		}
 		// no combination worked; this parse path is infeasible
@@ -339,7 +344,9 @@ public class DefaultFilePatternService extends AbstractService implements
 	 * Gets a string containing start, end and step values for a sorted list of
 	 * numbers.
 	 */
-	private String getBounds(final BigInteger[] numbers, final boolean fixed) {
+	private static String getBounds(final BigInteger[] numbers,
+		final boolean fixed)
+	{
 		if (numbers.length < 2) return null;
 		final BigInteger b = numbers[0];
 		final BigInteger e = numbers[numbers.length - 1];
@@ -383,4 +390,160 @@ public class DefaultFilePatternService extends AbstractService implements
 		}
 		return list.toArray(new String[0]);
 	}
+
+	// -- Helper classes --
+
+	/**
+	 * Index of a file listing. Each name is split into its numerical blocks,
+	 * and filed once per block under a key made of the name with that block
+	 * masked out. The names matching a {@link NumberFilter} around a block are
+	 * then found with a single lookup, instead of a scan of the whole listing.
+	 */
+	private static final class NameIndex {
+
+		/** Groups of names, by key. */
+		private final Map<String, NameGroup> groups = new HashMap<>();
+
+		/** Bounds of fixed-width sub-blocks already analyzed, by key. */
+		private final Map<String, String> bounds = new HashMap<>();
+
+		private NameIndex(final String[] nameList) {
+			final Map<String, List<String>> lists = new HashMap<>();
+			for (final String name : nameList) {
+				final int len = name.length();
+				int i = 0;
+				while (i < len) {
+					if (!isDigit(name.charAt(i))) {
+						i++;
+						continue;
+					}
+					int end = i + 1;
+					while (end < len && isDigit(name.charAt(end)))
+						end++;
+					List<String> list = lists.get(key(name, i, end));
+					if (list == null) {
+						list = new ArrayList<>();
+						lists.put(key(name, i, end), list);
+					}
+					list.add(name);
+					i = end;
+				}
+			}
+			for (final Map.Entry<String, List<String>> entry : lists.entrySet()) {
+				final List<String> list = entry.getValue();
+				groups.put(entry.getKey(), new NameGroup(list.toArray(new String[list
+					.size()])));
+			}
+		}
+
+		/**
+		 * Gets the names differing from the given one only in the numerical block
+		 * spanning the given range, or null if there are none.
+		 */
+		private NameGroup get(final String name, final int start, final int end) {
+			return groups.get(key(name, start, end));
+		}
+
+		private static String key(final String name, final int start,
+			final int end)
+		{
+			return new StringBuilder(name.length() - end + start + 1).append(name,
+				0, start).append('\0').append(name, end, name.length()).toString();
+		}
+
+		private static boolean isDigit(final char c) {
+			return c >= '0' && c <= '9';
+		}
+	}
+
+	/**
+	 * Names differing only in one numerical block. Every name of a group leads
+	 * to the same analysis of that block, so its results are computed once.
+	 */
+	private static final class NameGroup {
+
+		private final String[] names;
+
+		/** Common length of the names, or -1 if their lengths differ. */
+		private int length = -2;
+
+		/** Whether each character matches that of the first name. */
+		private boolean[] sameAsFirst;
+
+		private String bounds;
+
+		private boolean boundsDone;
+
+		private NameGroup(final String[] names) {
+			this.names = names;
+		}
+
+		/**
+		 * Gets the width of the block when it is the same for every name of the
+		 * group, or -1 otherwise.
+		 */
+		private int getWidth(final String name, final int start, final int end) {
+			if (length == -2) {
+				length = names[0].length();
+				for (final String s : names) {
+					if (s.length() != length) {
+						length = -1;
+						break;
+					}
+				}
+			}
+			return length < 0 ? -1 : length - name.length() + end - start;
+		}
+
+		/**
+		 * Checks, for each character of the fixed-width block starting at the
+		 * given index, whether every name of the group agrees with the given
+		 * name.
+		 */
+		private boolean[] getSame(final String name, final int start,
+			final int width)
+		{
+			if (sameAsFirst == null) {
+				final String first = names[0];
+				sameAsFirst = new boolean[length];
+				for (int jx = 0; jx < length; jx++) {
+					sameAsFirst[jx] = true;
+					final char c = first.charAt(jx);
+					for (final String s : names) {
+						if (s.charAt(jx) != c) {
+							sameAsFirst[jx] = false;
+							break;
+						}
+					}
+				}
+			}
+			final boolean[] same = new boolean[width];
+			for (int j = 0; j < width; j++) {
+				final int jx = start + j;
+				same[j] = sameAsFirst[jx] && names[0].charAt(jx) == name.charAt(jx);
+			}
+			return same;
+		}
+
+		/**
+		 * Gets the bounds of the variable-width block spanning the given range
+		 * of the given name.
+		 */
+		private String getBounds(final String name, final int start,
+			final int end)
+		{
+			if (!boundsDone) {
+				final int tail = name.length() - end;
+				final BigInteger[] numbers = new BigInteger[names.length];
+				for (int j = 0; j < names.length; j++) {
+					final String s = names[j];
+					numbers[j] = new BigInteger(s.substring(start, s.length() - tail));
+				}
+				Arrays.sort(numbers);
+				bounds = DefaultFilePatternService.getBounds(numbers, false);
+				boundsDone = true;
+			}
+			return bounds;
+		}
+	}
 }
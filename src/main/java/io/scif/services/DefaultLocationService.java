@@ -30,17 +30,37 @@
 
 package io.scif.services;
 
+import io.scif.io.HTTPRangeHandle;
 import io.scif.io.IRandomAccess;
 import io.scif.io.IStreamAccess;
 import io.scif.io.NIOFileHandle;
 import io.scif.io.NIOService;
 import io.scif.io.VirtualHandle;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
 
 import org.scijava.log.LogService;
 import org.scijava.plugin.Parameter;
@@ -72,6 +92,9 @@ public class DefaultLocationService extends AbstractService implements
 	@Parameter
 	private PluginService pluginService;
 
+	@Parameter(required = false)
+	private MetricsService metricsService;
+
 	/** Map from given filenames to actual filenames. */
 	private HashMap<String, Object> idMap = new HashMap<>();
 
@@ -80,21 +103,77 @@ public class DefaultLocationService extends AbstractService implements
 	// By default, cache for one hour.
 	private volatile long cacheNanos = 60L * 60L * 1000L * 1000L * 1000L;
 
+	/**
+	 * Directory modification times are only trusted once they are at least this
+	 * many milliseconds older than the listing, since coarse file system
+	 * timestamps cannot distinguish changes made within the same interval.
+	 */
+	private static final long MTIME_GRANULARITY = 2000;
+
 	protected class ListingsResult {
 
 		public final String[] listing;
 
 		public final long time;
 
+		/** Modification time of the listed directory, or -1 if unknown. */
+		public final long lastModified;
+
+		/** Whether {@link #lastModified} identifies this listing's contents. */
+		public final boolean settled;
+
 		ListingsResult(final String[] listing, final long time) {
+			this(listing, time, -1, true);
+		}
+
+		ListingsResult(final String[] listing, final long time,
+			final long lastModified, final boolean settled)
+		{
 			this.listing = listing;
 			this.time = time;
+			this.lastModified = lastModified;
+			this.settled = settled;
+		}
+
+		/**
+		 * Checks whether this listing still describes a directory with the given
+		 * modification time.
+		 */
+		boolean isCurrent(final long modified) {
+			return settled && lastModified == modified && time >= System
+				.nanoTime() - cacheNanos;
 		}
 	}
 
 	private ConcurrentHashMap<String, ListingsResult> fileListings =
 		new ConcurrentHashMap<>();
 
+	/** Number of leading file bytes shared among the stream handle checks. */
+	private static final int HEADER_SIZE = 8;
+
+	/** Maximum number of cached stream handle decisions. */
+	private static final int MAX_HANDLE_DECISIONS = 10000;
+
+	/**
+	 * Instances of the available stream handles, used only to check which of
+	 * them can open an id.
+	 */
+	private volatile List<StreamHandleEntry> streamHandles;
+
+	/** Stream handle chosen for each recently opened id. */
+	private final Map<String, HandleDecision> handleDecisions = Collections
+		.synchronizedMap(new LinkedHashMap<String, HandleDecision>(16, 0.75f,
+			true)
+		{
+
+			@Override
+			protected boolean removeEldestEntry(
+				final Map.Entry<String, HandleDecision> eldest)
+			{
+				return size() > MAX_HANDLE_DECISIONS;
+			}
+		});
+
 	// -- Location API methods --
 
 	@Override
@@ -102,6 +181,7 @@ public class DefaultLocationService extends AbstractService implements
 		cacheNanos = 60L * 60L * 1000L * 1000L * 1000L;
 		fileListings.clear();
 		getIdMap().clear();
+		handleDecisions.clear();
 	}
 
 	@Override
@@ -138,6 +218,7 @@ public class DefaultLocationService extends AbstractService implements
 		if (id == null) return;
 		if (filename == null) getIdMap().remove(id);
 		else getIdMap().put(id, filename);
+		handleDecisions.remove(id);
 		log.debug("Location.mapId: " + id + " -> " + filename);
 	}
 
@@ -146,6 +227,7 @@ public class DefaultLocationService extends AbstractService implements
 		if (id == null) return;
 		if (ira == null) getIdMap().remove(id);
 		else getIdMap().put(id, ira);
+		handleDecisions.remove(id);
 		log.debug("Location.mapFile: " + id + " -> " + ira);
 	}
 
@@ -202,23 +284,33 @@ public class DefaultLocationService extends AbstractService implements
 			log.trace("no handle was mapped for this ID");
 			final String mapId = getMappedId(id);
 
-			final List<PluginInfo<IStreamAccess>> streamInfos =
-				getContext().getPluginIndex().getPlugins(IStreamAccess.class);
+			if (HTTPRangeHandle.isConstructable(mapId)) {
+				// prefer range requests over rereading the stream when seeking
+				try {
+					handle = new HTTPRangeHandle(mapId);
+				}
+				catch (final IOException e) {
+					log.debug("Range requests unavailable for " + mapId + ": " + e
+						.getMessage());
+				}
+			}
 
-			if (allowArchiveHandles) {
-				for (final PluginInfo<IStreamAccess> info : streamInfos) {
-					handle = pluginService.createInstance(info);
-					if (((IStreamAccess) handle).isConstructable(id)) {
-						((IStreamAccess) handle).setFile(id);
-						break;
-					}
-					handle = null;
+			if (handle == null && allowArchiveHandles) {
+				final PluginInfo<IStreamAccess> info = resolveStreamHandle(id);
+				if (info != null) {
+					final IStreamAccess streamHandle = pluginService.createInstance(info);
+					streamHandle.setFile(id);
+					handle = streamHandle;
 				}
 			}
 
 			try {
-				if (handle == null) handle =
-					new NIOFileHandle(nioService, mapId, writable ? "rw" : "r");
+				if (handle == null) {
+					final NIOFileHandle fileHandle =
+						new NIOFileHandle(nioService, mapId, writable ? "rw" : "r");
+					fileHandle.setMetrics(metricsService);
+					handle = fileHandle;
+				}
 			}
 			catch (final IOException e) {
 				// File doesn't exist on disk, so we'll create a virtual handle
@@ -270,4 +362,261 @@ public class DefaultLocationService extends AbstractService implements
 			fileListings.put(key, new ListingsResult(listing, System.nanoTime()));
 		}
 	}
+
+	@Override
+	public String[] listDirectory(final String path,
+		final boolean noHiddenFiles)
+	{
+		return list(path, noHiddenFiles, false);
+	}
+
+	@Override
+	public String[] listSubdirectories(final String path,
+		final boolean noHiddenFiles)
+	{
+		return list(path, noHiddenFiles, true);
+	}
+
+	@Override
+	public Map<String, String[]> listDirectories(
+		final Collection<String> paths, final boolean noHiddenFiles)
+	{
+		final String[] dirs = paths.toArray(new String[paths.size()]);
+		final String[][] listings = new String[dirs.length][];
+		IntStream.range(0, dirs.length).parallel().forEach(
+			i -> listings[i] = listDirectory(dirs[i], noHiddenFiles));
+
+		final Map<String, String[]> result = new LinkedHashMap<>();
+		for (int i = 0; i < dirs.length; i++) {
+			result.put(dirs[i], listings[i]);
+		}
+		return result;
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Lists the given directory, reusing the cached listing if the directory
+	 * has not been modified since it was made.
+	 */
+	private String[] list(final String path, final boolean noHiddenFiles,
+		final boolean dirsOnly)
+	{
+		final Path dir;
+		final BasicFileAttributes attrs;
+		try {
+			dir = Paths.get(path);
+			attrs = Files.readAttributes(dir, BasicFileAttributes.class);
+		}
+		catch (final InvalidPathException | IOException e) {
+			log.trace("Could not read attributes of " + path, e);
+			return null;
+		}
+		if (!attrs.isDirectory()) return null;
+
+		final long modified = attrs.lastModifiedTime().toMillis();
+		final String key = path + Boolean.toString(noHiddenFiles) + (dirsOnly
+			? File.separator : "");
+		if (cacheListings) {
+			final ListingsResult cached = fileListings.get(key);
+			if (cached != null && cached.isCurrent(modified)) return cached.listing;
+		}
+
+		final long listed = System.currentTimeMillis();
+		final String[] listing = dirsOnly ? readSubdirectories(dir,
+			noHiddenFiles) : readDirectory(dir, noHiddenFiles);
+		if (listing != null && cacheListings) {
+			fileListings.put(key, new ListingsResult(listing, System.nanoTime(),
+				modified, listed - modified >= MTIME_GRANULARITY));
+		}
+		return listing;
+	}
+
+	/** Reads the entry names of the given directory, without any stat calls. */
+	private String[] readDirectory(final Path dir,
+		final boolean noHiddenFiles)
+	{
+		final List<String> names = new ArrayList<>();
+		try (final DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+			for (final Path entry : stream) {
+				final String name = entry.getFileName().toString();
+				if (noHiddenFiles && isHidden(name)) continue;
+				names.add(name);
+			}
+		}
+		catch (final IOException | DirectoryIteratorException e) {
+			log.trace("Could not list directory " + dir, e);
+			return null;
+		}
+		return names.toArray(new String[names.size()]);
+	}
+
+	/**
+	 * Reads the subdirectory names of the given directory. The file tree walker
+	 * hands out the attributes it obtained while iterating, which on some
+	 * platforms come for free with the directory entries.
+	 */
+	private String[] readSubdirectories(final Path dir,
+		final boolean noHiddenFiles)
+	{
+		final List<String> names = new ArrayList<>();
+		try {
+			Files.walkFileTree(dir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), 1,
+				new SimpleFileVisitor<Path>()
+				{
+
+					@Override
+					public FileVisitResult visitFile(final Path file,
+						final BasicFileAttributes attrs)
+					{
+						final String name = file.getFileName().toString();
+						if (attrs.isDirectory() && !(noHiddenFiles && isHidden(name))) {
+							names.add(name);
+						}
+						return FileVisitResult.CONTINUE;
+					}
+
+					@Override
+					public FileVisitResult visitFileFailed(final Path file,
+						final IOException exc) throws IOException
+					{
+						// NB: The root itself failing means it cannot be listed.
+						if (file.equals(dir)) throw exc;
+						return FileVisitResult.CONTINUE;
+					}
+				});
+		}
+		catch (final IOException e) {
+			log.trace("Could not list directory " + dir, e);
+			return null;
+		}
+		return names.toArray(new String[names.size()]);
+	}
+
+	/** Matches {@link io.scif.io.Location#isHidden()} for local files. */
+	private static boolean isHidden(final String name) {
+		return name.startsWith(".");
+	}
+
+	/**
+	 * Determines which stream handle, if any, should open the given id. Handles
+	 * are first filtered by id alone; the leading bytes of the file are read
+	 * only if some handle remains, and then only once. The decision is cached
+	 * per id, and revalidated against the file's modification time and length
+	 * if it depended on the file's contents.
+	 */
+	private PluginInfo<IStreamAccess> resolveStreamHandle(final String id)
+		throws IOException
+	{
+		final File file = new File(id);
+		final HandleDecision cached = handleDecisions.get(id);
+		if (cached != null && cached.isValid(file)) return cached.info;
+
+		final List<StreamHandleEntry> candidates = new ArrayList<>();
+		for (final StreamHandleEntry entry : getStreamHandles()) {
+			if (entry.handle.isCandidate(id)) candidates.add(entry);
+		}
+		if (candidates.isEmpty()) {
+			handleDecisions.put(id, new HandleDecision(null));
+			return null;
+		}
+
+		final byte[] header = readHeader(file);
+		PluginInfo<IStreamAccess> info = null;
+		for (final StreamHandleEntry entry : candidates) {
+			if (entry.handle.isConstructable(id, header)) {
+				info = entry.info;
+				break;
+			}
+		}
+		// NB: only remember decisions which can be revalidated cheaply
+		if (header != null) handleDecisions.put(id, new HandleDecision(info, file));
+		return info;
+	}
+
+	private List<StreamHandleEntry> getStreamHandles() {
+		List<StreamHandleEntry> entries = streamHandles;
+		if (entries == null) {
+			entries = new ArrayList<>();
+			for (final PluginInfo<IStreamAccess> info : getContext()
+				.getPluginIndex().getPlugins(IStreamAccess.class))
+			{
+				final IStreamAccess handle = pluginService.createInstance(info);
+				if (handle != null) entries.add(new StreamHandleEntry(info, handle));
+			}
+			streamHandles = entries;
+		}
+		return entries;
+	}
+
+	/** Reads the leading bytes of a file, or returns null if impossible. */
+	private byte[] readHeader(final File file) {
+		if (!file.isFile()) return null;
+		try (final FileInputStream in = new FileInputStream(file)) {
+			final byte[] header = new byte[HEADER_SIZE];
+			int n = 0;
+			while (n < header.length) {
+				final int r = in.read(header, n, header.length - n);
+				if (r < 0) break;
+				n += r;
+			}
+			return n == header.length ? header : Arrays.copyOf(header, n);
+		}
+		catch (final IOException e) {
+			log.trace("Cannot read header of " + file, e);
+			return null;
+		}
+	}
+
+	// -- Helper classes --
+
+	/** A stream handle plugin, with an instance for checking ids. */
+	private static class StreamHandleEntry {
+
+		private final PluginInfo<IStreamAccess> info;
+
+		private final IStreamAccess handle;
+
+		private StreamHandleEntry(final PluginInfo<IStreamAccess> info,
+			final IStreamAccess handle)
+		{
+			this.info = info;
+			this.handle = handle;
+		}
+	}
+
+	/** The stream handle chosen for an id, or null for none. */
+	private static class HandleDecision {
+
+		private final PluginInfo<IStreamAccess> info;
+
+		/** Whether the decision depends on the contents of a file. */
+		private final boolean stamped;
+
+		private final long lastModified;
+
+		private final long length;
+
+		/** Creates a decision based on the id alone. */
+		private HandleDecision(final PluginInfo<IStreamAccess> info) {
+			this.info = info;
+			stamped = false;
+			lastModified = length = 0;
+		}
+
+		/** Creates a decision based on the contents of the given file. */
+		private HandleDecision(final PluginInfo<IStreamAccess> info,
+			final File file)
+		{
+			this.info = info;
+			stamped = true;
+			lastModified = file.lastModified();
+			length = file.length();
+		}
+
+		private boolean isValid(final File file) {
+			return !stamped || (file.lastModified() == lastModified && file
+				.length() == length);
+		}
+	}
 }
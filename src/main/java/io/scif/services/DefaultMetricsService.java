@@ -0,0 +1,224 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.services;
+
+import io.scif.util.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.scijava.plugin.Plugin;
+import org.scijava.service.AbstractService;
+import org.scijava.service.Service;
+
+/**
+ * Default {@link MetricsService} implementation, keeping its counters and
+ * histograms in concurrent maps.
+ *
+ * @see MetricsService
+ */
+@Plugin(type = Service.class)
+public class DefaultMetricsService extends AbstractService implements
+	MetricsService
+{
+
+	// -- Constants --
+
+	/** Percentiles written for each histogram by {@link #writeJSON}. */
+	private static final int[] PERCENTILES = { 50, 90, 99 };
+
+	// -- Fields --
+
+	private volatile boolean enabled;
+
+	private final ConcurrentMap<String, LongAdder> counters =
+		new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<String, LatencyHistogram> histograms =
+		new ConcurrentHashMap<>();
+
+	// -- MetricsService API methods --
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public void setEnabled(final boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	@Override
+	public void count(final String name, final long amount) {
+		if (!enabled) return;
+		LongAdder counter = counters.get(name);
+		if (counter == null) {
+			counter = counters.computeIfAbsent(name, k -> new LongAdder());
+		}
+		counter.add(amount);
+	}
+
+	@Override
+	public void time(final String name, final long nanos) {
+		if (!enabled) return;
+		LatencyHistogram histogram = histograms.get(name);
+		if (histogram == null) {
+			histogram = histograms.computeIfAbsent(name,
+				k -> new LatencyHistogram());
+		}
+		histogram.record(nanos);
+	}
+
+	@Override
+	public long getCount(final String name) {
+		final LongAdder counter = counters.get(name);
+		return counter == null ? 0 : counter.sum();
+	}
+
+	@Override
+	public Map<String, Long> getCounts() {
+		final Map<String, Long> counts = new TreeMap<>();
+		for (final Map.Entry<String, LongAdder> e : counters.entrySet()) {
+			counts.put(e.getKey(), e.getValue().sum());
+		}
+		return counts;
+	}
+
+	@Override
+	public LatencyHistogram getHistogram(final String name) {
+		return histograms.get(name);
+	}
+
+	@Override
+	public Map<String, LatencyHistogram> getHistograms() {
+		return new TreeMap<>(histograms);
+	}
+
+	@Override
+	public double getCacheHitRatio() {
+		final long hits = getCount(CACHE_HITS);
+		final long lookups = hits + getCount(CACHE_MISSES);
+		return lookups == 0 ? Double.NaN : (double) hits / lookups;
+	}
+
+	@Override
+	public void reset() {
+		counters.clear();
+		histograms.clear();
+	}
+
+	@Override
+	public void writeJSON(final Writer out) throws IOException {
+		out.write("{\"enabled\":" + enabled + ",\"counters\":{");
+		String separator = "";
+		for (final Map.Entry<String, Long> e : getCounts().entrySet()) {
+			out.write(separator);
+			writeString(out, e.getKey());
+			out.write(":" + e.getValue());
+			separator = ",";
+		}
+		out.write("},\"histograms\":{");
+		separator = "";
+		for (final Map.Entry<String, LatencyHistogram> e : getHistograms()
+			.entrySet())
+		{
+			out.write(separator);
+			writeString(out, e.getKey());
+			out.write(":");
+			writeHistogram(out, e.getValue());
+			separator = ",";
+		}
+		out.write("}");
+		final double ratio = getCacheHitRatio();
+		if (!Double.isNaN(ratio)) out.write(",\"cacheHitRatio\":" + ratio);
+		out.write("}");
+	}
+
+	@Override
+	public String toJSON() {
+		final StringWriter out = new StringWriter();
+		try {
+			writeJSON(out);
+		}
+		catch (final IOException e) {
+			// NB: StringWriter never throws.
+			throw new IllegalStateException(e);
+		}
+		return out.toString();
+	}
+
+	// -- Helper methods --
+
+	private void writeHistogram(final Writer out,
+		final LatencyHistogram histogram) throws IOException
+	{
+		out.write("{\"count\":" + histogram.getCount() + ",\"totalNanos\":" +
+			histogram.getTotal() + ",\"meanNanos\":" + histogram.getMean() +
+			",\"maxNanos\":" + histogram.getMax());
+		for (final int p : PERCENTILES) {
+			out.write(",\"p" + p + "Nanos\":" + histogram.getPercentile(p));
+		}
+		// buckets are keyed by their inclusive upper bound
+		out.write(",\"buckets\":{");
+		String separator = "";
+		for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+			final long n = histogram.getBucketCount(i);
+			if (n == 0) continue;
+			out.write(separator + "\"" + LatencyHistogram.getUpperBound(i) + "\":" +
+				n);
+			separator = ",";
+		}
+		out.write("}}");
+	}
+
+	private void writeString(final Writer out, final String s)
+		throws IOException
+	{
+		out.write('"');
+		for (int i = 0; i < s.length(); i++) {
+			final char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				out.write('\\');
+				out.write(c);
+			}
+			else if (c < 0x20) out.write(String.format("\\u%04x", (int) c));
+			else out.write(c);
+		}
+		out.write('"');
+	}
+}
@@ -34,8 +34,13 @@ import io.scif.SCIFIOService;
 import io.scif.io.IRandomAccess;
 import io.scif.io.VirtualHandle;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Contains methods for mapping files and ids, and generating
@@ -64,6 +69,9 @@ public interface LocationService extends SCIFIOService {
 	 * cache - the contents of the directories might change during the program
 	 * invocation.
 	 *
+	 * Cached listings of local directories are additionally discarded as soon
+	 * as the modification time of the directory changes.
+	 *
 	 * @param cache - true to turn cacheing on, false to leave it off.
 	 */
 	void cacheDirectoryListings(boolean cache);
@@ -176,4 +184,64 @@ public interface LocationService extends SCIFIOService {
 	 * Maps the set of listings to the provided key.
 	 */
 	void putCachedListing(String key, String[] listing);
+
+	/**
+	 * Lists the names of the entries in the given local directory. When
+	 * directory listings are cached, a previous listing is reused for as long as
+	 * the modification time of the directory is unchanged. By default, the
+	 * directory is listed through {@link File#list()} without any caching.
+	 *
+	 * @param path Absolute path of the directory to list.
+	 * @param noHiddenFiles Whether to omit hidden entries.
+	 * @return The entry names, or null if the path is not a readable directory.
+	 */
+	default String[] listDirectory(final String path,
+		final boolean noHiddenFiles)
+	{
+		final String[] names = new File(path).list();
+		if (names == null || !noHiddenFiles) return names;
+		return Arrays.stream(names).filter(name -> !name.startsWith(".")).toArray(
+			String[]::new);
+	}
+
+	/**
+	 * Lists the names of the subdirectories of the given local directory. The
+	 * type of each entry is determined in the same pass as the listing itself,
+	 * where the implementation supports it. By default, each entry of
+	 * {@link #listDirectory(String, boolean)} is checked separately.
+	 *
+	 * @param path Absolute path of the directory to list.
+	 * @param noHiddenFiles Whether to omit hidden subdirectories.
+	 * @return The subdirectory names, or null if the path is not a readable
+	 *         directory.
+	 */
+	default String[] listSubdirectories(final String path,
+		final boolean noHiddenFiles)
+	{
+		final String[] names = listDirectory(path, noHiddenFiles);
+		if (names == null) return null;
+		return Arrays.stream(names).filter(name -> new File(path, name)
+			.isDirectory()).toArray(String[]::new);
+	}
+
+	/**
+	 * Lists several local directories at once, in parallel where the
+	 * implementation supports it. By default, the directories are listed one
+	 * after another.
+	 *
+	 * @param paths Absolute paths of the directories to list.
+	 * @param noHiddenFiles Whether to omit hidden entries.
+	 * @return The listing of each path, in iteration order of the given paths.
+	 *         Paths which are not readable directories map to null.
+	 * @see #listDirectory(String, boolean)
+	 */
+	default Map<String, String[]> listDirectories(
+		final Collection<String> paths, final boolean noHiddenFiles)
+	{
+		final Map<String, String[]> result = new LinkedHashMap<>();
+		for (final String path : paths) {
+			result.put(path, listDirectory(path, noHiddenFiles));
+		}
+		return result;
+	}
 }
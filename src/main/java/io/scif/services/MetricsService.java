@@ -0,0 +1,140 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.services;
+
+import io.scif.SCIFIOService;
+import io.scif.util.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * Collects counters and latency histograms from the I/O and decoding hot
+ * paths: bytes read and buffered by {@link io.scif.io.NIOFileHandle}, seeks
+ * and reads of {@link io.scif.io.RandomAccessInputStream}, time spent per
+ * {@link io.scif.formats.tiff.TiffCompression}, {@code openPlane} latency per
+ * format and {@link io.scif.img.cell.SCIFIOCellCache} hits.
+ * <p>
+ * Collection is disabled by default; while disabled each instrumented call
+ * site costs a single flag check.
+ * </p>
+ *
+ * @see LatencyHistogram
+ */
+public interface MetricsService extends SCIFIOService {
+
+	/** Bytes read from a file channel without passing through a buffer. */
+	String HANDLE_BYTES_READ = "handle.bytesRead";
+
+	/** Bytes loaded into {@link io.scif.io.NIOFileHandle} buffers. */
+	String HANDLE_BYTES_BUFFERED = "handle.bytesBuffered";
+
+	/** Number of times a {@link io.scif.io.NIOFileHandle} buffer was refilled. */
+	String HANDLE_BUFFER_REFILLS = "handle.bufferRefills";
+
+	/** Number of refills served by an asynchronous read-ahead. */
+	String HANDLE_READ_AHEAD_HITS = "handle.readAheadHits";
+
+	/** Number of {@link io.scif.io.RandomAccessInputStream} seeks. */
+	String STREAM_SEEKS = "stream.seeks";
+
+	/** Bytes requested through bulk reads of a stream. */
+	String STREAM_BYTES_READ = "stream.bytesRead";
+
+	/**
+	 * Prefix of the per-compression codec metrics: {@code codec.<name>.time} is
+	 * a histogram, {@code codec.<name>.bytesIn} and {@code codec.<name>.bytesOut}
+	 * are counters.
+	 */
+	String CODEC_PREFIX = "codec.";
+
+	/** Prefix of the per-format {@code openPlane} latency histograms. */
+	String OPEN_PLANE_PREFIX = "openPlane.";
+
+	/** Number of cells served from a cell cache. */
+	String CACHE_HITS = "cache.hits";
+
+	/** Number of cells which had to be loaded by a cell cache. */
+	String CACHE_MISSES = "cache.misses";
+
+	/** @return true iff metrics are currently being collected. */
+	boolean isEnabled();
+
+	/**
+	 * Turns collection on or off. Values recorded so far are kept until
+	 * {@link #reset()} is called.
+	 */
+	void setEnabled(boolean enabled);
+
+	/**
+	 * Adds the given amount to the named counter, if collection is enabled.
+	 */
+	void count(String name, long amount);
+
+	/**
+	 * Records the given duration in the named histogram, if collection is
+	 * enabled.
+	 *
+	 * @param nanos Elapsed time in nanoseconds.
+	 */
+	void time(String name, long nanos);
+
+	/** @return The value of the named counter, or 0 if it was never counted. */
+	long getCount(String name);
+
+	/** @return A snapshot of all counters, sorted by name. */
+	Map<String, Long> getCounts();
+
+	/**
+	 * @return The named histogram, or null if nothing was recorded under this
+	 *         name.
+	 */
+	LatencyHistogram getHistogram(String name);
+
+	/** @return All histograms, sorted by name. */
+	Map<String, LatencyHistogram> getHistograms();
+
+	/**
+	 * @return The fraction of cell cache lookups which were hits, or
+	 *         {@code Double.NaN} if no lookups were recorded.
+	 */
+	double getCacheHitRatio();
+
+	/** Discards all counters and histograms. */
+	void reset();
+
+	/** Writes all metrics to the given writer as a JSON object. */
+	void writeJSON(Writer out) throws IOException;
+
+	/** @return All metrics as a JSON object. */
+	String toJSON();
+}
@@ -31,6 +31,7 @@
 package io.scif.util;
 
 import io.scif.FormatException;
+import io.scif.ImageLayout;
 import io.scif.ImageMetadata;
 import io.scif.Metadata;
 import io.scif.Plane;
@@ -39,6 +40,7 @@ import io.scif.Writer;
 import io.scif.common.ReflectException;
 import io.scif.common.ReflectedUniverse;
 import io.scif.config.SCIFIOConfig;
+import io.scif.convert.ConversionEngine;
 import io.scif.io.RandomAccessInputStream;
 
 import java.io.IOException;
@@ -319,20 +321,14 @@ public final class FormatTools {
 	public static long getNonPlanarAxisPosition(final Metadata m,
 		final int imageIndex, final long planeIndex, final AxisType type)
 	{
-		final ImageMetadata iMeta = m.get(imageIndex);
-		int axisIndex = iMeta.getAxisIndex(type);
+		final ImageLayout layout = m.get(imageIndex).getLayout();
+		final int axisIndex = layout.getAxisIndex(type);
 
 		// Axis is a planar axis
-		if (axisIndex < iMeta.getPlanarAxisCount()) return 0;
-
-		// look up position of the given plane
-		final long[] position =
-			rasterToPosition(iMeta.getAxesLengthsNonPlanar(), planeIndex);
+		if (axisIndex < layout.getPlanarAxisCount()) return 0;
 
-		// Compute relative index of the desired axis
-		axisIndex -= iMeta.getPlanarAxisCount();
-
-		return position[axisIndex];
+		// look up position of the given plane along the desired axis
+		return layout.getPosition(planeIndex, axisIndex);
 	}
 
 	/**
@@ -362,8 +358,9 @@ public final class FormatTools {
 	public static long[] rasterToPosition(final int imageIndex,
 		final long planeIndex, final Metadata m)
 	{
-		final long[] axisLengths = m.get(imageIndex).getAxesLengthsNonPlanar();
-		return rasterToPosition(axisLengths, planeIndex);
+		final ImageLayout layout = m.get(imageIndex).getLayout();
+		return layout.planeToPosition(planeIndex, new long[layout
+			.getNonPlanarAxisCount()]);
 	}
 
 	/**
@@ -511,8 +508,7 @@ public final class FormatTools {
 	public static long positionToRaster(final int imageIndex, final Metadata m,
 		final long[] planeIndices)
 	{
-		final long[] planeSizes = m.get(imageIndex).getAxesLengthsNonPlanar();
-		return positionToRaster(planeSizes, planeIndices);
+		return m.get(imageIndex).getLayout().positionToPlane(planeIndices);
 	}
 
 	/**
@@ -665,12 +661,12 @@ public final class FormatTools {
 	public static void checkTileSize(final Metadata m, final long[] planeMin,
 		final long[] planeMax, final int imageIndex) throws FormatException
 	{
-		final List<CalibratedAxis> axes = m.get(imageIndex).getAxesPlanar();
+		final ImageLayout layout = m.get(imageIndex).getLayout();
 
-		for (int i = 0; i < axes.size(); i++) {
+		for (int i = 0; i < layout.getPlanarAxisCount(); i++) {
 			final long start = planeMin[i];
 			final long end = planeMax[i];
-			final long length = m.get(imageIndex).getAxisLength(axes.get(i));
+			final long length = layout.getAxisLength(i);
 
 			if (start < 0 || end < 0 || (start + end) > length) throw new FormatException(
 				"Invalid planar size: start=" + start + ", end=" + end +
@@ -1093,7 +1089,9 @@ public final class FormatTools {
 
 	/**
 	 * Convenience method for writing all of the images and metadata obtained from
-	 * the specified Reader into the specified Writer.
+	 * the specified Reader into the specified Writer. Planes are read while
+	 * previous planes are written; use a {@link ConversionEngine} directly for
+	 * parallel reading and tile streaming.
 	 *
 	 * @param input the pre-initialized Reader used for reading data.
 	 * @param output the uninitialized Writer used for writing data.
@@ -1105,18 +1103,7 @@ public final class FormatTools {
 	public static void convert(final Reader input, final Writer output,
 		final String outputFile) throws FormatException, IOException
 	{
-
-		Plane p = null;
-
-		for (int i = 0; i < input.getImageCount(); i++) {
-			for (int j = 0; j < input.getPlaneCount(i); j++) {
-				p = input.openPlane(i, j);
-				output.savePlane(i, j, p);
-			}
-		}
-
-		input.close();
-		output.close();
+		convert(input, output, outputFile, new SCIFIOConfig());
 	}
 
 	/**
@@ -1134,18 +1121,9 @@ public final class FormatTools {
 		final String outputFile, final SCIFIOConfig config) throws FormatException,
 		IOException
 	{
-
-		Plane p = null;
-
-		for (int i = 0; i < input.getImageCount(); i++) {
-			for (int j = 0; j < input.getPlaneCount(i); j++) {
-				p = input.openPlane(i, j, config);
-				output.savePlane(i, j, p);
-			}
-		}
-
-		input.close();
-		output.close();
+		// NB: Planes are only split into tiles if they cannot be held whole.
+		new ConversionEngine(input.getContext()).setTileBytes(
+			ConversionEngine.MAX_TILE_BYTES).convert(input, null, output, config);
 	}
 
 	/**
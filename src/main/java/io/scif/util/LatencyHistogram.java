@@ -0,0 +1,140 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe histogram of durations in nanoseconds, using power-of-two
+ * buckets. Bucket {@code i} holds the durations of bit length {@code i}, so
+ * that recording is a single atomic increment and percentiles are accurate to
+ * within a factor of two.
+ */
+public class LatencyHistogram {
+
+	// -- Constants --
+
+	/** Number of buckets; one per bit length of a non-negative long. */
+	public static final int BUCKETS = 64;
+
+	// -- Fields --
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+	private final LongAdder count = new LongAdder();
+
+	private final LongAdder total = new LongAdder();
+
+	private final AtomicLong max = new AtomicLong();
+
+	// -- LatencyHistogram API methods --
+
+	/** Records a duration; negative durations are recorded as 0. */
+	public void record(final long nanos) {
+		final long value = Math.max(0, nanos);
+		buckets.incrementAndGet(bucket(value));
+		count.increment();
+		total.add(value);
+		long current = max.get();
+		while (value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+
+	/** @return The number of recorded durations. */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/** @return The sum of all recorded durations, in nanoseconds. */
+	public long getTotal() {
+		return total.sum();
+	}
+
+	/** @return The longest recorded duration, in nanoseconds. */
+	public long getMax() {
+		return max.get();
+	}
+
+	/** @return The mean duration in nanoseconds, or 0 if nothing was recorded. */
+	public double getMean() {
+		final long n = getCount();
+		return n == 0 ? 0 : (double) getTotal() / n;
+	}
+
+	/** @return The number of durations recorded in the given bucket. */
+	public long getBucketCount(final int bucket) {
+		return buckets.get(bucket);
+	}
+
+	/**
+	 * Estimates a percentile as the upper bound of the bucket containing it.
+	 *
+	 * @param percentile Value between 0 and 100.
+	 * @return The estimate in nanoseconds, or 0 if nothing was recorded.
+	 */
+	public long getPercentile(final double percentile) {
+		final long n = getCount();
+		if (n == 0) return 0;
+		final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += buckets.get(i);
+			if (seen >= rank) return Math.min(getUpperBound(i), getMax());
+		}
+		return getMax();
+	}
+
+	/** Discards all recorded durations. */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets.set(i, 0);
+		}
+		count.reset();
+		total.reset();
+		max.set(0);
+	}
+
+	// -- Utility methods --
+
+	/** @return The largest duration which falls into the given bucket. */
+	public static long getUpperBound(final int bucket) {
+		return bucket == BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+	}
+
+	// -- Helper methods --
+
+	private static int bucket(final long value) {
+		return Long.SIZE - Long.numberOfLeadingZeros(value);
+	}
+}
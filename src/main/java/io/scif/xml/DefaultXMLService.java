@@ -34,21 +34,27 @@ import io.scif.common.Constants;
 import io.scif.io.RandomAccessInputStream;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.HashMap;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -101,19 +107,45 @@ public class DefaultXMLService extends AbstractService implements XMLService {
 	private static final SchemaFactory FACTORY = SchemaFactory
 		.newInstance(XML_SCHEMA_PATH);
 
+	private static final Pattern DECLARED_NAMESPACE = Pattern.compile(
+		" xmlns:(\\w+)");
+
+	private static final Pattern EMPTY_NAMESPACE = Pattern.compile(
+		" xmlns:(\\w+)=\"\"");
+
 	// -- Fields --
 
 	@Parameter
 	private LogService log;
 
-	private final ThreadLocal<HashMap<URI, Schema>> schemas =
-		new ThreadLocal<HashMap<URI, Schema>>() {
+	/** Compiled schemas, which are thread safe, by location. */
+	private final Map<URI, Schema> schemas = new ConcurrentHashMap<>();
 
-			@Override
-			protected HashMap<URI, Schema> initialValue() {
-				return new HashMap<>();
-			}
-		};
+	// NB: Java XML factories, parsers and transformers are not declared to be
+	// thread safe, so each thread keeps its own. Parsers are pooled per thread
+	// rather than held singly, so that a handler may parse reentrantly.
+
+	private final ThreadLocal<DocumentBuilderFactory> documentBuilderFactories =
+		ThreadLocal.withInitial(DocumentBuilderFactory::newInstance);
+
+	private final ThreadLocal<SAXParserFactory> saxParserFactories = ThreadLocal
+		.withInitial(SAXParserFactory::newInstance);
+
+	private final ThreadLocal<TransformerFactory> transformerFactories =
+		ThreadLocal.withInitial(() -> {
+			final TransformerFactory factory = TransformerFactory.newInstance();
+			factory.setErrorListener(new XMLListener());
+			return factory;
+		});
+
+	private final ThreadLocal<Deque<DocumentBuilder>> documentBuilders =
+		ThreadLocal.withInitial(ArrayDeque::new);
+
+	private final ThreadLocal<Deque<SAXParser>> saxParsers = ThreadLocal
+		.withInitial(ArrayDeque::new);
+
+	private final ThreadLocal<Deque<Transformer>> transformers = ThreadLocal
+		.withInitial(ArrayDeque::new);
 
 	// -- XML to/from DOM --
 
@@ -154,11 +186,19 @@ public class DefaultXMLService extends AbstractService implements XMLService {
 			is.markSupported() ? is : new BufferedInputStream(is);
 		checkUTF8(in);
 
-		// Java XML factories are not declared to be thread safe
-		final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-		final DocumentBuilder db = factory.newDocumentBuilder();
-		db.setErrorHandler(new ParserErrorHandler(log));
-		return db.parse(in);
+		final Deque<DocumentBuilder> pool = documentBuilders.get();
+		DocumentBuilder db = pool.poll();
+		if (db == null) {
+			db = documentBuilderFactories.get().newDocumentBuilder();
+		}
+		try {
+			db.setErrorHandler(new ParserErrorHandler(log));
+			return db.parse(in);
+		}
+		finally {
+			db.reset();
+			pool.push(db);
+		}
 	}
 
 	@Override
@@ -168,11 +208,19 @@ public class DefaultXMLService extends AbstractService implements XMLService {
 		final Source source = new DOMSource(doc);
 		final StringWriter stringWriter = new StringWriter();
 		final Result result = new StreamResult(stringWriter);
-		// Java XML factories are not declared to be thread safe
-		final TransformerFactory factory = TransformerFactory.newInstance();
-		factory.setErrorListener(new XMLListener());
-		final Transformer transformer = factory.newTransformer();
-		transformer.transform(source, result);
+		final Deque<Transformer> pool = transformers.get();
+		Transformer transformer = pool.poll();
+		if (transformer == null) {
+			transformer = transformerFactories.get().newTransformer();
+		}
+		try {
+			transformer.setErrorListener(new XMLListener());
+			transformer.transform(source, result);
+		}
+		finally {
+			transformer.reset();
+			pool.push(transformer);
+		}
 		return stringWriter.getBuffer().toString();
 	}
 
@@ -336,10 +384,7 @@ public class DefaultXMLService extends AbstractService implements XMLService {
 		throws IOException
 	{
 		try {
-			// Java XML factories are not declared to be thread safe
-			final SAXParserFactory factory = SAXParserFactory.newInstance();
-			final SAXParser parser = factory.newSAXParser();
-			parser.parse(xml, handler);
+			parseSAX(new InputSource(xml), handler);
 		}
 		catch (final ParserConfigurationException exc) {
 			final IOException e = new IOException();
@@ -375,11 +420,7 @@ public class DefaultXMLService extends AbstractService implements XMLService {
 
 		try {
 			final StreamSource xsltSource = new StreamSource(xsltStream);
-			// Java XML factories are not declared to be thread safe
-			final TransformerFactory transformerFactory =
-				TransformerFactory.newInstance();
-			transformerFactory.setErrorListener(new XMLListener());
-			return transformerFactory.newTemplates(xsltSource);
+			return transformerFactories.get().newTemplates(xsltSource);
 		}
 		catch (final TransformerConfigurationException exc) {
 			log.debug("Could not construct template", exc);
@@ -396,46 +437,71 @@ public class DefaultXMLService extends AbstractService implements XMLService {
 	}
 
 	@Override
-	public String avoidUndeclaredNamespaces(String xml) {
-		int gt = xml.indexOf('>');
-		if (gt > 0 && xml.startsWith("<?xml ")) gt = xml.indexOf('>', gt + 1);
-		if (gt > 0) {
-			String firstTag = xml.substring(0, gt + 1).toLowerCase();
-
-			// the first tag is a comment; we need to find the first "real" tag
-			while (firstTag.endsWith("-->")) {
-				gt = xml.indexOf('>', gt + 1);
-				firstTag = xml.substring(0, gt + 1).toLowerCase();
-			}
-
-			final Set<String> namespaces = new HashSet<>();
-			Pattern pattern = Pattern.compile(" xmlns:(\\w+)");
-			Matcher matcher = pattern.matcher(firstTag);
-			while (matcher.find()) {
-				namespaces.add(matcher.group(1));
-			}
-
-			pattern = Pattern.compile("</?(\\w+):");
-			matcher = pattern.matcher(xml);
-			while (matcher.find()) {
-				final String namespace = matcher.group(1);
-				if (!namespace.equalsIgnoreCase("OME") && !namespace.startsWith("ns") &&
-					!namespaces.contains(namespace.toLowerCase()))
-				{
-					final int end = matcher.end();
-					xml = xml.substring(0, end - 1) + "_" + xml.substring(end);
-				}
-			}
-
-			final Pattern emptyNamespaces = Pattern.compile(" xmlns:(\\w+)=\"\"");
-			matcher = emptyNamespaces.matcher(firstTag);
-			while (matcher.find()) {
-				final int start = matcher.start();
-				final int end = matcher.end();
-				xml = xml.substring(0, start + 1) + xml.substring(end);
-			}
+	public String avoidUndeclaredNamespaces(final String xml) {
+		final StringWriter out = new StringWriter(xml.length());
+		try {
+			avoidUndeclaredNamespaces(new StringReader(xml), out);
+		}
+		catch (final IOException exc) {
+			// NB: Impossible when reading from and writing to strings.
+			throw new IllegalStateException(exc);
 		}
-		return xml;
+		return out.toString();
+	}
+
+	/**
+	 * Streams the result in a single pass. Only the prolog through the first
+	 * element tag is buffered.
+	 */
+	@Override
+	public void avoidUndeclaredNamespaces(final Reader xml, final Writer out)
+		throws IOException
+	{
+		final Reader in = xml instanceof StringReader ||
+			xml instanceof BufferedReader ? xml : new BufferedReader(xml);
+
+		// buffer the prolog, through the end of the first "real" tag
+		final StringBuilder head = new StringBuilder();
+		int gt = readTag(in, head);
+		if (gt > 0 && head.indexOf("<?xml ") == 0) gt = readTag(in, head);
+		if (gt <= 0) {
+			// no element tag; pass the document through unchanged
+			out.append(head);
+			final char[] buf = new char[8192];
+			for (int n; (n = in.read(buf)) >= 0;)
+				out.write(buf, 0, n);
+			return;
+		}
+
+		// the first tag is a comment; we need to find the first "real" tag
+		while (gt >= 0 && endsWith(head, "-->")) {
+			gt = readTag(in, head);
+		}
+		final String firstTag = gt < 0 ? "" : head.toString().toLowerCase();
+
+		final Set<String> namespaces = new HashSet<>();
+		final Matcher declared = DECLARED_NAMESPACE.matcher(firstTag);
+		while (declared.find()) {
+			namespaces.add(declared.group(1));
+		}
+
+		// drop empty namespace declarations from the first tag
+		final StringBuilder prolog = new StringBuilder(head.length());
+		final Matcher empty = EMPTY_NAMESPACE.matcher(firstTag);
+		int copied = 0;
+		while (empty.find()) {
+			prolog.append(head, copied, empty.start() + 1);
+			copied = empty.end();
+		}
+		prolog.append(head, copied, head.length());
+
+		// rewrite prefixes of undeclared namespaces as the document streams by
+		final NamespaceFilter filter = new NamespaceFilter(out, namespaces);
+		filter.write(prolog, 0, prolog.length());
+		final char[] buf = new char[8192];
+		for (int n; (n = in.read(buf)) >= 0;)
+			filter.write(buf, 0, n);
+		filter.flush();
 	}
 
 	@Override
@@ -489,12 +555,7 @@ public class DefaultXMLService extends AbstractService implements XMLService {
 		log.info("Parsing schema path");
 		final ValidationSAXHandler saxHandler = new ValidationSAXHandler(log);
 		try {
-			// Java XML factories are not declared to be thread safe
-			final SAXParserFactory factory = SAXParserFactory.newInstance();
-			final SAXParser saxParser = factory.newSAXParser();
-			final InputStream is =
-				new ByteArrayInputStream(xml.getBytes(Constants.ENCODING));
-			saxParser.parse(is, saxHandler);
+			parseSAX(new InputSource(new StringReader(xml)), saxHandler);
 		}
 		catch (final ParserConfigurationException exc) {
 			exception = exc;
@@ -527,11 +588,14 @@ public class DefaultXMLService extends AbstractService implements XMLService {
 			log.info("Error accessing schema at " + schemaPath, exc);
 			return false;
 		}
-		Schema schema = schemas.get().get(schemaLocation);
+		Schema schema = schemas.get(schemaLocation);
 		if (schema == null) {
 			try {
-				schema = FACTORY.newSchema(schemaLocation.toURL());
-				schemas.get().put(schemaLocation, schema);
+				// SchemaFactory is not thread safe, but the schemas it makes are
+				synchronized (FACTORY) {
+					schema = FACTORY.newSchema(schemaLocation.toURL());
+				}
+				schemas.put(schemaLocation, schema);
 			}
 			catch (final MalformedURLException exc) {
 				log.info("Error parsing schema at " + schemaPath, exc);
@@ -574,6 +638,44 @@ public class DefaultXMLService extends AbstractService implements XMLService {
 
 	// -- Helper methods --
 
+	/** Parses the given source with a pooled SAX parser. */
+	private void parseSAX(final InputSource source, final DefaultHandler handler)
+		throws ParserConfigurationException, SAXException, IOException
+	{
+		final Deque<SAXParser> pool = saxParsers.get();
+		SAXParser parser = pool.poll();
+		if (parser == null) parser = saxParserFactories.get().newSAXParser();
+		try {
+			parser.parse(source, handler);
+		}
+		finally {
+			parser.reset();
+			pool.push(parser);
+		}
+	}
+
+	/**
+	 * Appends characters from the reader through the next '&gt;'.
+	 *
+	 * @return the index of the '&gt;' in the buffer, or -1 at end of stream
+	 */
+	private static int readTag(final Reader in, final StringBuilder buf)
+		throws IOException
+	{
+		for (int c; (c = in.read()) >= 0;) {
+			buf.append((char) c);
+			if (c == '>') return buf.length() - 1;
+		}
+		return -1;
+	}
+
+	private static boolean endsWith(final StringBuilder buf,
+		final String suffix)
+	{
+		final int offset = buf.length() - suffix.length();
+		return offset >= 0 && buf.indexOf(suffix, offset) == offset;
+	}
+
 	/**
 	 * Checks the given stream for a UTF-8 BOM header, skipping it if present. If
 	 * no UTF-8 BOM is present, the position of the stream is unchanged.
@@ -592,7 +694,83 @@ public class DefaultXMLService extends AbstractService implements XMLService {
 		}
 	}
 
-	// -- Helper class --
+	// -- Helper classes --
+
+	/**
+	 * Replaces the ':' after each {@code <NS} or {@code </NS} with '_' when the
+	 * namespace is undeclared, buffering only the tag name being examined.
+	 */
+	private static class NamespaceFilter {
+
+		private final Writer out;
+
+		private final Set<String> namespaces;
+
+		/** The pending tag opening, starting with '&lt;'. */
+		private final StringBuilder tag = new StringBuilder();
+
+		/** Offset of the namespace prefix within the pending tag. */
+		private int prefixStart;
+
+		private NamespaceFilter(final Writer out, final Set<String> namespaces) {
+			this.out = out;
+			this.namespaces = namespaces;
+		}
+
+		private void write(final CharSequence s, final int off, final int len)
+			throws IOException
+		{
+			for (int i = off; i < off + len; i++)
+				write(s.charAt(i));
+		}
+
+		private void write(final char[] c, final int off, final int len)
+			throws IOException
+		{
+			for (int i = off; i < off + len; i++)
+				write(c[i]);
+		}
+
+		private void write(final char c) throws IOException {
+			if (tag.length() == 0) {
+				if (c == '<') tag.append(c);
+				else out.write(c);
+				return;
+			}
+			if (isWordChar(c)) {
+				if (prefixStart == 0) prefixStart = tag.length();
+				tag.append(c);
+				return;
+			}
+			if (prefixStart == 0 && c == '/' && tag.length() == 1) {
+				tag.append(c);
+				return;
+			}
+			if (prefixStart > 0 && c == ':') {
+				final String namespace = tag.substring(prefixStart);
+				final boolean undeclared = !namespace.equalsIgnoreCase("OME") &&
+					!namespace.startsWith("ns") &&
+					!namespaces.contains(namespace.toLowerCase());
+				flush();
+				out.write(undeclared ? '_' : ':');
+				return;
+			}
+			// not a namespaced tag after all
+			flush();
+			write(c);
+		}
+
+		private void flush() throws IOException {
+			out.append(tag);
+			tag.setLength(0);
+			prefixStart = 0;
+		}
+
+		private static boolean isWordChar(final char c) {
+			return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' ||
+				c >= '0' && c <= '9' || c == '_';
+		}
+	}
 
 	/** ErrorListener implementation that logs errors and warnings. */
 	private class XMLListener implements ErrorListener {
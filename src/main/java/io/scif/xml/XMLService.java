@@ -36,6 +36,8 @@ import io.scif.io.RandomAccessInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.Hashtable;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -129,6 +131,22 @@ public interface XMLService extends SCIFIOService {
 	/** Replaces NS:tag with NS_tag for undeclared namespaces */
 	String avoidUndeclaredNamespaces(String xml);
 
+	/**
+	 * Replaces NS:tag with NS_tag for undeclared namespaces, writing the result
+	 * to the given writer. By default the whole document is read into memory
+	 * and passed to {@link #avoidUndeclaredNamespaces(String)}; implementations
+	 * may stream it instead.
+	 */
+	default void avoidUndeclaredNamespaces(final Reader xml, final Writer out)
+		throws IOException
+	{
+		final StringBuilder sb = new StringBuilder();
+		final char[] buf = new char[8192];
+		for (int n; (n = xml.read(buf)) >= 0;)
+			sb.append(buf, 0, n);
+		out.write(avoidUndeclaredNamespaces(sb.toString()));
+	}
+
 	/** Transforms the given XML string using the specified XSLT stylesheet. */
 	String transformXML(String xml, Templates xslt) throws IOException;
 
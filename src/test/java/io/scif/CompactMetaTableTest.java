@@ -0,0 +1,231 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link CompactMetaTable}.
+ */
+public class CompactMetaTableTest {
+
+	/** Tests that primitive values come back with their original types. */
+	@Test
+	public void testValueTypes() {
+		final CompactMetaTable table = new CompactMetaTable();
+		table.put("int", 5);
+		table.put("long", 6L);
+		table.put("short", (short) 7);
+		table.put("byte", (byte) 8);
+		table.put("float", 1.5f);
+		table.put("double", -2.25);
+		table.put("boolean", true);
+		table.put("char", 'c');
+		table.put(" string ", "value");
+		table.put("array", new int[1]);
+
+		assertEquals(5, table.get("int"));
+		assertEquals(6L, table.get("long"));
+		assertEquals((short) 7, table.get("short"));
+		assertEquals((byte) 8, table.get("byte"));
+		assertEquals(1.5f, table.get("float"));
+		assertEquals(-2.25, table.get("double"));
+		assertEquals(true, table.get("boolean"));
+		assertEquals("c", table.get("char"));
+		assertEquals("value", table.get("string"));
+		assertEquals(int[].class, table.get("array").getClass());
+		assertEquals(10, table.size());
+
+		assertEquals(5, table.put("int", "five"));
+		assertEquals("five", table.get("int"));
+		assertNull(table.put(null, 1));
+		assertNull(table.put("null", null));
+		assertFalse(table.containsKey("null"));
+	}
+
+	/** Tests that keys shared between tables are stored once. */
+	@Test
+	public void testInternedKeys() {
+		final CompactMetaTable a = new CompactMetaTable();
+		final CompactMetaTable b = new CompactMetaTable();
+		a.put(new String("Exposure time"), 1);
+		b.put(new String("Exposure time"), 2);
+		assertSame(a.keySet().iterator().next(), b.keySet().iterator().next());
+	}
+
+	/** Tests that the table behaves like {@link DefaultMetaTable}. */
+	@Test
+	public void testMatchesDefaultMetaTable() {
+		for (final boolean filter : new boolean[] { false, true }) {
+			final Random random = new Random(filter ? 1 : 0);
+			final DefaultMetaTable expected = new DefaultMetaTable(filter);
+			final CompactMetaTable actual = new CompactMetaTable(filter);
+			for (int i = 0; i < 5000; i++) {
+				final String key = "key<" + random.nextInt(500);
+				final Object value = random.nextBoolean() ? random.nextInt() :
+					"&value " + random.nextInt();
+				switch (random.nextInt(4)) {
+					case 0:
+						assertEquals(expected.remove(key), actual.remove(key));
+						break;
+					case 1:
+						expected.putList(key, value);
+						actual.putList(key, value);
+						break;
+					default:
+						assertEquals(expected.put(key, value), actual.put(key, value));
+				}
+				assertEquals(expected.size(), actual.size());
+			}
+			assertEquals(expected, actual);
+			assertEquals(expected.hashCode(), actual.hashCode());
+
+			// remove every other entry while iterating
+			final Iterator<String> keys = actual.keySet().iterator();
+			for (boolean remove = true; keys.hasNext(); remove = !remove) {
+				final String key = keys.next();
+				if (remove) {
+					keys.remove();
+					expected.remove(key);
+				}
+			}
+			assertEquals(expected, actual);
+			assertEquals(expected, new CompactMetaTable(actual));
+		}
+	}
+
+	/** Tests values computed on first access. */
+	@Test
+	public void testLazyValues() {
+		final int[] loads = new int[1];
+		final CompactMetaTable table = new CompactMetaTable();
+		table.putLazy("lazy", () -> {
+			loads[0]++;
+			return 42;
+		});
+		table.putLazy("failed", () -> {
+			throw new IOException();
+		});
+		table.putLazy("missing", () -> null);
+		assertEquals(3, table.size());
+		assertEquals(0, loads[0]);
+
+		assertEquals(42, table.get("lazy"));
+		assertEquals(42, table.get("lazy"));
+		assertEquals(1, loads[0]);
+
+		// iteration drops entries without a value
+		for (final Map.Entry<String, Object> entry : table.entrySet()) {
+			assertEquals("lazy", entry.getKey());
+		}
+		assertEquals(1, table.size());
+	}
+
+	/** Tests that filtering matches {@link DefaultMetaTable}. */
+	@Test
+	public void testFiltered() {
+		final CompactMetaTable table = new CompactMetaTable(true);
+		table.put("array", new int[1]);
+		table.put("12", "no letters");
+		table.put("a&amp;b", "<c>");
+		table.putLazy("vector", () -> new Vector<>());
+		assertEquals(2, table.size());
+		assertEquals("c", table.get("ab"));
+		assertTrue(table.containsKey("vector"));
+		assertNull(table.get("vector"));
+		assertEquals(1, table.size());
+	}
+
+	/** Tests that copies keep filtering and pending lazy values. */
+	@Test
+	public void testCopy() {
+		final CompactMetaTable table = new CompactMetaTable(true);
+		table.putLazy("lazy", () -> "<c>");
+		final CompactMetaTable copy = new CompactMetaTable(table);
+		copy.put("array", new int[1]);
+		assertFalse(copy.containsKey("array"));
+		assertEquals("c", copy.get("lazy"));
+	}
+
+	/** Tests that a lazy value read by several threads is loaded once. */
+	@Test
+	public void testConcurrentLazyValues() throws InterruptedException {
+		final CompactMetaTable table = new CompactMetaTable();
+		final AtomicInteger loads = new AtomicInteger();
+		for (int i = 0; i < 100; i++) {
+			final int value = i;
+			table.putLazy("key" + i, () -> {
+				loads.incrementAndGet();
+				return value;
+			});
+		}
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicInteger errors = new AtomicInteger();
+		final Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				try {
+					start.await();
+					for (int i = 0; i < 100; i++) {
+						if (!Integer.valueOf(i).equals(table.get("key" + i))) {
+							errors.incrementAndGet();
+						}
+					}
+				}
+				catch (final InterruptedException e) {
+					errors.incrementAndGet();
+				}
+			});
+			threads[t].start();
+		}
+		start.countDown();
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(0, errors.get());
+		assertEquals(100, loads.get());
+	}
+
+}
@@ -0,0 +1,122 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link FilePattern}.
+ */
+public class FilePatternTest {
+
+	// -- Fields --
+
+	private SCIFIO scifio;
+
+	// -- Setup --
+
+	@Before
+	public void setUp() {
+		scifio = new SCIFIO();
+	}
+
+	@After
+	public void tearDown() {
+		scifio.getContext().dispose();
+	}
+
+	// -- Tests --
+
+	/**
+	 * Test that names computed from the pattern blocks match the materialized
+	 * file listing, and that each name maps back to its index.
+	 */
+	@Test
+	public void testIndexMapping() {
+		final FilePattern fp =
+			new FilePattern(scifio.getContext(), "plate_<A-C>_<08-12:2>_<R,G>.tif");
+		assertEquals(18, fp.getFileCount());
+
+		final String[] files = fp.getFiles();
+		assertEquals(18, files.length);
+		assertEquals("plate_A_08_R.tif", files[0]);
+		assertEquals("plate_B_08_R.tif", files[1]);
+		assertEquals("plate_A_10_R.tif", files[3]);
+		assertEquals("plate_C_12_G.tif", files[17]);
+		for (int i = 0; i < files.length; i++) {
+			assertEquals(files[i], fp.getFile(i));
+			assertEquals(i, fp.getIndex(files[i]));
+		}
+
+		assertEquals(-1, fp.getIndex("plate_D_08_R.tif"));
+		assertEquals(-1, fp.getIndex("plate_A_09_R.tif"));
+		assertEquals(-1, fp.getIndex("plate_A_8_R.tif"));
+		assertEquals(-1, fp.getIndex("plate_A_08_B.tif"));
+		assertEquals(-1, fp.getIndex("other_A_08_R.tif"));
+	}
+
+	/**
+	 * Test that a pattern with millions of combinations is indexed without
+	 * expanding its file listing.
+	 */
+	@Test
+	public void testLargePattern() {
+		final String pattern = "plate_<a-p>_<001-384>_<000-999>.tif";
+		final FilePattern fp = new FilePattern(scifio.getContext(), pattern);
+		assertEquals(16L * 384 * 1000, fp.getFileCount());
+		assertArrayEquals(new int[] { 16, 384, 1000 }, fp.getCount());
+
+		final long last = fp.getFileCount() - 1;
+		assertEquals("plate_a_001_000.tif", fp.getFile(0));
+		assertEquals("plate_p_384_999.tif", fp.getFile(last));
+		assertEquals(last, fp.getIndex("plate_p_384_999.tif"));
+		assertEquals(16 * 42 + 5, fp.getIndex("plate_f_043_000.tif"));
+	}
+
+	/** Test that variable-width blocks map names back to indices. */
+	@Test
+	public void testVariableWidth() {
+		final FilePattern fp =
+			new FilePattern(scifio.getContext(), "z<1-12>c<0-2>.ome.tif");
+		assertEquals(36, fp.getFileCount());
+		assertEquals("z12c2.ome.tif", fp.getFile(35));
+		assertEquals(35, fp.getIndex("z12c2.ome.tif"));
+		assertEquals(9, fp.getIndex("z10c0.ome.tif"));
+		assertEquals(-1, fp.getIndex("z01c0.ome.tif"));
+		assertEquals(-1, fp.getIndex("z13c0.ome.tif"));
+	}
+
+}
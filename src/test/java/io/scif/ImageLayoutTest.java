@@ -0,0 +1,162 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import io.scif.util.FormatTools;
+
+import net.imagej.axis.Axes;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link ImageLayout}.
+ */
+public class ImageLayoutTest {
+
+	private ImageMetadata meta;
+
+	@Before
+	public void setUp() {
+		meta = new DefaultImageMetadata();
+		meta.setAxisTypes(Axes.X, Axes.Y, Axes.CHANNEL, Axes.Z, Axes.TIME);
+		meta.setAxisLengths(new long[] { 7, 5, 3, 4, 6 });
+		meta.setPlanarAxisCount(3);
+		meta.setPixelType(FormatTools.UINT16);
+		meta.setBitsPerPixel(16);
+		meta.setLittleEndian(true);
+	}
+
+	@Test
+	public void testLayout() {
+		final ImageLayout layout = meta.getLayout();
+		assertEquals(5, layout.getAxisCount());
+		assertEquals(3, layout.getPlanarAxisCount());
+		assertEquals(2, layout.getNonPlanarAxisCount());
+		assertEquals(Axes.Z, layout.getAxisType(3));
+		assertEquals(2, layout.getAxisIndex(Axes.CHANNEL));
+		assertEquals(-1, layout.getAxisIndex(Axes.LIFETIME));
+		assertEquals(6, layout.getAxisLength(Axes.TIME));
+		assertEquals(1, layout.getAxisLength(Axes.LIFETIME));
+		assertEquals(35, layout.getAxisStride(2));
+		assertEquals(4, layout.getAxisStride(4));
+		assertEquals(24, layout.getPlaneCount());
+		assertEquals(105, layout.getPlanePixels());
+		assertEquals(210, layout.getPlaneSize());
+		assertEquals(2, layout.getBytesPerPixel());
+		assertEquals(meta.getPlaneCount(), layout.getPlaneCount());
+		assertArrayEquals(meta.getAxesLengthsPlanar(), layout
+			.getAxesLengthsPlanar());
+		assertArrayEquals(meta.getAxesLengthsNonPlanar(), layout
+			.getAxesLengthsNonPlanar());
+	}
+
+	@Test
+	public void testPlanePositions() {
+		final ImageLayout layout = meta.getLayout();
+		final long[] lengths = meta.getAxesLengthsNonPlanar();
+		final long[] pos = new long[2];
+		for (long plane = 0; plane < layout.getPlaneCount(); plane++) {
+			final long[] expected = FormatTools.rasterToPosition(lengths, plane);
+			assertArrayEquals(expected, layout.planeToPosition(plane, pos));
+			assertEquals(plane, layout.positionToPlane(pos));
+			assertEquals(expected[1], layout.getPosition(plane, 4));
+		}
+
+		final long[] full = new long[5];
+		layout.planeToPosition(11, full, 3);
+		assertArrayEquals(new long[] { 0, 0, 0, 3, 2 }, full);
+	}
+
+	@Test
+	public void testPixelPositions() {
+		final ImageLayout layout = meta.getLayout();
+		final long[] lengths = meta.getAxesLengthsPlanar();
+		final long[] pos = new long[3];
+		for (long pixel = 0; pixel < layout.getPlanePixels(); pixel++) {
+			final long[] expected = FormatTools.rasterToPosition(lengths, pixel);
+			assertArrayEquals(expected, layout.pixelToPosition(pixel, pos));
+			assertEquals(pixel, layout.positionToPixel(pos));
+			assertEquals(expected[2], layout.getPosition(pixel, 2));
+		}
+	}
+
+	@Test
+	public void testShortPosition() {
+		// positions need not cover every axis, as with positionToRaster
+		final ImageLayout layout = meta.getLayout();
+		assertEquals(3, layout.positionToPlane(new long[] { 3 }));
+		assertEquals(FormatTools.positionToRaster(meta.getAxesLengthsNonPlanar(),
+			new long[] { 3 }), layout.positionToPlane(new long[] { 3 }));
+		assertEquals(0, layout.positionToPixel(new long[0]));
+	}
+
+	@Test
+	public void testLastAxisNotWrapped() {
+		final ImageLayout layout = meta.getLayout();
+		final long[] pos = layout.planeToPosition(30, new long[2]);
+		assertArrayEquals(FormatTools.rasterToPosition(meta
+			.getAxesLengthsNonPlanar(), 30), pos);
+		assertEquals(pos[1], layout.getPosition(30, 4));
+		assertEquals(7, layout.getPosition(30, 4));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPlaneSizeOverflow() {
+		meta.setAxisLength(Axes.TIME, Long.MAX_VALUE / 100);
+		meta.getLayout().getPlaneSize();
+	}
+
+	@Test
+	public void testRecompile() {
+		final ImageLayout layout = meta.getLayout();
+		assertSame(layout, meta.getLayout());
+
+		meta.setAxisLength(Axes.TIME, 2);
+		final ImageLayout resized = meta.getLayout();
+		assertNotSame(layout, resized);
+		assertEquals(8, resized.getPlaneCount());
+		assertEquals(24, layout.getPlaneCount());
+
+		meta.setPixelType(FormatTools.UINT8);
+		meta.setBitsPerPixel(8);
+		assertEquals(105, meta.getLayout().getPlaneSize());
+
+		// trailing axes of length 1 are not part of the layout
+		meta.setAxisLength(Axes.TIME, 1);
+		assertEquals(4, meta.getLayout().getAxisCount());
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.thread.ThreadService;
+
+/**
+ * Tests {@link ParallelGZIPOutputStream}.
+ */
+public class ParallelGZIPOutputStreamTest {
+
+	private Context context;
+
+	private ThreadService threadService;
+
+	@Before
+	public void setUp() {
+		context = new Context(ThreadService.class);
+		threadService = context.getService(ThreadService.class);
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	@Test
+	public void testSerial() throws IOException {
+		assertRoundTrip(1, Deflater.DEFAULT_STRATEGY);
+	}
+
+	@Test
+	public void testParallel() throws IOException {
+		assertRoundTrip(4, Deflater.DEFAULT_STRATEGY);
+		assertRoundTrip(3, Deflater.FILTERED);
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Writes pieces of random size, some larger than a parallel block, and
+	 * checks that {@link GZIPInputStream} reads them back.
+	 */
+	private void assertRoundTrip(final int threads, final int strategy)
+		throws IOException
+	{
+		final Random random = new Random(threads);
+		final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		try (final ParallelGZIPOutputStream out = new ParallelGZIPOutputStream(
+			compressed, 6, strategy, threads, threadService))
+		{
+			for (int piece = 0; piece < 12; piece++) {
+				final int length = piece % 4 == 0 ? random.nextInt(1500000) : random
+					.nextInt(40000);
+				final byte[] data = new byte[length];
+				for (int i = 0; i < length; i++) {
+					data[i] = (byte) (random.nextInt(8) == 0 ? random.nextInt() : i / 13);
+				}
+				out.write(data);
+				expected.write(data);
+			}
+			out.write(42);
+			expected.write(42);
+		}
+
+		final InputStream in = new GZIPInputStream(new ByteArrayInputStream(
+			compressed.toByteArray()));
+		final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		final byte[] buf = new byte[8192];
+		int n;
+		while ((n = in.read(buf)) > 0) {
+			actual.write(buf, 0, n);
+		}
+		assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+	}
+
+}
@@ -0,0 +1,181 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.scif.FormatException;
+
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.thread.ThreadService;
+
+/**
+ * Tests {@link ZlibCodec}.
+ */
+public class ZlibCodecTest {
+
+	private Context context;
+
+	private ZlibCodec codec;
+
+	@Before
+	public void setUp() {
+		context = new Context(CodecService.class, ThreadService.class);
+		codec = context.getService(CodecService.class).getCodec(ZlibCodec.class);
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	/** Checks a round trip at every compression level and strategy. */
+	@Test
+	public void testLevelsAndStrategies() throws FormatException {
+		final byte[] data = makeData(100000);
+		for (int level = -1; level <= 9; level++) {
+			for (final int strategy : new int[] { Deflater.DEFAULT_STRATEGY,
+				Deflater.FILTERED, Deflater.HUFFMAN_ONLY })
+			{
+				final CodecOptions options = CodecOptions.getDefaultOptions();
+				options.compressionLevel = level;
+				options.compressionStrategy = strategy;
+				assertArrayEquals(data, codec.decompress(codec.compress(data,
+					options)));
+			}
+		}
+	}
+
+	/** Checks that a higher level does not produce larger output. */
+	@Test
+	public void testLevelAffectsSize() throws FormatException {
+		final byte[] data = makeData(100000);
+		final CodecOptions fast = CodecOptions.getDefaultOptions();
+		fast.compressionLevel = Deflater.BEST_SPEED;
+		final CodecOptions best = CodecOptions.getDefaultOptions();
+		best.compressionLevel = Deflater.BEST_COMPRESSION;
+		final CodecOptions none = CodecOptions.getDefaultOptions();
+		none.compressionLevel = Deflater.NO_COMPRESSION;
+		final int fastLength = codec.compress(data, fast).length;
+		assertTrue(codec.compress(data, best).length <= fastLength);
+		assertTrue(codec.compress(data, none).length > data.length);
+	}
+
+	/**
+	 * Checks that chunk-parallel output is a single zlib stream that
+	 * {@link Inflater} accepts, including its Adler-32 trailer.
+	 */
+	@Test
+	public void testParallel() throws FormatException, DataFormatException {
+		for (final int length : new int[] { ZlibCodec.CHUNK_SIZE + 1,
+			5 * ZlibCodec.CHUNK_SIZE, 7 * ZlibCodec.CHUNK_SIZE / 2 })
+		{
+			assertParallelRoundTrip(length, Deflater.DEFAULT_STRATEGY);
+		}
+	}
+
+	/**
+	 * Checks chunk-parallel output with strategies that make the first deflate
+	 * call of each chunk only apply the strategy, so that every chunk must be
+	 * drained until all of its input is consumed.
+	 */
+	@Test
+	public void testParallelStrategies() throws FormatException,
+		DataFormatException
+	{
+		for (final int strategy : new int[] { Deflater.FILTERED,
+			Deflater.HUFFMAN_ONLY })
+		{
+			assertParallelRoundTrip(5 * ZlibCodec.CHUNK_SIZE, strategy);
+			assertParallelRoundTrip(7 * ZlibCodec.CHUNK_SIZE / 2, strategy);
+		}
+	}
+
+	/**
+	 * Checks that priming each chunk with the preceding window keeps parallel
+	 * output close to the size of serial output.
+	 */
+	@Test
+	public void testParallelRatio() throws FormatException {
+		final byte[] data = makeData(8 * ZlibCodec.CHUNK_SIZE);
+		final CodecOptions options = CodecOptions.getDefaultOptions();
+		final int serial = codec.compress(data, options).length;
+		options.compressionThreads = 8;
+		final int parallel = codec.compress(data, options).length;
+		assertTrue(parallel < serial * 1.02 + 64);
+	}
+
+	// -- Helper methods --
+
+	private void assertParallelRoundTrip(final int length, final int strategy)
+		throws FormatException, DataFormatException
+	{
+		final byte[] data = makeData(length);
+		final CodecOptions options = CodecOptions.getDefaultOptions();
+		options.compressionLevel = 6;
+		options.compressionStrategy = strategy;
+		options.compressionThreads = 4;
+		final byte[] compressed = codec.compress(data, options);
+
+		final Inflater inflater = new Inflater();
+		inflater.setInput(compressed);
+		final byte[] inflated = new byte[length];
+		assertEquals(length, inflater.inflate(inflated));
+		assertTrue(inflater.finished());
+		assertEquals(0, inflater.getRemaining());
+		inflater.end();
+		assertArrayEquals(data, inflated);
+		assertArrayEquals(data, codec.decompress(compressed));
+	}
+
+	/** Makes compressible data: a noisy 16-bit ramp. */
+	private static byte[] makeData(final int length) {
+		final Random random = new Random(length);
+		final byte[] data = new byte[length];
+		for (int i = 0; i + 1 < length; i += 2) {
+			final int value = (i / 2) % 4096 + random.nextInt(16);
+			data[i] = (byte) (value >> 8);
+			data[i + 1] = (byte) value;
+		}
+		return data;
+	}
+
+}
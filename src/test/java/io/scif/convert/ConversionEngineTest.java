@@ -0,0 +1,132 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.convert;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import io.scif.Reader;
+import io.scif.config.SCIFIOConfig;
+import io.scif.formats.TIFFFormat;
+import io.scif.services.InitializeService;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Tests {@link ConversionEngine}.
+ */
+public class ConversionEngineTest {
+
+	private static final String SOURCE =
+		"testImg&lengths=300,200,3&axes=X,Y,Time.fake";
+
+	private Context context;
+
+	private File dest;
+
+	@Before
+	public void setUp() throws IOException {
+		context = new Context();
+		dest = File.createTempFile("ConversionEngineTest", ".tif");
+		dest.delete();
+	}
+
+	@After
+	public void tearDown() {
+		dest.delete();
+		context.dispose();
+	}
+
+	/** Tests converting whole planes with a single reader. */
+	@Test
+	public void testWholePlanes() throws Exception {
+		assertConversion(new ConversionEngine(context).setReaderThreads(1));
+	}
+
+	/** Tests converting planes in bands smaller than a plane. */
+	@Test
+	public void testTiledPlanes() throws Exception {
+		assertConversion(new ConversionEngine(context).setReaderThreads(1)
+			.setTileBytes(300 * 7));
+	}
+
+	/** Tests converting tiles out of order with several readers. */
+	@Test
+	public void testParallelReaders() throws Exception {
+		assertConversion(new ConversionEngine(context).setReaderThreads(4)
+			.setQueueCapacity(3).setTileBytes(300 * 16));
+	}
+
+	/** Tests compressing the strips of each tile in parallel. */
+	@Test
+	public void testParallelCompression() throws Exception {
+		final SCIFIOConfig config = new SCIFIOConfig().checkerSetOpen(false)
+			.writerSetCompression(TIFFFormat.Writer.COMPRESSION_ZLIB);
+		assertConversion(new ConversionEngine(context).setReaderThreads(2)
+			.setCompressionThreads(4).setTileBytes(300 * 16), config);
+	}
+
+	// -- Helper methods --
+
+	private void assertConversion(final ConversionEngine engine)
+		throws Exception
+	{
+		assertConversion(engine, new SCIFIOConfig().checkerSetOpen(false));
+	}
+
+	private void assertConversion(final ConversionEngine engine,
+		final SCIFIOConfig config) throws Exception
+	{
+		engine.convert(SOURCE, dest.getAbsolutePath(), config);
+
+		final InitializeService init = context.getService(InitializeService.class);
+		final Reader expected = init.initializeReader(SOURCE);
+		final Reader actual = init.initializeReader(dest.getAbsolutePath());
+		try {
+			assertEquals(expected.getPlaneCount(0), actual.getPlaneCount(0));
+			for (int p = 0; p < expected.getPlaneCount(0); p++) {
+				assertArrayEquals("plane " + p, expected.openPlane(0, p).getBytes(),
+					actual.openPlane(0, p).getBytes());
+			}
+		}
+		finally {
+			expected.close();
+			actual.close();
+		}
+	}
+
+}
@@ -0,0 +1,61 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.filters;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link FileStitcher}.
+ */
+public class FileStitcherTest {
+
+	/**
+	 * Tests that images map to the file holding them, rather than to the file
+	 * at the same index, when files hold more than one image.
+	 */
+	@Test
+	public void testComputeFileIndex() {
+		final int[] imagesPerFile = { 2, 3, 1 };
+		assertArrayEquals(new int[] { 0, 0 }, FileStitcher.computeFileIndex(
+			imagesPerFile, 0));
+		assertArrayEquals(new int[] { 0, 1 }, FileStitcher.computeFileIndex(
+			imagesPerFile, 1));
+		assertArrayEquals(new int[] { 1, 0 }, FileStitcher.computeFileIndex(
+			imagesPerFile, 2));
+		assertArrayEquals(new int[] { 1, 2 }, FileStitcher.computeFileIndex(
+			imagesPerFile, 4));
+		assertArrayEquals(new int[] { 2, 0 }, FileStitcher.computeFileIndex(
+			imagesPerFile, 5));
+	}
+
+}
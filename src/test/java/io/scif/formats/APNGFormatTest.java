@@ -0,0 +1,155 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.formats;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import io.scif.Plane;
+import io.scif.Reader;
+import io.scif.Writer;
+import io.scif.config.SCIFIOConfig;
+import io.scif.services.InitializeService;
+
+import java.awt.image.Raster;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.util.Bytes;
+
+/**
+ * Tests writing APNG files.
+ */
+public class APNGFormatTest {
+
+	private static final String GRAY =
+		"apngTest&pixelType=uint16&lengths=40,30&axes=X,Y.fake";
+
+	private static final String RGB =
+		"apngTest&pixelType=uint8&lengths=40,30,3,6&axes=X,Y,Channel,Time.fake";
+
+	private Context context;
+
+	private File png;
+
+	@Before
+	public void setUp() throws IOException {
+		context = new Context();
+		png = File.createTempFile("APNGFormatTest", ".png");
+		png.delete();
+	}
+
+	@After
+	public void tearDown() {
+		png.delete();
+		context.dispose();
+	}
+
+	/** Tests that adaptively filtered 16-bit scanlines decode correctly. */
+	@Test
+	public void testFilteredGray() throws Exception {
+		write(GRAY, png, new SCIFIOConfig().writerSetCompressionLevel(9));
+		assertDefaultImage(GRAY, 2);
+	}
+
+	/** Tests that frames compressed ahead match serially compressed frames. */
+	@Test
+	public void testParallelFrames() throws Exception {
+		final File serial = File.createTempFile("APNGFormatTest", ".png");
+		serial.delete();
+		try {
+			write(RGB, serial, new SCIFIOConfig());
+			write(RGB, png, new SCIFIOConfig().writerSetCompressionThreads(4));
+			assertArrayEquals(Files.readAllBytes(serial.toPath()), Files
+				.readAllBytes(png.toPath()));
+		}
+		finally {
+			serial.delete();
+		}
+		assertDefaultImage(RGB, 1);
+	}
+
+	// -- Helper methods --
+
+	private void write(final String source, final File file,
+		final SCIFIOConfig config) throws Exception
+	{
+		final InitializeService init = context.getService(InitializeService.class);
+		final Reader reader = init.initializeReader(source);
+		final Writer writer = init.initializeWriter(reader.getMetadata(), file
+			.getAbsolutePath(), config);
+		try {
+			for (int p = 0; p < reader.getPlaneCount(0); p++) {
+				writer.savePlane(0, p, reader.openPlane(0, p));
+			}
+		}
+		finally {
+			reader.close();
+			writer.close();
+		}
+	}
+
+	/** Compares the default image, as decoded by ImageIO, to the first plane. */
+	private void assertDefaultImage(final String source, final int bytes)
+		throws Exception
+	{
+		final InitializeService init = context.getService(InitializeService.class);
+		final Reader reader = init.initializeReader(source);
+		try {
+			final Plane plane = reader.openPlane(0, 0);
+			final boolean little = reader.getMetadata().get(0).isLittleEndian();
+			final Raster raster = ImageIO.read(png).getRaster();
+			final int width = raster.getWidth(), height = raster.getHeight();
+			assertEquals(40, width);
+			assertEquals(30, height);
+			for (int c = 0; c < raster.getNumBands(); c++) {
+				for (int y = 0; y < height; y++) {
+					for (int x = 0; x < width; x++) {
+						final int offset = ((c * height + y) * width + x) * bytes;
+						assertEquals(Bytes.toInt(plane.getBytes(), offset, bytes, little),
+							raster.getSample(x, y, c));
+					}
+				}
+			}
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+}
@@ -0,0 +1,184 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.formats;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.scif.Plane;
+import io.scif.Reader;
+import io.scif.Writer;
+import io.scif.config.SCIFIOConfig;
+import io.scif.services.InitializeService;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import net.imagej.axis.Axes;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Tests writing AVI files.
+ */
+public class AVIFormatTest {
+
+	private static final String SOURCE =
+		"aviTest&pixelType=uint8&lengths=30,20,24&axes=X,Y,Time.fake";
+
+	private Context context;
+
+	private File avi;
+
+	@Before
+	public void setUp() throws IOException {
+		context = new Context();
+		avi = File.createTempFile("AVIFormatTest", ".avi");
+		avi.delete();
+	}
+
+	@After
+	public void tearDown() {
+		avi.delete();
+		context.dispose();
+	}
+
+	/** Tests writing uncompressed whole planes. */
+	@Test
+	public void testUncompressed() throws Exception {
+		write(avi, new SCIFIOConfig(), 20, 0);
+		assertPixels();
+	}
+
+	/** Tests writing uncompressed planes in row bands. */
+	@Test
+	public void testUncompressedBands() throws Exception {
+		write(avi, new SCIFIOConfig(), 7, 0);
+		assertPixels();
+	}
+
+	/** Tests chaining OpenDML 'AVIX' RIFFs once a RIFF is full. */
+	@Test
+	public void testOpenDML() throws Exception {
+		write(avi, new SCIFIOConfig(), 20, 8192);
+		final String bytes =
+			new String(Files.readAllBytes(avi.toPath()), StandardCharsets.ISO_8859_1);
+		assertTrue(bytes.contains("AVIX"));
+		assertTrue(bytes.contains("ix00"));
+		assertPixels();
+	}
+
+	/** Tests that Motion JPEG frames encoded ahead match serial encoding. */
+	@Test
+	public void testMotionJPEG() throws Exception {
+		final File serial = File.createTempFile("AVIFormatTest", ".avi");
+		serial.delete();
+		try {
+			write(serial, new SCIFIOConfig().writerSetCompression(
+				AVIFormat.Writer.COMPRESSION_JPEG), 20, 0);
+			write(avi, new SCIFIOConfig().writerSetCompression(
+				AVIFormat.Writer.COMPRESSION_JPEG).writerSetCompressionThreads(4), 20,
+				0);
+			assertArrayEquals(Files.readAllBytes(serial.toPath()), Files
+				.readAllBytes(avi.toPath()));
+		}
+		finally {
+			serial.delete();
+		}
+
+		final InitializeService init = context.getService(InitializeService.class);
+		final Reader reader = init.initializeReader(avi.getAbsolutePath());
+		try {
+			assertEquals(24, reader.getPlaneCount(0));
+			assertEquals(30, reader.getMetadata().get(0).getAxisLength(Axes.X));
+			assertEquals(20, reader.getMetadata().get(0).getAxisLength(Axes.Y));
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Copies the source to the given AVI file, in bands of the given height,
+	 * starting a new RIFF at the given size unless it is 0.
+	 */
+	private void write(final File file, final SCIFIOConfig config,
+		final int bandHeight, final long maxRiffSize) throws Exception
+	{
+		final InitializeService init = context.getService(InitializeService.class);
+		final Reader reader = init.initializeReader(SOURCE);
+		final Writer writer = init.initializeWriter(reader.getMetadata(), file
+			.getAbsolutePath(), config);
+		if (maxRiffSize > 0) {
+			((AVIFormat.Writer) writer).setMaxRiffSize(maxRiffSize);
+		}
+		try {
+			for (int p = 0; p < reader.getPlaneCount(0); p++) {
+				for (int y = 0; y < 20; y += bandHeight) {
+					final long[] min = { 0, y };
+					final long[] max = { 30, Math.min(bandHeight, 20 - y) };
+					final Plane plane = reader.openPlane(0, p, min, max);
+					writer.savePlane(0, p, plane, min, max);
+				}
+			}
+		}
+		finally {
+			reader.close();
+			writer.close();
+		}
+	}
+
+	private void assertPixels() throws Exception {
+		final InitializeService init = context.getService(InitializeService.class);
+		final Reader expected = init.initializeReader(SOURCE);
+		final Reader actual = init.initializeReader(avi.getAbsolutePath());
+		try {
+			assertEquals(expected.getPlaneCount(0), actual.getPlaneCount(0));
+			for (int p = 0; p < expected.getPlaneCount(0); p++) {
+				assertArrayEquals("plane " + p, expected.openPlane(0, p).getBytes(),
+					actual.openPlane(0, p).getBytes());
+			}
+		}
+		finally {
+			expected.close();
+			actual.close();
+		}
+	}
+
+}
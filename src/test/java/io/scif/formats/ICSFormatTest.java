@@ -0,0 +1,244 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.formats;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import io.scif.Plane;
+import io.scif.Reader;
+import io.scif.Writer;
+import io.scif.codec.CodecOptions;
+import io.scif.config.SCIFIOConfig;
+import io.scif.services.InitializeService;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Tests writing ICS files.
+ */
+public class ICSFormatTest {
+
+	private static final String SOURCE =
+		"icsTest&pixelType=uint16&lengths=64,48,3&axes=X,Y,Time.fake";
+
+	private Context context;
+
+	private File ics;
+
+	private File ids;
+
+	@Before
+	public void setUp() throws IOException {
+		context = new Context();
+		ics = File.createTempFile("ICSFormatTest", ".ics");
+		ics.delete();
+		final String path = ics.getAbsolutePath();
+		ids = new File(path.substring(0, path.length() - 4) + ".ids");
+	}
+
+	@After
+	public void tearDown() {
+		ics.delete();
+		ids.delete();
+		context.dispose();
+	}
+
+	/** Tests writing uncompressed planes in row bands. */
+	@Test
+	public void testUncompressedBands() throws Exception {
+		write(new SCIFIOConfig(), 10);
+		assertEquals(64 * 48 * 2 * 3, ids.length());
+		assertPixels();
+	}
+
+	/** Tests writing gzip-compressed whole planes on several threads. */
+	@Test
+	public void testGzip() throws Exception {
+		write(new SCIFIOConfig().writerSetCompression(
+			ICSFormat.Writer.COMPRESSION_GZIP).writerSetCompressionThreads(4), 48);
+		assertGzip();
+		assertPixels();
+	}
+
+	/** Tests writing gzip-compressed planes in row bands. */
+	@Test
+	public void testGzipBands() throws Exception {
+		write(new SCIFIOConfig().writerSetCompression(
+			ICSFormat.Writer.COMPRESSION_GZIP).writerSetCompressionLevel(9), 7);
+		assertGzip();
+		assertPixels();
+	}
+
+	/** Tests writing a region of a gzip-compressed plane, then all of it. */
+	@Test
+	public void testGzipRegionThenWholePlane() throws Exception {
+		final Writer writer = initializeWriter(new SCIFIOConfig()
+			.writerSetCompression(ICSFormat.Writer.COMPRESSION_GZIP));
+		final Reader reader = initializeReader(SOURCE);
+		try {
+			final long[] min = { 0, 0 };
+			final long[] max = { 64, 10 };
+			for (int p = 0; p < reader.getPlaneCount(0); p++) {
+				writer.savePlane(0, p, reader.openPlane(0, p, min, max), min, max);
+				writer.savePlane(0, p, reader.openPlane(0, p));
+			}
+		}
+		finally {
+			reader.close();
+			writer.close();
+		}
+		assertGzip();
+		assertPixels();
+	}
+
+	/** Tests that planes which are not written read back as blank planes. */
+	@Test
+	public void testUnwrittenPlanes() throws Exception {
+		for (final String compression : new String[] {
+			ICSFormat.Writer.COMPRESSION_UNCOMPRESSED,
+			ICSFormat.Writer.COMPRESSION_GZIP })
+		{
+			ics.delete();
+			ids.delete();
+			final Writer writer = initializeWriter(new SCIFIOConfig()
+				.writerSetCompression(compression));
+			final Reader reader = initializeReader(SOURCE);
+			try {
+				writer.savePlane(0, 0, reader.openPlane(0, 0));
+			}
+			finally {
+				writer.close();
+			}
+			final Reader actual = initializeReader(ics.getAbsolutePath());
+			try {
+				assertEquals(compression, 3, actual.getPlaneCount(0));
+				assertArrayEquals(compression, reader.openPlane(0, 0).getBytes(),
+					actual.openPlane(0, 0).getBytes());
+				assertArrayEquals(compression, new byte[64 * 48 * 2], actual
+					.openPlane(0, 2).getBytes());
+			}
+			finally {
+				reader.close();
+				actual.close();
+			}
+		}
+	}
+
+	/** Tests that the compression settings do not leak into a shared config. */
+	@Test
+	public void testSharedCodecOptions() throws Exception {
+		final CodecOptions options = CodecOptions.getDefaultOptions();
+		final SCIFIOConfig config = new SCIFIOConfig().writerSetCompression(
+			ICSFormat.Writer.COMPRESSION_GZIP).writerSetCodecOptions(options)
+			.writerSetCompressionLevel(9).writerSetCompressionThreads(4);
+		write(config, 48);
+		assertGzip();
+		assertPixels();
+		assertSame(options, config.writerGetCodecOptions());
+		assertEquals(-1, options.compressionLevel);
+		assertEquals(0, options.compressionThreads);
+	}
+
+	// -- Helper methods --
+
+	/** Copies the source to the ICS file, in bands of the given height. */
+	private void write(final SCIFIOConfig config, final int bandHeight)
+		throws Exception
+	{
+		final Writer writer = initializeWriter(config);
+		final Reader reader = initializeReader(SOURCE);
+		try {
+			for (int p = 0; p < reader.getPlaneCount(0); p++) {
+				for (int y = 0; y < 48; y += bandHeight) {
+					final long[] min = { 0, y };
+					final long[] max = { 64, Math.min(bandHeight, 48 - y) };
+					final Plane plane = reader.openPlane(0, p, min, max);
+					writer.savePlane(0, p, plane, min, max);
+				}
+			}
+		}
+		finally {
+			reader.close();
+			writer.close();
+		}
+	}
+
+	private Reader initializeReader(final String id) throws Exception {
+		return context.getService(InitializeService.class).initializeReader(id);
+	}
+
+	/** Creates a writer from the source's metadata to the ICS file. */
+	private Writer initializeWriter(final SCIFIOConfig config)
+		throws Exception
+	{
+		final Reader reader = initializeReader(SOURCE);
+		try {
+			return context.getService(InitializeService.class).initializeWriter(
+				reader.getMetadata(), ics.getAbsolutePath(), config);
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	private void assertGzip() throws IOException {
+		try (final FileInputStream in = new FileInputStream(ids)) {
+			assertEquals(0x1f, in.read());
+			assertEquals(0x8b, in.read());
+		}
+	}
+
+	private void assertPixels() throws Exception {
+		final Reader expected = initializeReader(SOURCE);
+		final Reader actual = initializeReader(ics.getAbsolutePath());
+		try {
+			assertEquals(expected.getPlaneCount(0), actual.getPlaneCount(0));
+			for (int p = 0; p < expected.getPlaneCount(0); p++) {
+				assertArrayEquals("plane " + p, expected.openPlane(0, p).getBytes(),
+					actual.openPlane(0, p).getBytes());
+			}
+		}
+		finally {
+			expected.close();
+			actual.close();
+		}
+	}
+
+}
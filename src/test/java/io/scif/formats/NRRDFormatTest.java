@@ -0,0 +1,181 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.formats;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import io.scif.Reader;
+import io.scif.services.InitializeService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Tests reading gzip and bzip2 encoded NRRD data. Like
+ * {@link io.scif.io.BZip2HandleTest}, this relies on the {@code bzip2}
+ * command line tool.
+ */
+public class NRRDFormatTest {
+
+	private static final int WIDTH = 64;
+
+	private static final int HEIGHT = 48;
+
+	private static final int DEPTH = 5;
+
+	private Context context;
+
+	private byte[] pixels;
+
+	@Before
+	public void setUp() {
+		context = new Context();
+		pixels = new byte[WIDTH * HEIGHT * DEPTH];
+		final Random r = new Random(1);
+		for (int i = 0; i < pixels.length; i++) {
+			pixels[i] = (byte) (r.nextInt(8) + i / 500);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	/** Tests attached gzip data made of several gzip members. */
+	@Test
+	public void testGzipMembers() throws Exception {
+		final int split = WIDTH * HEIGHT * 2 + 100;
+		final ByteArrayOutputStream data = new ByteArrayOutputStream();
+		data.write(gzip(Arrays.copyOfRange(pixels, 0, split)));
+		data.write(gzip(Arrays.copyOfRange(pixels, split, pixels.length)));
+		assertPixels(write("gzip", data.toByteArray()));
+	}
+
+	/** Tests attached bzip2 data. */
+	@Test
+	public void testBzip2() throws Exception {
+		assertPixels(write("bz2", bzip2(pixels)));
+	}
+
+	/** Tests gzip data in a detached data file. */
+	@Test
+	public void testDetachedGzip() throws Exception {
+		final File data = File.createTempFile("NRRDFormatTest", ".raw.gz");
+		data.deleteOnExit();
+		Files.write(data.toPath(), gzip(pixels));
+		final File nhdr = File.createTempFile("NRRDFormatTest", ".nhdr");
+		nhdr.deleteOnExit();
+		Files.write(nhdr.toPath(), header("gzip", "data file: " + data
+			.getAbsolutePath() + "\n").getBytes("UTF-8"));
+		assertPixels(nhdr);
+	}
+
+	// -- Helper methods --
+
+	/** Writes a NRRD file with the given encoding and attached data. */
+	private File write(final String encoding, final byte[] data)
+		throws IOException
+	{
+		final File file = File.createTempFile("NRRDFormatTest", ".nrrd");
+		file.deleteOnExit();
+		final OutputStream out = new FileOutputStream(file);
+		out.write(header(encoding, "").getBytes("UTF-8"));
+		out.write(data);
+		out.close();
+		return file;
+	}
+
+	private String header(final String encoding, final String extra) {
+		return "NRRD0004\n" + "type: uint8\n" + "dimension: 3\n" + "sizes: " +
+			WIDTH + " " + HEIGHT + " " + DEPTH + "\n" + "encoding: " + encoding +
+			"\n" + extra + "\n";
+	}
+
+	/** Reads the planes backwards, then a region of each plane. */
+	private void assertPixels(final File file) throws Exception {
+		final InitializeService init = context.getService(InitializeService.class);
+		final Reader reader = init.initializeReader(file.getAbsolutePath());
+		try {
+			assertEquals(DEPTH, reader.getPlaneCount(0));
+			final int planeSize = WIDTH * HEIGHT;
+			for (int p = DEPTH - 1; p >= 0; p--) {
+				assertArrayEquals("plane " + p, Arrays.copyOfRange(pixels, p *
+					planeSize, (p + 1) * planeSize), reader.openPlane(0, p).getBytes());
+			}
+			for (int p = 0; p < DEPTH; p++) {
+				final byte[] region = reader.openPlane(0, p, new long[] { 0, 10 },
+					new long[] { WIDTH, 5 }).getBytes();
+				final int start = p * planeSize + 10 * WIDTH;
+				assertArrayEquals("region " + p, Arrays.copyOfRange(pixels, start,
+					start + 5 * WIDTH), region);
+			}
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	private byte[] gzip(final byte[] data) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final OutputStream out = new GZIPOutputStream(bytes);
+		out.write(data);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private byte[] bzip2(final byte[] data) throws IOException,
+		InterruptedException
+	{
+		final File file = File.createTempFile("NRRDFormatTest", ".dat");
+		Files.write(file.toPath(), data);
+		final Process p = Runtime.getRuntime().exec(new String[] { "bzip2", "-f",
+			file.getAbsolutePath() });
+		assertEquals(0, p.waitFor());
+		final File bz2 = new File(file.getAbsolutePath() + ".bz2");
+		final byte[] bytes = Files.readAllBytes(bz2.toPath());
+		bz2.delete();
+		return bytes;
+	}
+}
@@ -0,0 +1,203 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.formats;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.scif.Reader;
+import io.scif.io.RandomAccessInputStream;
+import io.scif.services.InitializeService;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Tests the tokenizer, the number parser and the plane storage of
+ * {@link TextFormat}.
+ */
+public class TextFormatTest {
+
+	private Context context;
+
+	@Before
+	public void setUp() {
+		context = new Context();
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	@Test
+	public void testTokenizer() throws IOException {
+		final TextFormat.Tokenizer tokenizer = tokenize(
+			"  a, b\tc \r\n\r\n\n1,,2,\r\nlast");
+		assertTrue(tokenizer.nextLine());
+		assertArrayEquals(new String[] { "a", "", "b", "c" }, tokenizer
+			.getTokens());
+		assertEquals(1, tokenizer.getRow());
+		assertEquals(0, tokenizer.getLineOffset());
+
+		// blank lines are skipped, but counted
+		assertTrue(tokenizer.nextLine());
+		assertArrayEquals(new String[] { "1", "", "2" }, tokenizer.getTokens());
+		assertEquals(4, tokenizer.getRow());
+		assertEquals(14, tokenizer.getLineOffset());
+
+		// the last line needs no line break
+		assertTrue(tokenizer.nextLine());
+		assertArrayEquals(new String[] { "last" }, tokenizer.getTokens());
+		assertFalse(tokenizer.nextLine());
+	}
+
+	@Test
+	public void testLongLines() throws IOException {
+		// lines spanning several refills of the tokenizer's buffer
+		final StringBuilder text = new StringBuilder();
+		for (int line = 0; line < 3; line++) {
+			for (int i = 0; i < 100000; i++) {
+				text.append(line + i).append(',');
+			}
+			text.append("\r\n");
+		}
+		final TextFormat.Tokenizer tokenizer = tokenize(text.toString());
+		final double[] row = new double[100000];
+		for (int line = 0; line < 3; line++) {
+			assertTrue(tokenizer.nextLine());
+			assertEquals(row.length, tokenizer.getTokenCount());
+			assertTrue(tokenizer.parseRow(row));
+			assertEquals(line, row[0], 0);
+			assertEquals(line + 99999, row[99999], 0);
+		}
+		assertFalse(tokenizer.nextLine());
+	}
+
+	@Test
+	public void testParseNumbers() throws IOException {
+		final String[] tokens = { "0", "-0", "+7", "-12.5", ".5", "5.", "1e3",
+			"1.5E-3", "-2e+2", "123456789012345678901234", "0.1", "3.4028235E38",
+			"4.9e-324", "NaN", "Infinity", "-Infinity", "0x1p3" };
+		final TextFormat.Tokenizer tokenizer = tokenize(String.join(" ",
+			tokens));
+		assertTrue(tokenizer.nextLine());
+		final double[] row = new double[tokens.length];
+		assertTrue(tokenizer.parseRow(row));
+		for (int i = 0; i < tokens.length; i++) {
+			assertEquals(tokens[i], Double.parseDouble(tokens[i]), row[i], 0);
+		}
+		assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits(
+			row[1]));
+	}
+
+	@Test
+	public void testParseInvalidNumbers() throws IOException {
+		for (final String token : new String[] { "-", "1e", "1.2.3", "e5", "abc",
+			"1-2" })
+		{
+			final TextFormat.Tokenizer tokenizer = tokenize("0 " + token);
+			assertTrue(tokenizer.nextLine());
+			assertFalse(token, tokenizer.parseRow(new double[tokenizer
+				.getTokenCount()]));
+		}
+	}
+
+	@Test
+	public void testMappedPlanes() throws IOException {
+		final TextFormat.Metadata meta = new TextFormat.Metadata();
+		final ByteBuffer[] planes = TextFormat.Parser.allocatePlanes(3, 4 * 1000,
+			0, meta);
+		final File storeFile = meta.getStoreFile();
+		assertNotNull(storeFile);
+		assertEquals(3 * 4 * 1000, storeFile.length());
+		for (final ByteBuffer plane : planes) {
+			assertTrue(plane.isDirect());
+			assertEquals(4 * 1000, plane.remaining());
+			assertTrue(Float.isNaN(plane.getFloat(0)));
+			assertTrue(Float.isNaN(plane.getFloat(4 * 999)));
+		}
+		planes[1].putFloat(8, 2.5f);
+		meta.setPlanes(planes);
+		assertEquals(2.5f, meta.getData()[1][2], 0);
+
+		meta.close(false);
+		assertNull(meta.getStoreFile());
+	}
+
+	@Test
+	public void testReadTable() throws Exception {
+		final File file = File.createTempFile("TextFormatTest", ".csv");
+		file.deleteOnExit();
+		Files.write(file.toPath(), ("Exported table\r\n" + "x,y,a,b\r\n" +
+			"0,0,1.5,-2\r\n" + "1,0,1e2,NaN\r\n" + "0,1,-3.25E-1,Infinity\r\n" +
+			"\r\n" + "1,1,7,-0\r\n").getBytes(StandardCharsets.UTF_8));
+
+		final InitializeService init = context.getService(InitializeService.class);
+		final Reader reader = init.initializeReader(file.getAbsolutePath());
+		try {
+			assertEquals(2, reader.getPlaneCount(0));
+			assertPlane(new float[] { 1.5f, 100, -0.325f, 7 }, reader.openPlane(0,
+				0).getBytes());
+			assertPlane(new float[] { -2, Float.NaN, Float.POSITIVE_INFINITY, -0f },
+				reader.openPlane(0, 1).getBytes());
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	// -- Helper methods --
+
+	private TextFormat.Tokenizer tokenize(final String text) throws IOException {
+		final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		return new TextFormat.Tokenizer(new RandomAccessInputStream(context,
+			bytes), 0, bytes.length);
+	}
+
+	private void assertPlane(final float[] expected, final byte[] plane) {
+		final float[] actual = new float[expected.length];
+		ByteBuffer.wrap(plane).asFloatBuffer().get(actual);
+		assertArrayEquals(expected, actual, 0);
+	}
+}
@@ -0,0 +1,196 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.formats.tiff;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import io.scif.FormatException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.util.Bytes;
+
+/**
+ * Tests {@link TiffService} predictors.
+ */
+public class TiffServiceTest {
+
+	private static final int WIDTH = 7;
+
+	private static final int HEIGHT = 5;
+
+	private Context context;
+
+	private TiffService tiffService;
+
+	@Before
+	public void setUp() {
+		context = new Context(TiffService.class);
+		tiffService = context.getService(TiffService.class);
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	/**
+	 * Checks horizontal differencing against the original per-sample
+	 * implementation for every sample size, byte order and channel layout.
+	 */
+	@Test
+	public void testHorizontalDifferencing() throws FormatException {
+		final Random random = new Random(0xdeadbeefL);
+		for (final int bits : new int[] { 8, 16, 32 }) {
+			for (final boolean little : new boolean[] { false, true }) {
+				for (final int channels : new int[] { 1, 3 }) {
+					final IFD ifd = makeIFD(2, bits, little, channels);
+					final byte[] data = new byte[WIDTH * HEIGHT * channels * bits / 8];
+					random.nextBytes(data);
+
+					final byte[] expected = data.clone();
+					difference(expected, bits / 8, channels, little);
+					final byte[] actual = data.clone();
+					tiffService.difference(actual, ifd);
+					assertArrayEquals(expected, actual);
+
+					tiffService.undifference(actual, ifd);
+					assertArrayEquals(data, actual);
+				}
+			}
+		}
+	}
+
+	/** Checks that 64-bit samples survive a predictor 2 round trip. */
+	@Test
+	public void testHorizontalDifferencing64() throws FormatException {
+		final IFD ifd = makeIFD(2, 64, true, 1);
+		final byte[] data = new byte[WIDTH * HEIGHT * 8];
+		new Random(1).nextBytes(data);
+		final byte[] actual = data.clone();
+		tiffService.difference(actual, ifd);
+		tiffService.undifference(actual, ifd);
+		assertArrayEquals(data, actual);
+	}
+
+	/**
+	 * Checks the floating point predictor layout and that its encoding does not
+	 * depend on the byte order of the samples.
+	 */
+	@Test
+	public void testFloatingPoint() throws FormatException {
+		final float[] values = new float[WIDTH * HEIGHT];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = 1000.25f + i * 0.5f;
+		}
+		final byte[] big = toBytes(values, ByteOrder.BIG_ENDIAN);
+		final byte[] little = toBytes(values, ByteOrder.LITTLE_ENDIAN);
+
+		final byte[] encodedBig = big.clone();
+		tiffService.difference(encodedBig, makeIFD(3, 32, false, 1));
+		final byte[] encodedLittle = little.clone();
+		tiffService.difference(encodedLittle, makeIFD(3, 32, true, 1));
+		assertArrayEquals(encodedBig, encodedLittle);
+
+		// each row starts with the most significant byte of its first sample
+		for (int row = 0; row < HEIGHT; row++) {
+			assertEquals(big[row * WIDTH * 4], encodedBig[row * WIDTH * 4]);
+		}
+
+		tiffService.undifference(encodedBig, makeIFD(3, 32, false, 1));
+		assertArrayEquals(big, encodedBig);
+		tiffService.undifference(encodedLittle, makeIFD(3, 32, true, 1));
+		assertArrayEquals(little, encodedLittle);
+	}
+
+	/** Checks a predictor 3 round trip with interleaved channels. */
+	@Test
+	public void testFloatingPointChannels() throws FormatException {
+		final IFD ifd = makeIFD(3, 64, true, 3);
+		final byte[] data = new byte[WIDTH * HEIGHT * 3 * 8];
+		new Random(2).nextBytes(data);
+		final byte[] actual = data.clone();
+		tiffService.difference(actual, ifd);
+		tiffService.undifference(actual, ifd);
+		assertArrayEquals(data, actual);
+	}
+
+	@Test(expected = FormatException.class)
+	public void testUnknownPredictor() throws FormatException {
+		tiffService.undifference(new byte[WIDTH], makeIFD(4, 8, true, 1));
+	}
+
+	// -- Helper methods --
+
+	private IFD makeIFD(final int predictor, final int bits,
+		final boolean little, final int channels)
+	{
+		final IFD ifd = new IFD(null);
+		ifd.putIFDValue(IFD.PREDICTOR, predictor);
+		ifd.putIFDValue(IFD.IMAGE_WIDTH, (long) WIDTH);
+		ifd.putIFDValue(IFD.IMAGE_LENGTH, (long) HEIGHT);
+		ifd.putIFDValue(IFD.SAMPLES_PER_PIXEL, channels);
+		final int[] bitsPerSample = new int[channels];
+		Arrays.fill(bitsPerSample, bits);
+		ifd.putIFDValue(IFD.BITS_PER_SAMPLE, bitsPerSample);
+		ifd.put(IFD.LITTLE_ENDIAN, little);
+		return ifd;
+	}
+
+	/** The original predictor 2 implementation, one sample at a time. */
+	private static void difference(final byte[] input, final int bytes,
+		final int channels, final boolean little)
+	{
+		final int len = bytes * channels;
+		for (int b = input.length - bytes; b >= 0; b -= bytes) {
+			if (b / len % WIDTH == 0) continue;
+			int value = Bytes.toInt(input, b, bytes, little);
+			value -= Bytes.toInt(input, b - len, bytes, little);
+			Bytes.unpack(value, input, b, bytes, little);
+		}
+	}
+
+	private static byte[] toBytes(final float[] values, final ByteOrder order) {
+		final ByteBuffer buffer =
+			ByteBuffer.allocate(values.length * 4).order(order);
+		buffer.asFloatBuffer().put(values);
+		return buffer.array();
+	}
+
+}
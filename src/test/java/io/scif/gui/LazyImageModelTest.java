@@ -0,0 +1,252 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.scif.FormatException;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link LazyImageModel}.
+ *
+ * @see LazyImageModel
+ */
+public class LazyImageModelTest {
+
+	/** Size of each test image, in bytes. */
+	private static final int IMAGE_BYTES = 16 * 16;
+
+	@Test
+	public void testLoadsOnDemand() throws FormatException, IOException {
+		final CountingLoader loader = new CountingLoader();
+		final LazyImageModel model =
+			new LazyImageModel(1000, loader, Long.MAX_VALUE, 0);
+		assertEquals(1000, model.getImageCount());
+		assertEquals(0, loader.count.get());
+
+		final BufferedImage image = model.getImage(200);
+		assertEquals(200, image.getRaster().getSample(0, 0, 0));
+		assertEquals(1, loader.count.get());
+		assertSame(image, model.getImage(200));
+		assertEquals(1, loader.count.get());
+		model.close();
+	}
+
+	@Test
+	public void testCacheBounds() throws FormatException, IOException {
+		final CountingLoader loader = new CountingLoader();
+		final LazyImageModel model =
+			new LazyImageModel(100, loader, 4 * IMAGE_BYTES, 0);
+		for (int i = 0; i < 10; i++) {
+			model.getImage(i);
+		}
+		assertEquals(4, model.getCachedCount());
+		assertEquals(4 * IMAGE_BYTES, model.getCachedBytes());
+
+		// most recently used images are kept
+		model.getImage(9);
+		assertEquals(10, loader.count.get());
+		model.getImage(0);
+		assertEquals(11, loader.count.get());
+		model.close();
+	}
+
+	@Test
+	public void testPrefetch() throws FormatException, IOException,
+		InterruptedException
+	{
+		final CountingLoader loader = new CountingLoader();
+		final LazyImageModel model =
+			new LazyImageModel(100, loader, Long.MAX_VALUE, 3);
+		model.getImage(10);
+		waitForLoads(loader, 4);
+		assertEquals(4, model.getCachedCount());
+		for (int i = 11; i <= 13; i++) {
+			assertTrue(model.isCached(i));
+		}
+
+		// moving backwards prefetches the preceding images
+		model.getImage(5);
+		waitForLoads(loader, 8);
+		for (int i = 2; i <= 5; i++) {
+			assertTrue(model.isCached(i));
+		}
+		model.close();
+	}
+
+	@Test
+	public void testRequest() throws InterruptedException {
+		final CountingLoader loader = new CountingLoader();
+		final LazyImageModel model =
+			new LazyImageModel(10, loader, Long.MAX_VALUE, 0);
+		final CountDownLatch latch = new CountDownLatch(1);
+		final AtomicInteger loaded = new AtomicInteger(-1);
+		model.request(7, new LazyImageModel.Listener() {
+
+			@Override
+			public void imageLoaded(final int index, final BufferedImage image) {
+				loaded.set(image.getRaster().getSample(0, 0, 0));
+				latch.countDown();
+			}
+
+			@Override
+			public void loadFailed(final int index, final Throwable cause) {
+				latch.countDown();
+			}
+		});
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		assertEquals(7, loaded.get());
+		model.close();
+	}
+
+	/**
+	 * Answers a request whose load was a prefetch skipped as stale, as happens
+	 * when the request races the prefetch's stale check.
+	 */
+	@Test
+	public void testRequestAfterStalePrefetch() throws InterruptedException {
+		final AtomicInteger attempts = new AtomicInteger();
+		final CountingLoader loader = new CountingLoader() {
+
+			@Override
+			public BufferedImage load(final int index) {
+				if (attempts.incrementAndGet() == 1) {
+					throw new IllegalStateException("First load of " + index);
+				}
+				return super.load(index);
+			}
+		};
+		final LazyImageModel model =
+			new LazyImageModel(100, loader, Long.MAX_VALUE, 0);
+		// make image 11 current, but leave it uncached
+		assertNull(model.getCachedImage(11));
+		final FutureTask<BufferedImage> stale = new FutureTask<>(() -> null);
+		stale.run();
+
+		// the load is submitted again while the image is still current
+		final RecordingListener current = new RecordingListener();
+		model.notifyWhenLoaded(11, stale, current);
+		assertTrue(current.latch.await(10, TimeUnit.SECONDS));
+		assertEquals(11, current.loaded.get());
+		assertEquals(1, loader.count.get());
+
+		// but not once the viewer has moved on
+		model.getCachedImage(50);
+		final RecordingListener moved = new RecordingListener();
+		model.notifyWhenLoaded(11, stale, moved);
+		assertTrue(moved.latch.await(10, TimeUnit.SECONDS));
+		assertEquals(-1, moved.loaded.get());
+		assertTrue(moved.failure instanceof CancellationException);
+		model.close();
+	}
+
+	@Test(expected = FormatException.class)
+	public void testLoadFailure() throws FormatException, IOException {
+		final LazyImageModel model =
+			new LazyImageModel(10, new LazyImageModel.ImageLoader() {
+
+				@Override
+				public BufferedImage load(final int index) throws FormatException {
+					throw new FormatException("Cannot load " + index);
+				}
+			});
+		try {
+			model.getImage(3);
+		}
+		finally {
+			model.close();
+		}
+	}
+
+	// -- Helper methods --
+
+	private void waitForLoads(final CountingLoader loader, final int count)
+		throws InterruptedException
+	{
+		final long end = System.currentTimeMillis() + 10000;
+		while (loader.count.get() < count && System.currentTimeMillis() < end) {
+			Thread.sleep(10);
+		}
+		assertEquals(count, loader.count.get());
+	}
+
+	// -- Helper classes --
+
+	/** Records the outcome of a single request. */
+	private static class RecordingListener implements LazyImageModel.Listener {
+
+		private final CountDownLatch latch = new CountDownLatch(1);
+
+		private final AtomicInteger loaded = new AtomicInteger(-1);
+
+		private volatile Throwable failure;
+
+		@Override
+		public void imageLoaded(final int index, final BufferedImage image) {
+			loaded.set(image.getRaster().getSample(0, 0, 0));
+			latch.countDown();
+		}
+
+		@Override
+		public void loadFailed(final int index, final Throwable cause) {
+			failure = cause;
+			latch.countDown();
+		}
+	}
+
+	/** Creates 8-bit images filled with their index, counting loads. */
+	private static class CountingLoader implements LazyImageModel.ImageLoader {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public BufferedImage load(final int index) {
+			count.incrementAndGet();
+			final BufferedImage image =
+				new BufferedImage(16, 16, BufferedImage.TYPE_BYTE_GRAY);
+			image.getRaster().setSample(0, 0, 0, index & 0xff);
+			return image;
+		}
+	}
+}
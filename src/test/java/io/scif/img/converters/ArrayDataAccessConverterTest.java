@@ -0,0 +1,111 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.img.converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import io.scif.FormatException;
+import io.scif.Reader;
+import io.scif.config.SCIFIOConfig;
+import io.scif.services.InitializeService;
+
+import java.io.IOException;
+
+import net.imagej.ImgPlus;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Tests {@link ArrayDataAccessConverter}.
+ */
+public class ArrayDataAccessConverterTest {
+
+	private static final String ID =
+		"testImg&lengths=4,4,3&axes=X,Y,Time.fake";
+
+	private Context context;
+
+	private InitializeService initializeService;
+
+	private ArrayDataAccessConverter converter;
+
+	@Before
+	public void setUp() {
+		context = new Context();
+		initializeService = context.getService(InitializeService.class);
+		converter = (ArrayDataAccessConverter) context.getService(
+			PlaneConverterService.class).getArrayConverter();
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	/** Tests that a reader's loader is reused until the reader is closed. */
+	@Test
+	public void testLoaderCache() throws FormatException, IOException {
+		final SCIFIOConfig config = new SCIFIOConfig();
+		final ArrayImg<UnsignedByteType, ByteArray> img = ArrayImgs.unsignedBytes(
+			4, 4, 3);
+		final ByteArray store = img.update(null);
+		final ImgPlus<UnsignedByteType> dest = new ImgPlus<>(img);
+
+		final Reader reader = initializeService.initializeReader(ID);
+		for (int p = 0; p < 3; p++) {
+			converter.populatePlane(reader, 0, p, reader.openPlane(0, p)
+				.getBytes(), dest, config);
+		}
+		assertSame(converter.getLoader(reader, store, config), converter
+			.getLoader(reader, store, config));
+		assertEquals(1, converter.cachedLoaderCount());
+
+		final Reader other = initializeService.initializeReader(ID);
+		assertNotSame(converter.getLoader(reader, store, config), converter
+			.getLoader(other, store, config));
+		assertEquals(2, converter.cachedLoaderCount());
+
+		reader.close();
+		assertEquals(1, converter.cachedLoaderCount());
+		other.close();
+		assertEquals(0, converter.cachedLoaderCount());
+	}
+
+}
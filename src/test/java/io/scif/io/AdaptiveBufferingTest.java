@@ -0,0 +1,154 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.scif.services.MetricsService;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Tests adaptive buffering of {@link NIOFileHandle} on a file spanning several
+ * windows, so that window growth, read-ahead and buffer bypass all occur.
+ */
+public class AdaptiveBufferingTest {
+
+	private static final int LENGTH = 3 * 1048576 + 123;
+
+	private static final int BUFFER_SIZE = 1048576;
+
+	private Context context;
+
+	private MetricsService metrics;
+
+	private byte[] data;
+
+	private File file;
+
+	private NIOFileHandle handle;
+
+	@Before
+	public void setUp() throws IOException {
+		context = new Context(NIOService.class, MetricsService.class);
+		metrics = context.getService(MetricsService.class);
+		metrics.setEnabled(true);
+		data = new byte[LENGTH];
+		new Random(0xcafe).nextBytes(data);
+		file = File.createTempFile("adaptive", ".dat");
+		final OutputStream stream = new FileOutputStream(file);
+		try {
+			stream.write(data);
+		}
+		finally {
+			stream.close();
+		}
+		handle = new NIOFileHandle(context.getService(NIOService.class), file, "r",
+			BUFFER_SIZE, true);
+		handle.setMetrics(metrics);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		handle.close();
+		file.delete();
+		context.dispose();
+	}
+
+	@Test
+	public void testAdaptive() {
+		assertTrue(handle.isAdaptive());
+	}
+
+	@Test
+	public void testSequentialScan() throws IOException {
+		final ByteBuffer expected = ByteBuffer.wrap(data);
+		for (int i = 0; i + 4 <= LENGTH; i += 4) {
+			assertEquals(expected.getInt(i), handle.readInt());
+		}
+		assertTrue(metrics.getCount(MetricsService.HANDLE_READ_AHEAD_HITS) > 0);
+	}
+
+	@Test
+	public void testRandomAccess() throws IOException {
+		final ByteBuffer expected = ByteBuffer.wrap(data);
+		final Random random = new Random(42);
+		for (int i = 0; i < 1000; i++) {
+			final int offset = random.nextInt(LENGTH - 16);
+			handle.seek(offset);
+			if (i % 3 == 0) {
+				assertEquals(expected.getLong(offset), handle.readLong());
+			}
+			else if (i % 3 == 1) {
+				assertEquals(expected.getShort(offset), handle.readShort());
+			}
+			else {
+				final byte[] b = new byte[16];
+				assertEquals(16, handle.read(b));
+				assertArrayEquals(Arrays.copyOfRange(data, offset, offset + 16), b);
+			}
+		}
+	}
+
+	@Test
+	public void testBypass() throws IOException {
+		final int offset = 12345;
+		final int length = 2 * BUFFER_SIZE;
+		handle.seek(offset);
+		final byte[] b = new byte[length];
+		assertEquals(length, handle.read(b));
+		assertArrayEquals(Arrays.copyOfRange(data, offset, offset + length), b);
+		assertEquals(length, metrics.getCount(MetricsService.HANDLE_BYTES_READ));
+		assertEquals(offset + length, handle.getFilePointer());
+		assertEquals(data[offset + length], handle.readByte());
+	}
+
+	@Test
+	public void testEndOfFile() throws IOException {
+		handle.seek(LENGTH - 10);
+		final byte[] b = new byte[64];
+		assertEquals(10, handle.read(b));
+		assertEquals(LENGTH, handle.getFilePointer());
+	}
+}
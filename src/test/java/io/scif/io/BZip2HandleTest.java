@@ -0,0 +1,166 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests random access to bzip2 files through {@link BZip2Handle}. Like
+ * {@link io.scif.io.providers.BZip2HandleProvider}, this relies on the
+ * {@code bzip2} command line tool.
+ *
+ * @see BZip2Handle
+ */
+public class BZip2HandleTest {
+
+	@Test
+	public void testMultipleBlocks() throws IOException, InterruptedException {
+		final byte[] data = createData(new Random(1), 1500000);
+		final BZip2Handle handle = new BZip2Handle(null, bzip2(data));
+		// 100k blocks
+		assertTrue(handle.getBlockCount() >= data.length / 100000);
+		assertRandomAccess(handle, data);
+
+		handle.seek(0);
+		final byte[] b = new byte[data.length];
+		handle.readFully(b);
+		assertArrayEquals(data, b);
+		handle.close();
+	}
+
+	@Test
+	public void testConcatenatedStreams() throws IOException,
+		InterruptedException
+	{
+		final byte[] first = createData(new Random(2), 250000);
+		final byte[] second = createData(new Random(3), 400000);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(Files.readAllBytes(new File(bzip2(first)).toPath()));
+		out.write(Files.readAllBytes(new File(bzip2(second)).toPath()));
+		final File file = File.createTempFile("BZip2HandleTest", ".bz2");
+		file.deleteOnExit();
+		Files.write(file.toPath(), out.toByteArray());
+
+		final BZip2Handle handle = new BZip2Handle(null, file.getAbsolutePath());
+		final byte[] data = Arrays.copyOf(first, first.length + second.length);
+		System.arraycopy(second, 0, data, first.length, second.length);
+		assertRandomAccess(handle, data);
+		handle.close();
+	}
+
+	@Test
+	public void testReadBeforeLength() throws IOException, InterruptedException {
+		final byte[] data = createData(new Random(4), 1200000);
+		final BZip2Handle handle = new BZip2Handle(null, bzip2(data));
+
+		// blocks are decompressed as reads reach them
+		final byte[] b = new byte[1000];
+		handle.seek(700000);
+		handle.readFully(b);
+		assertArrayEquals(Arrays.copyOfRange(data, 700000, 701000), b);
+		assertEquals(data.length, handle.length());
+		handle.close();
+	}
+
+	@Test(expected = IOException.class)
+	public void testCorruptBlock() throws IOException, InterruptedException {
+		final byte[] data = createData(new Random(6), 300000);
+		final byte[] bytes = Files.readAllBytes(new File(bzip2(data)).toPath());
+		// flip a bit of the CRC in the header of the first block
+		bytes[4 + 6] ^= 1;
+		final File file = File.createTempFile("BZip2HandleTest", ".bz2");
+		file.deleteOnExit();
+		Files.write(file.toPath(), bytes);
+
+		final BZip2Handle handle = new BZip2Handle(null, file.getAbsolutePath());
+		try {
+			handle.readFully(new byte[data.length]);
+		}
+		finally {
+			handle.close();
+		}
+	}
+
+	// -- Helper methods --
+
+	private void assertRandomAccess(final BZip2Handle handle, final byte[] data)
+		throws IOException
+	{
+		assertEquals(data.length, handle.length());
+		final Random r = new Random(5);
+		for (int i = 0; i < 50; i++) {
+			final int pos = r.nextInt(data.length);
+			final byte[] b = new byte[Math.min(r.nextInt(300000), data.length - pos)];
+			handle.seek(pos);
+			handle.readFully(b);
+			assertEquals(pos + b.length, handle.getFilePointer());
+			assertArrayEquals(Arrays.copyOfRange(data, pos, pos + b.length), b);
+		}
+	}
+
+	/** Creates compressible data. */
+	private byte[] createData(final Random r, final int length) {
+		final byte[] data = new byte[length];
+		for (int i = 0; i < length; i++) {
+			data[i] = (byte) (r.nextInt(16) + i / 1000);
+		}
+		return data;
+	}
+
+	/** Compresses the given data into 100k blocks with the bzip2 tool. */
+	private String bzip2(final byte[] data) throws IOException,
+		InterruptedException
+	{
+		final File file = File.createTempFile("BZip2HandleTest", ".dat");
+		final OutputStream out = new FileOutputStream(file);
+		out.write(data);
+		out.close();
+		final Process p = Runtime.getRuntime().exec(new String[] { "bzip2", "-1",
+			"-f", file.getAbsolutePath() });
+		assertEquals(0, p.waitFor());
+		final File bz2 = new File(file.getAbsolutePath() + ".bz2");
+		bz2.deleteOnExit();
+		return bz2.getAbsolutePath();
+	}
+}
@@ -0,0 +1,250 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+/**
+ * Tests random access to single-member, multi-member and BGZF files through
+ * {@link GZipHandle}.
+ *
+ * @see GZipHandle
+ */
+public class GZipHandleTest {
+
+	private static final int BGZF_BLOCK = 65280;
+
+	@Test
+	public void testSingleMember() throws IOException {
+		final byte[] data = createData(new Random(1), 3000000);
+		final GZipHandle handle = new GZipHandle(null, write(gzip(data)));
+		assertFalse(handle.isBGZF());
+		assertEquals(1, handle.getMemberCount());
+		assertRandomAccess(handle, data);
+		handle.close();
+	}
+
+	@Test
+	public void testMultiMember() throws IOException {
+		final byte[] first = createData(new Random(2), 700000);
+		final byte[] second = createData(new Random(3), 1200000);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(gzip(first));
+		out.write(gzip(new byte[0]));
+		out.write(gzip(second));
+		final GZipHandle handle = new GZipHandle(null, write(out.toByteArray()));
+		assertFalse(handle.isBGZF());
+		assertEquals(3, handle.getMemberCount());
+		final byte[] data = Arrays.copyOf(first, first.length + second.length);
+		System.arraycopy(second, 0, data, first.length, second.length);
+		assertRandomAccess(handle, data);
+		handle.close();
+	}
+
+	@Test
+	public void testMultiMemberWithoutLength() throws IOException {
+		final byte[] first = createData(new Random(6), 500000);
+		final byte[] second = createData(new Random(7), 300000);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(gzip(first));
+		out.write(gzip(second));
+		final GZipHandle handle = new GZipHandle(null, write(out.toByteArray()));
+
+		// members are found as reads reach them
+		final byte[] b = new byte[1000];
+		handle.seek(first.length + 1000);
+		handle.readFully(b);
+		assertArrayEquals(Arrays.copyOfRange(second, 1000, 2000), b);
+		assertEquals(first.length + second.length, handle.length());
+		handle.close();
+	}
+
+	@Test
+	public void testMisleadingTrailer() throws IOException {
+		// the trailer of the file only holds the length of the last member
+		final byte[] first = new byte[5000000];
+		final byte[] second = createData(new Random(8), 10);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(gzip(first));
+		out.write(gzip(second));
+		final GZipHandle handle = new GZipHandle(null, write(out.toByteArray()));
+
+		final byte[] b = new byte[first.length + second.length];
+		handle.readFully(b);
+		assertArrayEquals(second, Arrays.copyOfRange(b, first.length, b.length));
+		assertEquals(b.length, handle.length());
+		assertEquals(2, handle.getMemberCount());
+		handle.close();
+	}
+
+	@Test
+	public void testEmbeddedMemberHeader() throws IOException {
+		// stored data that looks like a gzip member must not split the file
+		final byte[] inner = gzip(createData(new Random(9), 100000));
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final OutputStream out = new GZIPOutputStream(bytes) {
+
+			{
+				def.setLevel(Deflater.NO_COMPRESSION);
+			}
+		};
+		for (int i = 0; i < 4; i++) {
+			out.write(inner);
+		}
+		out.close();
+		final byte[] data = new byte[inner.length * 4];
+		for (int i = 0; i < 4; i++) {
+			System.arraycopy(inner, 0, data, i * inner.length, inner.length);
+		}
+		final GZipHandle handle = new GZipHandle(null, write(bytes.toByteArray()));
+		assertRandomAccess(handle, data);
+		assertEquals(1, handle.getMemberCount());
+		handle.close();
+	}
+
+	@Test
+	public void testBGZF() throws IOException {
+		final byte[] data = createData(new Random(4), 2000000);
+		final GZipHandle handle = new GZipHandle(null, write(bgzf(data)));
+		assertTrue(handle.isBGZF());
+		// data blocks plus the end-of-file marker
+		assertEquals((data.length + BGZF_BLOCK - 1) / BGZF_BLOCK + 1, handle
+			.getMemberCount());
+		assertRandomAccess(handle, data);
+
+		// sequential reads across many blocks
+		handle.seek(0);
+		final byte[] b = new byte[data.length];
+		handle.readFully(b);
+		assertArrayEquals(data, b);
+		handle.close();
+	}
+
+	// -- Helper methods --
+
+	private void assertRandomAccess(final GZipHandle handle, final byte[] data)
+		throws IOException
+	{
+		assertEquals(data.length, handle.length());
+		final Random r = new Random(5);
+		for (int i = 0; i < 100; i++) {
+			final int pos = r.nextInt(data.length);
+			final byte[] b = new byte[Math.min(r.nextInt(200000), data.length - pos)];
+			handle.seek(pos);
+			handle.readFully(b);
+			assertEquals(pos + b.length, handle.getFilePointer());
+			assertArrayEquals(Arrays.copyOfRange(data, pos, pos + b.length), b);
+		}
+		handle.seek(data.length - 1);
+		assertEquals(data[data.length - 1], handle.readByte());
+	}
+
+	/** Creates compressible data. */
+	private byte[] createData(final Random r, final int length) {
+		final byte[] data = new byte[length];
+		for (int i = 0; i < length; i++) {
+			data[i] = (byte) (r.nextInt(16) + i / 1000);
+		}
+		return data;
+	}
+
+	private byte[] gzip(final byte[] data) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final OutputStream out = new GZIPOutputStream(bytes);
+		out.write(data);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	/** Compresses the given data into BGZF blocks. */
+	private byte[] bgzf(final byte[] data) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (int off = 0; off < data.length; off += BGZF_BLOCK) {
+			bgzfBlock(out, data, off, Math.min(BGZF_BLOCK, data.length - off));
+		}
+		bgzfBlock(out, data, 0, 0);
+		return out.toByteArray();
+	}
+
+	private void bgzfBlock(final ByteArrayOutputStream out, final byte[] data,
+		final int off, final int len)
+	{
+		final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		deflater.setInput(data, off, len);
+		deflater.finish();
+		final byte[] compressed = new byte[len + 1024];
+		final int n = deflater.deflate(compressed);
+		deflater.end();
+		final CRC32 crc = new CRC32();
+		crc.update(data, off, len);
+
+		final int blockSize = 18 + n + 8;
+		out.write(new byte[] { 0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff,
+			6, 0, 'B', 'C', 2, 0 }, 0, 16);
+		writeLE(out, blockSize - 1, 2);
+		out.write(compressed, 0, n);
+		writeLE(out, crc.getValue(), 4);
+		writeLE(out, len, 4);
+	}
+
+	private void writeLE(final ByteArrayOutputStream out, final long v,
+		final int bytes)
+	{
+		for (int i = 0; i < bytes; i++) {
+			out.write((int) (v >> (8 * i)) & 0xff);
+		}
+	}
+
+	private String write(final byte[] bytes) throws IOException {
+		final File file = File.createTempFile("GZipHandleTest", ".gz");
+		file.deleteOnExit();
+		final OutputStream out = new FileOutputStream(file);
+		out.write(bytes);
+		out.close();
+		return file.getAbsolutePath();
+	}
+}
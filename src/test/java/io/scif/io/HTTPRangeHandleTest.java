@@ -0,0 +1,271 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link HTTPRangeHandle} against an embedded HTTP server.
+ *
+ * @see HTTPRangeHandle
+ */
+public class HTTPRangeHandleTest {
+
+	private static final int BLOCK_SIZE = 1024;
+
+	private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+	private final byte[] data = new byte[100 * BLOCK_SIZE + 17];
+
+	private final AtomicInteger rangeRequests = new AtomicInteger();
+
+	private HttpServer server;
+
+	@Before
+	public void setUp() throws IOException {
+		new Random(42).nextBytes(data);
+		server = HttpServer.create(new InetSocketAddress(InetAddress
+			.getLoopbackAddress(), 0), 0);
+		server.createContext("/data.bin", new RangeHandler(true, true, 0));
+		server.createContext("/plain.bin", new RangeHandler(false, false, 0));
+		server.createContext("/full.bin", new RangeHandler(true, false, 0));
+		server.createContext("/shifted.bin", new RangeHandler(true, true, 1));
+		server.start();
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	@Test
+	public void testRandomReads() throws IOException {
+		final HTTPRangeHandle handle =
+			new HTTPRangeHandle(url("/data.bin"), BLOCK_SIZE, 8, 2);
+		assertEquals(data.length, handle.length());
+		final Random r = new Random(1);
+		for (int i = 0; i < 200; i++) {
+			final int pos = r.nextInt(data.length);
+			final int len = r.nextInt(5 * BLOCK_SIZE);
+			final byte[] b = new byte[len];
+			handle.seek(pos);
+			final int n = handle.read(b);
+			assertEquals(Math.min(len, data.length - pos), n);
+			assertEquals(pos + n, handle.getFilePointer());
+			assertArrayEquals(Arrays.copyOfRange(data, pos, pos + n), Arrays
+				.copyOf(b, n));
+		}
+		handle.close();
+	}
+
+	@Test
+	public void testBackwardSeekUsesCache() throws IOException {
+		final HTTPRangeHandle handle =
+			new HTTPRangeHandle(url("/data.bin"), BLOCK_SIZE, 16, 0);
+		final byte[] b = new byte[3 * BLOCK_SIZE];
+		handle.seek(10 * BLOCK_SIZE + 5);
+		handle.readFully(b);
+		// the three missing blocks are coalesced into a single request
+		assertEquals(1, rangeRequests.get());
+
+		handle.seek(10 * BLOCK_SIZE);
+		assertEquals(data[10 * BLOCK_SIZE], handle.readByte());
+		handle.seek(12 * BLOCK_SIZE + 100);
+		handle.readFully(b, 0, 100);
+		assertEquals(1, rangeRequests.get());
+		handle.close();
+	}
+
+	@Test
+	public void testPrimitives() throws IOException {
+		final HTTPRangeHandle handle = new HTTPRangeHandle(url("/data.bin"));
+		final int pos = BLOCK_SIZE - 3;
+		for (final ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN,
+			ByteOrder.LITTLE_ENDIAN })
+		{
+			final ByteBuffer expected = ByteBuffer.wrap(data).order(order);
+			handle.setOrder(order);
+			handle.seek(pos);
+			assertEquals(expected.getShort(pos), handle.readShort());
+			handle.seek(pos);
+			assertEquals(expected.getInt(pos), handle.readInt());
+			handle.seek(pos);
+			assertEquals(expected.getLong(pos), handle.readLong());
+		}
+		handle.close();
+	}
+
+	@Test
+	public void testSequentialPrefetch() throws IOException {
+		final HTTPRangeHandle handle =
+			new HTTPRangeHandle(url("/data.bin"), BLOCK_SIZE, 128, 4);
+		final byte[] b = new byte[data.length];
+		for (int off = 0; off < b.length; off += BLOCK_SIZE / 2) {
+			handle.readFully(b, off, Math.min(BLOCK_SIZE / 2, b.length - off));
+		}
+		assertArrayEquals(data, b);
+		handle.close();
+	}
+
+	@Test(expected = HandleException.class)
+	public void testNoRangeSupport() throws IOException {
+		new HTTPRangeHandle(url("/plain.bin"));
+	}
+
+	@Test
+	public void testRangeIgnored() throws IOException {
+		final HTTPRangeHandle handle =
+			new HTTPRangeHandle(url("/full.bin"), BLOCK_SIZE, 8, 0);
+		final byte[] b = new byte[3 * BLOCK_SIZE];
+		handle.seek(50 * BLOCK_SIZE + 7);
+		handle.readFully(b);
+		assertArrayEquals(Arrays.copyOfRange(data, 50 * BLOCK_SIZE + 7, 53 *
+			BLOCK_SIZE + 7), b);
+		handle.close();
+	}
+
+	@Test(expected = HandleException.class)
+	public void testWrongRange() throws IOException {
+		final HTTPRangeHandle handle =
+			new HTTPRangeHandle(url("/shifted.bin"), BLOCK_SIZE, 8, 0);
+		try {
+			handle.seek(10 * BLOCK_SIZE);
+			handle.readByte();
+		}
+		finally {
+			handle.close();
+		}
+	}
+
+	@Test
+	public void testEOF() throws IOException {
+		final HTTPRangeHandle handle = new HTTPRangeHandle(url("/data.bin"));
+		handle.seek(data.length - 2);
+		assertEquals(2, handle.read(new byte[10]));
+		assertEquals(0, handle.read(new byte[10]));
+		boolean eof = false;
+		try {
+			handle.seek(data.length - 1);
+			handle.readShort();
+		}
+		catch (final java.io.EOFException e) {
+			eof = true;
+		}
+		assertTrue(eof);
+		handle.close();
+	}
+
+	// -- Helper methods --
+
+	private String url(final String path) {
+		return "http://" + server.getAddress().getHostString() + ":" + server
+			.getAddress().getPort() + path;
+	}
+
+	// -- Helper classes --
+
+	/**
+	 * Serves {@link #data}, optionally advertising and honouring range requests.
+	 */
+	private class RangeHandler implements HttpHandler {
+
+		private final boolean ranges;
+
+		private final boolean partial;
+
+		private final int shift;
+
+		/**
+		 * @param ranges whether to advertise support for range requests
+		 * @param partial whether to answer range requests with partial content,
+		 *          rather than the whole of {@link #data}
+		 * @param shift offset added to the start of each partial response
+		 */
+		private RangeHandler(final boolean ranges, final boolean partial,
+			final int shift)
+		{
+			this.ranges = ranges;
+			this.partial = partial;
+			this.shift = shift;
+		}
+
+		@Override
+		public void handle(final HttpExchange exchange) throws IOException {
+			if (ranges) exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+			int start = 0, end = data.length - 1, code = 200;
+			final String range = exchange.getRequestHeaders().getFirst("Range");
+			if (partial && range != null) {
+				final Matcher m = RANGE.matcher(range);
+				assertTrue(m.matches());
+				start = Integer.parseInt(m.group(1)) + shift;
+				end = Math.min(Integer.parseInt(m.group(2)), data.length - 1);
+				exchange.getResponseHeaders().set("Content-Range", "bytes " + start +
+					"-" + end + "/" + data.length);
+				code = 206;
+				rangeRequests.incrementAndGet();
+			}
+			final int length = end - start + 1;
+			if (exchange.getRequestMethod().equals("HEAD")) {
+				exchange.getResponseHeaders().set("Content-Length", "" + length);
+				exchange.sendResponseHeaders(code, -1);
+			}
+			else {
+				exchange.sendResponseHeaders(code, length);
+				try (final OutputStream out = exchange.getResponseBody()) {
+					out.write(data, start, length);
+				}
+			}
+			exchange.close();
+		}
+	}
+}
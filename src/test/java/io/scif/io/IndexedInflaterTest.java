@@ -0,0 +1,138 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link IndexedInflater}.
+ *
+ * @see IndexedInflater
+ */
+public class IndexedInflaterTest {
+
+	private static final int SPAN = 64 * 1024;
+
+	@Test
+	public void testStored() throws IOException {
+		assertRandomAccess(Deflater.NO_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+	}
+
+	@Test
+	public void testHuffmanOnly() throws IOException {
+		assertRandomAccess(Deflater.BEST_SPEED, Deflater.HUFFMAN_ONLY);
+	}
+
+	@Test
+	public void testDefault() throws IOException {
+		assertRandomAccess(Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+	}
+
+	@Test
+	public void testIndex() throws IOException {
+		final byte[] data = createData(new Random(7), 500000);
+		final byte[] compressed = deflate(data, 9, Deflater.FILTERED, 3);
+		final IndexedInflater inflater =
+			new IndexedInflater(new ByteArrayHandle(compressed), 3,
+				compressed.length - 3, SPAN);
+		assertEquals(-1, inflater.getInflatedLength());
+		inflater.index();
+		assertEquals(data.length, inflater.getInflatedLength());
+		assertEquals(compressed.length, inflater.getEnd());
+		assertTrue(inflater.getCheckpointCount() > 1);
+		assertEquals(-1, inflater.read(data.length, new byte[1], 0, 1));
+		inflater.close();
+	}
+
+	// -- Helper methods --
+
+	private void assertRandomAccess(final int level, final int strategy)
+		throws IOException
+	{
+		final Random random = new Random(level);
+		final byte[] data = createData(random, 1000000);
+		final byte[] compressed = deflate(data, level, strategy, 0);
+		final IndexedInflater inflater =
+			new IndexedInflater(new ByteArrayHandle(compressed), 0,
+				compressed.length, SPAN);
+
+		// reverse order, as when reading a z-stack backwards
+		final int chunk = 40000;
+		final byte[] buf = new byte[chunk];
+		for (int pos = data.length - chunk; pos >= 0; pos -= chunk) {
+			assertEquals(chunk, inflater.read(pos, buf, 0, chunk));
+			assertArrayEquals(Arrays.copyOfRange(data, pos, pos + chunk), buf);
+		}
+
+		// random order
+		for (int i = 0; i < 50; i++) {
+			final int pos = random.nextInt(data.length);
+			final int len = Math.min(data.length - pos, random.nextInt(chunk) + 1);
+			final byte[] b = new byte[len];
+			assertEquals(len, inflater.read(pos, b, 0, len));
+			assertArrayEquals(Arrays.copyOfRange(data, pos, pos + len), b);
+		}
+		inflater.close();
+	}
+
+	private byte[] createData(final Random random, final int length) {
+		final byte[] data = new byte[length];
+		for (int i = 0; i < length; i++) {
+			data[i] = (byte) (Math.sin(i / 50.0) * 100 + random.nextInt(8));
+		}
+		return data;
+	}
+
+	private byte[] deflate(final byte[] data, final int level,
+		final int strategy, final int offset)
+	{
+		final Deflater deflater = new Deflater(level, true);
+		deflater.setStrategy(strategy);
+		deflater.setInput(data);
+		deflater.finish();
+		final byte[] buf = new byte[data.length + 1024];
+		int length = offset;
+		while (!deflater.finished()) {
+			length += deflater.deflate(buf, length, buf.length - length);
+		}
+		deflater.end();
+		return Arrays.copyOf(buf, length);
+	}
+}
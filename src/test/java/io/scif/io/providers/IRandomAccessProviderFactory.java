@@ -51,6 +51,8 @@ public class IRandomAccessProviderFactory {
 		providers.put("BZip2Handle", new BZip2HandleProvider());
 		providers.put("GZipHandle", new GZipHandleProvider());
 		providers.put("NIOFileHandle", new NIOFileHandleProvider());
+		providers.put("AdaptiveNIOFileHandle",
+			new AdaptiveNIOFileHandleProvider());
 		providers.put("URLHandle", new URLHandleProvider());
 		providers.put("ZipHandle", new ZipHandleProvider());
 	}
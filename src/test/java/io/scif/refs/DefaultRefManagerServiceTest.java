@@ -0,0 +1,98 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.refs;
+
+import static org.junit.Assert.assertEquals;
+
+import io.scif.img.cell.SCIFIOCell;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Tests {@link DefaultRefManagerService}.
+ */
+public class DefaultRefManagerServiceTest {
+
+	private Context context;
+
+	private DefaultRefManagerService refManagerService;
+
+	@Before
+	public void setUp() {
+		context = new Context();
+		refManagerService = (DefaultRefManagerService) context.getService(
+			RefManagerService.class);
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	/** Tests that managing an object twice in the same way makes one ref. */
+	@Test
+	public void testManageTwice() {
+		final SCIFIOCell<ByteArray> cell = createCell();
+		final Map<Integer, Object> refMap = new HashMap<>();
+
+		refManagerService.manage(cell);
+		refManagerService.manage(cell);
+		assertEquals(1, refManagerService.knownRefCount());
+
+		// a different provider may still manage the same object
+		refManagerService.manage(cell, 0, refMap);
+		refManagerService.manage(cell, 0, refMap);
+		assertEquals(2, refManagerService.knownRefCount());
+
+		// an equal but distinct object is managed separately
+		final SCIFIOCell<ByteArray> other = createCell();
+		refManagerService.manage(other);
+		assertEquals(3, refManagerService.knownRefCount());
+	}
+
+	// -- Helper methods --
+
+	private SCIFIOCell<ByteArray> createCell() {
+		final SCIFIOCell<ByteArray> cell = new SCIFIOCell<>(null, "test", 0,
+			new int[] { 1 }, new long[] { 0 }, new ByteArray(1));
+		cell.cacheOnFinalize(false);
+		return cell;
+	}
+
+}
@@ -0,0 +1,105 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.services;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Tests the pattern detection of {@link DefaultFilePatternService}.
+ *
+ * @see FilePatternService
+ */
+public class FilePatternServiceTest {
+
+	private Context context;
+
+	private FilePatternService filePatternService;
+
+	@Before
+	public void setUp() {
+		context = new Context(FilePatternService.class, LocationService.class);
+		filePatternService = context.getService(FilePatternService.class);
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	@Test
+	public void testFindPattern() {
+		final String[] names = names();
+		assertEquals("hypothetical<01-12><0-2><1-4>c<1-2>.ext", filePatternService
+			.findPattern(names[1], null, names));
+		assertEquals("hypothetical<01-12><0-2><1-4>c<1-2>.ext", filePatternService
+			.findPattern("hypothetical0501c2.ext", null, names));
+		assertNull(filePatternService.findPattern("missing1.ext", null, names));
+	}
+
+	@Test
+	public void testFindImagePatterns() {
+		final String dir = "dir";
+		final String[] names = names();
+		final String[] patterns = filePatternService.findImagePatterns(dir +
+			File.separator + names[5], dir, names);
+		assertArrayEquals(new String[] { dir + File.separator +
+			"hypothetical<01-12><0-2><1-4>c<1-2>.ext" }, patterns);
+	}
+
+	// -- Helper methods --
+
+	/** Builds a virtual file list, with one file outside of the pattern. */
+	private String[] names() {
+		final String[] names = new String[2 * 4 * 3 * 12 + 1];
+		names[0] = "outlier.ext";
+		int count = 1;
+		for (int i = 1; i <= 2; i++) {
+			for (int j = 1; j <= 4; j++) {
+				for (int k = 0; k <= 2; k++) {
+					for (int l = 1; l <= 12; l++) {
+						final String sl = (l < 10 ? "0" : "") + l;
+						names[count++] = "hypothetical" + sl + k + j + "c" + i + ".ext";
+					}
+				}
+			}
+		}
+		return names;
+	}
+}
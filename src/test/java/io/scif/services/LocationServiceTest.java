@@ -0,0 +1,232 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.services;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.scif.io.GZipHandle;
+import io.scif.io.IRandomAccess;
+import io.scif.io.NIOFileHandle;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Tests the handle resolution and directory listing of
+ * {@link DefaultLocationService}.
+ *
+ * @see LocationService
+ */
+public class LocationServiceTest {
+
+	private Context context;
+
+	private LocationService locationService;
+
+	@Before
+	public void setUp() {
+		context = new Context(LocationService.class);
+		locationService = context.getService(LocationService.class);
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	@Test
+	public void testPlainFile() throws IOException {
+		final File file = File.createTempFile("LocationServiceTest", ".tif");
+		file.deleteOnExit();
+		write(file, new byte[] { 'I', 'I', 42, 0 }, false);
+		assertHandle(file, NIOFileHandle.class);
+		// the decision is cached
+		assertHandle(file, NIOFileHandle.class);
+	}
+
+	@Test
+	public void testGZipFile() throws IOException {
+		final File file = File.createTempFile("LocationServiceTest", ".gz");
+		file.deleteOnExit();
+		write(file, new byte[100], true);
+		assertHandle(file, GZipHandle.class);
+	}
+
+	@Test
+	public void testChangedFile() throws IOException {
+		final File file = File.createTempFile("LocationServiceTest", ".gz");
+		file.deleteOnExit();
+		write(file, new byte[] { 1, 2, 3 }, false);
+		assertHandle(file, NIOFileHandle.class);
+
+		// the cached decision must not survive the file being rewritten
+		write(file, new byte[100], true);
+		assertHandle(file, GZipHandle.class);
+	}
+
+	@Test
+	public void testHeaderChecks() throws IOException {
+		final GZipHandle handle = new GZipHandle(context);
+		assertTrue(handle.isCandidate("a.tif.gz"));
+		assertFalse(handle.isCandidate("a.tif"));
+		assertTrue(handle.isConstructable("a.gz", new byte[] { 0x1f, (byte) 0x8b,
+			8 }));
+		assertFalse(handle.isConstructable("a.gz", new byte[] { 'P', 'K' }));
+		assertFalse(handle.isConstructable("a.gz", null));
+		handle.close();
+	}
+
+	@Test
+	public void testListDirectory() throws IOException {
+		final File dir = createDirectory("a.tif", ".hidden", "sub/", ".git/");
+		final String path = dir.getAbsolutePath();
+		assertListing(new String[] { ".git", ".hidden", "a.tif", "sub" },
+			locationService.listDirectory(path, false));
+		assertListing(new String[] { "a.tif", "sub" }, locationService
+			.listDirectory(path, true));
+		assertListing(new String[] { ".git", "sub" }, locationService
+			.listSubdirectories(path, false));
+		assertListing(new String[] { "sub" }, locationService.listSubdirectories(
+			path, true));
+		assertNull(locationService.listDirectory(new File(dir, "a.tif")
+			.getAbsolutePath(), false));
+		assertNull(locationService.listDirectory(new File(dir, "missing")
+			.getAbsolutePath(), false));
+	}
+
+	@Test
+	public void testCachedListing() throws IOException {
+		locationService.cacheDirectoryListings(true);
+		final File dir = createDirectory("a.tif");
+		final String path = dir.getAbsolutePath();
+		// NB: Backdate the directory, so that its timestamp can be trusted.
+		dir.setLastModified(System.currentTimeMillis() - 60000);
+		final String[] listing = locationService.listDirectory(path, false);
+		assertSame(listing, locationService.listDirectory(path, false));
+
+		// a change to the directory invalidates the cached listing
+		new File(dir, "b.tif").createNewFile();
+		dir.setLastModified(System.currentTimeMillis() - 30000);
+		assertListing(new String[] { "a.tif", "b.tif" }, locationService
+			.listDirectory(path, false));
+	}
+
+	@Test
+	public void testRecentListingNotCached() throws IOException {
+		locationService.cacheDirectoryListings(true);
+		final File dir = createDirectory("a.tif");
+		final String path = dir.getAbsolutePath();
+		final long modified = dir.lastModified();
+		locationService.listDirectory(path, false);
+
+		// a change within the timestamp granularity must still be seen
+		new File(dir, "b.tif").createNewFile();
+		dir.setLastModified(modified);
+		assertListing(new String[] { "a.tif", "b.tif" }, locationService
+			.listDirectory(path, false));
+	}
+
+	@Test
+	public void testListDirectories() throws IOException {
+		final File a = createDirectory("1.tif", "2.tif");
+		final File b = createDirectory("3.tif");
+		final String missing = new File(a, "missing").getAbsolutePath();
+		final Map<String, String[]> listings = locationService.listDirectories(
+			Arrays.asList(a.getAbsolutePath(), b.getAbsolutePath(), missing),
+			true);
+		assertEquals(3, listings.size());
+		assertListing(new String[] { "1.tif", "2.tif" }, listings.get(a
+			.getAbsolutePath()));
+		assertListing(new String[] { "3.tif" }, listings.get(b
+			.getAbsolutePath()));
+		assertTrue(listings.containsKey(missing));
+		assertNull(listings.get(missing));
+	}
+
+	// -- Helper methods --
+
+	private void assertHandle(final File file, final Class<?> type)
+		throws IOException
+	{
+		final IRandomAccess handle =
+			locationService.getHandle(file.getAbsolutePath());
+		assertTrue(handle.getClass().getName(), type.isInstance(handle));
+		handle.close();
+	}
+
+	private void assertListing(final String[] expected, final String[] actual) {
+		final String[] sorted = actual.clone();
+		Arrays.sort(sorted);
+		assertArrayEquals(expected, sorted);
+	}
+
+	/**
+	 * Creates a temporary directory with the given entries. Entries ending in a
+	 * slash are created as directories.
+	 */
+	private File createDirectory(final String... entries) throws IOException {
+		final File dir = Files.createTempDirectory("LocationServiceTest")
+			.toFile();
+		dir.deleteOnExit();
+		for (final String entry : entries) {
+			final File file = new File(dir, entry);
+			if (entry.endsWith("/")) file.mkdir();
+			else file.createNewFile();
+			file.deleteOnExit();
+		}
+		return dir;
+	}
+
+	private void write(final File file, final byte[] data, final boolean gzip)
+		throws IOException
+	{
+		OutputStream out = new FileOutputStream(file);
+		if (gzip) out = new GZIPOutputStream(out);
+		out.write(data);
+		out.close();
+	}
+}
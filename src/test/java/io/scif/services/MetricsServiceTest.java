@@ -0,0 +1,127 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.scif.util.LatencyHistogram;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Tests {@link DefaultMetricsService} and its {@link LatencyHistogram}s.
+ *
+ * @see MetricsService
+ */
+public class MetricsServiceTest {
+
+	private Context context;
+
+	private MetricsService metrics;
+
+	@Before
+	public void setUp() {
+		context = new Context(MetricsService.class);
+		metrics = context.getService(MetricsService.class);
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	@Test
+	public void testDisabledByDefault() {
+		assertFalse(metrics.isEnabled());
+		metrics.count(MetricsService.STREAM_SEEKS, 1);
+		metrics.time(MetricsService.OPEN_PLANE_PREFIX + "Test", 1000);
+		assertEquals(0, metrics.getCount(MetricsService.STREAM_SEEKS));
+		assertNull(metrics.getHistogram(MetricsService.OPEN_PLANE_PREFIX +
+			"Test"));
+		assertTrue(metrics.getCounts().isEmpty());
+	}
+
+	@Test
+	public void testCounters() {
+		metrics.setEnabled(true);
+		metrics.count(MetricsService.HANDLE_BYTES_READ, 100);
+		metrics.count(MetricsService.HANDLE_BYTES_READ, 28);
+		assertEquals(128, metrics.getCount(MetricsService.HANDLE_BYTES_READ));
+		assertEquals(Long.valueOf(128), metrics.getCounts().get(
+			MetricsService.HANDLE_BYTES_READ));
+		metrics.reset();
+		assertEquals(0, metrics.getCount(MetricsService.HANDLE_BYTES_READ));
+	}
+
+	@Test
+	public void testHistogram() {
+		metrics.setEnabled(true);
+		final String name = MetricsService.OPEN_PLANE_PREFIX + "Test";
+		for (int i = 0; i < 3; i++) {
+			metrics.time(name, 1000);
+		}
+		metrics.time(name, 3000000);
+		final LatencyHistogram histogram = metrics.getHistogram(name);
+		assertEquals(4, histogram.getCount());
+		assertEquals(3003000, histogram.getTotal());
+		assertEquals(3000000, histogram.getMax());
+		// 1000 ns has a bit length of 10, so falls into the bucket ending at 1023
+		assertEquals(3, histogram.getBucketCount(10));
+		assertEquals(1023, histogram.getPercentile(50));
+		assertEquals(3000000, histogram.getPercentile(99));
+	}
+
+	@Test
+	public void testCacheHitRatio() {
+		metrics.setEnabled(true);
+		assertTrue(Double.isNaN(metrics.getCacheHitRatio()));
+		metrics.count(MetricsService.CACHE_HITS, 3);
+		metrics.count(MetricsService.CACHE_MISSES, 1);
+		assertEquals(0.75, metrics.getCacheHitRatio(), 0);
+	}
+
+	@Test
+	public void testJSON() {
+		metrics.setEnabled(true);
+		metrics.count("a", 1);
+		metrics.time("b\"c", 5);
+		assertEquals("{\"enabled\":true,\"counters\":{\"a\":1},\"histograms\":" +
+			"{\"b\\\"c\":{\"count\":1,\"totalNanos\":5,\"meanNanos\":5.0," +
+			"\"maxNanos\":5,\"p50Nanos\":5,\"p90Nanos\":5,\"p99Nanos\":5," +
+			"\"buckets\":{\"7\":1}}}}", metrics.toJSON());
+	}
+}
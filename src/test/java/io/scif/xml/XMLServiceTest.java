@@ -0,0 +1,131 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.xml;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Hashtable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Tests {@link XMLService}.
+ */
+public class XMLServiceTest {
+
+	private Context context;
+
+	private XMLService xmlService;
+
+	@Before
+	public void setUp() {
+		context = new Context(XMLService.class);
+		xmlService = context.getService(XMLService.class);
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	/** Tests that prefixes of undeclared namespaces are rewritten. */
+	@Test
+	public void testAvoidUndeclaredNamespaces() {
+		final String xml = "<?xml version=\"1.0\"?><!-- comment -->" +
+			"<Root xmlns:a=\"a\" xmlns:e=\"\"><a:b/><c:d>t</c:d>" +
+			"<OME:x/><ns2:y/><e:z/></Root>";
+		final String expected = "<?xml version=\"1.0\"?><!-- comment -->" +
+			"<Root xmlns:a=\"a\" ><a:b/><c_d>t</c_d>" +
+			"<OME:x/><ns2:y/><e:z/></Root>";
+		assertEquals(expected, xmlService.avoidUndeclaredNamespaces(xml));
+	}
+
+	/** Tests that several empty namespace declarations are all removed. */
+	@Test
+	public void testEmptyNamespaces() {
+		final String xml = "<r xmlns:a=\"\" xmlns:b=\"\"><a:x/><c:y/></r>";
+		assertEquals("<r  ><a:x/><c_y/></r>", xmlService
+			.avoidUndeclaredNamespaces(xml));
+	}
+
+	/** Tests the streaming namespace fix-up on a large document. */
+	@Test
+	public void testStreamingNamespaces() throws IOException {
+		final StringBuilder xml = new StringBuilder("<Root xmlns:a=\"a\">");
+		final StringBuilder expected = new StringBuilder(xml);
+		for (int i = 0; i < 10000; i++) {
+			xml.append("<a:x/><b:y>v</b:y>");
+			expected.append("<a:x/><b_y>v</b_y>");
+		}
+		xml.append("</Root>");
+		expected.append("</Root>");
+
+		final StringWriter out = new StringWriter();
+		xmlService.avoidUndeclaredNamespaces(new StringReader(xml.toString()),
+			out);
+		assertEquals(expected.toString(), out.toString());
+	}
+
+	/** Tests that a handler may parse more XML while parsing. */
+	@Test
+	public void testReentrantParse() throws IOException {
+		final Hashtable<String, String> inner = new Hashtable<>();
+		xmlService.parseXML("<outer><inner/></outer>", new DefaultHandler() {
+
+			@Override
+			public void startElement(final String uri, final String localName,
+				final String qName, final Attributes attributes) throws SAXException
+			{
+				if (!qName.equals("inner")) return;
+				try {
+					inner.putAll(xmlService.parseXML("<nested value=\"1\"/>"));
+				}
+				catch (final IOException exc) {
+					throw new SAXException(exc);
+				}
+			}
+		});
+		assertEquals(1, inner.size());
+
+		// the pooled parser is still usable afterwards
+		assertEquals(1, xmlService.parseXML("<a b=\"2\"/>").size());
+	}
+
+}